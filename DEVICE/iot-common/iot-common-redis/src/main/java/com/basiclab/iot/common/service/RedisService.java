@@ -39,6 +39,7 @@ public class RedisService
     //分布式锁参数
     private static final Long RELEASE_SUCCESS = 1L;
     private static final String RELEASE_LOCK_LUA_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+    private static final String RENEW_LOCK_LUA_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], tonumber(ARGV[2])) else return 0 end";
 
     /**
      * 判断资源是否已经被锁定
@@ -92,14 +93,36 @@ public class RedisService
      * @return 是否释放成功
      */
     public boolean releaseDistributedLock(String lockKey, String requestId) {
+        return deleteIfEquals(lockKey, requestId);
+    }
+
+    /**
+     * 仅当缓存的值等于 value 时删除，比较与删除在同一个 Lua 脚本中原子执行
+     *
+     * @param key   缓存的键值
+     * @param value 期望的值，与写入时使用相同的序列化方式比较
+     * @return 是否删除成功，false 表示键不存在或值已被修改
+     */
+    public boolean deleteIfEquals(final String key, final Object value) {
         // 指定 lua 脚本，并且指定返回值类型
         DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>(RELEASE_LOCK_LUA_SCRIPT, Long.class);
         // 参数一：redisScript，参数二：key列表，参数三：arg（可多个）
-        Long result = (Long) redisTemplate.execute(redisScript, Collections.singletonList(lockKey), requestId);
-        if (RELEASE_SUCCESS.equals(result)) {
-            return true;
-        }
-        return false;
+        Long result = (Long) redisTemplate.execute(redisScript, Collections.singletonList(key), value);
+        return RELEASE_SUCCESS.equals(result);
+    }
+
+    /**
+     * 续期分布式锁，仅当锁仍由 requestId 持有时才会续期
+     *
+     * @param lockKey    锁
+     * @param requestId  请求标识
+     * @param expireTime 新的超期时间（毫秒）
+     * @return 是否续期成功，false 表示锁已过期或已被其他请求持有
+     */
+    public boolean renewDistributedLock(String lockKey, String requestId, Long expireTime) {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>(RENEW_LOCK_LUA_SCRIPT, Long.class);
+        Long result = (Long) redisTemplate.execute(redisScript, Collections.singletonList(lockKey), requestId, expireTime);
+        return RELEASE_SUCCESS.equals(result);
     }
 
     /**
@@ -126,6 +149,30 @@ public class RedisService
         redisTemplate.opsForValue().set(key, value, timeout, timeUnit);
     }
 
+    /**
+     * 批量缓存基本的对象，通过管道一次发送，所有键使用相同的有效时间
+     *
+     * @param values 缓存的键值对
+     * @param timeout 时间
+     * @param timeUnit 时间颗粒度
+     */
+    public <T> void setCacheObjects(final Map<String, T> values, final Long timeout, final TimeUnit timeUnit)
+    {
+        if (values == null || values.isEmpty())
+        {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>()
+        {
+            @Override
+            public Object execute(RedisOperations operations)
+            {
+                values.forEach((key, value) -> operations.opsForValue().set(key, value, timeout, timeUnit));
+                return null;
+            }
+        });
+    }
+
     /**
      * 设置有效时间
      *
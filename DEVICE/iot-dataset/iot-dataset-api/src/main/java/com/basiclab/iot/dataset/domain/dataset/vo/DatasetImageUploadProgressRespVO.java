@@ -0,0 +1,48 @@
+package com.basiclab.iot.dataset.domain.dataset.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * DatasetImageUploadProgressRespVO
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Schema(description = "管理后台 - 图片数据集压缩包导入进度 Response VO")
+@Data
+public class DatasetImageUploadProgressRespVO {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Schema(description = "导入任务ID")
+    private String taskId;
+
+    @Schema(description = "数据集ID", example = "1569")
+    private Long datasetId;
+
+    @Schema(description = "状态：RUNNING、COMPLETED、FAILED")
+    private String status;
+
+    @Schema(description = "已读取的图片数")
+    private Integer readCount;
+
+    @Schema(description = "已导入的图片数")
+    private Integer successCount;
+
+    @Schema(description = "导入失败的图片数")
+    private Integer failedCount;
+
+    @Schema(description = "失败原因")
+    private String errorMessage;
+
+    @Schema(description = "开始时间（毫秒时间戳）")
+    private Long startTime;
+
+    @Schema(description = "结束时间（毫秒时间戳）")
+    private Long endTime;
+
+}
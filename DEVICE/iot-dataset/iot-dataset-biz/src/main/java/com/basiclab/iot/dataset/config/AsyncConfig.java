@@ -6,6 +6,7 @@ import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * AsyncConfig
@@ -49,4 +50,58 @@ public class AsyncConfig implements AsyncConfigurer {
         executor.initialize();
         return executor;
     }
+
+    @Bean("exportExecutor")
+    public Executor exportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("Export-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 导出压缩包时从管道读取并上传到 MinIO 的线程，每个导出任务占用一个线程直到上传结束，
+     * 不与其他上传共用线程池，避免上传线程被占满时导入等任务排队
+     */
+    @Bean("exportUploadExecutor")
+    public Executor exportUploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(16);
+        executor.setThreadNamePrefix("ExportUpload-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 压缩包导入的读取线程，每个导入任务占用一个线程直到整个压缩包读取完成，
+     * 限制同时导入的压缩包数，超出时拒绝新的导入
+     */
+    @Bean("zipIngestExecutor")
+    public Executor zipIngestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("ZipIngest-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("ingestExecutor")
+    public Executor ingestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("Ingest-");
+        // 队列满时由读取线程自己上传，相当于对解压读取限流
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import com.basiclab.iot.dataset.dal.dataobject.DatasetImageDO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImagePageReqVO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageRespVO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageSaveReqVO;
+import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageUploadProgressRespVO;
 import com.basiclab.iot.dataset.service.DatasetImageService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.v3.oas.annotations.Operation;
@@ -110,8 +111,8 @@ public class DatasetImageController {
     }
 
     @PostMapping("/upload")
-    @Operation(summary = "上传图片或压缩包")
-    public CommonResult<Boolean> uploadDatasetImage(
+    @Operation(summary = "上传图片或压缩包，压缩包在后台导入并返回导入任务ID")
+    public CommonResult<String> uploadDatasetImage(
             @Parameter(description = "上传的文件", required = true)
             @RequestParam("file") MultipartFile file,
             @Parameter(description = "数据集ID", required = true)
@@ -138,8 +139,18 @@ public class DatasetImageController {
         }
 
         // 调用服务层处理上传
-        datasetImageService.processUpload(file, datasetId, isZip);
-        return CommonResult.success(true);
+        return CommonResult.success(datasetImageService.processUpload(file, datasetId, isZip));
+    }
+
+    @GetMapping("/upload-progress/{taskId}")
+    @Operation(summary = "查询压缩包导入进度")
+    public CommonResult<DatasetImageUploadProgressRespVO> getUploadProgress(
+            @PathVariable("taskId") String taskId) {
+        DatasetImageUploadProgressRespVO progress = datasetImageService.getUploadProgress(taskId);
+        if (progress == null) {
+            throw exception(FILE_UPLOAD_FAILED, "导入任务不存在或已过期");
+        }
+        return success(progress);
     }
 
     @PostMapping("/upload-file")
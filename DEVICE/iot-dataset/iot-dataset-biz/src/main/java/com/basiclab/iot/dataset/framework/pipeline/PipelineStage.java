@@ -0,0 +1,352 @@
+package com.basiclab.iot.dataset.framework.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流水线阶段
+ * <p>
+ * 1. 有界队列，队列满时 {@link #offer} 按超时等待，形成背压
+ * 2. 固定数量的工作线程按 batchSize / linger 攒批，交给 {@link BatchHandler} 处理
+ * 3. 处理失败按退避重试，超过重试次数后交给 {@link DeadLetterHandler}
+ * 4. 关闭时不再接收新数据，工作线程处理完队列中剩余的数据后退出
+ * 5. 配置了 {@link MeterRegistry} 时上报队列长度、处理数量和批次耗时，tag stage 为阶段名称
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class PipelineStage<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineStage.class);
+
+    private static final String METRIC_PREFIX = "iot.dataset.pipeline";
+
+    /**
+     * 队列为空时工作线程的等待时间，用于检查是否已关闭
+     */
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    /**
+     * 批次处理器
+     */
+    @FunctionalInterface
+    public interface BatchHandler<T> {
+
+        void handle(List<T> batch) throws Exception;
+
+    }
+
+    /**
+     * 死信处理器：重试耗尽、入队超时或关闭后未处理的数据
+     */
+    @FunctionalInterface
+    public interface DeadLetterHandler<T> {
+
+        void onDeadLetter(List<T> items, Exception cause);
+
+    }
+
+    private final String name;
+    private final BatchHandler<T> handler;
+    private final DeadLetterHandler<T> deadLetterHandler;
+    private final int parallelism;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final BlockingQueue<T> queue;
+    private final ExecutorService workers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private volatile boolean accepting = true;
+
+    private Counter successCounter;
+    private Counter retryCounter;
+    private Counter deadLetterCounter;
+    private Timer batchTimer;
+
+    private PipelineStage(Builder<T> builder) {
+        this.name = builder.name;
+        this.handler = builder.handler;
+        this.deadLetterHandler = builder.deadLetterHandler;
+        this.parallelism = builder.parallelism;
+        this.batchSize = builder.batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(builder.lingerMillis);
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoffMillis;
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (builder.meterRegistry != null) {
+            registerMetrics(builder.meterRegistry);
+        }
+    }
+
+    public static <T> Builder<T> builder(String name, BatchHandler<T> handler) {
+        return new Builder<>(name, handler);
+    }
+
+    /**
+     * 启动工作线程
+     */
+    public PipelineStage<T> start() {
+        for (int i = 0; i < parallelism; i++) {
+            activeWorkers.incrementAndGet();
+            workers.execute(this::runWorker);
+        }
+        log.info("[start][流水线阶段 {} 启动，并行度: {}，批大小: {}，队列容量: {}]",
+                name, parallelism, batchSize, queue.remainingCapacity());
+        return this;
+    }
+
+    /**
+     * 提交数据，队列满时最多等待 timeout；关闭后或等待超时时交给死信处理器
+     *
+     * @return 是否已入队
+     */
+    public boolean offer(T item, long timeout, TimeUnit unit) {
+        Exception cause;
+        if (!accepting) {
+            cause = new IllegalStateException("pipeline stage " + name + " is shut down");
+        } else {
+            try {
+                if (queue.offer(item, timeout, unit)) {
+                    return true;
+                }
+                cause = new IllegalStateException("pipeline stage " + name + " queue is full");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cause = e;
+            }
+        }
+        deadLetter(Collections.singletonList(item), cause);
+        return false;
+    }
+
+    /**
+     * 停止接收新数据，等待工作线程处理完队列中的数据；超时后中断工作线程，剩余数据交给死信处理器
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        accepting = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeout, unit)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            deadLetter(remaining, new IllegalStateException("pipeline stage " + name + " shut down before drained"));
+        }
+        log.info("[shutdown][流水线阶段 {} 已关闭，未处理: {}]", name, remaining.size());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        try {
+            while (true) {
+                T first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!accepting) {
+                        return;
+                    }
+                    continue;
+                }
+                List<T> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                try {
+                    collectBatch(batch);
+                } catch (InterruptedException e) {
+                    // 攒批等待中被中断：已出队的数据不在队列里，关闭流程排空不到，直接进入死信
+                    Thread.currentThread().interrupt();
+                    deadLetter(batch, e);
+                    return;
+                }
+                process(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 在 linger 时间内攒满一批，时间到后带走队列中已有的数据
+     */
+    private void collectBatch(List<T> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                queue.drainTo(batch, batchSize - batch.size());
+                return;
+            }
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void process(List<T> batch) {
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                handler.handle(batch);
+                if (batchTimer != null) {
+                    batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    successCounter.increment(batch.size());
+                }
+                return;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    // 关闭超时被中断：恢复中断状态，工作线程随后退出，不再从队列取数据
+                    Thread.currentThread().interrupt();
+                    deadLetter(batch, e);
+                    return;
+                }
+                if (attempt >= maxRetries) {
+                    deadLetter(batch, e);
+                    return;
+                }
+                if (retryCounter != null) {
+                    retryCounter.increment(batch.size());
+                }
+                log.warn("[process][流水线阶段 {} 处理失败，第 {} 次重试，数量: {}，原因: {}]",
+                        name, attempt + 1, batch.size(), e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMillis * (attempt + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    deadLetter(batch, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deadLetter(List<T> items, Exception cause) {
+        if (deadLetterCounter != null) {
+            deadLetterCounter.increment(items.size());
+        }
+        if (deadLetterHandler == null) {
+            log.error("[deadLetter][流水线阶段 {} 丢弃数据，数量: {}]", name, items.size(), cause);
+            return;
+        }
+        try {
+            deadLetterHandler.onDeadLetter(items, cause);
+        } catch (Exception e) {
+            log.error("[deadLetter][流水线阶段 {} 死信处理失败，数量: {}]", name, items.size(), e);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + ".queue.size", queue, BlockingQueue::size)
+                .tag("stage", name).description("等待处理的数量").register(registry);
+        Gauge.builder(METRIC_PREFIX + ".queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .tag("stage", name).description("队列剩余容量").register(registry);
+        Gauge.builder(METRIC_PREFIX + ".workers.active", activeWorkers, AtomicInteger::get)
+                .tag("stage", name).description("运行中的工作线程数").register(registry);
+        successCounter = Counter.builder(METRIC_PREFIX + ".items").tag("stage", name).tag("result", "success")
+                .register(registry);
+        retryCounter = Counter.builder(METRIC_PREFIX + ".items").tag("stage", name).tag("result", "retry")
+                .register(registry);
+        deadLetterCounter = Counter.builder(METRIC_PREFIX + ".items").tag("stage", name).tag("result", "dead_letter")
+                .register(registry);
+        batchTimer = Timer.builder(METRIC_PREFIX + ".batch.duration").tag("stage", name)
+                .register(registry);
+    }
+
+    public static class Builder<T> {
+
+        private final String name;
+        private final BatchHandler<T> handler;
+        private DeadLetterHandler<T> deadLetterHandler;
+        private int parallelism = 1;
+        private int queueCapacity = 200;
+        private int batchSize = 1;
+        private long lingerMillis = 0;
+        private int maxRetries = 0;
+        private long retryBackoffMillis = 1000;
+        private MeterRegistry meterRegistry;
+
+        private Builder(String name, BatchHandler<T> handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        public Builder<T> parallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        public Builder<T> queueCapacity(int queueCapacity) {
+            this.queueCapacity = Math.max(1, queueCapacity);
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            this.batchSize = Math.max(1, batchSize);
+            return this;
+        }
+
+        public Builder<T> linger(long lingerMillis) {
+            this.lingerMillis = Math.max(0, lingerMillis);
+            return this;
+        }
+
+        public Builder<T> retry(int maxRetries, long backoffMillis) {
+            this.maxRetries = Math.max(0, maxRetries);
+            this.retryBackoffMillis = Math.max(0, backoffMillis);
+            return this;
+        }
+
+        public Builder<T> deadLetter(DeadLetterHandler<T> deadLetterHandler) {
+            this.deadLetterHandler = deadLetterHandler;
+            return this;
+        }
+
+        public Builder<T> meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public PipelineStage<T> build() {
+            return new PipelineStage<>(this);
+        }
+
+    }
+
+}
@@ -4,13 +4,17 @@ import com.basiclab.iot.common.utils.DateUtils;
 import com.basiclab.iot.dataset.cache.StreamUrlCache;
 import com.basiclab.iot.dataset.dal.dataobject.DatasetImageDO;
 import com.basiclab.iot.dataset.dal.pgsql.DatasetImageMapper;
+import com.basiclab.iot.dataset.framework.pipeline.PipelineStage;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
 import io.minio.UploadObjectArgs;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
@@ -18,6 +22,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
@@ -27,6 +32,9 @@ import java.util.concurrent.*;
 
 /**
  * FrameProcessingPipeline
+ * <p>
+ * 抽帧 → 上传 MinIO → 批量写库，上传和写库基于 {@link PipelineStage}：有界队列背压、并行度与攒批可配置、
+ * 失败重试后进入死信、关闭时处理完队列中的数据
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
@@ -43,26 +51,98 @@ public class FrameProcessingPipeline {
     @Autowired
     private MinioClient minioClient;
 
-    // 环形队列
-    private final BlockingQueue<FrameCaptureTask> captureQueue = new ArrayBlockingQueue<>(200);
-    private final BlockingQueue<FrameCaptureTask> saveDatabaseQueue = new ArrayBlockingQueue<>(200);
+    @Value("${pipeline.frame.temp-dir:/tmp/frames}")
+    private String tempDir;
 
-    // 线程池
-    private final ExecutorService capturePool = Executors.newCachedThreadPool();
-    private final ExecutorService uploadPool = Executors.newFixedThreadPool(5);
-    private final ExecutorService dbPool = Executors.newFixedThreadPool(3);
+    @Value("${pipeline.frame.queue-size:200}")
+    private int queueSize;
+
+    /**
+     * 写库阶段的批大小；上传阶段逐帧上传（批大小固定为 1），不使用该配置
+     */
+    @Value("${pipeline.frame.batch-size:50}")
+    private int batchSize;
+
+    @Value("${pipeline.frame.linger-ms:200}")
+    private long lingerMillis;
+
+    @Value("${pipeline.frame.capture-parallelism:4}")
+    private int captureParallelism;
+
+    @Value("${pipeline.frame.upload-parallelism:5}")
+    private int uploadParallelism;
+
+    @Value("${pipeline.frame.db-parallelism:3}")
+    private int dbParallelism;
+
+    @Value("${pipeline.frame.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${pipeline.frame.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    @Value("${pipeline.frame.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMillis;
+
+    // 抽帧线程池，队列满时跳过本轮抽帧
+    private ThreadPoolExecutor capturePool;
+
+    // 流水线阶段
+    private PipelineStage<FrameCaptureTask> uploadStage;
+    private PipelineStage<FrameCaptureTask> databaseStage;
 
     // 依赖
     @Autowired
     private StreamUrlCache urlCache;
     @Autowired
     private DatasetImageMapper datasetImageMapper;
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
 
     @PostConstruct
     private void init() {
-        new File("/tmp/frames").mkdirs();
-        startUploadStage();
-        startDatabaseStage();
+        new File(tempDir).mkdirs();
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        capturePool = new ThreadPoolExecutor(captureParallelism, captureParallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.DiscardPolicy());
+        databaseStage = PipelineStage.<FrameCaptureTask>builder("frame-db", this::batchSaveToDatabase)
+                .parallelism(dbParallelism)
+                .queueCapacity(queueSize)
+                .batchSize(batchSize)
+                .linger(lingerMillis)
+                .retry(maxRetries, retryBackoffMillis)
+                .deadLetter((tasks, cause) -> {
+                    // 入队超时、重试耗尽或关闭时未处理：记录没有保存，删除已上传的对象，避免 MinIO 中留下孤立文件
+                    log.error("帧记录保存失败，数量: {}", tasks.size(), cause);
+                    deleteUploadedFrames(tasks);
+                })
+                .meterRegistry(meterRegistry)
+                .build()
+                .start();
+        uploadStage = PipelineStage.<FrameCaptureTask>builder("frame-upload", this::batchUploadToMinio)
+                .parallelism(uploadParallelism)
+                .queueCapacity(queueSize)
+                .retry(maxRetries, retryBackoffMillis)
+                .deadLetter((tasks, cause) -> {
+                    log.error("帧上传失败，数量: {}", tasks.size(), cause);
+                    tasks.forEach(task -> task.getFile().delete());
+                })
+                .meterRegistry(meterRegistry)
+                .build()
+                .start();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        // 按数据流向依次关闭，上游处理完的数据还能进入下游
+        capturePool.shutdown();
+        try {
+            capturePool.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        uploadStage.shutdown(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        databaseStage.shutdown(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
     }
 
     // ========== 定时任务入口 ==========
@@ -110,90 +190,56 @@ public class FrameProcessingPipeline {
     }
 
     // ========== 第二阶段：上传Minio ==========
-    private void startUploadStage() {
-        for (int i = 0; i < 5; i++) {
-            uploadPool.submit(() -> {
-                List<FrameCaptureTask> batch = new ArrayList<>(50);
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        // 批量收集任务
-                        FrameCaptureTask task = captureQueue.poll(100, TimeUnit.MILLISECONDS);
-                        if (task != null) {
-                            batch.add(task);
-                        }
-
-                        // 批量处理
-                        if (batch.size() >= 50 || (!batch.isEmpty() && task == null)) {
-                            batchUploadToMinio(batch);
-                            batch.clear();
-                        }
-                    } catch (Exception e) {
-                        // 错误处理
-                        log.error(e.getMessage(), e);
-                    }
-                }
-            });
+    private void batchUploadToMinio(List<FrameCaptureTask> tasks) throws Exception {
+        // 上传阶段批大小为 1，重试时不会重复上传同批次中已成功的帧
+        for (FrameCaptureTask task : tasks) {
+            minioClient.uploadObject(
+                    UploadObjectArgs.builder()
+                            .bucket(minioBucket)
+                            .object(task.getDatasetId() + "/" + task.getFileName())
+                            .filename(task.getFile().getAbsolutePath())
+                            .build());
+
+            // 删除临时文件前记录大小，写库阶段使用
+            task.setSize(task.getFile().length());
+            task.getFile().delete();
+
+            // 放入下一阶段，队列满时等待，形成背压；超时后由写库阶段的死信处理器删除已上传的对象
+            databaseStage.offer(task, shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void batchUploadToMinio(List<FrameCaptureTask> tasks) {
-        // 并行上传
-        tasks.parallelStream().forEach(task -> {
+    private void deleteUploadedFrames(List<FrameCaptureTask> tasks) {
+        for (FrameCaptureTask task : tasks) {
+            String objectName = task.getDatasetId() + "/" + task.getFileName();
             try {
-                minioClient.uploadObject(
-                        UploadObjectArgs.builder()
-                                .bucket(minioBucket)
-                                .object(task.getDatasetId() + "/" + task.getFileName())
-                                .filename(task.getFile().getAbsolutePath())
-                                .build());
-
-                // 放入下一阶段
-                saveDatabaseQueue.put(task);
-
-                // 删除临时文件
-                task.getFile().delete();
+                minioClient.removeObject(RemoveObjectArgs.builder()
+                        .bucket(minioBucket)
+                        .object(objectName)
+                        .build());
             } catch (Exception e) {
-                // 错误处理
-                log.error(e.getMessage(), e);
+                log.error("删除MinIO中未保存记录的帧失败: {}", objectName, e);
             }
-        });
+        }
     }
 
     // ========== 第三阶段：存储数据库 ==========
-    private void startDatabaseStage() {
-        for (int i = 0; i < 3; i++) {
-            dbPool.submit(() -> {
-                List<DatasetImageDO> batch = new ArrayList<>(50);
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        // 批量收集任务
-                        FrameCaptureTask task = saveDatabaseQueue.poll(100, TimeUnit.MILLISECONDS);
-                        if (task != null) {
-                            //http://14.18.122.2:9001/api/v1/buckets/alarm/objects/download?prefix=live/stream1/25031415040675396904.jpg&version_id=null
-                            DatasetImageDO datasetImageDO = new DatasetImageDO();
-                            datasetImageDO.setDatasetId(Long.valueOf(task.getDatasetId()));
-                            datasetImageDO.setName(task.getFileName());
-                            datasetImageDO.setWidth(task.getWidth());
-                            datasetImageDO.setHeigh(task.getHeigh());
-                            datasetImageDO.setSize(task.getFile().length());
-                            datasetImageDO.setCreateTime(DateUtils.dateToLocalDateTime(task.getCaptureTime()));
-                            datasetImageDO.setUpdateTime(DateUtils.dateToLocalDateTime(task.getCaptureTime()));
-                            datasetImageDO.setPath("/api/v1/buckets/" + minioBucket + "/objects/download?prefix=" + task.getDatasetId() + "/" + task.getFileName());
-                            batch.add(datasetImageDO);
-                        }
-
-                        // 批量保存
-                        if (batch.size() >= 50 || (!batch.isEmpty() && task == null)) {
-                            datasetImageMapper.insertBatch(batch);
-                            batch.clear();
-                        }
-                    } catch (Exception e) {
-                        // 错误处理
-                        log.error(e.getMessage(), e);
-                    }
-                }
-            });
+    private void batchSaveToDatabase(List<FrameCaptureTask> tasks) {
+        List<DatasetImageDO> batch = new ArrayList<>(tasks.size());
+        for (FrameCaptureTask task : tasks) {
+            //http://14.18.122.2:9001/api/v1/buckets/alarm/objects/download?prefix=live/stream1/25031415040675396904.jpg&version_id=null
+            DatasetImageDO datasetImageDO = new DatasetImageDO();
+            datasetImageDO.setDatasetId(Long.valueOf(task.getDatasetId()));
+            datasetImageDO.setName(task.getFileName());
+            datasetImageDO.setWidth(task.getWidth());
+            datasetImageDO.setHeigh(task.getHeigh());
+            datasetImageDO.setSize(task.getSize());
+            datasetImageDO.setCreateTime(DateUtils.dateToLocalDateTime(task.getCaptureTime()));
+            datasetImageDO.setUpdateTime(DateUtils.dateToLocalDateTime(task.getCaptureTime()));
+            datasetImageDO.setPath("/api/v1/buckets/" + minioBucket + "/objects/download?prefix=" + task.getDatasetId() + "/" + task.getFileName());
+            batch.add(datasetImageDO);
         }
+        datasetImageMapper.insertBatch(batch);
     }
 
     // ========== 任务对象 ==========
@@ -208,5 +254,6 @@ public class FrameProcessingPipeline {
         private int width;
         private int heigh;
         private Date captureTime;
+        private long size;
     }
 }
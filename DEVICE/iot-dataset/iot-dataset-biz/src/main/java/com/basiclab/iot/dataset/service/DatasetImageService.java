@@ -4,6 +4,7 @@ import com.basiclab.iot.common.domain.PageResult;
 import com.basiclab.iot.dataset.dal.dataobject.DatasetImageDO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImagePageReqVO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageSaveReqVO;
+import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageUploadProgressRespVO;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
@@ -82,13 +83,22 @@ public interface DatasetImageService {
     void resetUsageByDatasetId(Long datasetId);
 
     /**
-     * 上传图片数据集
+     * 上传图片数据集，压缩包在后台解压导入
      *
      * @param file
      * @param datasetId
      * @param isZip
+     * @return 压缩包的导入任务ID，单张图片返回 null
      */
-    void processUpload(MultipartFile file, Long datasetId, Boolean isZip);
+    String processUpload(MultipartFile file, Long datasetId, Boolean isZip);
+
+    /**
+     * 查询压缩包导入进度
+     *
+     * @param taskId 导入任务ID
+     * @return 导入进度，任务不存在或已过期时返回 null
+     */
+    DatasetImageUploadProgressRespVO getUploadProgress(String taskId);
 
 
     /**
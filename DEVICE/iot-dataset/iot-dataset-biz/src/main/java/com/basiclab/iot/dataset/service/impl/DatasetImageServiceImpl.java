@@ -11,6 +11,7 @@ import com.basiclab.iot.dataset.dal.pgsql.DatasetImageMapper;
 import com.basiclab.iot.dataset.dal.pgsql.DatasetMapper;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImagePageReqVO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageSaveReqVO;
+import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageUploadProgressRespVO;
 import com.basiclab.iot.dataset.domain.dataset.vo.DatasetTagPageReqVO;
 import com.basiclab.iot.dataset.service.DatasetImageService;
 import com.basiclab.iot.dataset.service.DatasetTagService;
@@ -25,23 +26,31 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.multipart.MultipartFile;
 import org.yaml.snakeyaml.Yaml;
 
 import javax.annotation.Resource;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -86,6 +95,54 @@ public class DatasetImageServiceImpl implements DatasetImageService {
 
     private static final String minioDatasetsBucket = "datasets";
 
+    /**
+     * 压缩包对象上保存导出内容指纹的元数据名
+     */
+    private static final String EXPORT_FINGERPRINT_META = "fingerprint";
+
+    /**
+     * 压缩包分片上传的分片大小
+     */
+    private static final long EXPORT_PART_SIZE = 10L * 1024 * 1024;
+
+    private static final int EXPORT_PIPE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 导出时预取的图片数
+     */
+    @Value("${dataset.export.prefetch-window:32}")
+    private int exportPrefetchWindow;
+
+    @Resource(name = "exportExecutor")
+    private Executor exportExecutor;
+
+    @Resource(name = "exportUploadExecutor")
+    private Executor exportUploadExecutor;
+
+    /**
+     * 压缩包导入时每批插入的图片记录数
+     */
+    private static final int INGEST_INSERT_BATCH_SIZE = 200;
+
+    /**
+     * 导入任务结束后进度的保留时间
+     */
+    private static final long UPLOAD_TASK_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 压缩包导入时上传中的图片占用的内存预算（KB）
+     */
+    @Value("${dataset.upload.memory-budget-kb:262144}")
+    private int ingestMemoryBudgetKb;
+
+    @Resource(name = "ingestExecutor")
+    private Executor ingestExecutor;
+
+    @Resource(name = "zipIngestExecutor")
+    private Executor zipIngestExecutor;
+
+    private final Map<String, ZipUploadTask> zipUploadTasks = new ConcurrentHashMap<>();
+
     @Override
     public Long createDatasetImage(DatasetImageSaveReqVO createReqVO) {
         // 插入
@@ -126,7 +183,10 @@ public class DatasetImageServiceImpl implements DatasetImageService {
     }
 
     private void deleteMinioFiles(List<Long> ids) {
-        List<DatasetImageDO> images = datasetImageMapper.selectBatchIds(ids);
+        deleteMinioObjects(datasetImageMapper.selectBatchIds(ids));
+    }
+
+    private void deleteMinioObjects(List<DatasetImageDO> images) {
         for (DatasetImageDO image : images) {
             try {
                 String objectPath = parseObjectNameFromPath(image.getPath());
@@ -218,30 +278,17 @@ public class DatasetImageServiceImpl implements DatasetImageService {
     public String syncToMinio(Long datasetId) {
         List<DatasetImageDO> images = datasetImageMapper.selectList(
                 new LambdaQueryWrapper<DatasetImageDO>()
-                        .eq(DatasetImageDO::getDatasetId, datasetId));
-        Path tempDir = createTempDirectoryStructure(datasetId);
-        int skippedCount = 0;
-        for (DatasetImageDO image : images) {
-            String usageType = getUsageType(image);
-            String imageName = image.getName();
-            Path imagePath = tempDir.resolve("images/" + usageType + "/" + imageName);
-            String labelFileName = imageName.substring(0, imageName.lastIndexOf('.')) + ".txt";
-            Path labelPath = tempDir.resolve("labels/" + usageType + "/" + labelFileName);
-            try {
-                downloadImageToTemp(image, imagePath);
-                createLabelFile(image, labelPath);
-            } catch (Exception e) {
-                skippedCount++;
-                logger.warn("跳过文件 {}: {}", image.getName(), e.getMessage());
-            }
+                        .eq(DatasetImageDO::getDatasetId, datasetId)
+                        .orderByAsc(DatasetImageDO::getId));
+        List<String> classNames = getClassNames(datasetId);
+        String objectName = "dataset-" + datasetId + ".zip";
+        String fingerprint = computeExportFingerprint(images, classNames);
+        if (isExportUpToDate(objectName, fingerprint)) {
+            logger.info("数据集 {} 内容未变化，跳过重新打包", datasetId);
+        } else {
+            streamZipToMinio(datasetId, objectName, images, classNames, fingerprint);
         }
-        if (skippedCount > 0) {
-            logger.warn("数据集 {} 打包完成，跳过 {} 个缺失文件", datasetId, skippedCount);
-        }
-        generateDataYaml(datasetId, tempDir);
-        Path zipPath = compressDirectory(tempDir, datasetId);
-        String zipUrl = uploadZipToMinio(zipPath, datasetId);
-        cleanupTempFiles(tempDir, zipPath);
+        String zipUrl = "/api/v1/buckets/" + minioDatasetsBucket + "/objects/download?prefix=" + objectName;
         // 更新数据集压缩包地址
         DatasetDO updateDO = new DatasetDO();
         updateDO.setId(datasetId);
@@ -250,22 +297,167 @@ public class DatasetImageServiceImpl implements DatasetImageService {
         return zipUrl;
     }
 
-    private Path createTempDirectoryStructure(Long datasetId) {
+    /**
+     * 计算数据集导出内容的指纹：图片、用途、标注和类别都不变时，压缩包内容不变
+     */
+    private String computeExportFingerprint(List<DatasetImageDO> images, List<String> classNames) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.join("\n", classNames).getBytes(StandardCharsets.UTF_8));
+            for (DatasetImageDO image : images) {
+                String line = "\n" + image.getId() + "|" + image.getName() + "|" + image.getPath()
+                        + "|" + getUsageType(image) + "|" + image.getAnnotations();
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * MinIO 中已有的压缩包是否由相同内容生成
+     */
+    private boolean isExportUpToDate(String objectName, String fingerprint) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(minioDatasetsBucket)
+                    .object(objectName)
+                    .build());
+            return fingerprint.equals(stat.userMetadata().get(EXPORT_FINGERPRINT_META));
+        } catch (ErrorResponseException e) {
+            if (!"NoSuchKey".equals(e.errorResponse().code())) {
+                logger.warn("查询压缩包信息失败: {}", objectName, e);
+            }
+            return false;
+        } catch (Exception e) {
+            logger.warn("查询压缩包信息失败: {}", objectName, e);
+            return false;
+        }
+    }
+
+    /**
+     * 边打包边上传：图片有界并行预取，按顺序写入 ZipOutputStream，压缩数据通过管道直接分片上传到 MinIO，不落本地磁盘
+     */
+    private void streamZipToMinio(Long datasetId, String objectName, List<DatasetImageDO> images,
+                                  List<String> classNames, String fingerprint) {
+        long startMillis = System.currentTimeMillis();
+        AtomicBoolean aborted = new AtomicBoolean();
+        PipedInputStream pipeIn = new PipedInputStream(EXPORT_PIPE_BUFFER_SIZE);
+        PipedOutputStream pipeOut;
         try {
-            Path tempDir = Files.createTempDirectory("dataset-" + datasetId);
-            Files.createDirectories(tempDir.resolve("images/train"));
-            Files.createDirectories(tempDir.resolve("images/val"));
-            Files.createDirectories(tempDir.resolve("images/test"));
-            Files.createDirectories(tempDir.resolve("labels/train"));
-            Files.createDirectories(tempDir.resolve("labels/val"));
-            Files.createDirectories(tempDir.resolve("labels/test"));
-            return tempDir;
+            pipeOut = new PipedOutputStream(pipeIn);
         } catch (IOException e) {
-            throw new RuntimeException("创建临时目录失败", e);
+            throw new RuntimeException("创建上传管道失败", e);
         }
+        // 打包失败时让上传读到异常而不是正常结束，避免保存不完整的压缩包
+        InputStream uploadIn = new FilterInputStream(pipeIn) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                checkAborted(b);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                checkAborted(n);
+                return n;
+            }
+
+            private void checkAborted(int n) throws IOException {
+                if (n < 0 && aborted.get()) {
+                    throw new IOException("数据集打包失败，取消上传");
+                }
+            }
+        };
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> {
+            try {
+                minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(minioDatasetsBucket)
+                        .object(objectName)
+                        .stream(uploadIn, -1, EXPORT_PART_SIZE)
+                        .userMetadata(Collections.singletonMap(EXPORT_FINGERPRINT_META, fingerprint))
+                        .contentType("application/zip")
+                        .build());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                // 上传结束后关闭读端，打包线程写入时立即失败，不会一直等待
+                closeQuietly(pipeIn);
+            }
+        }, exportUploadExecutor);
+
+        int skippedCount;
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(pipeOut, EXPORT_PIPE_BUFFER_SIZE));
+        try {
+            skippedCount = writeDatasetZip(zos, images, classNames);
+            // 全部写入后才写出中央目录并刷新到管道，此前失败时不会出现结构完整但内容不全的压缩包
+            zos.finish();
+            zos.flush();
+        } catch (Exception e) {
+            // 先标记失败再关闭管道写端，上传读到结束时抛出异常；不关闭 zip 流，避免写出中央目录
+            aborted.set(true);
+            closeQuietly(pipeOut);
+            try {
+                upload.join();
+            } catch (CompletionException ignored) {
+                // 上传失败是预期的结果，抛出打包失败的原因
+            }
+            throw new RuntimeException("打包数据集失败", e);
+        }
+        // 打包成功，关闭管道写端，上传读到正常结束
+        closeQuietly(zos);
+        waitUpload(upload);
+        if (skippedCount > 0) {
+            logger.warn("数据集 {} 打包完成，跳过 {} 个缺失文件", datasetId, skippedCount);
+        }
+        logger.info("数据集 {} 打包上传完成，图片数: {}，耗时: {} ms", datasetId, images.size(),
+                System.currentTimeMillis() - startMillis);
     }
 
-    private void downloadImageToTemp(DatasetImageDO image, Path targetPath) {
+    private int writeDatasetZip(ZipOutputStream zos, List<DatasetImageDO> images, List<String> classNames) throws IOException {
+        writeZipEntry(zos, "data.yaml", buildDataYaml(classNames));
+        Set<String> entryNames = new HashSet<>();
+        Deque<CompletableFuture<byte[]>> window = new ArrayDeque<>();
+        int skippedCount = 0;
+        int next = 0;
+        for (int i = 0; i < images.size(); i++) {
+            // 保持最多 exportPrefetchWindow 张图片在下载或等待写入，限制内存占用
+            while (next < images.size() && next - i < exportPrefetchWindow) {
+                DatasetImageDO prefetch = images.get(next++);
+                window.add(CompletableFuture.supplyAsync(() -> fetchImage(prefetch), exportExecutor));
+            }
+            DatasetImageDO image = images.get(i);
+            byte[] imageData = window.poll().join();
+            String usageType = getUsageType(image);
+            String imageName = image.getName();
+            String imageEntry = "images/" + usageType + "/" + imageName;
+            if (imageData == null || !entryNames.add(imageEntry)) {
+                skippedCount++;
+                continue;
+            }
+            writeZipEntry(zos, imageEntry, imageData);
+            try {
+                String labelFileName = imageName.substring(0, imageName.lastIndexOf('.')) + ".txt";
+                byte[] label = generateLabelContent(image.getAnnotations()).getBytes(StandardCharsets.UTF_8);
+                writeZipEntry(zos, "labels/" + usageType + "/" + labelFileName, label);
+            } catch (RuntimeException e) {
+                logger.error("生成标签文件失败: {}", imageName, e);
+            }
+        }
+        return skippedCount;
+    }
+
+    /**
+     * 下载图片，文件不存在或下载失败时返回 null
+     */
+    private byte[] fetchImage(DatasetImageDO image) {
         try {
             String sourceObject = parseObjectNameFromPath(image.getPath());
             try (InputStream in = minioClient.getObject(
@@ -273,8 +465,7 @@ public class DatasetImageServiceImpl implements DatasetImageService {
                             .bucket(minioBucket)
                             .object(sourceObject)
                             .build())) {
-                Files.createDirectories(targetPath.getParent()); // 确保目录存在
-                Files.copy(in, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                return StreamUtils.copyToByteArray(in);
             }
         } catch (ErrorResponseException e) {
             if ("NoSuchKey".equals(e.errorResponse().code())) {
@@ -285,16 +476,28 @@ public class DatasetImageServiceImpl implements DatasetImageService {
         } catch (Exception e) {
             logger.error("下载图片失败: {}", image.getPath(), e);
         }
+        return null;
     }
 
-    private void createLabelFile(DatasetImageDO image, Path labelPath) {
+    private void writeZipEntry(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private void waitUpload(CompletableFuture<Void> upload) {
         try {
-            Files.createDirectories(labelPath.getParent());
-            String labelContent = generateLabelContent(image.getAnnotations());
-            Files.write(labelPath, labelContent.getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (Exception e) {
-            logger.error("生成标签文件失败: {}", labelPath, e);
+            upload.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("上传ZIP到MinIO失败", e.getCause());
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("关闭管道失败: {}", e.getMessage());
         }
     }
 
@@ -358,21 +561,15 @@ public class DatasetImageServiceImpl implements DatasetImageService {
         }
     }
 
-    private void generateDataYaml(Long datasetId, Path tempDir) {
-        try {
-            List<String> classNames = getClassNames(datasetId);
-            Map<String, Object> yamlData = new LinkedHashMap<>();
-            yamlData.put("names", classNames);
-            yamlData.put("nc", classNames.size());
-            yamlData.put("train", "images/train");
-            yamlData.put("val", "images/val");  // 注意此处保持为val
-            yamlData.put("test", "images/test");
-            Yaml yaml = new Yaml();
-            String yamlContent = yaml.dump(yamlData);
-            Files.write(tempDir.resolve("data.yaml"), yamlContent.getBytes(StandardCharsets.UTF_8));
-        } catch (Exception e) {
-            throw new RuntimeException("生成data.yaml失败", e);
-        }
+    private byte[] buildDataYaml(List<String> classNames) {
+        Map<String, Object> yamlData = new LinkedHashMap<>();
+        yamlData.put("names", classNames);
+        yamlData.put("nc", classNames.size());
+        yamlData.put("train", "images/train");
+        yamlData.put("val", "images/val");  // 注意此处保持为val
+        yamlData.put("test", "images/test");
+        Yaml yaml = new Yaml();
+        return yaml.dump(yamlData).getBytes(StandardCharsets.UTF_8);
     }
 
     private List<String> getClassNames(Long datasetId) {
@@ -385,65 +582,6 @@ public class DatasetImageServiceImpl implements DatasetImageService {
                 .sorted().collect(Collectors.toList());
     }
 
-    private Path compressDirectory(Path sourceDir, Long datasetId) {
-        Path zipPath = Paths.get(sourceDir.getParent().toString(), "dataset-" + datasetId + ".zip");
-
-        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
-            Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    Path relativePath = sourceDir.relativize(file);
-                    ZipEntry zipEntry = new ZipEntry(relativePath.toString().replace("\\", "/"));
-                    zos.putNextEntry(zipEntry);
-                    Files.copy(file, zos);
-                    zos.closeEntry();
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-            return zipPath;
-        } catch (IOException e) {
-            throw new RuntimeException("压缩目录失败", e);
-        }
-    }
-
-    private void cleanupTempFiles(Path tempDir, Path zipPath) {
-        try {
-            Files.walkFileTree(tempDir, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    Files.delete(file);
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                    Files.delete(dir);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-            Files.deleteIfExists(zipPath);
-        } catch (IOException e) {
-            logger.error("清理临时文件失败: {}", e.getMessage());
-        }
-    }
-
-    private String uploadZipToMinio(Path zipPath, Long datasetId) {
-        try (InputStream is = Files.newInputStream(zipPath)) {
-            String objectName = "dataset-" + datasetId + ".zip";
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(minioDatasetsBucket)
-                            .object(objectName)
-                            .stream(is, Files.size(zipPath), -1)
-                            .contentType("application/zip")
-                            .build());
-
-            return "/api/v1/buckets/" + minioDatasetsBucket + "/objects/download?prefix=" + objectName;
-        } catch (Exception e) {
-            throw new RuntimeException("上传ZIP到MinIO失败", e);
-        }
-    }
-
     private void createBucketIfNotExists(String bucketName) {
         try {
             boolean exists = minioClient.bucketExists(BucketExistsArgs.builder()
@@ -535,13 +673,13 @@ public class DatasetImageServiceImpl implements DatasetImageService {
     }
 
     @Override
-    public void processUpload(MultipartFile file, Long datasetId, Boolean isZip) {
+    public String processUpload(MultipartFile file, Long datasetId, Boolean isZip) {
         try {
             if (isZip) {
-                processZipUpload(file, datasetId);
-            } else {
-                processImageUpload(file, datasetId);
+                return processZipUpload(file, datasetId);
             }
+            processImageUpload(file, datasetId);
+            return null;
         } catch (Exception e) {
             logger.error("文件上传处理失败: {}", e.getMessage());
             throw exception(FILE_UPLOAD_FAILED, e.getMessage());
@@ -556,35 +694,170 @@ public class DatasetImageServiceImpl implements DatasetImageService {
         return remoteFileService.upload(file).getData().getUrl();
     }
 
+    @Override
+    public DatasetImageUploadProgressRespVO getUploadProgress(String taskId) {
+        ZipUploadTask task = zipUploadTasks.get(taskId);
+        return task != null ? task.toRespVO() : null;
+    }
+
     /**
-     * 处理压缩包上传并解压
+     * 处理压缩包上传：转存后在后台解压导入，返回导入任务ID
      */
-    private void processZipUpload(MultipartFile file, Long datasetId)
+    private String processZipUpload(MultipartFile file, Long datasetId)
             throws IOException {
+        // 请求结束后 MultipartFile 的临时文件会被删除，先转存再在后台导入
+        Path zipFile = Files.createTempFile("dataset-upload-" + datasetId + "-", ".zip");
+        file.transferTo(zipFile.toFile());
 
-        try (ZipInputStream zis = new ZipInputStream(file.getInputStream())) {
-            ZipEntry zipEntry;
-            byte[] buffer = new byte[1024];
-            int fileCount = 0;
+        purgeFinishedUploadTasks();
+        ZipUploadTask task = new ZipUploadTask(UUID.randomUUID().toString(), datasetId);
+        zipUploadTasks.put(task.taskId, task);
+        try {
+            zipIngestExecutor.execute(() -> ingestZip(task, zipFile));
+        } catch (RejectedExecutionException e) {
+            zipUploadTasks.remove(task.taskId);
+            Files.deleteIfExists(zipFile);
+            throw e;
+        }
+        return task.taskId;
+    }
 
+    /**
+     * 解压导入：逐个读取图片，按内存预算限流后交给上传线程池并行上传到 MinIO，数据库记录批量插入
+     */
+    private void ingestZip(ZipUploadTask task, Path zipFile) {
+        Semaphore memoryBudget = new Semaphore(ingestMemoryBudgetKb);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(zipFile)))) {
+            // bucket 只检查一次
+            createBucketIfNotExists(minioBucket);
+            ZipEntry zipEntry;
             while ((zipEntry = zis.getNextEntry()) != null) {
                 if (zipEntry.isDirectory() || !isValidImageFile(zipEntry.getName())) {
                     continue;
                 }
-
-                // 处理每个图片文件
                 String originalFilename = zipEntry.getName();
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, len);
-                }
+                byte[] fileData = StreamUtils.copyToByteArray(zis);
+                // 上传中的图片总大小不超过内存预算，上传跟不上时暂停读取
+                int permits = Math.max(1, Math.min(ingestMemoryBudgetKb, fileData.length / 1024));
+                memoryBudget.acquire(permits);
+                task.readCount.incrementAndGet();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        DatasetImageDO image = uploadImageToMinio(fileData, originalFilename, task.datasetId);
+                        addToInsertBatch(task, image);
+                    } catch (Exception e) {
+                        task.failedCount.incrementAndGet();
+                        logger.error("导入图片失败: {}", originalFilename, e);
+                    } finally {
+                        memoryBudget.release(permits);
+                    }
+                }, ingestExecutor));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.errorMessage = "导入被中断";
+        } catch (Exception e) {
+            task.errorMessage = e.getMessage();
+            logger.error("解压导入数据集 {} 失败", task.datasetId, e);
+        } finally {
+            // 已提交的图片继续上传并保存记录，避免 MinIO 中留下没有记录的文件
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            flushInsertBatch(task);
+            task.endTime = System.currentTimeMillis();
+            task.status = task.errorMessage == null
+                    ? DatasetImageUploadProgressRespVO.STATUS_COMPLETED : DatasetImageUploadProgressRespVO.STATUS_FAILED;
+            try {
+                Files.deleteIfExists(zipFile);
+            } catch (IOException e) {
+                logger.warn("删除临时文件失败: {}", zipFile);
+            }
+        }
+        logger.info("数据集 {} 解压导入结束，成功 {} 个，失败 {} 个，耗时 {} ms", task.datasetId,
+                task.successCount.get(), task.failedCount.get(), task.endTime - task.startTime);
+    }
+
+    private void addToInsertBatch(ZipUploadTask task, DatasetImageDO image) {
+        List<DatasetImageDO> batch = null;
+        synchronized (task.pendingImages) {
+            task.pendingImages.add(image);
+            if (task.pendingImages.size() >= INGEST_INSERT_BATCH_SIZE) {
+                batch = new ArrayList<>(task.pendingImages);
+                task.pendingImages.clear();
+            }
+        }
+        if (batch != null) {
+            insertImageBatch(task, batch);
+        }
+    }
+
+    private void flushInsertBatch(ZipUploadTask task) {
+        List<DatasetImageDO> batch;
+        synchronized (task.pendingImages) {
+            batch = new ArrayList<>(task.pendingImages);
+            task.pendingImages.clear();
+        }
+        if (!batch.isEmpty()) {
+            insertImageBatch(task, batch);
+        }
+    }
 
-                byte[] fileData = outputStream.toByteArray();
-                saveToMinioAndDB(fileData, originalFilename, datasetId);
-                fileCount++;
+    private void insertImageBatch(ZipUploadTask task, List<DatasetImageDO> batch) {
+        try {
+            datasetImageMapper.insertBatch(batch);
+            task.successCount.addAndGet(batch.size());
+        } catch (Exception e) {
+            task.failedCount.addAndGet(batch.size());
+            logger.error("批量保存图片记录失败，数量: {}", batch.size(), e);
+            // 图片记录丢失不是单张图片的问题，整个导入任务标记为失败
+            if (task.errorMessage == null) {
+                task.errorMessage = "批量保存图片记录失败: " + e.getMessage();
             }
-            logger.info("成功解压并上传 {} 个文件", fileCount);
+            // 记录没有保存，删除这一批已上传的文件，避免 MinIO 中留下没有记录的文件
+            deleteMinioObjects(batch);
+        }
+    }
+
+    /**
+     * 清理结束超过保留时间的导入任务
+     */
+    private void purgeFinishedUploadTasks() {
+        long expireBefore = System.currentTimeMillis() - UPLOAD_TASK_RETENTION_MILLIS;
+        zipUploadTasks.values().removeIf(task -> task.endTime != null && task.endTime < expireBefore);
+    }
+
+    /**
+     * 压缩包导入任务的进度
+     */
+    private static class ZipUploadTask {
+        private final String taskId;
+        private final Long datasetId;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger readCount = new AtomicInteger();
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+        private final List<DatasetImageDO> pendingImages = new ArrayList<>();
+        private volatile String status = DatasetImageUploadProgressRespVO.STATUS_RUNNING;
+        private volatile String errorMessage;
+        private volatile Long endTime;
+
+        private ZipUploadTask(String taskId, Long datasetId) {
+            this.taskId = taskId;
+            this.datasetId = datasetId;
+        }
+
+        private DatasetImageUploadProgressRespVO toRespVO() {
+            DatasetImageUploadProgressRespVO respVO = new DatasetImageUploadProgressRespVO();
+            respVO.setTaskId(taskId);
+            respVO.setDatasetId(datasetId);
+            respVO.setStatus(status);
+            respVO.setReadCount(readCount.get());
+            respVO.setSuccessCount(successCount.get());
+            respVO.setFailedCount(failedCount.get());
+            respVO.setErrorMessage(errorMessage);
+            respVO.setStartTime(startTime);
+            respVO.setEndTime(endTime);
+            return respVO;
         }
     }
 
@@ -606,28 +879,13 @@ public class DatasetImageServiceImpl implements DatasetImageService {
      */
     private void saveToMinioAndDB(byte[] fileData, String originalFilename, Long datasetId) {
         try {
-            // 1. 生成唯一存储路径
-            String fileExtension = getFileExtension(originalFilename);
-            String storagePath = String.format("%s/%s.%s",
-                    datasetId,
-                    UUID.randomUUID(),
-                    fileExtension);
-
-            // 2. 确保 bucket 存在
+            // 1. 确保 bucket 存在
             createBucketIfNotExists(minioBucket);
 
-            // 3. 上传到MinIO
-            uploadToMinio(fileData, storagePath, getContentType(fileExtension));
-
-            // 4. 保存到数据库
-            DatasetImageDO image = new DatasetImageDO();
-            image.setDatasetId(datasetId);
-            image.setName(originalFilename);
-            image.setPath("/api/v1/buckets/" + minioBucket + "/objects/download?prefix=" + storagePath);
-            image.setSize((long) fileData.length);
-            image.setIsTrain(0);
-            image.setIsValidation(0);
-            image.setIsTest(0);
+            // 2. 上传到MinIO
+            DatasetImageDO image = uploadImageToMinio(fileData, originalFilename, datasetId);
+
+            // 3. 保存到数据库
             datasetImageMapper.insert(image);
         } catch (ErrorResponseException e) {
             String errorCode = e.errorResponse() != null ? e.errorResponse().code() : "Unknown";
@@ -647,6 +905,30 @@ public class DatasetImageServiceImpl implements DatasetImageService {
         }
     }
 
+    /**
+     * 上传图片到MinIO，返回待保存的图片记录
+     */
+    private DatasetImageDO uploadImageToMinio(byte[] fileData, String originalFilename, Long datasetId)
+            throws Exception {
+        // 生成唯一存储路径
+        String fileExtension = getFileExtension(originalFilename);
+        String storagePath = String.format("%s/%s.%s",
+                datasetId,
+                UUID.randomUUID(),
+                fileExtension);
+        uploadToMinio(fileData, storagePath, getContentType(fileExtension));
+
+        DatasetImageDO image = new DatasetImageDO();
+        image.setDatasetId(datasetId);
+        image.setName(originalFilename);
+        image.setPath("/api/v1/buckets/" + minioBucket + "/objects/download?prefix=" + storagePath);
+        image.setSize((long) fileData.length);
+        image.setIsTrain(0);
+        image.setIsValidation(0);
+        image.setIsTest(0);
+        return image;
+    }
+
     /**
      * 上传文件到MinIO
      */
@@ -0,0 +1,219 @@
+package com.basiclab.iot.dataset.framework.pipeline;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link PipelineStage} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class PipelineStageTest {
+
+    @Test
+    public void testShutdown_drainsQueuedItems() {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("drain", batch -> {
+                    Thread.sleep(5);
+                    handled.addAll(batch);
+                })
+                .queueCapacity(100)
+                .batchSize(10)
+                .deadLetter((items, cause) -> deadLetters.addAll(items))
+                .build()
+                .start();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(stage.offer(i, 1, TimeUnit.SECONDS));
+        }
+
+        stage.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(50, handled.size());
+        assertTrue(deadLetters.isEmpty());
+        assertEquals(0, stage.getQueueSize());
+    }
+
+    @Test
+    public void testShutdown_timeoutDeadLettersRemainingItems() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("timeout", batch -> {
+                    started.countDown();
+                    release.await();
+                })
+                .queueCapacity(10)
+                .deadLetter((items, cause) -> deadLetters.addAll(items))
+                .build()
+                .start();
+        stage.offer(0, 1, TimeUnit.SECONDS);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.offer(1, 1, TimeUnit.SECONDS);
+        stage.offer(2, 1, TimeUnit.SECONDS);
+
+        // 工作线程卡在第一条数据上，超时后中断，队列中剩余的数据进入死信
+        stage.shutdown(100, TimeUnit.MILLISECONDS);
+        release.countDown();
+
+        assertTrue(deadLetters.containsAll(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void testOffer_afterShutdownGoesToDeadLetter() {
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        List<Exception> causes = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("closed", batch -> {
+                })
+                .deadLetter((items, cause) -> {
+                    deadLetters.addAll(items);
+                    causes.add(cause);
+                })
+                .build()
+                .start();
+        stage.shutdown(1, TimeUnit.SECONDS);
+
+        assertFalse(stage.offer(1, 1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(1), deadLetters);
+        assertTrue(causes.get(0) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testOffer_queueFullTimesOutToDeadLetter() {
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        // 不启动工作线程，队列不会被消费
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("full", batch -> {
+                })
+                .queueCapacity(1)
+                .deadLetter((items, cause) -> deadLetters.addAll(items))
+                .build();
+
+        assertTrue(stage.offer(1, 10, TimeUnit.MILLISECONDS));
+        assertFalse(stage.offer(2, 10, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.singletonList(2), deadLetters);
+        stage.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testProcess_retriesUntilSuccess() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("retry", batch -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new IllegalStateException("fail");
+                    }
+                    handled.addAll(batch);
+                })
+                .retry(3, 0)
+                .deadLetter((items, cause) -> deadLetters.addAll(items))
+                .meterRegistry(registry)
+                .build()
+                .start();
+        stage.offer(1, 1, TimeUnit.SECONDS);
+        stage.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(3, attempts.get());
+        assertEquals(Collections.singletonList(1), handled);
+        assertTrue(deadLetters.isEmpty());
+        assertEquals(2, registry.get("iot.dataset.pipeline.items").tag("result", "retry").counter().count());
+        assertEquals(1, registry.get("iot.dataset.pipeline.items").tag("result", "success").counter().count());
+    }
+
+    @Test
+    public void testProcess_retriesExhaustedGoesToDeadLetter() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        List<Exception> causes = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("dead-letter", batch -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("fail");
+                })
+                .retry(2, 0)
+                .deadLetter((items, cause) -> {
+                    deadLetters.addAll(items);
+                    causes.add(cause);
+                })
+                .build()
+                .start();
+        stage.offer(1, 1, TimeUnit.SECONDS);
+        stage.shutdown(10, TimeUnit.SECONDS);
+
+        // 首次处理 + 2 次重试
+        assertEquals(3, attempts.get());
+        assertEquals(Collections.singletonList(1), deadLetters);
+        assertEquals("fail", causes.get(0).getMessage());
+    }
+
+    @Test
+    public void testCollectBatch_lingerGroupsQueuedItems() {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("batch", batch -> batches.add(new ArrayList<>(batch)))
+                .queueCapacity(100)
+                .batchSize(4)
+                .linger(1000)
+                .build();
+        // 启动前入队，工作线程启动后按批大小攒批
+        for (int i = 0; i < 10; i++) {
+            stage.offer(i, 1, TimeUnit.SECONDS);
+        }
+        stage.start();
+        stage.shutdown(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 2, 3), Arrays.asList(4, 5, 6, 7), Arrays.asList(8, 9)), batches);
+    }
+
+    @Test
+    public void testShutdown_interruptDuringLingerDeadLettersPartialBatch() throws InterruptedException {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        List<Integer> deadLetters = new CopyOnWriteArrayList<>();
+        List<Exception> causes = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = PipelineStage.<Integer>builder("linger-interrupt", handled::addAll)
+                .queueCapacity(100)
+                .batchSize(100)
+                .linger(60_000)
+                .deadLetter((items, cause) -> {
+                    deadLetters.addAll(items);
+                    causes.add(cause);
+                })
+                .build()
+                .start();
+        for (int i = 0; i < 3; i++) {
+            stage.offer(i, 1, TimeUnit.SECONDS);
+        }
+        // 等待工作线程把数据取出队列，进入攒批等待
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.getQueueSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, stage.getQueueSize());
+
+        // 攒批等待远长于关闭超时，工作线程在攒批中被中断，已取出的数据进入死信
+        stage.shutdown(100, TimeUnit.MILLISECONDS);
+        deadline = System.currentTimeMillis() + 5000;
+        while (deadLetters.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(handled.isEmpty());
+        assertEquals(Arrays.asList(0, 1, 2), deadLetters);
+        assertTrue(causes.get(0) instanceof InterruptedException);
+    }
+
+}
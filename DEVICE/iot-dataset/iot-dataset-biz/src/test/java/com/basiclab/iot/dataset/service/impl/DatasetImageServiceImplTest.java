@@ -0,0 +1,215 @@
+package com.basiclab.iot.dataset.service.impl;
+
+import com.basiclab.iot.dataset.dal.pgsql.DatasetImageMapper;
+import com.basiclab.iot.dataset.domain.dataset.vo.DatasetImageUploadProgressRespVO;
+import io.minio.BucketExistsArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DatasetImageServiceImpl} 压缩包导入的单元测试，MinIO 客户端和 Mapper 均为模拟对象
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DatasetImageServiceImplTest {
+
+    private static final Long DATASET_ID = 1L;
+
+    private final MinioClient minioClient = mock(MinioClient.class);
+
+    private final DatasetImageMapper datasetImageMapper = mock(DatasetImageMapper.class);
+
+    /**
+     * 按上传顺序记录的对象名
+     */
+    private final List<String> uploaded = new CopyOnWriteArrayList<>();
+
+    private final List<String> removed = new CopyOnWriteArrayList<>();
+
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    private DatasetImageServiceImpl service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(minioClient.bucketExists(any(BucketExistsArgs.class))).thenReturn(true);
+        doAnswer(invocation -> {
+            uploaded.add(invocation.<PutObjectArgs>getArgument(0).object());
+            return null;
+        }).when(minioClient).putObject(any(PutObjectArgs.class));
+        doAnswer(invocation -> {
+            removed.add(invocation.<RemoveObjectArgs>getArgument(0).object());
+            return null;
+        }).when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+        service = new DatasetImageServiceImpl();
+        ReflectionTestUtils.setField(service, "minioClient", minioClient);
+        ReflectionTestUtils.setField(service, "datasetImageMapper", datasetImageMapper);
+        ReflectionTestUtils.setField(service, "minioBucket", "dataset");
+        ReflectionTestUtils.setField(service, "ingestMemoryBudgetKb", 1024);
+        ReflectionTestUtils.setField(service, "ingestExecutor", newExecutor(4));
+        ReflectionTestUtils.setField(service, "zipIngestExecutor", newExecutor(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    @Test
+    public void testIngestZip_completedProgress() throws Exception {
+        String taskId = upload(zip(3, 10, true));
+
+        DatasetImageUploadProgressRespVO progress = awaitFinished(taskId);
+        assertEquals(DatasetImageUploadProgressRespVO.STATUS_COMPLETED, progress.getStatus());
+        assertEquals(DATASET_ID, progress.getDatasetId());
+        // 非图片文件不计入
+        assertEquals(3, progress.getReadCount());
+        assertEquals(3, progress.getSuccessCount());
+        assertEquals(0, progress.getFailedCount());
+        assertNull(progress.getErrorMessage());
+        assertNotNull(progress.getEndTime());
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    public void testIngestZip_failedBatchDeletesUploadedObjects() throws Exception {
+        // 单线程上传，保证对象上传顺序与插入批次一致：第一批 200 条成功，剩余一批保存失败
+        ReflectionTestUtils.setField(service, "ingestExecutor", newExecutor(1));
+        AtomicInteger inserts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (inserts.incrementAndGet() > 1) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            return true;
+        }).when(datasetImageMapper).insertBatch(anyList());
+
+        String taskId = upload(zip(205, 10, false));
+
+        DatasetImageUploadProgressRespVO progress = awaitFinished(taskId);
+        assertEquals(DatasetImageUploadProgressRespVO.STATUS_FAILED, progress.getStatus());
+        assertEquals(205, progress.getReadCount());
+        assertEquals(200, progress.getSuccessCount());
+        assertEquals(5, progress.getFailedCount());
+        assertTrue(progress.getErrorMessage().contains("数据库不可用"));
+        // 只删除保存失败那一批已上传的文件
+        assertEquals(uploaded.subList(200, 205), removed);
+    }
+
+    @Test
+    public void testIngestZip_memoryBudgetLimitsInFlightUploads() throws Exception {
+        // 每张图片 2KB，预算只够一张图片在上传中
+        ReflectionTestUtils.setField(service, "ingestMemoryBudgetKb", 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                uploaded.add(invocation.<PutObjectArgs>getArgument(0).object());
+                return null;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }).when(minioClient).putObject(any(PutObjectArgs.class));
+
+        String taskId = upload(zip(3, 2048, false));
+
+        waitUntil(() -> inFlight.get() == 1);
+        Thread.sleep(100);
+        // 上传跟不上时暂停读取压缩包
+        assertEquals(1, service.getUploadProgress(taskId).getReadCount());
+        release.countDown();
+
+        DatasetImageUploadProgressRespVO progress = awaitFinished(taskId);
+        assertEquals(DatasetImageUploadProgressRespVO.STATUS_COMPLETED, progress.getStatus());
+        assertEquals(3, progress.getSuccessCount());
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    public void testGetUploadProgress_unknownTask() {
+        assertNull(service.getUploadProgress("unknown"));
+    }
+
+    private String upload(byte[] zip) {
+        return service.processUpload(new MockMultipartFile("file", "images.zip", "application/zip", zip), DATASET_ID, true);
+    }
+
+    private DatasetImageUploadProgressRespVO awaitFinished(String taskId) throws InterruptedException {
+        waitUntil(() -> !DatasetImageUploadProgressRespVO.STATUS_RUNNING.equals(service.getUploadProgress(taskId).getStatus()));
+        return service.getUploadProgress(taskId);
+    }
+
+    private ExecutorService newExecutor(int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * 生成包含 count 张图片的压缩包
+     *
+     * @param withOtherFiles 是否额外包含目录和非图片文件
+     */
+    private static byte[] zip(int count, int imageSize, boolean withOtherFiles) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            if (withOtherFiles) {
+                zos.putNextEntry(new ZipEntry("images/"));
+                zos.closeEntry();
+                zos.putNextEntry(new ZipEntry("images/readme.txt"));
+                zos.write("readme".getBytes());
+                zos.closeEntry();
+            }
+            for (int i = 0; i < count; i++) {
+                zos.putNextEntry(new ZipEntry("images/" + i + ".jpg"));
+                zos.write(new byte[imageSize]);
+                zos.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.basiclab.iot.device.domain.device.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 产品下全部设备的命令下发任务（进度检查点）
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Data
+@Accessors(chain = true)
+@ApiModel(value = "DeviceCommandFanoutJob", description = "产品全部设备命令下发任务")
+public class DeviceCommandFanoutJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 状态：排队中
+     */
+    public static final String STATUS_PENDING = "PENDING";
+    /**
+     * 状态：下发中
+     */
+    public static final String STATUS_RUNNING = "RUNNING";
+    /**
+     * 状态：已完成
+     */
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    /**
+     * 状态：失败，可以从检查点继续
+     */
+    public static final String STATUS_FAILED = "FAILED";
+    /**
+     * 状态：服务关闭时中断，可以从检查点继续
+     */
+    public static final String STATUS_INTERRUPTED = "INTERRUPTED";
+
+    @ApiModelProperty(value = "任务编号")
+    private String jobId;
+
+    @ApiModelProperty(value = "产品标识")
+    private String productIdentification;
+
+    @ApiModelProperty(value = "状态：PENDING、RUNNING、COMPLETED、FAILED、INTERRUPTED")
+    private String status;
+
+    @ApiModelProperty(value = "下发的命令")
+    private DeviceToGateWayVo request;
+
+    @ApiModelProperty(value = "检查点：已处理的最大设备 ID，继续下发时从该 ID 之后开始")
+    private Long lastDeviceId;
+
+    @ApiModelProperty(value = "已发送的消息数")
+    private Long sentCount;
+
+    @ApiModelProperty(value = "构建或发送失败的消息数")
+    private Long failedCount;
+
+    @ApiModelProperty(value = "开始时间（毫秒时间戳）")
+    private Long startTime;
+
+    @ApiModelProperty(value = "最后更新时间（毫秒时间戳）")
+    private Long updateTime;
+
+    @ApiModelProperty(value = "吞吐量（条/秒），按本次运行的发送数和耗时计算")
+    private Double throughput;
+
+    @ApiModelProperty(value = "失败原因")
+    private String errorMessage;
+
+}
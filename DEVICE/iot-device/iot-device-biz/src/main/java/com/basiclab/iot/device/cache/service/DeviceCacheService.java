@@ -1,29 +1,44 @@
 package com.basiclab.iot.device.cache.service;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
 import com.basiclab.iot.common.constant.CacheConstants;
 import com.basiclab.iot.common.service.RedisService;
 import com.basiclab.iot.common.utils.bean.BeanPlusUtil;
 import com.basiclab.iot.device.cache.CacheSuperAbstract;
+import com.basiclab.iot.device.dal.pgsql.device.DeviceMapper;
 import com.basiclab.iot.device.domain.device.vo.Device;
 import com.basiclab.iot.device.domain.device.vo.DeviceCacheVO;
 import com.basiclab.iot.device.domain.device.vo.ProductCacheVO;
 import com.basiclab.iot.device.service.device.DeviceInfoService;
 import com.basiclab.iot.device.service.device.DeviceService;
 import com.basiclab.iot.device.service.product.ProductService;
-import com.github.pagehelper.PageHelper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * 设备缓存处理
+ * <p>
+ * 预热按设备 ID 游标分页读取，每页在独立线程中转换并通过管道批量写入 Redis，读取下一页与写入上一页并行；
+ * 同一次预热中产品信息只查询一次。
+ * <p>
+ * 定时刷新：每个刷新间隔按 update_time 增量刷新一次，距上次全量刷新超过全量刷新间隔时改为全量刷新，
+ * 全量刷新间隔需小于缓存过期时间，保证未修改的设备不会过期。刷新水位保存在 Redis 中，重启后继续增量刷新。
+ * 删除的设备不会出现在增量结果中，由删除设备时直接删除缓存。
+ * <p>
+ * 多实例部署时通过 Redis 锁保证同一时刻只有一个实例执行定时刷新，拿到锁后先从 Redis 加载其他实例保存的水位。
+ * update_time 在事务提交前写入，提交晚于刷新查询的修改会落在水位之前，因此增量刷新的起点比上次刷新开始时间
+ * 提前一个重叠时间，重叠部分的设备会被重复写入，写入是幂等的。
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
@@ -37,22 +52,240 @@ public class DeviceCacheService extends CacheSuperAbstract {
     private final DeviceService deviceService;
     private final DeviceInfoService deviceInfoService;
     private final ProductService productService;
+    private final DeviceMapper deviceMapper;
 
+    /**
+     * 每页读取的设备数
+     */
+    @Value("${basiclab.iot.device-cache-warmup.page-size:1000}")
+    private int warmupPageSize;
+
+    /**
+     * 并行写入的页数，同时也是内存中最多保留的页数
+     */
+    @Value("${basiclab.iot.device-cache-warmup.parallelism:4}")
+    private int warmupParallelism;
+
+    /**
+     * 定时刷新的间隔（秒），小于等于 0 时不定时刷新
+     */
+    @Value("${basiclab.iot.device-cache-warmup.refresh-interval-seconds:60}")
+    private long refreshIntervalSeconds;
+
+    /**
+     * 全量刷新的间隔（分钟），需小于缓存过期时间
+     */
+    @Value("${basiclab.iot.device-cache-warmup.full-refresh-interval-minutes:20}")
+    private long fullRefreshIntervalMinutes;
+
+    /**
+     * 增量刷新水位的重叠时间（秒），需大于修改设备的事务耗时与各实例的时钟偏差
+     */
+    @Value("${basiclab.iot.device-cache-warmup.refresh-overlap-seconds:30}")
+    private long refreshOverlapSeconds;
+
+    /**
+     * 定时刷新锁的过期时间（秒），需大于一次全量刷新的耗时；超时后其他实例可能重复刷新，重复写入不影响正确性
+     */
+    @Value("${basiclab.iot.device-cache-warmup.refresh-lock-seconds:600}")
+    private long refreshLockSeconds;
+
+    /**
+     * 上一次刷新开始时间的 Redis Key
+     */
+    private static final String LAST_REFRESH_TIME_KEY = "iot_device_cache:last_refresh_time";
+
+    /**
+     * 上一次全量刷新开始时间的 Redis Key
+     */
+    private static final String LAST_FULL_REFRESH_TIME_KEY = "iot_device_cache:last_full_refresh_time";
+
+    /**
+     * 定时刷新锁的 Redis Key
+     */
+    private static final String REFRESH_LOCK_KEY = "iot_device_cache:refresh_lock";
+
+    private ExecutorService warmupExecutor;
+
+    private ScheduledExecutorService refreshScheduler;
+
+    /**
+     * 上一次刷新的开始时间，增量刷新从该时间开始
+     */
+    private volatile LocalDateTime lastRefreshTime;
+
+    /**
+     * 上一次全量刷新的开始时间
+     */
+    private volatile LocalDateTime lastFullRefreshTime;
+
+    @PostConstruct
+    public void init() {
+        warmupExecutor = new ThreadPoolExecutor(warmupParallelism, warmupParallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("iot-device-cache-warmup-", true));
+        if (refreshIntervalSeconds <= 0) {
+            log.info("[init][未配置设备缓存定时刷新]");
+            return;
+        }
+        loadRefreshTime();
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("iot-device-cache-refresh-", true));
+        refreshScheduler.scheduleWithFixedDelay(this::scheduledRefresh,
+                refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+        }
+        warmupExecutor.shutdownNow();
+    }
+
+    /**
+     * 定时刷新：距上次全量刷新超过全量刷新间隔（或没有全量刷新过）时全量刷新，否则增量刷新
+     * <p>
+     * 未拿到刷新锁时跳过本次刷新，由持有锁的实例刷新
+     */
+    private void scheduledRefresh() {
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            if (!redisService.setIfAbsent(REFRESH_LOCK_KEY, lockToken, refreshLockSeconds, TimeUnit.SECONDS)) {
+                log.debug("[scheduledRefresh][其他实例正在刷新设备缓存，跳过本次刷新]");
+                return;
+            }
+        } catch (Exception e) {
+            log.error("[scheduledRefresh][获取设备缓存刷新锁失败，跳过本次刷新]", e);
+            return;
+        }
+        try {
+            // 上次刷新可能由其他实例执行，使用 Redis 中的水位
+            loadRefreshTime();
+            LocalDateTime fullRefreshTime = lastFullRefreshTime;
+            if (fullRefreshTime == null || lastRefreshTime == null
+                    || fullRefreshTime.plusMinutes(fullRefreshIntervalMinutes).isBefore(LocalDateTime.now())) {
+                refreshDeviceCache(null);
+            } else {
+                refreshChangedDeviceCache();
+            }
+        } catch (Exception e) {
+            // 捕获所有异常，避免定时任务被取消
+            log.error("[scheduledRefresh][设备缓存定时刷新失败]", e);
+        } finally {
+            try {
+                redisService.releaseDistributedLock(REFRESH_LOCK_KEY, lockToken);
+            } catch (Exception e) {
+                // 释放失败时锁到期后自动释放
+                log.warn("[scheduledRefresh][释放设备缓存刷新锁失败]", e);
+            }
+        }
+    }
+
+    /**
+     * 从 Redis 加载刷新水位，水位不存在或距上次全量刷新过久时，首次定时刷新执行全量刷新
+     */
+    private void loadRefreshTime() {
+        try {
+            String refreshTime = redisService.get(LAST_REFRESH_TIME_KEY);
+            String fullRefreshTime = redisService.get(LAST_FULL_REFRESH_TIME_KEY);
+            if (refreshTime != null && fullRefreshTime != null) {
+                lastRefreshTime = LocalDateTime.parse(refreshTime);
+                lastFullRefreshTime = LocalDateTime.parse(fullRefreshTime);
+                log.info("[loadRefreshTime][加载设备缓存刷新水位，上次刷新: {}，上次全量刷新: {}]",
+                        lastRefreshTime, lastFullRefreshTime);
+            }
+        } catch (Exception e) {
+            log.warn("[loadRefreshTime][加载设备缓存刷新水位失败，将执行全量刷新]", e);
+        }
+    }
+
+    private void saveRefreshTime() {
+        try {
+            redisService.setCacheObject(LAST_REFRESH_TIME_KEY, lastRefreshTime.toString(), THIRTY_MINUTES, TimeUnit.MINUTES);
+            redisService.setCacheObject(LAST_FULL_REFRESH_TIME_KEY, lastFullRefreshTime.toString(),
+                    THIRTY_MINUTES, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            // 保存失败只影响重启后的首次刷新（退化为全量刷新）
+            log.warn("[saveRefreshTime][保存设备缓存刷新水位失败]", e);
+        }
+    }
 
     /**
      * Refresh the cache with device data for a specific tenant.
      */
     public void refreshDeviceCacheForTenant() {
-        int totalDataCount = deviceService.findDeviceTotal().intValue();
-        int totalPages = (int) Math.ceil((double) totalDataCount / PAGE_SIZE);
-        List<Device> deviceList = IntStream.range(0, totalPages).mapToObj(currentPage -> {
-                    PageHelper.startPage(currentPage + 1, PAGE_SIZE);
-                    return deviceService.findDevices();
-                })
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-
-        cacheDevicesForTenant(deviceList);
+        refreshDeviceCache(null);
+    }
+
+    /**
+     * 增量刷新：只刷新上一次刷新开始（减去重叠时间）之后修改的设备，没有刷新过时执行全量刷新
+     */
+    public void refreshChangedDeviceCache() {
+        refreshDeviceCache(lastRefreshTime);
+    }
+
+    /**
+     * 刷新设备缓存
+     *
+     * @param updateTimeFrom 只刷新该时间及之后修改的设备，为 null 时全量刷新
+     * @return 刷新的设备数
+     */
+    public long refreshDeviceCache(LocalDateTime updateTimeFrom) {
+        LocalDateTime refreshTime = LocalDateTime.now();
+        long startMillis = System.currentTimeMillis();
+        Map<String, Optional<ProductCacheVO>> products = new ConcurrentHashMap<>();
+        Semaphore inFlight = new Semaphore(warmupParallelism);
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicLong cached = new AtomicLong();
+        Long lastId = null;
+        try {
+            while (true) {
+                List<Device> devices = deviceMapper.selectPageAfterId(lastId, updateTimeFrom, warmupPageSize);
+                if (devices.isEmpty()) {
+                    break;
+                }
+                lastId = devices.get(devices.size() - 1).getId();
+                // 限制同时在内存中的页数，写入跟不上时暂停读取
+                inFlight.acquire();
+                try {
+                    futures.add(warmupExecutor.submit(() -> {
+                        try {
+                            cached.addAndGet(cacheDevices(devices, products));
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                if (devices.size() < warmupPageSize) {
+                    break;
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("[refreshDeviceCache][设备缓存刷新被中断，已刷新: {}]", cached.get());
+            return cached.get();
+        } catch (ExecutionException e) {
+            log.error("[refreshDeviceCache][设备缓存刷新失败，已刷新: {}]", cached.get(), e.getCause());
+            return cached.get();
+        }
+        // 提前一个重叠时间，覆盖查询时尚未提交的修改
+        lastRefreshTime = refreshTime.minusSeconds(refreshOverlapSeconds);
+        if (updateTimeFrom == null) {
+            lastFullRefreshTime = refreshTime;
+        }
+        if (lastFullRefreshTime != null) {
+            saveRefreshTime();
+        }
+        log.info("[refreshDeviceCache][设备缓存刷新完成，{}，设备数: {}，产品数: {}，耗时: {} ms]",
+                updateTimeFrom == null ? "全量" : "增量（update_time >= " + updateTimeFrom + "）",
+                cached.get(), products.size(), System.currentTimeMillis() - startMillis);
+        return cached.get();
     }
 
     /**
@@ -61,15 +294,42 @@ public class DeviceCacheService extends CacheSuperAbstract {
      * @param deviceList List of devices to be cached.
      */
     public void cacheDevicesForTenant(List<Device> deviceList) {
-        Optional.ofNullable(deviceList)
-                .orElse(Collections.emptyList())
-                .stream()
-                .filter(Objects::nonNull)
-                .map(this::transformToDeviceCacheVO)
-                .forEach(deviceCacheVO -> {
-                    cacheDeviceBasedOnIdentification(deviceCacheVO);
-                    cacheDeviceBasedOnClientId(deviceCacheVO);
-                });
+        cacheDevices(Optional.ofNullable(deviceList).orElse(Collections.emptyList()), new HashMap<>());
+    }
+
+    /**
+     * 转换一批设备并通过管道写入缓存，每个设备按设备标识和 clientId 各写一个键
+     *
+     * @param deviceList 设备列表
+     * @param products   产品标识 → 产品缓存，同一批次内复用
+     * @return 缓存的设备数
+     */
+    private int cacheDevices(List<Device> deviceList, Map<String, Optional<ProductCacheVO>> products) {
+        Map<String, DeviceCacheVO> values = new HashMap<>(deviceList.size() * 4);
+        int count = 0;
+        for (Device device : deviceList) {
+            if (device == null) {
+                continue;
+            }
+            DeviceCacheVO deviceCacheVO = BeanUtil.toBeanIgnoreError(device, DeviceCacheVO.class);
+            if (deviceCacheVO.getProductIdentification() != null) {
+                products.computeIfAbsent(deviceCacheVO.getProductIdentification(), this::loadProductCacheVO)
+                        .ifPresent(deviceCacheVO::setProductCacheVO);
+            }
+            values.put(CacheConstants.DEF_DEVICE + deviceCacheVO.getDeviceIdentification(), deviceCacheVO);
+            if (deviceCacheVO.getClientId() != null) {
+                values.put(CacheConstants.DEF_DEVICE + deviceCacheVO.getClientId(), deviceCacheVO);
+            }
+            count++;
+        }
+        // SET 会覆盖旧值，不需要先删除
+        redisService.setCacheObjects(values, THIRTY_MINUTES, TimeUnit.MINUTES);
+        return count;
+    }
+
+    private Optional<ProductCacheVO> loadProductCacheVO(String productIdentification) {
+        return Optional.ofNullable(productService.findOneByProductIdentification(productIdentification))
+                .map(product -> BeanPlusUtil.toBeanIgnoreError(product, ProductCacheVO.class));
     }
 
     /**
@@ -90,26 +350,4 @@ public class DeviceCacheService extends CacheSuperAbstract {
 
         return deviceCacheVO;
     }
-
-    /**
-     * Cache the DeviceCacheVO object based on its identification.
-     *
-     * @param deviceCacheVO DeviceCacheVO object to be cached.
-     */
-    private void cacheDeviceBasedOnIdentification(DeviceCacheVO deviceCacheVO) {
-        String cacheKey = CacheConstants.DEF_DEVICE + deviceCacheVO.getDeviceIdentification();
-        redisService.delete(cacheKey);
-        redisService.setCacheObject(cacheKey, deviceCacheVO, THIRTY_MINUTES, TimeUnit.MINUTES);
-    }
-
-    /**
-     * Cache the DeviceCacheVO object based on its client ID.
-     *
-     * @param deviceCacheVO DeviceCacheVO object to be cached.
-     */
-    private void cacheDeviceBasedOnClientId(DeviceCacheVO deviceCacheVO) {
-        String cacheKey = CacheConstants.DEF_DEVICE + deviceCacheVO.getClientId();
-        redisService.delete(cacheKey);
-        redisService.setCacheObject(cacheKey, deviceCacheVO, THIRTY_MINUTES, TimeUnit.MINUTES);
-    }
 }
@@ -3,6 +3,7 @@ package com.basiclab.iot.device.controller.device;
 import com.basiclab.iot.common.domain.R;
 import com.basiclab.iot.common.web.controller.BaseController;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommand;
+import com.basiclab.iot.device.domain.device.vo.DeviceCommandFanoutJob;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommandWrapperParam;
 import com.basiclab.iot.device.domain.device.vo.PublishMessageRequestParam;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommandSaveVO;
@@ -12,6 +13,8 @@ import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -52,8 +55,32 @@ public class DeviceCommandController extends BaseController {
     @ApiOperation(value = "Issue commands to devices", httpMethod = "POST", notes = "Issues a list of commands to devices, handling both serial and parallel execution.")
     @PostMapping("/issueCommands")
     public R<?> issueCommands(@RequestBody @Valid DeviceCommandWrapperParam commandWrapper) {
-        deviceCommandService.processDeviceCommands(commandWrapper);
-        return R.ok();
+        return R.ok(deviceCommandService.processDeviceCommands(commandWrapper));
+    }
+
+    /**
+     * Queries the progress of a command fan-out job for all devices of a product.
+     *
+     * @param jobId The job id returned by issueCommands.
+     * @return The job progress.
+     */
+    @ApiOperation(value = "Query command fan-out job", httpMethod = "GET", notes = "Queries the progress of a command issued to all devices of a product.")
+    @GetMapping("/fanout/{jobId}")
+    public R<DeviceCommandFanoutJob> getFanoutJob(@PathVariable("jobId") String jobId) {
+        DeviceCommandFanoutJob job = deviceCommandService.getCommandFanoutJob(jobId);
+        return job != null ? R.ok(job) : R.fail("命令下发任务不存在或已过期");
+    }
+
+    /**
+     * Resumes a failed or interrupted command fan-out job from its checkpoint.
+     *
+     * @param jobId The job id returned by issueCommands.
+     * @return The job progress.
+     */
+    @ApiOperation(value = "Resume command fan-out job", httpMethod = "POST", notes = "Resumes a failed or interrupted command fan-out job from its checkpoint.")
+    @PostMapping("/fanout/{jobId}/resume")
+    public R<DeviceCommandFanoutJob> resumeFanoutJob(@PathVariable("jobId") String jobId) {
+        return R.ok(deviceCommandService.resumeCommandFanout(jobId));
     }
 
     /**
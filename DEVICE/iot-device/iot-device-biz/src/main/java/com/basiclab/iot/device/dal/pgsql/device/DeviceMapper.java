@@ -10,6 +10,7 @@ import com.basiclab.iot.device.domain.device.vo.DeviceStatusStatisticsVo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
@@ -182,6 +183,30 @@ public interface DeviceMapper extends BaseMapper<Device> {
 
     List<Device> findAllByProductIdentification(@Param("productIdentification") String productIdentification);
 
+    /**
+     * 按设备 ID 游标分页查询产品下的设备，用于大批量遍历（可从任意 ID 继续）
+     *
+     * @param productIdentification 产品标识
+     * @param lastId                上一页的最大设备 ID，为 null 时从头开始
+     * @param limit                 每页条数
+     * @return 设备 ID 大于 lastId 的设备，按 ID 升序
+     */
+    List<Device> selectPageByProductIdentificationAfterId(@Param("productIdentification") String productIdentification,
+                                                          @Param("lastId") Long lastId,
+                                                          @Param("limit") Integer limit);
+
+    /**
+     * 按设备 ID 游标分页查询设备，用于全量或增量遍历
+     *
+     * @param lastId         上一页的最大设备 ID，为 null 时从头开始
+     * @param updateTimeFrom 只查询该时间及之后修改的设备，为 null 时不限制
+     * @param limit          每页条数
+     * @return 设备 ID 大于 lastId 的设备，按 ID 升序
+     */
+    List<Device> selectPageAfterId(@Param("lastId") Long lastId,
+                                   @Param("updateTimeFrom") LocalDateTime updateTimeFrom,
+                                   @Param("limit") Integer limit);
+
     List<Device> selectDeviceByDeviceIdentificationList(@Param("deviceIdentificationList") List<String> deviceIdentificationList);
 
     /**
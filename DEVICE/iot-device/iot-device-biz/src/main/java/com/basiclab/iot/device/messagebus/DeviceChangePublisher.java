@@ -0,0 +1,87 @@
+package com.basiclab.iot.device.messagebus;
+
+import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
+import com.basiclab.iot.sink.mq.message.IotDeviceChangeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * DeviceChangePublisher
+ * <p>
+ * 设备修改、删除后向消息总线发布变更通知，iot-sink 收到后失效本地的设备缓存。
+ * 在事务中调用时，等事务提交后再发布，避免 iot-sink 在提交前重新加载到旧数据。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class DeviceChangePublisher {
+
+    @Autowired(required = false)
+    private IotMessageBus messageBus;
+
+    /**
+     * 发布设备修改通知
+     *
+     * @param deviceIds 设备ID列表
+     */
+    public void publishUpdate(Collection<Long> deviceIds) {
+        publish(IotDeviceChangeMessage.ACTION_UPDATE, deviceIds);
+    }
+
+    /**
+     * 发布设备删除通知
+     *
+     * @param deviceIds 设备ID列表
+     */
+    public void publishDelete(Collection<Long> deviceIds) {
+        publish(IotDeviceChangeMessage.ACTION_DELETE, deviceIds);
+    }
+
+    private void publish(String action, Collection<Long> deviceIds) {
+        if (messageBus == null || deviceIds == null) {
+            return;
+        }
+        List<Long> ids = deviceIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return;
+        }
+        IotDeviceChangeMessage message = IotDeviceChangeMessage.builder()
+                .action(action)
+                .deviceIds(new ArrayList<>(ids))
+                .build();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPublish(message);
+                }
+            });
+        } else {
+            doPublish(message);
+        }
+    }
+
+    private void doPublish(IotDeviceChangeMessage message) {
+        try {
+            messageBus.post(IotDeviceChangeMessage.MESSAGE_BUS_DEVICE_CHANGE_TOPIC, message);
+            log.debug("[doPublish][发布设备变更通知，action: {}, deviceIds: {}]", message.getAction(), message.getDeviceIds());
+        } catch (Exception e) {
+            // 通知失败时 iot-sink 的缓存会在刷新间隔后自动更新，这里只记录日志，不影响业务
+            log.error("[doPublish][发布设备变更通知失败，action: {}, deviceIds: {}]",
+                    message.getAction(), message.getDeviceIds(), e);
+        }
+    }
+
+}
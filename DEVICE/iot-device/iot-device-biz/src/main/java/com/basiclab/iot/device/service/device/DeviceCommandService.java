@@ -3,10 +3,13 @@ package com.basiclab.iot.device.service.device;
 
 import com.basiclab.iot.common.domain.R;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommand;
+import com.basiclab.iot.device.domain.device.vo.DeviceCommandFanoutJob;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommandWrapperParam;
 import com.basiclab.iot.device.domain.device.vo.PublishMessageRequestParam;
 import com.basiclab.iot.device.domain.device.vo.DeviceCommandSaveVO;
 
+import java.util.List;
+
 
 /**
  * <p>
@@ -56,8 +59,25 @@ public interface DeviceCommandService {
      * Processes both serial and parallel device command requests.
      *
      * @param commandWrapper wrapper containing both serial and parallel command requests
+     * @return 产品全部设备命令（deviceIdentification 为 ALL）的任务编号列表
+     */
+    List<String> processDeviceCommands(DeviceCommandWrapperParam commandWrapper);
+
+    /**
+     * 查询产品全部设备命令下发任务的进度
+     *
+     * @param jobId 任务编号
+     * @return 任务，不存在或已过期时返回 null
+     */
+    DeviceCommandFanoutJob getCommandFanoutJob(String jobId);
+
+    /**
+     * 从检查点继续执行失败或中断的产品全部设备命令下发任务
+     *
+     * @param jobId 任务编号
+     * @return 任务
      */
-    void processDeviceCommands(DeviceCommandWrapperParam commandWrapper);
+    DeviceCommandFanoutJob resumeCommandFanout(String jobId);
 
     /**
      * Send a message to a topic.
@@ -0,0 +1,344 @@
+package com.basiclab.iot.device.service.device.fanout;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.json.JSONUtil;
+import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.common.utils.bean.BeanPlusUtil;
+import com.basiclab.iot.device.dal.pgsql.device.DeviceMapper;
+import com.basiclab.iot.device.domain.device.vo.Device;
+import com.basiclab.iot.device.domain.device.vo.DeviceCommandFanoutJob;
+import com.basiclab.iot.device.domain.device.vo.DeviceResultVO;
+import com.basiclab.iot.device.domain.product.vo.result.ProductResultVO;
+import com.basiclab.iot.device.service.product.ProductService;
+import com.basiclab.iot.sink.biz.IotDownstreamMessageApi;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 产品全部设备的命令下发引擎
+ * <p>
+ * 1. 按设备 ID 游标分页读取设备，内存中只保留一页，不再一次加载产品下的全部设备
+ * 2. 每页的消息通过 {@link IotDownstreamMessageApi#sendDownstreamMessages} 按所在网关分组批量发送
+ * 3. 所有任务共享一个限流器，控制下发到消息总线的总速率；每页拆成约 100ms 配额的小批申请令牌，避免单次等待过长
+ * 4. 每页发送后把进度（最大设备 ID、发送数）写入 Redis 检查点，任务失败或服务重启后可从检查点继续
+ * 5. 执行锁的值为本次执行独有的令牌，后台定时续期，每批发送和写检查点前也通过续期确认仍持有锁；
+ *    锁丢失后立即停止发送且不再写检查点，释放时只删除自己的锁，避免与接手任务的实例重复下发或互相覆盖进度
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class DeviceCommandFanoutEngine {
+
+    private static final String JOB_KEY_PREFIX = "iot_device_command_fanout:job:";
+    private static final String LOCK_KEY_PREFIX = "iot_device_command_fanout:lock:";
+
+    /**
+     * 检查点保留时间
+     */
+    private static final long JOB_EXPIRE_DAYS = 7;
+
+    /**
+     * 执行锁的过期时间；实例宕机后锁过期，任务可以在其他实例继续
+     */
+    private static final long LOCK_EXPIRE_SECONDS = 60;
+
+    /**
+     * 执行锁的续期间隔，保证限流等待等耗时操作期间锁不会过期
+     */
+    private static final long LOCK_RENEW_INTERVAL_SECONDS = 20;
+
+    /**
+     * 每发送多少页打印一次进度日志
+     */
+    private static final int PROGRESS_LOG_PAGES = 20;
+
+    @Resource
+    private DeviceMapper deviceMapper;
+
+    @Resource
+    private ProductService productService;
+
+    @Resource
+    private RedisService redisService;
+
+    @Autowired(required = false)
+    private IotDownstreamMessageApi iotDownstreamMessageApi;
+
+    /**
+     * 每页读取的设备数
+     */
+    @Value("${basiclab.iot.command-fanout.page-size:500}")
+    private int pageSize;
+
+    /**
+     * 所有任务合计的最大下发速率（条/秒）
+     */
+    @Value("${basiclab.iot.command-fanout.rate-per-second:2000}")
+    private double ratePerSecond;
+
+    /**
+     * 同时执行的任务数，超出的任务排队
+     */
+    @Value("${basiclab.iot.command-fanout.threads:2}")
+    private int threads;
+
+    private RateLimiter rateLimiter;
+
+    /**
+     * 每次向限流器申请的最大令牌数，约为 100ms 的配额
+     */
+    private int permitBatchSize;
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService lockRenewer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = RateLimiter.create(ratePerSecond);
+        permitBatchSize = Math.max(1, (int) (ratePerSecond / 10));
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("iot-command-fanout-", true));
+        lockRenewer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("iot-command-fanout-lock-", true));
+        running = true;
+        log.info("[init][命令下发引擎启动完成，pageSize: {}，ratePerSecond: {}，threads: {}]",
+                pageSize, ratePerSecond, threads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 运行中的任务在当前小批发送完后保存检查点并退出，状态为 INTERRUPTED
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        lockRenewer.shutdownNow();
+    }
+
+    /**
+     * 创建任务，保存初始检查点
+     *
+     * @param job 任务，需设置 productIdentification 和 request
+     * @return 任务
+     */
+    public DeviceCommandFanoutJob create(DeviceCommandFanoutJob job) {
+        long now = System.currentTimeMillis();
+        job.setJobId(UUID.randomUUID().toString().replace("-", ""))
+                .setStatus(DeviceCommandFanoutJob.STATUS_PENDING)
+                .setSentCount(0L)
+                .setFailedCount(0L)
+                .setStartTime(now)
+                .setUpdateTime(now);
+        saveCheckpoint(job);
+        return job;
+    }
+
+    /**
+     * 异步执行任务
+     *
+     * @param job            任务
+     * @param messageBuilder 设备 → 下行消息，返回 null 表示该设备构建失败
+     */
+    public void submit(DeviceCommandFanoutJob job, Function<DeviceResultVO, IotDeviceMessage> messageBuilder) {
+        executor.execute(() -> execute(job, messageBuilder));
+    }
+
+    /**
+     * 在当前线程执行任务，从检查点的 lastDeviceId 之后继续
+     *
+     * @param job            任务
+     * @param messageBuilder 设备 → 下行消息，返回 null 表示该设备构建失败
+     * @return 是否执行完成
+     */
+    public boolean execute(DeviceCommandFanoutJob job, Function<DeviceResultVO, IotDeviceMessage> messageBuilder) {
+        String lockKey = LOCK_KEY_PREFIX + job.getJobId();
+        String lockToken = UUID.randomUUID().toString();
+        if (!redisService.setIfAbsent(lockKey, lockToken, LOCK_EXPIRE_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("[execute][任务正在其他线程或实例中执行，jobId: {}]", job.getJobId());
+            return false;
+        }
+        AtomicBoolean lockLost = new AtomicBoolean(false);
+        ScheduledFuture<?> renewal = lockRenewer.scheduleAtFixedRate(() -> renewLockQuietly(lockKey, lockToken, lockLost),
+                LOCK_RENEW_INTERVAL_SECONDS, LOCK_RENEW_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        long runStart = System.currentTimeMillis();
+        long runSent = 0;
+        int pages = 0;
+        try {
+            if (iotDownstreamMessageApi == null) {
+                throw new IllegalStateException("IotDownstreamMessageApi 未配置");
+            }
+            job.setStatus(DeviceCommandFanoutJob.STATUS_RUNNING).setErrorMessage(null);
+            if (holdLock(lockKey, lockToken, lockLost)) {
+                saveCheckpoint(job);
+            }
+
+            // 产品信息所有设备共用，只查询一次
+            ProductResultVO product = productService.findOneByProductIdentification(job.getProductIdentification());
+            while (true) {
+                if (lockLost.get()) {
+                    job.setStatus(DeviceCommandFanoutJob.STATUS_INTERRUPTED);
+                    return false;
+                }
+                if (!running) {
+                    job.setStatus(DeviceCommandFanoutJob.STATUS_INTERRUPTED);
+                    log.info("[execute][服务关闭，任务中断，jobId: {}，lastDeviceId: {}]", job.getJobId(), job.getLastDeviceId());
+                    return false;
+                }
+                List<Device> devices = deviceMapper.selectPageByProductIdentificationAfterId(
+                        job.getProductIdentification(), job.getLastDeviceId(), pageSize);
+                if (devices.isEmpty()) {
+                    job.setStatus(DeviceCommandFanoutJob.STATUS_COMPLETED);
+                    return true;
+                }
+
+                // 按小批申请令牌并发送，每批之前确认锁仍持有、服务未关闭
+                for (int from = 0; from < devices.size() && running && !lockLost.get(); from += permitBatchSize) {
+                    List<Device> batch = devices.subList(from, Math.min(from + permitBatchSize, devices.size()));
+                    List<IotDeviceMessage> messages = new ArrayList<>(batch.size());
+                    for (Device device : batch) {
+                        IotDeviceMessage message = buildMessage(device, product, messageBuilder);
+                        if (message != null) {
+                            messages.add(message);
+                        } else {
+                            job.setFailedCount(job.getFailedCount() + 1);
+                        }
+                    }
+                    if (!messages.isEmpty()) {
+                        rateLimiter.acquire(messages.size());
+                        if (!holdLock(lockKey, lockToken, lockLost)) {
+                            break;
+                        }
+                        iotDownstreamMessageApi.sendDownstreamMessages(messages);
+                    }
+                    runSent += messages.size();
+                    job.setLastDeviceId(batch.get(batch.size() - 1).getId())
+                            .setSentCount(job.getSentCount() + messages.size())
+                            .setThroughput(throughput(runSent, runStart));
+                }
+
+                pages++;
+                if (holdLock(lockKey, lockToken, lockLost)) {
+                    saveCheckpoint(job);
+                }
+                if (pages % PROGRESS_LOG_PAGES == 0) {
+                    log.info("[execute][任务进度，jobId: {}，已发送: {}，失败: {}，吞吐量: {} 条/秒]",
+                            job.getJobId(), job.getSentCount(), job.getFailedCount(), job.getThroughput());
+                }
+            }
+        } catch (Exception e) {
+            job.setStatus(DeviceCommandFanoutJob.STATUS_FAILED).setErrorMessage(e.getMessage());
+            log.error("[execute][任务执行失败，可从检查点继续，jobId: {}，lastDeviceId: {}]",
+                    job.getJobId(), job.getLastDeviceId(), e);
+            return false;
+        } finally {
+            renewal.cancel(false);
+            job.setThroughput(throughput(runSent, runStart));
+            if (holdLock(lockKey, lockToken, lockLost)) {
+                saveCheckpoint(job);
+                redisService.releaseDistributedLock(lockKey, lockToken);
+            } else {
+                // 锁已过期或被其他实例持有：检查点和锁都归新的持有者，不能覆盖或删除
+                log.warn("[execute][执行锁已丢失，放弃写入检查点，jobId: {}，lastDeviceId: {}]",
+                        job.getJobId(), job.getLastDeviceId());
+            }
+            log.info("[execute][任务结束，jobId: {}，产品: {}，状态: {}，已发送: {}，失败: {}，吞吐量: {} 条/秒]",
+                    job.getJobId(), job.getProductIdentification(), job.getStatus(), job.getSentCount(),
+                    job.getFailedCount(), job.getThroughput());
+        }
+    }
+
+    /**
+     * 获取任务检查点
+     *
+     * @param jobId 任务编号
+     * @return 任务，不存在时返回 null
+     */
+    public DeviceCommandFanoutJob getJob(String jobId) {
+        String json = redisService.getCacheObject(JOB_KEY_PREFIX + jobId);
+        return json != null ? JSONUtil.toBean(json, DeviceCommandFanoutJob.class) : null;
+    }
+
+    private IotDeviceMessage buildMessage(Device device, ProductResultVO product,
+                                          Function<DeviceResultVO, IotDeviceMessage> messageBuilder) {
+        try {
+            DeviceResultVO deviceResultVO = BeanPlusUtil.toBeanIgnoreError(device, DeviceResultVO.class);
+            deviceResultVO.setProductResultVO(product);
+            return messageBuilder.apply(deviceResultVO);
+        } catch (Exception e) {
+            log.error("[buildMessage][构建设备命令失败，设备 ID: {}]", device.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 续期执行锁，确认锁仍由本次执行持有
+     * <p>
+     * 续期成功后锁至少还有 {@link #LOCK_EXPIRE_SECONDS} 秒才过期，随后的发送或写检查点不会与其他实例重叠
+     *
+     * @return 是否仍持有锁，false 表示锁已过期或已被其他实例持有
+     */
+    private boolean holdLock(String lockKey, String lockToken, AtomicBoolean lockLost) {
+        if (lockLost.get()) {
+            return false;
+        }
+        if (!redisService.renewDistributedLock(lockKey, lockToken, TimeUnit.SECONDS.toMillis(LOCK_EXPIRE_SECONDS))) {
+            lockLost.set(true);
+            log.warn("[holdLock][执行锁已丢失，停止下发，lockKey: {}]", lockKey);
+            return false;
+        }
+        return true;
+    }
+
+    private void renewLockQuietly(String lockKey, String lockToken, AtomicBoolean lockLost) {
+        try {
+            holdLock(lockKey, lockToken, lockLost);
+        } catch (Exception e) {
+            // Redis 暂时不可用：保留锁状态，下次续期或发送前再确认
+            log.warn("[renewLockQuietly][执行锁续期失败，lockKey: {}]", lockKey, e);
+        }
+    }
+
+    private void saveCheckpoint(DeviceCommandFanoutJob job) {
+        job.setUpdateTime(System.currentTimeMillis());
+        // 以 JSON 字符串保存，不依赖 RedisTemplate 的序列化方式
+        redisService.setCacheObject(JOB_KEY_PREFIX + job.getJobId(), JSONUtil.toJsonStr(job),
+                JOB_EXPIRE_DAYS, TimeUnit.DAYS);
+    }
+
+    private static double throughput(long sent, long startMillis) {
+        long elapsed = Math.max(System.currentTimeMillis() - startMillis, 1);
+        return Math.round(sent * 1000.0 / elapsed * 100) / 100.0;
+    }
+
+}
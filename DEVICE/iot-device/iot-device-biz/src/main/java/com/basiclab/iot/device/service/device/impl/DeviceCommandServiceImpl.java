@@ -18,18 +18,22 @@ import com.basiclab.iot.device.enums.device.DeviceCommandStatusEnum;
 import com.basiclab.iot.device.enums.device.DeviceCommandTypeEnum;
 import com.basiclab.iot.device.service.device.DeviceCommandService;
 import com.basiclab.iot.device.service.device.DeviceService;
+import com.basiclab.iot.device.service.device.fanout.DeviceCommandFanoutEngine;
 import com.basiclab.iot.sink.biz.IotDownstreamMessageApi;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * <p>
@@ -62,6 +66,12 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
     @Autowired
     private DeviceCommandMapper deviceCommandMapper;
 
+    @Autowired
+    private DeviceCommandFanoutEngine fanoutEngine;
+
+    @Resource(name = "linkAsync-command")
+    private Executor commandExecutor;
+
     @Override
     public int deleteByPrimaryKey(Long id) {
         return deviceCommandMapper.deleteByPrimaryKey(id);
@@ -122,16 +132,86 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
 
     /**
      * Processes both serial and parallel device command requests.
+     * <p>
+     * 下发到产品全部设备（deviceIdentification 为 ALL）的命令由 {@link DeviceCommandFanoutEngine} 分页、限流执行，
+     * 返回任务编号用于查询进度；串行命令中包含 ALL 时，整组命令在后台按顺序执行，保证先后顺序不变。
      *
      * @param commandWrapper wrapper containing both serial and parallel command requests
+     * @return 产品全部设备命令的任务编号列表
      */
     @Override
-    public void processDeviceCommands(DeviceCommandWrapperParam commandWrapper) {
+    public List<String> processDeviceCommands(DeviceCommandWrapperParam commandWrapper) {
+        List<String> jobIds = new ArrayList<>();
+
         // Process serial commands
-        Optional.ofNullable(commandWrapper.getSerial()).orElseGet(Collections::emptyList).forEach(this::processSingleCommand);
+        List<DeviceToGateWayVo> serial = Optional.ofNullable(commandWrapper.getSerial()).orElseGet(Collections::emptyList);
+        if (serial.stream().anyMatch(this::isFanoutCommand)) {
+            List<Runnable> steps = new ArrayList<>(serial.size());
+            for (DeviceToGateWayVo command : serial) {
+                if (isFanoutCommand(command)) {
+                    DeviceCommandFanoutJob job = createFanoutJob(command);
+                    jobIds.add(job.getJobId());
+                    steps.add(() -> fanoutEngine.execute(job, buildMessageBuilder(job.getRequest())));
+                } else {
+                    steps.add(() -> processSingleCommand(command));
+                }
+            }
+            commandExecutor.execute(() -> steps.forEach(Runnable::run));
+        } else {
+            serial.forEach(this::processSingleCommand);
+        }
 
         // Process parallel commands concurrently
-        Optional.ofNullable(commandWrapper.getParallel()).orElseGet(Collections::emptyList).parallelStream().forEach(this::processSingleCommand);
+        for (DeviceToGateWayVo command : Optional.ofNullable(commandWrapper.getParallel()).orElseGet(Collections::emptyList)) {
+            if (isFanoutCommand(command)) {
+                DeviceCommandFanoutJob job = createFanoutJob(command);
+                jobIds.add(job.getJobId());
+                fanoutEngine.submit(job, buildMessageBuilder(job.getRequest()));
+            } else {
+                commandExecutor.execute(() -> processSingleCommand(command));
+            }
+        }
+        return jobIds;
+    }
+
+    @Override
+    public DeviceCommandFanoutJob getCommandFanoutJob(String jobId) {
+        return fanoutEngine.getJob(jobId);
+    }
+
+    @Override
+    public DeviceCommandFanoutJob resumeCommandFanout(String jobId) {
+        DeviceCommandFanoutJob job = fanoutEngine.getJob(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("命令下发任务不存在或已过期: " + jobId);
+        }
+        if (DeviceCommandFanoutJob.STATUS_COMPLETED.equals(job.getStatus())) {
+            return job;
+        }
+        log.info("[resumeCommandFanout][从检查点继续下发，jobId: {}，lastDeviceId: {}，已发送: {}]",
+                jobId, job.getLastDeviceId(), job.getSentCount());
+        fanoutEngine.submit(job, buildMessageBuilder(job.getRequest()));
+        return job;
+    }
+
+    private boolean isFanoutCommand(DeviceToGateWayVo command) {
+        return command.getCommandIssueRequestParamVo() != null
+                && Constants.ALL.equals(command.getCommandIssueRequestParamVo().getDeviceIdentification());
+    }
+
+    private DeviceCommandFanoutJob createFanoutJob(DeviceToGateWayVo command) {
+        return fanoutEngine.create(new DeviceCommandFanoutJob()
+                .setProductIdentification(command.getCommandIssueRequestParamVo().getProductIdentification())
+                .setRequest(command));
+    }
+
+    /**
+     * 构建任务使用的消息构建函数，每个任务使用自己的请求对象，避免多个任务共享同一个可变的请求参数
+     */
+    private Function<DeviceResultVO, IotDeviceMessage> buildMessageBuilder(DeviceToGateWayVo command) {
+        CommandIssueRequestParam commandRequest = command.getCommandIssueRequestParamVo();
+        ExtendInfoVo extendInfo = command.getExtendInfo();
+        return deviceResultVO -> buildDeviceMessage(deviceResultVO, commandRequest, extendInfo);
     }
 
     /**
@@ -160,25 +240,16 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
     }
 
     /**
-     * Processes a single command request for a device or all devices.
+     * Processes a single command request for a single device.
      *
      * @param deviceToGateWayVo The command request parameters.
      */
-    @Async("linkAsync-command")
     protected void processSingleCommand(DeviceToGateWayVo deviceToGateWayVo) {
         CommandIssueRequestParam commandRequest = deviceToGateWayVo.getCommandIssueRequestParamVo();
-        String productIdentification = commandRequest.getProductIdentification();
-        String deviceIdentification = commandRequest.getDeviceIdentification();
         ExtendInfoVo extendInfo = deviceToGateWayVo.getExtendInfo();
-        List<DeviceResultVO> deviceResultVOList;
 
-        if (Constants.ALL.equals(deviceIdentification)) {
-            // 获取所有设备的结果列表
-            deviceResultVOList = getAllDeviceResultVOs(productIdentification);
-        } else {
-            // 获取单个设备的结果列表
-            deviceResultVOList = getSingleDeviceResultVO(deviceIdentification);
-        }
+        // 获取单个设备的结果列表
+        List<DeviceResultVO> deviceResultVOList = getSingleDeviceResultVO(commandRequest.getDeviceIdentification());
 
         // Process each device command.
         deviceResultVOList.forEach(deviceResultVO -> {
@@ -187,17 +258,6 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
         });
     }
 
-    /**
-     * Retrieves a list of all device result value objects for a specific product.
-     *
-     * @param productIdentification a product identification string used to find devices.
-     * @return A list of DeviceResultVO objects, each representing a device linked to the product.
-     */
-    private List<DeviceResultVO> getAllDeviceResultVOs(String productIdentification) {
-        List<Device> allByProductIdentification = deviceService.findAllByProductIdentification(productIdentification);
-        return BeanPlusUtil.copyToList(allByProductIdentification, DeviceResultVO.class);
-    }
-
     /**
      * Retrieves the device result value object for a single device.
      *
@@ -256,6 +316,32 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
      * @return The response from the MQTT broker.
      */
     private R buildAndSendMessage(DeviceResultVO deviceResultVO, CommandIssueRequestParam commandRequest, ExtendInfoVo extendInfo) {
+        try {
+            IotDeviceMessage deviceMessage = buildDeviceMessage(deviceResultVO, commandRequest, extendInfo);
+
+            // 发送下行消息
+            if (iotDownstreamMessageApi != null) {
+                iotDownstreamMessageApi.sendDownstreamMessage(deviceMessage);
+                return R.ok(null, "消息发送成功");
+            } else {
+                log.warn("IotDownstreamMessageApi 不存在，无法发送消息");
+                return R.fail("消息发送失败: IotDownstreamMessageApi 未配置");
+            }
+        } catch (Exception e) {
+            log.error("Failed to send message using IotDownstreamMessageApi", e);
+            return R.fail("消息发送失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the downstream command message for the device.
+     *
+     * @param deviceResultVO The device result value object.
+     * @param commandRequest The command issue request parameters.
+     * @param extendInfo     The extend info.
+     * @return The downstream device message.
+     */
+    private IotDeviceMessage buildDeviceMessage(DeviceResultVO deviceResultVO, CommandIssueRequestParam commandRequest, ExtendInfoVo extendInfo) {
 
         // Build the encryption details if all necessary information is present
         //验证标识在产品中设置 考虑签名密钥  不考虑加密密钥
@@ -288,29 +374,14 @@ public class DeviceCommandServiceImpl implements DeviceCommandService {
             return "{}";
         });
 
-        // Send the constructed message using IotDownstreamMessageApi
-        try {
-            // 构建 IotDeviceMessage
-            // 注意：IotDeviceMessage 的 params 字段类型是 Object，可以直接传入 JSON 字符串解析后的对象
-            Object params = JSONUtil.parse(messageContent);
-            IotDeviceMessage deviceMessage = IotDeviceMessage.builder()
-                    .deviceId(deviceResultVO.getId())
-                    .topic(ConsumerTopicConstant.Mqtt.IOT_MQS_MQTT_MSG)
-                    .params(params)
-                    .build();
-
-            // 发送下行消息
-            if (iotDownstreamMessageApi != null) {
-                iotDownstreamMessageApi.sendDownstreamMessage(deviceMessage);
-                return R.ok(null, "消息发送成功");
-            } else {
-                log.warn("IotDownstreamMessageApi 不存在，无法发送消息");
-                return R.fail("消息发送失败: IotDownstreamMessageApi 未配置");
-            }
-        } catch (Exception e) {
-            log.error("Failed to send message using IotDownstreamMessageApi", e);
-            return R.fail("消息发送失败: " + e.getMessage());
-        }
+        // 构建 IotDeviceMessage
+        // 注意：IotDeviceMessage 的 params 字段类型是 Object，可以直接传入 JSON 字符串解析后的对象
+        Object params = JSONUtil.parse(messageContent);
+        return IotDeviceMessage.builder()
+                .deviceId(deviceResultVO.getId())
+                .topic(ConsumerTopicConstant.Mqtt.IOT_MQS_MQTT_MSG)
+                .params(params)
+                .build();
     }
 
 
@@ -32,6 +32,7 @@ import com.basiclab.iot.device.enums.device.MqttProtocolTopoStatusEnum;
 import com.basiclab.iot.device.hooks.BaseHook;
 import com.basiclab.iot.device.hooks.ConnectedHook;
 import com.basiclab.iot.device.hooks.DisconnectedHook;
+import com.basiclab.iot.device.messagebus.DeviceChangePublisher;
 import com.basiclab.iot.device.service.device.DeviceLocationService;
 import com.basiclab.iot.device.service.device.DeviceService;
 import com.basiclab.iot.device.service.device.DeviceTopicService;
@@ -43,7 +44,7 @@ import com.basiclab.iot.sink.biz.IotDownstreamMessageApi;
 import com.basiclab.iot.sink.enums.IotDeviceMessageMethodEnum;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import com.basiclab.iot.tdengine.RemoteTdEngineService;
-import com.basiclab.iot.tdengine.domain.SelectDto;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
@@ -87,6 +88,8 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
     private DeviceMapper deviceMapper;
     @Resource
     private RedisService redisService;
+    @Resource
+    private DeviceChangePublisher deviceChangePublisher;
     @Autowired(required = false)
     private IotDownstreamMessageApi iotDownstreamMessageApi;
     @Resource
@@ -133,7 +136,11 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
 
     @Override
     public int deleteByPrimaryKey(Long id) {
-        return deviceMapper.deleteByPrimaryKey(id);
+        List<Device> devices = deviceMapper.selectBatchIds(Collections.singletonList(id));
+        int count = deviceMapper.deleteByPrimaryKey(id);
+        evictDeviceCache(devices);
+        deviceChangePublisher.publishDelete(Collections.singletonList(id));
+        return count;
     }
 
     @Override
@@ -170,23 +177,40 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
     @Override
     public int updateByPrimaryKeySelective(Device record) {
         record.setUpdateBy("admin");
-        return deviceMapper.updateByPrimaryKeySelective(record);
+        record.setUpdateTime(LocalDateTime.now());
+        int count = deviceMapper.updateByPrimaryKeySelective(record);
+        deviceChangePublisher.publishUpdate(Collections.singletonList(record.getId()));
+        return count;
     }
 
     @Override
     public int updateByPrimaryKey(Device record) {
         record.setUpdateBy("admin");
-        return deviceMapper.updateByPrimaryKey(record);
+        record.setUpdateTime(LocalDateTime.now());
+        int count = deviceMapper.updateByPrimaryKey(record);
+        deviceChangePublisher.publishUpdate(Collections.singletonList(record.getId()));
+        return count;
     }
 
     @Override
     public int updateBatch(List<Device> list) {
-        return deviceMapper.updateBatch(list);
+        touchUpdateTime(list);
+        int count = deviceMapper.updateBatch(list);
+        deviceChangePublisher.publishUpdate(list.stream().map(Device::getId).collect(Collectors.toList()));
+        return count;
     }
 
     @Override
     public int updateBatchSelective(List<Device> list) {
-        return deviceMapper.updateBatchSelective(list);
+        touchUpdateTime(list);
+        int count = deviceMapper.updateBatchSelective(list);
+        deviceChangePublisher.publishUpdate(list.stream().map(Device::getId).collect(Collectors.toList()));
+        return count;
+    }
+
+    private static void touchUpdateTime(List<Device> list) {
+        LocalDateTime now = LocalDateTime.now();
+        list.forEach(device -> device.setUpdateTime(now));
     }
 
     @Override
@@ -501,12 +525,18 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
             BeanUtils.copyProperties(deviceParams.getDeviceLocation(), deviceLocation);
             deviceLocationService.insertOrUpdateSelective(deviceLocation);
         }*/
-        return deviceMapper.updateDevice(device);
+        // 修改时间以服务端为准，设备缓存的增量刷新按 update_time 查找修改过的设备
+        device.setUpdateTime(LocalDateTime.now());
+        int count = deviceMapper.updateDevice(device);
+        deviceChangePublisher.publishUpdate(Collections.singletonList(device.getId()));
+        return count;
     }
 
     @Override
     public void updateDeviceBySys(Device device) {
+        device.setUpdateTime(LocalDateTime.now());
         deviceMapper.updateDeviceBySys(device);
+        deviceChangePublisher.publishUpdate(Collections.singletonList(device.getId()));
     }
 
     /**
@@ -517,7 +547,11 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
      */
     @Override
     public int deleteDeviceByIds(Long[] ids) {
-        return deviceMapper.deleteDeviceByIds(ids);
+        List<Device> devices = deviceMapper.selectBatchIds(Arrays.asList(ids));
+        int count = deviceMapper.deleteDeviceByIds(ids);
+        evictDeviceCache(devices);
+        deviceChangePublisher.publishDelete(Arrays.asList(ids));
+        return count;
     }
 
     /**
@@ -528,7 +562,29 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
      */
     @Override
     public int deleteDeviceById(Long id) {
-        return deviceMapper.deleteDeviceById(id);
+        List<Device> devices = deviceMapper.selectBatchIds(Collections.singletonList(id));
+        int count = deviceMapper.deleteDeviceById(id);
+        evictDeviceCache(devices);
+        deviceChangePublisher.publishDelete(Collections.singletonList(id));
+        return count;
+    }
+
+    /**
+     * 删除已删除设备的缓存：设备缓存的增量刷新查询不到已删除的设备
+     *
+     * @param devices 已删除的设备
+     */
+    private void evictDeviceCache(List<Device> devices) {
+        List<String> keys = new ArrayList<>(devices.size() * 2);
+        for (Device device : devices) {
+            keys.add(CacheConstants.DEF_DEVICE + device.getDeviceIdentification());
+            if (device.getClientId() != null) {
+                keys.add(CacheConstants.DEF_DEVICE + device.getClientId());
+            }
+        }
+        if (!keys.isEmpty()) {
+            redisService.delete(keys);
+        }
     }
 
     @Override
@@ -687,50 +743,57 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device> impleme
             log.error("查询普通设备影子数据失败，普通设备不存在");
             return null;
         }
-        Map<String, List<Map<String, Object>>> map = new HashMap<>();
-        devices.forEach(device -> {
-            Product product = productService.selectByProductIdentification(device.getProductIdentification());
+        Long startMillis = null;
+        Long endMillis = null;
+        if (StringUtils.isNotEmpty(startTime) && StringUtils.isNotEmpty(endTime)) {
+            startMillis = DateUtils.localDateTime2Millis(DateUtils.dateToLocalDateTime(DateUtils.strToDate(startTime)));
+            endMillis = DateUtils.localDateTime2Millis(DateUtils.dateToLocalDateTime(DateUtils.strToDate(endTime)));
+        }
+
+        // 同一产品的设备共用产品及服务信息，每个产品只查询一次；按超级表合并子表，每个超级表只查询一次
+        Map<String, Optional<Product>> products = new HashMap<>();
+        Map<String, List<ProductServices>> productServices = new HashMap<>();
+        Map<String, SubTablesSelectDTO> selects = new LinkedHashMap<>();
+        for (Device device : devices) {
+            Product product = products.computeIfAbsent(device.getProductIdentification(),
+                    key -> Optional.ofNullable(productService.selectByProductIdentification(key))).orElse(null);
             if (StringUtils.isNull(product)) {
                 log.error("查询普通设备影子数据失败，设备对应的产品不存在");
-                return;
+                continue;
             }
-            List<ProductServices> productServicesLis = productServicesService.findAllByProductIdentificationIdAndStatus(product.getProductIdentification(), Constants.ENABLE);
+            List<ProductServices> productServicesLis = productServices.computeIfAbsent(product.getProductIdentification(),
+                    key -> productServicesService.findAllByProductIdentificationIdAndStatus(key, Constants.ENABLE));
             if (StringUtils.isNull(productServicesLis)) {
                 log.error("查询普通设备影子数据失败，普通设备services不存在");
-                return;
+                continue;
             }
-            productServicesLis.forEach(productServices -> {
-                String superTableName = TdUtils.getSuperTableName(product.getProductType(), product.getProductIdentification(), productServices.getServiceCode());
-                String shadowTableName = TdUtils.getSubTableName(superTableName, device.getDeviceIdentification());
-                SelectDto selectDto = new SelectDto();
-                selectDto.setDataBaseName(dataBaseName);
-                selectDto.setTableName(shadowTableName);
-                if (StringUtils.isNotEmpty(startTime) && StringUtils.isNotEmpty(endTime)) {
-                    selectDto.setFieldName("ts");
-                    selectDto.setStartTime(DateUtils.localDateTime2Millis(DateUtils.dateToLocalDateTime(DateUtils.strToDate(startTime))));
-                    selectDto.setEndTime(DateUtils.localDateTime2Millis(DateUtils.dateToLocalDateTime(DateUtils.strToDate(endTime))));
-                    R<?> dataByTimestamp = remoteTdEngineService.getDataByTimestamp(selectDto);
-                    if (StringUtils.isNull(dataByTimestamp)) {
-                        log.error("查询普通设备影子数据失败，普通设备影子数据不存在");
-                    } else {
-                        map.put(shadowTableName, (List<Map<String, Object>>) dataByTimestamp.getData());
-                        log.info("查询普通设备影子数据成功，普通设备影子数据：{}", dataByTimestamp.getData());
-
-                    }
-                } else {
-                    R<?> lastData = remoteTdEngineService.getLastData(selectDto);
-                    if (StringUtils.isNull(lastData)) {
-                        log.error("查询普通设备影子数据失败，普通设备影子数据不存在");
-                    } else {
-                        map.put(shadowTableName, (List<Map<String, Object>>) lastData.getData());
-                        log.info("查询普通设备影子数据成功，普通设备影子数据：{}", lastData.getData());
-
-                    }
-                }
+            for (ProductServices services : productServicesLis) {
+                String superTableName = TdUtils.getSuperTableName(product.getProductType(), product.getProductIdentification(), services.getServiceCode());
+                SubTablesSelectDTO selectDTO = selects.computeIfAbsent(superTableName, key -> {
+                    SubTablesSelectDTO dto = new SubTablesSelectDTO();
+                    dto.setDataBaseName(dataBaseName);
+                    dto.setSuperTableName(key);
+                    dto.setSubTableNames(new ArrayList<>());
+                    return dto;
+                });
+                selectDTO.getSubTableNames().add(TdUtils.getSubTableName(superTableName, device.getDeviceIdentification()));
+            }
+        }
+        if (selects.isEmpty()) {
+            return new HashMap<>();
+        }
+        for (SubTablesSelectDTO selectDTO : selects.values()) {
+            selectDTO.setStartTime(startMillis);
+            selectDTO.setEndTime(endMillis);
+        }
 
-            });
-        });
-        return map;
+        R<Map<String, List<Map<String, Object>>>> shadowData = remoteTdEngineService.getDataBySubTables(new ArrayList<>(selects.values()));
+        if (StringUtils.isNull(shadowData) || StringUtils.isNull(shadowData.getData())) {
+            log.error("查询普通设备影子数据失败，普通设备影子数据不存在");
+            return new HashMap<>();
+        }
+        log.info("查询普通设备影子数据成功，超级表数：{}，影子表数：{}", selects.size(), shadowData.getData().size());
+        return shadowData.getData();
     }
 
 
@@ -0,0 +1,191 @@
+package com.basiclab.iot.device.cache.service;
+
+import com.basiclab.iot.common.constant.CacheConstants;
+import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.device.dal.pgsql.device.DeviceMapper;
+import com.basiclab.iot.device.domain.device.vo.Device;
+import com.basiclab.iot.device.messagebus.DeviceChangePublisher;
+import com.basiclab.iot.device.service.device.DeviceInfoService;
+import com.basiclab.iot.device.service.device.impl.DeviceServiceImpl;
+import com.basiclab.iot.device.service.product.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DeviceCacheService} 增量刷新的单元测试：通过设备编辑接口修改的设备能被下一次增量刷新查到
+ * <p>
+ * 设备表由内存 Map 模拟，selectPageAfterId 按与 SQL 相同的条件（id &gt; lastId and update_time &gt;= updateTimeFrom）过滤
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceCacheServiceTest {
+
+    private final Map<Long, Device> table = new TreeMap<>();
+
+    /**
+     * 最近一次刷新写入缓存的键
+     */
+    private final Set<String> cachedKeys = new HashSet<>();
+
+    private DeviceServiceImpl deviceService;
+
+    private DeviceCacheService deviceCacheService;
+
+    private DeviceMapper deviceMapper;
+
+    private RedisService redisService;
+
+    @BeforeEach
+    public void setUp() {
+        // 设备的修改时间早于本次测试
+        LocalDateTime createTime = LocalDateTime.now().minusDays(1);
+        for (long id = 1; id <= 5; id++) {
+            Device device = new Device().setId(id).setDeviceIdentification("d" + id);
+            device.setUpdateTime(createTime);
+            table.put(id, device);
+        }
+
+        deviceMapper = mock(DeviceMapper.class);
+        when(deviceMapper.selectPageAfterId(nullable(Long.class), nullable(LocalDateTime.class), anyInt()))
+                .thenAnswer(invocation -> {
+                    Long lastId = invocation.getArgument(0);
+                    LocalDateTime updateTimeFrom = invocation.getArgument(1);
+                    int limit = invocation.getArgument(2);
+                    List<Device> devices = new ArrayList<>();
+                    for (Device device : table.values()) {
+                        if ((lastId == null || device.getId() > lastId)
+                                && (updateTimeFrom == null || !device.getUpdateTime().isBefore(updateTimeFrom))
+                                && devices.size() < limit) {
+                            devices.add(device);
+                        }
+                    }
+                    return devices;
+                });
+        // 与 updateDevice 语句一致：update_time = #{updateTime}
+        when(deviceMapper.updateDevice(any(Device.class))).thenAnswer(invocation -> {
+            Device update = invocation.getArgument(0);
+            table.get(update.getId()).setUpdateTime(update.getUpdateTime());
+            return 1;
+        });
+
+        redisService = mock(RedisService.class);
+        doAnswer(invocation -> cachedKeys.addAll(invocation.<Map<String, ?>>getArgument(0).keySet()))
+                .when(redisService).setCacheObjects(anyMap(), anyLong(), any(TimeUnit.class));
+
+        deviceService = new DeviceServiceImpl();
+        ReflectionTestUtils.setField(deviceService, "deviceMapper", deviceMapper);
+        ReflectionTestUtils.setField(deviceService, "deviceChangePublisher", mock(DeviceChangePublisher.class));
+
+        deviceCacheService = new DeviceCacheService(redisService, deviceService, mock(DeviceInfoService.class),
+                mock(ProductService.class), deviceMapper);
+        ReflectionTestUtils.setField(deviceCacheService, "warmupPageSize", 2);
+        ReflectionTestUtils.setField(deviceCacheService, "warmupParallelism", 2);
+        ReflectionTestUtils.setField(deviceCacheService, "refreshIntervalSeconds", 0L);
+        ReflectionTestUtils.setField(deviceCacheService, "fullRefreshIntervalMinutes", 20L);
+        ReflectionTestUtils.setField(deviceCacheService, "refreshOverlapSeconds", 30L);
+        ReflectionTestUtils.setField(deviceCacheService, "refreshLockSeconds", 600L);
+        deviceCacheService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        deviceCacheService.destroy();
+    }
+
+    @Test
+    public void testRefreshChangedDeviceCache_editedDevice() throws Exception {
+        assertEquals(5, deviceCacheService.refreshDeviceCache(null));
+        cachedKeys.clear();
+
+        // 编辑请求不带修改时间，或带着查询时拿到的旧修改时间
+        deviceService.updateDevice(new Device().setId(2L));
+        Device edited = new Device().setId(4L);
+        edited.setUpdateTime(LocalDateTime.now().minusDays(1));
+        deviceService.updateDevice(edited);
+
+        deviceCacheService.refreshChangedDeviceCache();
+        Set<String> expected = new HashSet<>();
+        expected.add(CacheConstants.DEF_DEVICE + "d2");
+        expected.add(CacheConstants.DEF_DEVICE + "d4");
+        assertEquals(expected, cachedKeys);
+    }
+
+    @Test
+    public void testRefreshChangedDeviceCache_noChange() {
+        deviceCacheService.refreshDeviceCache(null);
+        cachedKeys.clear();
+
+        deviceCacheService.refreshChangedDeviceCache();
+        assertEquals(new HashSet<>(), cachedKeys);
+    }
+
+    @Test
+    public void testRefreshChangedDeviceCache_lateCommittedEdit() {
+        LocalDateTime editTime = LocalDateTime.now();
+        deviceCacheService.refreshDeviceCache(null);
+        cachedKeys.clear();
+
+        // 修改在刷新开始前写入 update_time，但事务在刷新查询之后才提交
+        table.get(3L).setUpdateTime(editTime);
+
+        deviceCacheService.refreshChangedDeviceCache();
+        assertEquals(Collections.singleton(CacheConstants.DEF_DEVICE + "d3"), cachedKeys);
+    }
+
+    @Test
+    public void testScheduledRefresh_skippedWhenLockHeldByOtherInstance() {
+        when(redisService.setIfAbsent(eq("iot_device_cache:refresh_lock"), anyString(), eq(600L), eq(TimeUnit.SECONDS)))
+                .thenReturn(false);
+
+        ReflectionTestUtils.invokeMethod(deviceCacheService, "scheduledRefresh");
+
+        verify(deviceMapper, never()).selectPageAfterId(nullable(Long.class), nullable(LocalDateTime.class), anyInt());
+        verify(redisService, never()).releaseDistributedLock(anyString(), anyString());
+    }
+
+    @Test
+    public void testScheduledRefresh_usesWatermarkOfOtherInstanceAndReleasesLock() {
+        ArgumentCaptor<String> lockToken = ArgumentCaptor.forClass(String.class);
+        when(redisService.setIfAbsent(eq("iot_device_cache:refresh_lock"), lockToken.capture(), eq(600L), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        // 其他实例刚完成全量刷新，本实例只需增量刷新
+        LocalDateTime otherRefreshTime = LocalDateTime.now().minusSeconds(30);
+        when(redisService.get("iot_device_cache:last_refresh_time")).thenReturn(otherRefreshTime.toString());
+        when(redisService.get("iot_device_cache:last_full_refresh_time")).thenReturn(otherRefreshTime.toString());
+
+        ReflectionTestUtils.invokeMethod(deviceCacheService, "scheduledRefresh");
+
+        verify(deviceMapper).selectPageAfterId(null, otherRefreshTime, 2);
+        verify(redisService).releaseDistributedLock("iot_device_cache:refresh_lock", lockToken.getValue());
+    }
+
+}
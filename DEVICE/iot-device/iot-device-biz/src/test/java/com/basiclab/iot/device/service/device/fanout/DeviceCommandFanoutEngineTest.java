@@ -0,0 +1,196 @@
+package com.basiclab.iot.device.service.device.fanout;
+
+import cn.hutool.json.JSONUtil;
+import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.device.dal.pgsql.device.DeviceMapper;
+import com.basiclab.iot.device.domain.device.vo.Device;
+import com.basiclab.iot.device.domain.device.vo.DeviceCommandFanoutJob;
+import com.basiclab.iot.device.domain.device.vo.DeviceResultVO;
+import com.basiclab.iot.device.service.product.ProductService;
+import com.basiclab.iot.sink.biz.IotDownstreamMessageApi;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DeviceCommandFanoutEngine} 的单元测试：从检查点继续、执行锁丢失后停止下发且不覆盖新持有者的锁和检查点
+ * <p>
+ * Redis 由内存 Map 模拟，续期和释放锁按令牌比较，与 Lua 脚本的语义一致
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceCommandFanoutEngineTest {
+
+    private static final String PRODUCT = "p";
+
+    private static final int DEVICE_COUNT = 10;
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+    /**
+     * 每次 sendDownstreamMessages 发送的设备 ID
+     */
+    private final List<List<Long>> sent = new ArrayList<>();
+
+    private final Function<DeviceResultVO, IotDeviceMessage> messageBuilder =
+            device -> IotDeviceMessage.builder().deviceId(device.getId()).build();
+
+    private IotDownstreamMessageApi downstreamMessageApi;
+
+    private DeviceCommandFanoutEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        RedisService redisService = mock(RedisService.class);
+        when(redisService.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(redisService.renewDistributedLock(anyString(), anyString(), anyLong()))
+                .thenAnswer(invocation -> invocation.getArgument(1).equals(redis.get(invocation.<String>getArgument(0))));
+        when(redisService.releaseDistributedLock(anyString(), anyString()))
+                .thenAnswer(invocation -> redis.remove(invocation.getArgument(0), invocation.getArgument(1)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(redisService).setCacheObject(anyString(), any(), anyLong(), any(TimeUnit.class));
+        when(redisService.getCacheObject(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+
+        // 产品下有 ID 为 1..DEVICE_COUNT 的设备
+        DeviceMapper deviceMapper = mock(DeviceMapper.class);
+        when(deviceMapper.selectPageByProductIdentificationAfterId(eq(PRODUCT), nullable(Long.class), anyInt()))
+                .thenAnswer(invocation -> {
+                    Long lastId = invocation.getArgument(1);
+                    int limit = invocation.getArgument(2);
+                    List<Device> devices = new ArrayList<>();
+                    for (long id = lastId == null ? 1 : lastId + 1; id <= DEVICE_COUNT && devices.size() < limit; id++) {
+                        devices.add(new Device().setId(id));
+                    }
+                    return devices;
+                });
+
+        downstreamMessageApi = mock(IotDownstreamMessageApi.class);
+
+        engine = new DeviceCommandFanoutEngine();
+        ReflectionTestUtils.setField(engine, "deviceMapper", deviceMapper);
+        ReflectionTestUtils.setField(engine, "productService", mock(ProductService.class));
+        ReflectionTestUtils.setField(engine, "redisService", redisService);
+        ReflectionTestUtils.setField(engine, "iotDownstreamMessageApi", downstreamMessageApi);
+        ReflectionTestUtils.setField(engine, "pageSize", 4);
+        // 每次申请 2 个令牌，一页分两批发送
+        ReflectionTestUtils.setField(engine, "ratePerSecond", 20.0);
+        ReflectionTestUtils.setField(engine, "threads", 1);
+        engine.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.destroy();
+    }
+
+    @Test
+    public void testExecute_resumeFromCheckpoint() {
+        // 第一次运行：发送到设备 5 时失败
+        AtomicBoolean failed = new AtomicBoolean(false);
+        doAnswer(invocation -> {
+            List<Long> deviceIds = deviceIds(invocation.getArgument(0));
+            if (deviceIds.contains(5L) && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("bus unavailable");
+            }
+            sent.add(deviceIds);
+            return null;
+        }).when(downstreamMessageApi).sendDownstreamMessages(any());
+        DeviceCommandFanoutJob job = engine.create(new DeviceCommandFanoutJob().setProductIdentification(PRODUCT));
+
+        assertFalse(engine.execute(job, messageBuilder));
+        DeviceCommandFanoutJob checkpoint = engine.getJob(job.getJobId());
+        assertEquals(DeviceCommandFanoutJob.STATUS_FAILED, checkpoint.getStatus());
+        assertEquals(4L, checkpoint.getLastDeviceId());
+        assertEquals(4L, checkpoint.getSentCount());
+        assertNull(redis.get(lockKey(job)), "结束后应释放执行锁");
+
+        // 第二次运行：从检查点继续，每台设备只发送一次
+        assertTrue(engine.execute(checkpoint, messageBuilder));
+        List<Long> all = new ArrayList<>();
+        sent.forEach(all::addAll);
+        List<Long> expected = new ArrayList<>();
+        for (long id = 1; id <= DEVICE_COUNT; id++) {
+            expected.add(id);
+        }
+        assertEquals(expected, all);
+        checkpoint = engine.getJob(job.getJobId());
+        assertEquals(DeviceCommandFanoutJob.STATUS_COMPLETED, checkpoint.getStatus());
+        assertEquals((long) DEVICE_COUNT, checkpoint.getSentCount());
+        assertEquals((long) DEVICE_COUNT, checkpoint.getLastDeviceId());
+        assertNull(redis.get(lockKey(job)));
+    }
+
+    @Test
+    public void testExecute_lockLost() {
+        DeviceCommandFanoutJob job = engine.create(new DeviceCommandFanoutJob().setProductIdentification(PRODUCT));
+        String jobKey = "iot_device_command_fanout:job:" + job.getJobId();
+        // 发送第一批时锁过期，被其他实例获取并写入了自己的检查点
+        String otherCheckpoint = JSONUtil.toJsonStr(new DeviceCommandFanoutJob().setJobId(job.getJobId())
+                .setStatus(DeviceCommandFanoutJob.STATUS_RUNNING).setLastDeviceId(0L));
+        doAnswer(invocation -> {
+            sent.add(deviceIds(invocation.getArgument(0)));
+            redis.put(lockKey(job), "other-owner");
+            redis.put(jobKey, otherCheckpoint);
+            return null;
+        }).when(downstreamMessageApi).sendDownstreamMessages(any());
+
+        assertFalse(engine.execute(job, messageBuilder));
+
+        // 锁丢失后不再发送，也不覆盖新持有者的锁和检查点
+        assertEquals(1, sent.size());
+        assertEquals("other-owner", redis.get(lockKey(job)));
+        assertEquals(otherCheckpoint, redis.get(jobKey));
+    }
+
+    @Test
+    public void testExecute_lockHeldByOther() {
+        DeviceCommandFanoutJob job = engine.create(new DeviceCommandFanoutJob().setProductIdentification(PRODUCT));
+        redis.put(lockKey(job), "other-owner");
+
+        assertFalse(engine.execute(job, messageBuilder));
+
+        assertTrue(sent.isEmpty());
+        assertEquals("other-owner", redis.get(lockKey(job)));
+        assertEquals(DeviceCommandFanoutJob.STATUS_PENDING, engine.getJob(job.getJobId()).getStatus());
+    }
+
+    private static String lockKey(DeviceCommandFanoutJob job) {
+        return "iot_device_command_fanout:lock:" + job.getJobId();
+    }
+
+    private static List<Long> deviceIds(List<IotDeviceMessage> messages) {
+        List<Long> deviceIds = new ArrayList<>(messages.size());
+        for (IotDeviceMessage message : messages) {
+            deviceIds.add(message.getDeviceId());
+        }
+        return deviceIds;
+    }
+
+}
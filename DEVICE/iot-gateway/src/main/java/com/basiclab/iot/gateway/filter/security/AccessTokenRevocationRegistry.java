@@ -0,0 +1,186 @@
+package com.basiclab.iot.gateway.filter.security;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.system.api.oauth2.OAuth2TokenApi;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.Redisson;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.redisson.config.Config;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 访问令牌移除记录
+ *
+ * 订阅 system 服务广播的 {@link OAuth2TokenApi#CHANNEL_ACCESS_TOKEN_REVOKE} 消息，记录被移除的访问令牌直到其过期，
+ * 并通知监听者失效本地缓存。自包含令牌在网关本地校验，只能依靠这里的记录感知退出登录等移除操作。
+ *
+ * 广播不会重发，因此启动时以及断线重连后重新订阅时，从 {@link OAuth2TokenApi#REVOKED_ACCESS_TOKENS_KEY} 加载
+ * 尚未过期的移除记录，补上期间错过的广播。
+ *
+ * 注意：未开启时不连接 Redis，访问令牌的移除只能等本地缓存到期后感知；自包含令牌在过期前仍然有效。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class AccessTokenRevocationRegistry {
+
+    @Value("${iot.gateway.token.revocation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${iot.gateway.token.revocation.redis-address:redis://127.0.0.1:6379}")
+    private String redisAddress;
+
+    @Value("${iot.gateway.token.revocation.redis-password:}")
+    private String redisPassword;
+
+    @Value("${iot.gateway.token.revocation.redis-database:0}")
+    private int redisDatabase;
+
+    /**
+     * 被移除的访问令牌 → 过期时间（毫秒时间戳）
+     */
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private RedissonClient redissonClient;
+
+    private ScheduledExecutorService purger;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("[init][未开启访问令牌移除广播的订阅]");
+            return;
+        }
+        Config config = new Config();
+        config.useSingleServer().setAddress(redisAddress).setDatabase(redisDatabase)
+                .setPassword(StrUtil.emptyToNull(redisPassword));
+        redissonClient = Redisson.create(config);
+        RTopic topic = redissonClient.getTopic(OAuth2TokenApi.CHANNEL_ACCESS_TOKEN_REVOKE, StringCodec.INSTANCE);
+        topic.addListener(String.class, (channel, message) -> onMessage(message));
+        // 断线重连后 Redisson 会重新订阅，期间的广播已丢失，重新加载移除记录
+        topic.addListener(new BaseStatusListener() {
+
+            @Override
+            public void onSubscribe(String channel) {
+                loadRevokedTokens();
+            }
+
+        });
+        loadRevokedTokens();
+
+        purger = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("token-revocation-purger-", true));
+        purger.scheduleWithFixedDelay(this::purgeExpired, 1, 1, TimeUnit.MINUTES);
+        log.info("[init][已订阅访问令牌移除广播，Redis: {}]", redisAddress);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+        if (redissonClient != null) {
+            redissonClient.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 添加移除监听者，用于失效本地缓存
+     *
+     * @param listener 参数为被移除的访问令牌
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 访问令牌是否已被移除
+     *
+     * @param token 访问令牌
+     * @return 是否已被移除
+     */
+    public boolean isRevoked(String token) {
+        Long expiresTime = revokedTokens.get(token);
+        return expiresTime != null && expiresTime > System.currentTimeMillis();
+    }
+
+    private void onMessage(String message) {
+        try {
+            JsonNode node = JsonUtils.parseTree(message);
+            // system 服务通过 RedisTemplate 的 JSON 序列化发送，消息体是 JSON 字符串包裹的消息 JSON，需要再解析一次
+            if (node.isTextual()) {
+                node = JsonUtils.parseTree(node.asText());
+            }
+            String accessToken = node.path("accessToken").asText(null);
+            if (StrUtil.isEmpty(accessToken)) {
+                return;
+            }
+            long expiresTime = node.path("expiresTime").asLong(0);
+            if (expiresTime > System.currentTimeMillis()) {
+                revokedTokens.put(accessToken, expiresTime);
+            }
+            listeners.forEach(listener -> listener.accept(accessToken));
+        } catch (Exception e) {
+            // 消息中包含访问令牌，不打印内容
+            log.error("[onMessage][处理访问令牌移除消息失败]", e);
+        }
+    }
+
+    /**
+     * 从 Redis 加载尚未过期的移除记录，新发现的令牌通知监听者失效本地缓存
+     */
+    private void loadRevokedTokens() {
+        try {
+            long now = System.currentTimeMillis();
+            Collection<ScoredEntry<String>> entries = redissonClient.<String>getScoredSortedSet(
+                    OAuth2TokenApi.REVOKED_ACCESS_TOKENS_KEY, StringCodec.INSTANCE)
+                    .entryRange(now, false, Double.POSITIVE_INFINITY, true);
+            int added = 0;
+            for (ScoredEntry<String> entry : entries) {
+                String accessToken = entry.getValue();
+                if (revokedTokens.put(accessToken, entry.getScore().longValue()) == null) {
+                    listeners.forEach(listener -> listener.accept(accessToken));
+                    added++;
+                }
+            }
+            log.info("[loadRevokedTokens][加载访问令牌移除记录，总数: {}，新增: {}]", entries.size(), added);
+        } catch (Exception e) {
+            // 加载失败时仍可接收之后的广播，下次重新订阅时再加载
+            log.error("[loadRevokedTokens][加载访问令牌移除记录失败]", e);
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresTime -> expiresTime <= now);
+    }
+
+}
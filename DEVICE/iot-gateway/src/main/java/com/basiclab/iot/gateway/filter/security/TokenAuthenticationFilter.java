@@ -8,11 +8,18 @@ import com.basiclab.iot.common.exception.GlobalErrorStatus;
 import com.basiclab.iot.common.utils.json.JsonUtils;
 import com.basiclab.iot.gateway.util.SecurityFrameworkUtils;
 import com.basiclab.iot.gateway.util.WebFrameworkUtils;
+import com.basiclab.iot.system.api.oauth2.OAuth2SignedAccessTokenUtils;
 import com.basiclab.iot.system.api.oauth2.OAuth2TokenApi;
 import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenCheckRespDTO;
+import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenClaimsDTO;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
@@ -27,22 +34,27 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
-
-import static com.basiclab.iot.common.utils.cache.CacheUtils.buildAsyncReloadingCache;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Token 过滤器，验证 token 的有效性
  * 1. 验证通过时，将 userId、userType、tenantId 通过 Header 转发给服务
  * 2. 验证不通过，还是会转发给服务。因为，接口是否需要登录的校验，还是交给服务自身处理
+ * 3. 同一个 token 的并发校验合并为一次远程调用；缓存超过 refreshAfter 后先返回旧值，再在后台异步刷新，全程不阻塞
+ * 4. 开启自包含令牌后，带签名的 token 在本地校验，不调用远程服务；退出登录等移除操作通过 {@link AccessTokenRevocationRegistry} 感知
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
  * @wechat EasyAIoT2025
  */
+@Slf4j
 @Component
 public class TokenAuthenticationFilter implements GlobalFilter, Ordered {
 
@@ -63,29 +75,87 @@ public class TokenAuthenticationFilter implements GlobalFilter, Ordered {
 
     private final WebClient webClient;
 
+    private final AccessTokenRevocationRegistry revocationRegistry;
+
+    /**
+     * 缓存超过该时间后，在后台异步刷新
+     */
+    @Value("${iot.gateway.token.cache.refresh-after-ms:60000}")
+    private long refreshAfterMillis;
+
+    /**
+     * 缓存超过该时间未写入则过期，需要重新校验
+     */
+    @Value("${iot.gateway.token.cache.expire-after-ms:1800000}")
+    private long expireAfterMillis;
+
+    @Value("${iot.gateway.token.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${iot.gateway.token.signed.enabled:false}")
+    private boolean signedEnabled;
+
+    /**
+     * 自包含令牌的签名密钥，需与 system 服务 iot.security.signed-access-token.secret 一致
+     */
+    @Value("${iot.gateway.token.signed.secret:}")
+    private String signedSecret;
+
     /**
      * 登录用户的本地缓存
      *
      * key1：多租户的编号
      * key2：访问令牌
      */
-    private final LoadingCache<KeyValue<Long, String>, LoginUser> loginUserCache = buildAsyncReloadingCache(Duration.ofMinutes(1),
-            new CacheLoader<KeyValue<Long, String>, LoginUser>() {
+    private Cache<KeyValue<Long, String>, CachedLoginUser> loginUserCache;
 
-                @Override
-                public LoginUser load(KeyValue<Long, String> token) {
-                    String body = checkAccessToken(token.getKey(), token.getValue()).block();
-                    return buildUser(body);
-                }
+    /**
+     * 访问令牌 → 该令牌在 loginUserCache 中的 key（每个租户一个），令牌被移除时直接定位，不遍历整个缓存
+     */
+    private final Map<String, Set<KeyValue<Long, String>>> loginUserCacheKeys = new ConcurrentHashMap<>();
 
-            });
+    /**
+     * 进行中的远程校验，同一个 key 的并发请求共享同一次调用
+     */
+    private final Map<KeyValue<Long, String>, Mono<LoginUser>> inflightChecks = new ConcurrentHashMap<>();
 
-    public TokenAuthenticationFilter(ReactorLoadBalancerExchangeFilterFunction lbFunction) {
+    public TokenAuthenticationFilter(ReactorLoadBalancerExchangeFilterFunction lbFunction,
+                                     AccessTokenRevocationRegistry revocationRegistry) {
         // Q：为什么不使用 OAuth2TokenApi 进行调用？
         // A1：Spring Cloud OpenFeign 官方未内置 Reactive 的支持 https://docs.spring.io/spring-cloud-openfeign/docs/current/reference/html/#reactive-support
         // A2：校验 Token 的 API 需要使用到 header[tenant-id] 传递租户编号，暂时不想编写 RequestInterceptor 实现
         // 因此，这里采用 WebClient，通过 lbFunction 实现负载均衡
         this.webClient = WebClient.builder().filter(lbFunction).build();
+        this.revocationRegistry = revocationRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (signedEnabled && StrUtil.isEmpty(signedSecret)) {
+            throw new IllegalStateException("已开启自包含令牌的本地校验（iot.gateway.token.signed.enabled），"
+                    + "但未配置签名密钥 iot.gateway.token.signed.secret");
+        }
+        loginUserCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(expireAfterMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumSize)
+                .<KeyValue<Long, String>, CachedLoginUser>removalListener(notification -> {
+                    // 覆盖写入时 key 仍在缓存中；过期淘汰与新的写入并发时，以缓存中是否存在为准
+                    if (notification.getCause() != RemovalCause.REPLACED
+                            && !loginUserCache.asMap().containsKey(notification.getKey())) {
+                        unindexLoginUser(notification.getKey());
+                    }
+                })
+                .build();
+        // 访问令牌被移除时，失效所有租户下该令牌的缓存
+        revocationRegistry.addListener(token -> {
+            Set<KeyValue<Long, String>> keys = loginUserCacheKeys.remove(token);
+            if (keys != null) {
+                loginUserCache.invalidateAll(keys);
+            }
+        });
+        if (signedEnabled && !revocationRegistry.isEnabled()) {
+            log.warn("[init][已开启自包含令牌的本地校验，但未订阅访问令牌移除广播，退出登录后令牌在过期前仍然有效]");
+        }
     }
 
     @Override
@@ -119,23 +189,75 @@ public class TokenAuthenticationFilter implements GlobalFilter, Ordered {
     }
 
     private Mono<LoginUser> getLoginUser(ServerWebExchange exchange, String token) {
+        // 已被移除的令牌，直接视为未登录
+        if (revocationRegistry.isRevoked(token)) {
+            return Mono.just(LOGIN_USER_EMPTY);
+        }
+
+        // 自包含令牌，在本地校验签名和过期时间
+        if (signedEnabled && OAuth2SignedAccessTokenUtils.isSigned(token)) {
+            return Mono.just(buildUser(OAuth2SignedAccessTokenUtils.verify(token, signedSecret),
+                    WebFrameworkUtils.getTenantId(exchange)));
+        }
+
         // 从缓存中，获取 LoginUser
         Long tenantId = WebFrameworkUtils.getTenantId(exchange);
         KeyValue<Long, String> cacheKey = new KeyValue<Long, String>().setKey(tenantId).setValue(token);
-        LoginUser localUser = loginUserCache.getIfPresent(cacheKey);
+        CachedLoginUser localUser = loginUserCache.getIfPresent(cacheKey);
         if (localUser != null) {
-            return Mono.just(localUser);
+            if (System.currentTimeMillis() - localUser.getLoadTime() > refreshAfterMillis) {
+                // 先返回旧值，后台刷新；刷新失败时保留旧值
+                loadLoginUser(cacheKey).subscribe(null,
+                        e -> log.warn("[getLoginUser][后台刷新访问令牌失败: {}]", e.getMessage()));
+            }
+            return Mono.just(localUser.getUser());
         }
 
         // 缓存不存在，则请求远程服务
-        return checkAccessToken(tenantId, token).flatMap((Function<String, Mono<LoginUser>>) body -> {
-            LoginUser remoteUser = buildUser(body);
-            if (remoteUser != null && remoteUser.getId() != null) {
-                // 非空，则进行缓存
-                loginUserCache.put(cacheKey, remoteUser);
-                return Mono.just(remoteUser);
+        return loadLoginUser(cacheKey).filter(user -> user == LOGIN_USER_EMPTY || user.getId() != null);
+    }
+
+    /**
+     * 请求远程服务校验令牌，同一个 key 同时只有一次调用
+     *
+     * 校验通过或令牌已过期（{@link #LOGIN_USER_EMPTY}）时写入缓存，其他情况不写入，缓存中已有的值继续使用
+     */
+    private Mono<LoginUser> loadLoginUser(KeyValue<Long, String> cacheKey) {
+        return inflightChecks.computeIfAbsent(cacheKey, key -> {
+            // 结束时只移除自己，避免移除结束后新发起的调用
+            AtomicReference<Mono<LoginUser>> self = new AtomicReference<>();
+            Mono<LoginUser> check = checkAccessToken(key.getKey(), key.getValue())
+                    .flatMap(body -> Mono.justOrEmpty(buildUser(body)))
+                    .doOnNext(user -> {
+                        if (user == LOGIN_USER_EMPTY || user.getId() != null) {
+                            cacheLoginUser(key, user);
+                        }
+                    })
+                    .doFinally(signal -> inflightChecks.remove(key, self.get()))
+                    .cache();
+            self.set(check);
+            return check;
+        });
+    }
+
+    /**
+     * 写入缓存，先登记索引再写入，保证并发的移除能找到这个 key
+     */
+    private void cacheLoginUser(KeyValue<Long, String> key, LoginUser user) {
+        loginUserCacheKeys.compute(key.getValue(), (token, keys) -> {
+            if (keys == null) {
+                keys = ConcurrentHashMap.newKeySet();
             }
-            return Mono.empty();
+            keys.add(key);
+            return keys;
+        });
+        loginUserCache.put(key, new CachedLoginUser(user, System.currentTimeMillis()));
+    }
+
+    private void unindexLoginUser(KeyValue<Long, String> key) {
+        loginUserCacheKeys.computeIfPresent(key.getValue(), (token, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
         });
     }
 
@@ -167,6 +289,20 @@ public class TokenAuthenticationFilter implements GlobalFilter, Ordered {
                 .setTenantId(tokenInfo.getTenantId()).setScopes(tokenInfo.getScopes());
     }
 
+    private LoginUser buildUser(OAuth2AccessTokenClaimsDTO claims, Long tenantId) {
+        // 签名不匹配或已过期
+        if (claims == null) {
+            return LOGIN_USER_EMPTY;
+        }
+        // 与远程校验一致：请求指定了租户时，令牌必须属于该租户
+        if (tenantId != null && !tenantId.equals(claims.getTenantId())) {
+            return LOGIN_USER_EMPTY;
+        }
+        return new LoginUser().setId(claims.getUserId()).setUserType(claims.getUserType())
+                .setInfo(claims.getUserInfo()) // 额外的用户信息
+                .setTenantId(claims.getTenantId()).setScopes(claims.getScopes());
+    }
+
     @Override
     public int getOrder() {
         return -100; // 和 Spring Security Filter 的顺序对齐
@@ -178,4 +314,16 @@ public class TokenAuthenticationFilter implements GlobalFilter, Ordered {
         DataBuffer buffer = response.bufferFactory().wrap(json.getBytes(StandardCharsets.UTF_8));
         return response.writeWith(Mono.just(buffer));
     }
+
+    /**
+     * 缓存的登录用户，记录加载时间用于判断是否需要刷新
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class CachedLoginUser {
+
+        private final LoginUser user;
+        private final long loadTime;
+
+    }
 }
@@ -0,0 +1,130 @@
+package com.basiclab.iot.gateway.filter.security;
+
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.system.api.oauth2.OAuth2TokenApi;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link AccessTokenRevocationRegistry} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class AccessTokenRevocationRegistryTest {
+
+    private final AccessTokenRevocationRegistry registry = new AccessTokenRevocationRegistry();
+
+    private final List<String> notified = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testOnMessage_redisTemplatePayload() {
+        registry.addListener(notified::add);
+
+        // 与 system 服务 RedisMQTemplate 发送的消息体一致：RedisTemplate 的 JSON 序列化再包裹一层字符串
+        onMessage(JsonUtils.toJsonString(message("token-1", System.currentTimeMillis() + 60000)));
+
+        assertTrue(registry.isRevoked("token-1"));
+        assertEquals(1, notified.size());
+        assertEquals("token-1", notified.get(0));
+    }
+
+    @Test
+    public void testOnMessage_plainJsonPayload() {
+        registry.addListener(notified::add);
+
+        onMessage(message("token-1", System.currentTimeMillis() + 60000));
+
+        assertTrue(registry.isRevoked("token-1"));
+        assertFalse(registry.isRevoked("token-2"));
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void testOnMessage_expiredTokenOnlyNotified() {
+        registry.addListener(notified::add);
+
+        onMessage(JsonUtils.toJsonString(message("token-1", System.currentTimeMillis() - 1)));
+
+        // 已过期的令牌无需记录，但仍然失效本地缓存
+        assertFalse(registry.isRevoked("token-1"));
+        assertEquals(1, notified.size());
+    }
+
+    @Test
+    public void testOnMessage_invalidPayloadIgnored() {
+        registry.addListener(notified::add);
+
+        onMessage("not-json");
+        onMessage(JsonUtils.toJsonString(new HashMap<>()));
+
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLoadRevokedTokens_recoversMissedBroadcasts() {
+        long expiresTime = System.currentTimeMillis() + 60000;
+        RScoredSortedSet<String> revokedSet = mock(RScoredSortedSet.class);
+        when(revokedSet.entryRange(anyDouble(), anyBoolean(), anyDouble(), anyBoolean())).thenReturn(Arrays.asList(
+                new ScoredEntry<>((double) expiresTime, "token-1"), new ScoredEntry<>((double) expiresTime, "token-2")));
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.<String>getScoredSortedSet(OAuth2TokenApi.REVOKED_ACCESS_TOKENS_KEY, StringCodec.INSTANCE))
+                .thenReturn(revokedSet);
+        ReflectionTestUtils.setField(registry, "redissonClient", redissonClient);
+        registry.addListener(notified::add);
+        // token-1 的广播已经收到
+        onMessage(message("token-1", expiresTime));
+
+        // 重新订阅时加载，只通知错过广播的令牌；再次加载不重复通知
+        ReflectionTestUtils.invokeMethod(registry, "loadRevokedTokens");
+        ReflectionTestUtils.invokeMethod(registry, "loadRevokedTokens");
+
+        assertTrue(registry.isRevoked("token-1"));
+        assertTrue(registry.isRevoked("token-2"));
+        assertEquals(Arrays.asList("token-1", "token-2"), notified);
+    }
+
+    @Test
+    public void testLoadRevokedTokens_redisFailureIgnored() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getScoredSortedSet(OAuth2TokenApi.REVOKED_ACCESS_TOKENS_KEY, StringCodec.INSTANCE))
+                .thenThrow(new IllegalStateException("redis down"));
+        ReflectionTestUtils.setField(registry, "redissonClient", redissonClient);
+
+        ReflectionTestUtils.invokeMethod(registry, "loadRevokedTokens");
+
+        assertFalse(registry.isRevoked("token-1"));
+    }
+
+    private void onMessage(String message) {
+        ReflectionTestUtils.invokeMethod(registry, "onMessage", message);
+    }
+
+    private static String message(String accessToken, long expiresTime) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("accessToken", accessToken);
+        message.put("expiresTime", expiresTime);
+        return JsonUtils.toJsonString(message);
+    }
+
+}
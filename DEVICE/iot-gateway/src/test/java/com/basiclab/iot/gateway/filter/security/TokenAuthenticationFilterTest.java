@@ -0,0 +1,179 @@
+package com.basiclab.iot.gateway.filter.security;
+
+import com.basiclab.iot.common.core.KeyValue;
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.gateway.util.SecurityFrameworkUtils;
+import com.basiclab.iot.system.api.oauth2.OAuth2SignedAccessTokenUtils;
+import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenClaimsDTO;
+import com.google.common.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link TokenAuthenticationFilter} 自包含令牌本地校验的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class TokenAuthenticationFilterTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final AccessTokenRevocationRegistry registry = new AccessTokenRevocationRegistry();
+
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.set(exchange);
+        return Mono.empty();
+    };
+
+    private TokenAuthenticationFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        filter = newFilter(true, SECRET);
+        filter.init();
+    }
+
+    @Test
+    public void testInit_signedEnabledWithoutSecret() {
+        TokenAuthenticationFilter filter = newFilter(true, "");
+
+        assertThrows(IllegalStateException.class, filter::init);
+    }
+
+    @Test
+    public void testFilter_signedTokenForwardedWithLoginUser() {
+        MockServerWebExchange exchange = exchange(sign(3L), "3");
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(Long.valueOf(1L), SecurityFrameworkUtils.getLoginUserId(exchange));
+        assertEquals(Integer.valueOf(2), SecurityFrameworkUtils.getLoginUserType(exchange));
+        assertEquals(1, forwarded.get().getRequest().getHeaders().get("login-user").size());
+    }
+
+    @Test
+    public void testFilter_signedTokenWithoutTenantHeader() {
+        MockServerWebExchange exchange = exchange(sign(3L), null);
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(Long.valueOf(1L), SecurityFrameworkUtils.getLoginUserId(exchange));
+    }
+
+    @Test
+    public void testFilter_signedTokenOfOtherTenantRejected() {
+        MockServerWebExchange exchange = exchange(sign(3L), "4");
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    public void testFilter_signedTokenWithWrongSignatureRejected() {
+        String token = sign(3L);
+        MockServerWebExchange exchange = exchange(token.substring(0, token.length() - 2) + "AA", "3");
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    public void testFilter_revokedSignedTokenRejected() {
+        String token = sign(3L);
+        Map<String, Object> message = new HashMap<>();
+        message.put("accessToken", token);
+        message.put("expiresTime", System.currentTimeMillis() + 60000);
+        ReflectionTestUtils.invokeMethod(registry, "onMessage", JsonUtils.toJsonString(JsonUtils.toJsonString(message)));
+        MockServerWebExchange exchange = exchange(token, "3");
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRevoke_invalidatesCachedUsersOfTokenOnly() {
+        KeyValue<Long, String> tenant1 = new KeyValue<>(1L, "token-1");
+        KeyValue<Long, String> tenant2 = new KeyValue<>(2L, "token-1");
+        KeyValue<Long, String> other = new KeyValue<>(1L, "token-2");
+        for (KeyValue<Long, String> key : new KeyValue[]{tenant1, tenant2, other}) {
+            ReflectionTestUtils.invokeMethod(filter, "cacheLoginUser", key, new LoginUser().setId(1L));
+        }
+        Cache<KeyValue<Long, String>, ?> cache = (Cache<KeyValue<Long, String>, ?>) ReflectionTestUtils.getField(filter, "loginUserCache");
+        Map<String, ?> index = (Map<String, ?>) ReflectionTestUtils.getField(filter, "loginUserCacheKeys");
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("accessToken", "token-1");
+        message.put("expiresTime", System.currentTimeMillis() + 60000);
+        ReflectionTestUtils.invokeMethod(registry, "onMessage", JsonUtils.toJsonString(message));
+
+        assertNull(cache.getIfPresent(tenant1));
+        assertNull(cache.getIfPresent(tenant2));
+        assertNotNull(cache.getIfPresent(other));
+        assertEquals(1, index.size());
+
+        // 其他原因移除缓存时同步清理索引
+        cache.invalidate(other);
+        assertEquals(0, index.size());
+    }
+
+    private TokenAuthenticationFilter newFilter(boolean signedEnabled, String signedSecret) {
+        TokenAuthenticationFilter filter = new TokenAuthenticationFilter(
+                mock(ReactorLoadBalancerExchangeFilterFunction.class), registry);
+        ReflectionTestUtils.setField(filter, "refreshAfterMillis", 60000L);
+        ReflectionTestUtils.setField(filter, "expireAfterMillis", 1800000L);
+        ReflectionTestUtils.setField(filter, "maximumSize", 100L);
+        ReflectionTestUtils.setField(filter, "signedEnabled", signedEnabled);
+        ReflectionTestUtils.setField(filter, "signedSecret", signedSecret);
+        return filter;
+    }
+
+    private static String sign(Long tenantId) {
+        OAuth2AccessTokenClaimsDTO claims = new OAuth2AccessTokenClaimsDTO();
+        claims.setUserId(1L);
+        claims.setUserType(2);
+        claims.setTenantId(tenantId);
+        claims.setJti(UUID.randomUUID().toString());
+        claims.setExp(System.currentTimeMillis() + 60000);
+        return OAuth2SignedAccessTokenUtils.sign(claims, SECRET);
+    }
+
+    private static MockServerWebExchange exchange(String token, String tenantId) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/admin-api/system/user/get")
+                .header("Authorization", "Bearer " + token);
+        if (tenantId != null) {
+            request.header("tenant-id", tenantId);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+}
@@ -15,6 +15,8 @@ public interface TPushHistoryMapper {
 
     int insert(TPushHistory record);
 
+    int insertBatch(List<TPushHistory> records);
+
     int insertSelective(TPushHistory record);
 
     TPushHistory selectByPrimaryKey(String id);
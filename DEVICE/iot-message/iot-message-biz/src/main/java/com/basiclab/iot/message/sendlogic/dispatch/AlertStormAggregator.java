@@ -0,0 +1,246 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.basiclab.iot.message.domain.model.AlertNotificationMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 告警风暴聚合
+ * <p>
+ * 1. 按 设备 + 任务 + 通知方式 聚合，窗口内第一条告警立即发送，之后的告警只计数不发送
+ * 2. 窗口结束时如有被抑制的告警，合并为一条汇总通知交给 {@link DigestHandler}，并开启下一个窗口；
+ *    窗口内没有新告警时窗口关闭，下一条告警重新立即发送
+ * 3. 窗口数量有上限，超出时淘汰最早的窗口，淘汰前先发出其汇总通知
+ * 4. 配置了 {@link MeterRegistry} 时上报被抑制数、汇总通知数、淘汰数和当前窗口数，tag channel 为通知方式
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+public class AlertStormAggregator {
+
+    private static final String METRIC_PREFIX = "iot.message.notification.aggregation";
+
+    /**
+     * 汇总通知处理器
+     */
+    @FunctionalInterface
+    public interface DigestHandler {
+
+        void onDigest(AlertWindow window);
+
+    }
+
+    private final long windowMillis;
+    private final int maxWindows;
+    private final DigestHandler digestHandler;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 按窗口开始时间排序，所有窗口长度相同，头部的窗口最先结束
+     */
+    private final LinkedHashMap<String, AlertWindow> windows = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private Counter evictedCounter;
+
+    public AlertStormAggregator(long windowMillis, int maxWindows, DigestHandler digestHandler,
+                                MeterRegistry meterRegistry) {
+        this.windowMillis = windowMillis;
+        this.maxWindows = Math.max(1, maxWindows);
+        this.digestHandler = digestHandler;
+        this.meterRegistry = meterRegistry;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("alert-aggregation-", true));
+        if (meterRegistry != null) {
+            Gauge.builder(METRIC_PREFIX + ".windows.active", windows, w -> {
+                synchronized (w) {
+                    return w.size();
+                }
+            }).description("当前聚合窗口数").register(meterRegistry);
+            evictedCounter = Counter.builder(METRIC_PREFIX + ".windows.evicted")
+                    .description("因窗口数达到上限被提前结束的窗口数").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 启动窗口检查，检查周期为窗口长度的 1/10，最长 1 秒
+     */
+    public AlertStormAggregator start() {
+        long period = Math.max(Math.min(windowMillis / 10, 1000), 10);
+        flusher.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+        log.info("[start][告警聚合启动，窗口: {} ms，窗口数上限: {}]", windowMillis, maxWindows);
+        return this;
+    }
+
+    /**
+     * 停止窗口检查，发出所有窗口中未发送的汇总通知
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        List<AlertWindow> digests = new ArrayList<>();
+        synchronized (windows) {
+            for (AlertWindow window : windows.values()) {
+                if (window.suppressedCount > 0) {
+                    digests.add(window);
+                }
+            }
+            windows.clear();
+        }
+        digests.forEach(this::emitDigest);
+    }
+
+    /**
+     * 判断告警是否需要立即发送
+     *
+     * @param message 告警通知消息
+     * @param method  通知方式
+     * @return true 立即发送；false 已计入当前窗口，窗口结束时汇总发送
+     */
+    public boolean admit(AlertNotificationMessage message, String method) {
+        String key = message.getDeviceId() + ":" + message.getTaskId() + ":" + method.toLowerCase();
+        long now = System.currentTimeMillis();
+        List<AlertWindow> digests = new ArrayList<>();
+        boolean admitted;
+        synchronized (windows) {
+            AlertWindow window = windows.get(key);
+            if (window != null && now < window.windowEnd) {
+                window.record(message);
+                admitted = false;
+            } else {
+                // 已到期但还未被检查线程处理的窗口，在这里结束
+                if (window != null) {
+                    windows.remove(key);
+                    if (window.suppressedCount > 0) {
+                        digests.add(window);
+                    }
+                }
+                windows.put(key, new AlertWindow(key, method, now, now + windowMillis, message));
+                evictOverflow(digests);
+                admitted = true;
+            }
+        }
+        if (!admitted) {
+            increment("suppressed", method);
+        }
+        digests.forEach(this::emitDigest);
+        return admitted;
+    }
+
+    private void evictOverflow(List<AlertWindow> digests) {
+        Iterator<AlertWindow> iterator = windows.values().iterator();
+        while (windows.size() > maxWindows && iterator.hasNext()) {
+            AlertWindow eldest = iterator.next();
+            iterator.remove();
+            if (eldest.suppressedCount > 0) {
+                digests.add(eldest);
+            }
+            if (evictedCounter != null) {
+                evictedCounter.increment();
+            }
+        }
+    }
+
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        List<AlertWindow> digests = new ArrayList<>();
+        synchronized (windows) {
+            Iterator<AlertWindow> iterator = windows.values().iterator();
+            while (iterator.hasNext()) {
+                AlertWindow window = iterator.next();
+                if (window.windowEnd > now) {
+                    break;
+                }
+                iterator.remove();
+                if (window.suppressedCount > 0) {
+                    digests.add(window);
+                }
+            }
+            // 告警仍在持续，开启下一个窗口，下一个窗口内的告警继续汇总
+            for (AlertWindow window : digests) {
+                windows.put(window.key, new AlertWindow(window.key, window.method, now, now + windowMillis, null));
+            }
+        }
+        digests.forEach(this::emitDigest);
+    }
+
+    private void emitDigest(AlertWindow window) {
+        increment("digest", window.method);
+        try {
+            digestHandler.onDigest(window);
+        } catch (Exception e) {
+            log.error("[emitDigest][告警汇总通知发送失败，key: {}，被抑制数: {}]", window.key, window.suppressedCount, e);
+        }
+    }
+
+    private void increment(String name, String method) {
+        if (meterRegistry != null) {
+            Counter.builder(METRIC_PREFIX + "." + name).tag("channel", method.toLowerCase())
+                    .register(meterRegistry).increment();
+        }
+    }
+
+    /**
+     * 聚合窗口
+     */
+    @Getter
+    public static class AlertWindow {
+
+        private final String key;
+        private final String method;
+        private final long windowStart;
+        private final long windowEnd;
+        /**
+         * 窗口内被抑制的告警数
+         */
+        private int suppressedCount;
+        /**
+         * 被抑制告警的事件类型计数
+         */
+        private final Map<String, Integer> eventCounts = new LinkedHashMap<>();
+        private String firstAlertTime;
+        private String lastAlertTime;
+        /**
+         * 最近一条被抑制的告警，用于汇总通知的模板参数和通知人
+         */
+        private AlertNotificationMessage latest;
+
+        private AlertWindow(String key, String method, long windowStart, long windowEnd,
+                            AlertNotificationMessage opening) {
+            this.key = key;
+            this.method = method;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.latest = opening;
+        }
+
+        private void record(AlertNotificationMessage message) {
+            suppressedCount++;
+            latest = message;
+            AlertNotificationMessage.AlertInfo alert = message.getAlert();
+            String event = alert != null && alert.getEvent() != null ? alert.getEvent() : "unknown";
+            eventCounts.merge(event, 1, Integer::sum);
+            String time = alert != null ? alert.getTime() : null;
+            if (firstAlertTime == null) {
+                firstAlertTime = time;
+            }
+            lastAlertTime = time;
+        }
+
+    }
+
+}
@@ -0,0 +1,314 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.basiclab.iot.message.domain.model.HttpSendResult;
+import com.basiclab.iot.message.domain.model.SendResult;
+import com.basiclab.iot.message.domain.model.vo.MessagePrepareVO;
+import com.basiclab.iot.message.sendlogic.MessageTypeEnum;
+import com.basiclab.iot.message.sendlogic.msgsender.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知分发器
+ * <p>
+ * 1. 每个渠道一个有界线程池，某个渠道（如 SMTP）变慢不会拖住其他渠道，也不会占用 Kafka 消费线程
+ * 2. 渠道队列满或线程池已关闭时由提交线程直接发送，形成背压，不丢消息
+ * 3. 直接使用内存中的消息对象发送，不再先写消息表再按 msgId 读回
+ * 4. 发送结果交给 {@link PushHistoryBatchWriter} 批量写入推送历史
+ * 5. 上报每个渠道的发送耗时、成功/失败次数和队列长度，tag channel 为渠道名称
+ * 6. HTTP 渠道直接交给 {@link HttpMsgSender#sendAsync} 异步投递，不占用渠道线程，并发和重试由 Webhook 投递引擎控制；
+ *    未完成的投递数（含排队、重试等待）有上限，达到上限时提交线程等待，等待超时记为发送失败
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    private static final String METRIC_PREFIX = "iot.message.notification";
+
+    /**
+     * 消息类型到渠道名称（指标 tag、线程名）的映射
+     */
+    private static final Map<Integer, String> CHANNEL_NAMES = new LinkedHashMap<Integer, String>() {{
+        put(MessageTypeEnum.ALI_YUN_CODE, "aliyun-sms");
+        put(MessageTypeEnum.TX_YUN_CODE, "txyun-sms");
+        put(MessageTypeEnum.EMAIL_CODE, "email");
+        put(MessageTypeEnum.WX_CP_CODE, "wxcp");
+        put(MessageTypeEnum.HTTP_CODE, "http");
+        put(MessageTypeEnum.DING_CODE, "ding");
+        put(MessageTypeEnum.FEISHU_CODE, "feishu");
+    }};
+
+    /**
+     * 队列满或线程池已关闭时由提交线程直接发送：CallerRunsPolicy 在线程池关闭后会静默丢弃任务，
+     * 关闭过程中消费者仍可能提交通知
+     */
+    private static final RejectedExecutionHandler SEND_IN_CALLER = (runnable, executor) -> runnable.run();
+
+    @Autowired
+    private AliYunMsgSender aliYunMsgSender;
+
+    @Autowired
+    private TxYunMsgSender txYunMsgSender;
+
+    @Autowired
+    private MailMsgSender mailMsgSender;
+
+    @Autowired
+    private WxCpMsgSender wxCpMsgSender;
+
+    @Autowired
+    private HttpMsgSender httpMsgSender;
+
+    @Autowired
+    private DingMsgSender dingMsgSender;
+
+    @Autowired
+    private FeishuMsgSender feishuMsgSender;
+
+    @Autowired
+    private PushHistoryBatchWriter pushHistoryBatchWriter;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    /**
+     * 每个渠道的发送线程数
+     */
+    @Value("${notification.dispatch.threads:4}")
+    private int threads;
+
+    /**
+     * 每个渠道的等待队列容量
+     */
+    @Value("${notification.dispatch.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${notification.dispatch.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMillis;
+
+    /**
+     * HTTP 渠道未完成的投递数上限
+     */
+    @Value("${notification.dispatch.http-max-pending:1000}")
+    private int httpMaxPending;
+
+    /**
+     * HTTP 渠道达到上限时提交线程的最长等待时间
+     */
+    @Value("${notification.dispatch.http-acquire-timeout-ms:10000}")
+    private long httpAcquireTimeoutMillis;
+
+    private Semaphore httpPending;
+
+    private final Map<Integer, ThreadPoolExecutor> channelExecutors = new HashMap<>();
+
+    /**
+     * 在途的异步投递，关闭时等待完成
+     */
+    private final Set<CompletableFuture<?>> inflight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 发送耗时指标，key 为 渠道名称:发送结果，初始化时注册，之后只读
+     */
+    private final Map<String, Timer> sendTimers = new HashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry = meterRegistryProvider.getIfAvailable();
+        httpPending = new Semaphore(httpMaxPending);
+        CHANNEL_NAMES.forEach((msgType, channel) -> {
+            if (meterRegistry != null) {
+                registerSendTimer(channel, true);
+                registerSendTimer(channel, false);
+            }
+            if (msgType == MessageTypeEnum.HTTP_CODE) {
+                if (meterRegistry != null) {
+                    Gauge.builder(METRIC_PREFIX + ".queue.size", httpPending, p -> httpMaxPending - p.availablePermits())
+                            .tag("channel", channel).description("等待发送的通知数").register(meterRegistry);
+                }
+                return;
+            }
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory("notify-" + channel + "-", true),
+                    SEND_IN_CALLER);
+            // 不常用的渠道空闲时不保留线程
+            executor.allowCoreThreadTimeOut(true);
+            channelExecutors.put(msgType, executor);
+            if (meterRegistry != null) {
+                Gauge.builder(METRIC_PREFIX + ".queue.size", executor, e -> e.getQueue().size())
+                        .tag("channel", channel).description("等待发送的通知数").register(meterRegistry);
+            }
+        });
+        log.info("[init][通知分发器启动完成，线程池渠道数: {}，每渠道线程数: {}，队列容量: {}]",
+                channelExecutors.size(), threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 等待已提交的通知发送完成，推送历史写入器在本组件之后关闭
+        channelExecutors.values().forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Map.Entry<Integer, ThreadPoolExecutor> entry : channelExecutors.entrySet()) {
+            try {
+                long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+                if (!entry.getValue().awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    log.warn("[destroy][渠道 {} 关闭超时，未发送: {}]", CHANNEL_NAMES.get(entry.getKey()),
+                            entry.getValue().shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                entry.getValue().shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!inflight.isEmpty()) {
+            try {
+                long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+                CompletableFuture.allOf(inflight.toArray(new CompletableFuture[0])).get(remaining, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("[destroy][异步投递关闭超时，未完成: {}]", inflight.size());
+            }
+        }
+    }
+
+    /**
+     * 提交通知到对应渠道异步发送
+     *
+     * @param msgId   消息ID，用于推送历史追踪
+     * @param message 消息，msgType 对应的消息对象需已设置
+     * @return 是否支持该消息类型
+     */
+    public boolean dispatch(String msgId, MessagePrepareVO message) {
+        if (message.getMsgType() == MessageTypeEnum.HTTP_CODE) {
+            dispatchAsync(msgId, message);
+            return true;
+        }
+        ThreadPoolExecutor executor = channelExecutors.get(message.getMsgType());
+        if (executor == null) {
+            log.warn("[dispatch][不支持的消息类型，msgType: {}，msgId: {}]", message.getMsgType(), msgId);
+            return false;
+        }
+        executor.execute(() -> send(msgId, message));
+        return true;
+    }
+
+    private void dispatchAsync(String msgId, MessagePrepareVO message) {
+        long start = System.nanoTime();
+        // 未完成的投递达到上限时等待，形成背压；等待超时说明目标持续变慢，记为失败而不是无限堆积
+        try {
+            if (!httpPending.tryAcquire(httpAcquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                complete(msgId, message, start, failure(msgId, message,
+                        new IllegalStateException("HTTP 通知积压超过上限: " + httpMaxPending)));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete(msgId, message, start, failure(msgId, message, e));
+            return;
+        }
+        CompletableFuture<HttpSendResult> future;
+        try {
+            future = httpMsgSender.sendAsync(message.getT_Msg_Http());
+        } catch (RuntimeException e) {
+            httpPending.release();
+            throw e;
+        }
+        inflight.add(future);
+        future.whenComplete((result, e) -> {
+            inflight.remove(future);
+            httpPending.release();
+            complete(msgId, message, start, e == null ? result : failure(msgId, message, e));
+        });
+    }
+
+    private void send(String msgId, MessagePrepareVO message) {
+        long start = System.nanoTime();
+        SendResult result;
+        try {
+            result = doSend(message);
+        } catch (Exception e) {
+            result = failure(msgId, message, e);
+        }
+        complete(msgId, message, start, result);
+    }
+
+    private SendResult failure(String msgId, MessagePrepareVO message, Throwable e) {
+        SendResult result = new SendResult();
+        result.setMsgName(message.getMsgName());
+        result.setSuccess(false);
+        result.setInfo(e.getMessage());
+        log.error("[send][通知发送异常，msgId: {}，渠道: {}]", msgId, CHANNEL_NAMES.get(message.getMsgType()), e);
+        return result;
+    }
+
+    private void complete(String msgId, MessagePrepareVO message, long start, SendResult result) {
+        int msgType = message.getMsgType();
+        String channel = CHANNEL_NAMES.get(msgType);
+        Timer timer = sendTimers.get(sendTimerKey(channel, result.isSuccess()));
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.info("[send][通知发送结果，msgId: {}，渠道: {}，success: {}，info: {}，耗时: {} ms]", msgId, channel,
+                result.isSuccess(), result.getInfo(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        pushHistoryBatchWriter.add(msgType, msgId, result);
+    }
+
+    private void registerSendTimer(String channel, boolean success) {
+        sendTimers.put(sendTimerKey(channel, success), Timer.builder(METRIC_PREFIX + ".send")
+                .tag("channel", channel)
+                .tag("result", success ? "success" : "failure")
+                .register(meterRegistry));
+    }
+
+    private static String sendTimerKey(String channel, boolean success) {
+        return channel + ":" + (success ? "success" : "failure");
+    }
+
+    private SendResult doSend(MessagePrepareVO message) {
+        switch (message.getMsgType()) {
+            case MessageTypeEnum.ALI_YUN_CODE:
+                return aliYunMsgSender.send(message.getT_Msg_Sms());
+            case MessageTypeEnum.TX_YUN_CODE:
+                return txYunMsgSender.send(message.getT_Msg_Sms());
+            case MessageTypeEnum.EMAIL_CODE:
+                return mailMsgSender.send(message.getT_Msg_Mail());
+            case MessageTypeEnum.WX_CP_CODE:
+                return wxCpMsgSender.send(message.getT_Msg_Wx_Cp());
+            case MessageTypeEnum.DING_CODE:
+                return dingMsgSender.send(message.getT_Msg_Ding());
+            case MessageTypeEnum.FEISHU_CODE:
+                return feishuMsgSender.send(message.getT_Msg_Feishu());
+            default:
+                throw new IllegalArgumentException("不支持的消息类型: " + message.getMsgType());
+        }
+    }
+
+}
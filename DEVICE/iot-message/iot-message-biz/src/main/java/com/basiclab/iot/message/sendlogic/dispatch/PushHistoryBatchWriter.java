@@ -0,0 +1,143 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import com.basiclab.iot.message.domain.entity.TPushHistory;
+import com.basiclab.iot.message.domain.model.SendResult;
+import com.basiclab.iot.message.service.PushHistoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推送历史批量写入
+ * <p>
+ * 发送结果先放入有界队列，由写入线程按 batchSize / flushInterval 攒批后批量插入；
+ * 队列满或已关闭时在调用线程直接写库，不丢记录
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class PushHistoryBatchWriter {
+
+    @Autowired
+    private PushHistoryService pushHistoryService;
+
+    /**
+     * 每批最多写入的记录数
+     */
+    @Value("${notification.push-history.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 攒批的最长等待时间
+     */
+    @Value("${notification.push-history.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${notification.push-history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<TPushHistory> queue;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::runWriter, "push-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        try {
+            writer.join(flushIntervalMillis * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+        List<TPushHistory> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        write(remaining);
+    }
+
+    /**
+     * 记录发送结果
+     *
+     * @param msgType    消息类型
+     * @param msgId      消息ID
+     * @param sendResult 发送结果
+     */
+    public void add(int msgType, String msgId, SendResult sendResult) {
+        TPushHistory tPushHistory = new TPushHistory();
+        tPushHistory.setMsgId(msgId);
+        tPushHistory.setMsgType(msgType);
+        tPushHistory.setMsgName(sendResult.getMsgName());
+        if (sendResult.isSuccess()) {
+            tPushHistory.setResult("成功");
+        } else {
+            tPushHistory.setResult("失败，失败原因：" + sendResult.getInfo());
+        }
+        tPushHistory.setCreateTime(new Date());
+        if (!running || !queue.offer(tPushHistory)) {
+            pushHistoryService.add(tPushHistory);
+        }
+    }
+
+    private void runWriter() {
+        List<TPushHistory> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                TPushHistory first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    TPushHistory next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(batch);
+        }
+    }
+
+    private void write(List<TPushHistory> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            pushHistoryService.addBatch(batch);
+        } catch (Exception e) {
+            log.error("[write][推送历史批量写入失败，数量: {}]", batch.size(), e);
+        }
+    }
+
+}
@@ -0,0 +1,400 @@
+package com.basiclab.iot.message.sendlogic.http;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Webhook 投递引擎
+ * <p>
+ * 1. 基于 OkHttp 异步调用，请求在途时不占用业务线程；所有客户端共享同一个 {@link Dispatcher} 和 {@link ConnectionPool}，
+ *    连接按目标地址复用，每个目标主机的并发数受 maxRequestsPerHost 限制，超出的请求在 Dispatcher 中排队
+ * 2. 连接异常、5xx、429 按指数退避加随机抖动重试，退避期间不占用线程；429/503 带 Retry-After 时按其等待
+ * 3. 每个目标主机一个熔断器，连续失败达到阈值后熔断，熔断期间直接失败；熔断到期后放行一个探测请求，成功即恢复。
+ *    长时间未使用且未处于熔断的熔断器定期清理，目标主机数不会无限增长
+ * 4. 配置了 {@link MeterRegistry} 时上报投递耗时直方图、重试次数和熔断主机数
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class WebhookDeliveryEngine {
+
+    private static final String METRIC_PREFIX = "iot.message.webhook";
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    /**
+     * 同时在途的请求总数
+     */
+    @Value("${notification.webhook.max-requests:256}")
+    private int maxRequests;
+
+    /**
+     * 每个目标主机同时在途的请求数
+     */
+    @Value("${notification.webhook.max-requests-per-host:8}")
+    private int maxRequestsPerHost;
+
+    @Value("${notification.webhook.max-idle-connections:64}")
+    private int maxIdleConnections;
+
+    @Value("${notification.webhook.keep-alive-ms:300000}")
+    private long keepAliveMillis;
+
+    @Value("${notification.webhook.timeout-ms:10000}")
+    private long timeoutMillis;
+
+    /**
+     * 首次请求失败后的最大重试次数
+     */
+    @Value("${notification.webhook.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${notification.webhook.retry-base-ms:500}")
+    private long retryBaseMillis;
+
+    @Value("${notification.webhook.retry-max-ms:30000}")
+    private long retryMaxMillis;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    @Value("${notification.webhook.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${notification.webhook.circuit.open-ms:30000}")
+    private long openMillis;
+
+    /**
+     * 熔断器闲置多久后清理
+     */
+    @Value("${notification.webhook.circuit.idle-ms:600000}")
+    private long idleMillis;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 等待重试的投递，引擎关闭时以异常完成
+     */
+    private final Set<CompletableFuture<Response>> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    private OkHttpClient baseClient;
+
+    private ScheduledExecutorService retryScheduler;
+
+    private MeterRegistry meterRegistry;
+
+    private Counter retryCounter;
+
+    private Timer successTimer;
+
+    private Timer failureTimer;
+
+    private Timer rejectedTimer;
+
+    @PostConstruct
+    public void init() {
+        // 线程只用于连接建立后的回调处理，在途请求数由 maxRequests / maxRequestsPerHost 控制
+        ThreadPoolExecutor callbackExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new NamedThreadFactory("webhook-call-", true));
+        Dispatcher dispatcher = new Dispatcher(callbackExecutor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        baseClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .callTimeout(timeoutMillis * 2, TimeUnit.MILLISECONDS)
+                // 重试由引擎按退避策略控制
+                .retryOnConnectionFailure(false)
+                .build();
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("webhook-retry-", true));
+        // 清理间隔不短于一次投递的最长耗时（含重试等待），避免清理仍在使用的熔断器
+        long sweepMillis = Math.max(idleMillis, timeoutMillis * 2 + retryMaxMillis);
+        retryScheduler.scheduleWithFixedDelay(() -> evictIdleBreakers(sweepMillis),
+                sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+
+        meterRegistry = meterRegistryProvider.getIfAvailable();
+        if (meterRegistry != null) {
+            retryCounter = Counter.builder(METRIC_PREFIX + ".retry").description("Webhook 重试次数").register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".circuit.open", breakers,
+                    b -> b.values().stream().filter(CircuitBreaker::isOpen).count())
+                    .description("处于熔断状态的目标主机数").register(meterRegistry);
+            successTimer = deliveryTimer("success");
+            failureTimer = deliveryTimer("failure");
+            rejectedTimer = deliveryTimer("rejected");
+            Gauge.builder(METRIC_PREFIX + ".queued", dispatcher, Dispatcher::queuedCallsCount)
+                    .description("等待并发许可的请求数").register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + ".running", dispatcher, Dispatcher::runningCallsCount)
+                    .description("在途请求数").register(meterRegistry);
+        }
+        log.info("[init][Webhook 投递引擎启动完成，最大并发: {}，单主机并发: {}，最大重试: {}]",
+                maxRequests, maxRequestsPerHost, maxRetries);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        retryScheduler.shutdownNow();
+        // 退避中的重试任务已随调度器丢弃，对应的投递不会再有结果
+        for (CompletableFuture<Response> future : pendingRetries) {
+            future.completeExceptionally(new IOException("Webhook 投递引擎已关闭"));
+        }
+        pendingRetries.clear();
+        baseClient.dispatcher().cancelAll();
+        baseClient.dispatcher().executorService().shutdown();
+        baseClient.connectionPool().evictAll();
+    }
+
+    /**
+     * 获取共享 Dispatcher 和连接池的客户端构建器，用于设置代理等个性化配置
+     */
+    public OkHttpClient.Builder newClientBuilder() {
+        return baseClient.newBuilder();
+    }
+
+    /**
+     * 异步投递请求，失败时按退避策略重试
+     * <p>
+     * 返回的 future 以最后一次响应完成，调用方需关闭响应；重试用尽或熔断时以异常完成
+     *
+     * @param client 客户端，需由 {@link #newClientBuilder()} 构建
+     * @param request 请求，请求体需可重复写入
+     */
+    public CompletableFuture<Response> deliver(OkHttpClient client, Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        String host = request.url().host() + ":" + request.url().port();
+        CircuitBreaker breaker;
+        do {
+            breaker = breakers.computeIfAbsent(host, key -> new CircuitBreaker());
+            // 刚被清理的熔断器已从 breakers 移除，重新获取
+        } while (!breaker.touch());
+        long start = System.nanoTime();
+        future.whenComplete((response, e) -> record(start, response, e));
+        attempt(client, request, host, breaker, 0, future);
+        return future;
+    }
+
+    private void attempt(OkHttpClient client, Request request, String host, CircuitBreaker breaker, int retries,
+                         CompletableFuture<Response> future) {
+        if (!breaker.tryAcquire()) {
+            future.completeExceptionally(new CircuitOpenException("目标主机已熔断: " + host));
+            return;
+        }
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                breaker.onFailure();
+                if (retries < maxRetries) {
+                    log.warn("[attempt][Webhook 请求失败，准备第 {} 次重试，url: {}，原因: {}]", retries + 1,
+                            request.url(), e.getMessage());
+                    retry(client, request, host, breaker, retries, -1, future);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                int code = response.code();
+                boolean retryable = code == 429 || code >= 500;
+                if (retryable) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                if (retryable && retries < maxRetries) {
+                    long retryAfterMillis = retryAfterMillis(response);
+                    response.close();
+                    log.warn("[attempt][Webhook 响应 {}，准备第 {} 次重试，url: {}]", code, retries + 1, request.url());
+                    retry(client, request, host, breaker, retries, retryAfterMillis, future);
+                } else {
+                    future.complete(response);
+                }
+            }
+        });
+    }
+
+    private void retry(OkHttpClient client, Request request, String host, CircuitBreaker breaker, int retries,
+                       long retryAfterMillis, CompletableFuture<Response> future) {
+        if (retryCounter != null) {
+            retryCounter.increment();
+        }
+        long delay = retryAfterMillis >= 0 ? Math.min(retryAfterMillis, retryMaxMillis) : backoffMillis(retries);
+        pendingRetries.add(future);
+        try {
+            retryScheduler.schedule(() -> {
+                pendingRetries.remove(future);
+                attempt(client, request, host, breaker, retries + 1, future);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // 已关闭
+            pendingRetries.remove(future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void evictIdleBreakers(long idleMillis) {
+        long now = System.currentTimeMillis();
+        breakers.forEach((host, breaker) -> {
+            if (breaker.tryEvict(now, idleMillis)) {
+                breakers.remove(host, breaker);
+            }
+        });
+    }
+
+    /**
+     * 指数退避加全抖动：[0, min(retryMax, retryBase * 2^retries)]
+     */
+    private long backoffMillis(int retries) {
+        long ceiling = Math.min(retryMaxMillis, retryBaseMillis << Math.min(retries, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            // HTTP 日期格式不解析，按退避策略处理
+            return -1;
+        }
+    }
+
+    private void record(long start, Response response, Throwable e) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Timer timer;
+        if (e instanceof CircuitOpenException) {
+            timer = rejectedTimer;
+        } else if (e != null || !response.isSuccessful()) {
+            timer = failureTimer;
+        } else {
+            timer = successTimer;
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer deliveryTimer(String result) {
+        return Timer.builder(METRIC_PREFIX + ".delivery")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .description("Webhook 投递耗时，含重试等待")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 目标主机熔断时抛出
+     */
+    public static class CircuitOpenException extends IOException {
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+
+    }
+
+    /**
+     * 单个目标主机的熔断器：关闭 → 连续失败达到阈值后打开 → 到期后半开放行一个探测请求 → 成功关闭 / 失败重新打开
+     */
+    private class CircuitBreaker {
+
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean probing;
+        private long lastAccess = System.currentTimeMillis();
+        private boolean evicted;
+
+        /**
+         * 记录一次使用
+         *
+         * @return 是否仍有效；已被清理时返回 false
+         */
+        private synchronized boolean touch() {
+            if (evicted) {
+                return false;
+            }
+            lastAccess = System.currentTimeMillis();
+            return true;
+        }
+
+        /**
+         * 闲置超时且未熔断、未探测时标记为已清理
+         */
+        private synchronized boolean tryEvict(long now, long idleMillis) {
+            if (probing || isOpen() || now - lastAccess < idleMillis) {
+                return false;
+            }
+            evicted = true;
+            return true;
+        }
+
+        private synchronized boolean tryAcquire() {
+            lastAccess = System.currentTimeMillis();
+            if (consecutiveFailures < failureThreshold) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || probing) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        private synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            probing = false;
+        }
+
+        private synchronized void onFailure() {
+            consecutiveFailures++;
+            if (consecutiveFailures >= failureThreshold) {
+                openUntil = System.currentTimeMillis() + openMillis;
+                probing = false;
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return consecutiveFailures >= failureThreshold && System.currentTimeMillis() < openUntil;
+        }
+
+    }
+
+}
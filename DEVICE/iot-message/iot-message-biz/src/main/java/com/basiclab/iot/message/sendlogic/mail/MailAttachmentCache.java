@@ -0,0 +1,225 @@
+package com.basiclab.iot.message.sendlogic.mail;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 邮件附件缓存
+ * <p>
+ * 1. 附件下载后按内容 SHA-256 命名保存，相同内容只保存一份
+ * 2. 同一 URL 在 urlTtl 内直接使用缓存，不再重复下载
+ * 3. 缓存总大小超过上限时按最近最少使用淘汰，正在发送的附件（{@link #acquire} 后未 {@link #release}）不会被淘汰
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class MailAttachmentCache {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 60 * 1000;
+
+    @Value("${mail.annex.dir}")
+    private String mailAnnexDir;
+
+    /**
+     * 缓存总大小上限
+     */
+    @Value("${mail.annex.cache-max-bytes:268435456}")
+    private long maxBytes;
+
+    /**
+     * URL 到内容的映射有效期，过期后重新下载
+     */
+    @Value("${mail.annex.url-ttl-ms:600000}")
+    private long urlTtlMillis;
+
+    /**
+     * URL 映射数量上限
+     */
+    @Value("${mail.annex.url-max-entries:10000}")
+    private int urlMaxEntries;
+
+    private File cacheDir;
+
+    /**
+     * 内容摘要 → 文件，按访问顺序排列，头部最久未使用
+     */
+    private final LinkedHashMap<String, ContentEntry> contents = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * URL → 内容摘要
+     */
+    private LinkedHashMap<String, UrlEntry> urls;
+
+    private long totalBytes;
+
+    @PostConstruct
+    public void init() {
+        cacheDir = new File(mailAnnexDir, "cache");
+        // 上次运行留下的文件没有索引，直接清理
+        FileUtil.del(cacheDir);
+        FileUtil.mkdir(cacheDir);
+        urls = new LinkedHashMap<String, UrlEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UrlEntry> eldest) {
+                return size() > urlMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * 获取附件文件并占用，发送完成后需调用 {@link #release}
+     *
+     * @param url 附件地址
+     * @return 缓存文件
+     */
+    public File acquire(String url) throws IOException {
+        long now = System.currentTimeMillis();
+        synchronized (contents) {
+            UrlEntry urlEntry = urls.get(url);
+            if (urlEntry != null && now - urlEntry.fetchTime < urlTtlMillis) {
+                ContentEntry contentEntry = contents.get(urlEntry.digest);
+                if (contentEntry != null && contentEntry.file.exists()) {
+                    contentEntry.pins++;
+                    return contentEntry.file;
+                }
+            }
+        }
+
+        // 在锁外下载，边下载边计算摘要
+        File tempFile = File.createTempFile("download-", ".tmp", cacheDir);
+        String digest;
+        long size;
+        try {
+            digest = download(url, tempFile);
+            size = tempFile.length();
+        } catch (IOException e) {
+            FileUtil.del(tempFile);
+            throw e;
+        }
+
+        synchronized (contents) {
+            ContentEntry contentEntry = contents.get(digest);
+            if (contentEntry != null && contentEntry.file.exists()) {
+                FileUtil.del(tempFile);
+            } else {
+                File target = new File(cacheDir, digest);
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                contentEntry = new ContentEntry(target, size);
+                contents.put(digest, contentEntry);
+                totalBytes += size;
+            }
+            contentEntry.pins++;
+            urls.put(url, new UrlEntry(digest, now));
+            evict();
+            return contentEntry.file;
+        }
+    }
+
+    /**
+     * 释放 {@link #acquire} 占用的附件
+     */
+    public void release(File file) {
+        synchronized (contents) {
+            ContentEntry contentEntry = contents.get(file.getName());
+            if (contentEntry != null && contentEntry.pins > 0) {
+                contentEntry.pins--;
+            }
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<ContentEntry> iterator = contents.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            ContentEntry contentEntry = iterator.next();
+            if (contentEntry.pins > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= contentEntry.size;
+            FileUtil.del(contentEntry.file);
+        }
+    }
+
+    private String download(String url, File target) throws IOException {
+        log.info("开始下载邮件附件，文件路径: {}", url);
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setRequestMethod("GET");
+            connection.setRequestProperty("Charset", "UTF-8");
+            // 设置用户代理，避免某些服务器拒绝请求
+            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("文件下载失败，HTTP响应码: " + responseCode);
+            }
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(connection.getInputStream(), messageDigest);
+                 OutputStream out = Files.newOutputStream(target.toPath())) {
+                byte[] buffer = new byte[20480];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            String digest = HexUtil.encodeHexStr(messageDigest.digest());
+            log.info("文件下载成功，文件路径: {}, 大小: {} bytes", url, target.length());
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class ContentEntry {
+
+        private final File file;
+        private final long size;
+        private int pins;
+
+        private ContentEntry(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+    }
+
+    private static class UrlEntry {
+
+        private final String digest;
+        private final long fetchTime;
+
+        private UrlEntry(String digest, long fetchTime) {
+            this.digest = digest;
+            this.fetchTime = fetchTime;
+        }
+
+    }
+
+}
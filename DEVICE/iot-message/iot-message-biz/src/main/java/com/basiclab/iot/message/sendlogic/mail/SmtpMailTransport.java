@@ -0,0 +1,403 @@
+package com.basiclab.iot.message.sendlogic.mail;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.mail.MailAccount;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.internet.MimeUtility;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于连接池的 SMTP 邮件发送
+ * <p>
+ * 1. 每个 {@link MailAccount} 一个连接池，复用已认证的 SMTP 连接，不再每封邮件都建连、TLS 握手和认证
+ * 2. 收件人按 recipientBatchSize 分批投递，收件人之间互不可见（密送），同一封邮件只编码一次
+ * 3. 连接失效时换一个新连接重试一次；空闲超过 idleTimeout 的连接会被关闭，
+ *    没有连接且超过 idleTimeout 未使用的连接池（如账号配置变更后的旧池）从池表中移除
+ * 4. 开启 mail.smtp.sendpartial，个别收件人被服务端拒收时其余收件人照常投递；格式错误的地址在投递前剔除，
+ *    全部批次投递完后统一抛出失败的收件人
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class SmtpMailTransport {
+
+    /**
+     * 部分收件人被拒收时仍投递给其余收件人
+     */
+    private static final String SEND_PARTIAL_PROPERTY = "mail.smtp.sendpartial";
+
+    /**
+     * 每个账号的最大连接数
+     */
+    @Value("${mail.smtp-pool.max-sessions:4}")
+    private int maxSessions;
+
+    /**
+     * 连接空闲超时时间，需小于 SMTP 服务端的空闲断开时间
+     */
+    @Value("${mail.smtp-pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMillis;
+
+    /**
+     * 等待可用连接的最长时间
+     */
+    @Value("${mail.smtp-pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMillis;
+
+    /**
+     * 每次投递的收件人数
+     */
+    @Value("${mail.smtp-pool.recipient-batch-size:50}")
+    private int recipientBatchSize;
+
+    private final Map<String, AccountPool> pools = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService idleEvictor;
+
+    @PostConstruct
+    public void init() {
+        idleEvictor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("smtp-idle-evictor-", true));
+        idleEvictor.scheduleWithFixedDelay(this::evictIdlePools, idleTimeoutMillis, idleTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        idleEvictor.shutdownNow();
+        pools.values().forEach(AccountPool::close);
+        pools.clear();
+    }
+
+    /**
+     * 发送 HTML 邮件
+     *
+     * @param account     邮件账号
+     * @param tos         收件人，分批密送
+     * @param ccs         抄送人，只随第一批投递，可为空
+     * @param subject     标题
+     * @param html        HTML 内容
+     * @param attachments 附件名称 → 文件，可为空
+     */
+    public void send(MailAccount account, List<String> tos, List<String> ccs, String subject, String html,
+                     Map<String, File> attachments) throws MessagingException, IOException {
+        AccountPool pool = enterPool(account);
+        try {
+            doSend(pool, account, tos, ccs, subject, html, attachments);
+        } finally {
+            pool.exit();
+        }
+    }
+
+    private void doSend(AccountPool pool, MailAccount account, List<String> tos, List<String> ccs, String subject,
+                        String html, Map<String, File> attachments) throws MessagingException, IOException {
+        MimeMessage message = buildMessage(pool.session, account, ccs, subject, html, attachments);
+        Address[] ccAddresses = message.getRecipients(Message.RecipientType.CC);
+
+        // 先解析全部收件人，格式错误的地址不能在已投递部分批次后才中断发送
+        Set<String> invalid = new LinkedHashSet<>();
+        List<Address> recipients = new ArrayList<>(tos.size());
+        for (String to : tos) {
+            if (StrUtil.isBlank(to)) {
+                continue;
+            }
+            try {
+                recipients.add(new InternetAddress(to.trim()));
+            } catch (AddressException e) {
+                invalid.add(to);
+            }
+        }
+        for (int from = 0; from < recipients.size(); from += recipientBatchSize) {
+            List<Address> batch = new ArrayList<>(recipients.subList(from, Math.min(from + recipientBatchSize, recipients.size())));
+            if (from == 0 && ccAddresses != null) {
+                for (Address cc : ccAddresses) {
+                    batch.add(cc);
+                }
+            }
+            try {
+                pool.sendMessage(message, batch.toArray(new Address[0]));
+            } catch (SendFailedException e) {
+                // 开启了 sendpartial，被拒收的是 invalid，其余收件人已投递；validUnsent 为因其他原因未投递的收件人
+                int before = invalid.size();
+                addAll(invalid, e.getInvalidAddresses());
+                addAll(invalid, e.getValidUnsentAddresses());
+                if (invalid.size() == before) {
+                    throw e;
+                }
+            }
+        }
+        if (!invalid.isEmpty()) {
+            throw new MessagingException("部分收件人发送失败: " + invalid);
+        }
+    }
+
+    private AccountPool enterPool(MailAccount account) {
+        String key = poolKey(account);
+        while (true) {
+            AccountPool pool = pools.computeIfAbsent(key, k -> new AccountPool(account));
+            if (pool.enter()) {
+                return pool;
+            }
+            // 刚被移除的连接池，重新获取
+        }
+    }
+
+    private void evictIdlePools() {
+        long now = System.currentTimeMillis();
+        pools.forEach((key, pool) -> {
+            pool.evictIdle();
+            if (pool.tryRetire(now)) {
+                pools.remove(key, pool);
+            }
+        });
+    }
+
+    private MimeMessage buildMessage(Session session, MailAccount account, List<String> ccs, String subject,
+                                     String html, Map<String, File> attachments) throws MessagingException, IOException {
+        MimeMessage message = new MimeMessage(session);
+        InternetAddress fromAddress = new InternetAddress(account.getFrom());
+        message.setFrom(fromAddress);
+        // 收件人通过投递地址密送，邮件头只保留发件人
+        message.setRecipient(Message.RecipientType.TO, fromAddress);
+        if (ccs != null && !ccs.isEmpty()) {
+            message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(StrUtil.join(",", ccs)));
+        }
+        message.setSubject(subject, "UTF-8");
+        message.setSentDate(new Date());
+        if (attachments == null || attachments.isEmpty()) {
+            message.setContent(html, "text/html;charset=UTF-8");
+        } else {
+            MimeMultipart multipart = new MimeMultipart();
+            MimeBodyPart body = new MimeBodyPart();
+            body.setContent(html, "text/html;charset=UTF-8");
+            multipart.addBodyPart(body);
+            for (Map.Entry<String, File> attachment : attachments.entrySet()) {
+                MimeBodyPart part = new MimeBodyPart();
+                part.attachFile(attachment.getValue());
+                part.setFileName(MimeUtility.encodeText(attachment.getKey(), "UTF-8", null));
+                multipart.addBodyPart(part);
+            }
+            message.setContent(multipart);
+        }
+        message.saveChanges();
+        return message;
+    }
+
+    private static void addAll(Set<String> target, Address[] addresses) {
+        if (addresses != null) {
+            for (Address address : addresses) {
+                target.add(address.toString());
+            }
+        }
+    }
+
+    /**
+     * 账号配置变更（含密码）后使用新的连接池，旧连接池的连接空闲超时后关闭，连接全部关闭后连接池从池表中移除
+     */
+    private static String poolKey(MailAccount account) {
+        return account.getHost() + ":" + account.getPort() + ":" + account.getUser() + ":" + account.getFrom()
+                + ":" + account.isSslEnable() + ":" + account.isStarttlsEnable() + ":"
+                + String.valueOf(account.getPass()).hashCode();
+    }
+
+    /**
+     * 单个账号的连接池
+     */
+    private class AccountPool {
+
+        private final MailAccount account;
+        private final Session session;
+        private final Semaphore permits;
+        private final Deque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+
+        /**
+         * 正在使用本连接池发送的线程数
+         */
+        private int users;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean retired;
+
+        private AccountPool(MailAccount account) {
+            this.account = account;
+            Properties props = account.getSmtpProps();
+            props.setProperty(SEND_PARTIAL_PROPERTY, "true");
+            this.session = Session.getInstance(props);
+            this.permits = new Semaphore(maxSessions);
+        }
+
+        /**
+         * 开始使用连接池
+         *
+         * @return 是否可用；已被移除时返回 false
+         */
+        private synchronized boolean enter() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        private synchronized void exit() {
+            users--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * 没有使用者、没有空闲连接且超过 idleTimeout 未使用时标记为已移除
+         */
+        private synchronized boolean tryRetire(long now) {
+            if (users > 0 || !idle.isEmpty() || now - lastUsed < idleTimeoutMillis) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        private void sendMessage(MimeMessage message, Address[] recipients) throws MessagingException {
+            PooledTransport transport = borrow();
+            boolean reusable = true;
+            try {
+                transport.transport.sendMessage(message, recipients);
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                // 连接可能已被服务端关闭，换新连接重试一次
+                log.warn("[sendMessage][SMTP 连接不可用，重新建立连接后重试，host: {}，原因: {}]", account.getHost(), e.getMessage());
+                close(transport);
+                // 重新建连失败时不能把已关闭的连接放回池中
+                transport = null;
+                transport = connect();
+                try {
+                    transport.transport.sendMessage(message, recipients);
+                } catch (SendFailedException retryException) {
+                    throw retryException;
+                } catch (MessagingException | IllegalStateException retryException) {
+                    reusable = false;
+                    throw retryException;
+                }
+            } finally {
+                release(transport, reusable);
+            }
+        }
+
+        private PooledTransport borrow() throws MessagingException {
+            try {
+                if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new MessagingException("等待 SMTP 连接超时: " + account.getHost());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("等待 SMTP 连接被中断", e);
+            }
+            try {
+                long now = System.currentTimeMillis();
+                PooledTransport transport;
+                while ((transport = idle.pollFirst()) != null) {
+                    if (now - transport.lastUsed < idleTimeoutMillis && transport.transport.isConnected()) {
+                        return transport;
+                    }
+                    close(transport);
+                }
+                return connect();
+            } catch (MessagingException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private PooledTransport connect() throws MessagingException {
+            Transport transport = session.getTransport("smtp");
+            transport.connect(account.getHost(), account.getPort(), account.getUser(), account.getPass());
+            return new PooledTransport(transport);
+        }
+
+        private void release(PooledTransport transport, boolean reusable) {
+            if (reusable && transport != null) {
+                transport.lastUsed = System.currentTimeMillis();
+                // 后进先出，常用连接保持活跃，多余连接空闲超时后关闭
+                idle.offerFirst(transport);
+            } else {
+                close(transport);
+            }
+            permits.release();
+        }
+
+        private void evictIdle() {
+            long now = System.currentTimeMillis();
+            idle.removeIf(transport -> {
+                if (now - transport.lastUsed >= idleTimeoutMillis) {
+                    close(transport);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        private void close() {
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                close(transport);
+            }
+        }
+
+        private void close(PooledTransport transport) {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.transport.close();
+            } catch (MessagingException e) {
+                log.debug("[close][关闭 SMTP 连接失败: {}]", e.getMessage());
+            }
+        }
+
+    }
+
+    private static class PooledTransport {
+
+        private final Transport transport;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+    }
+
+}
@@ -87,12 +87,21 @@ public class AliyunMsgMaker extends BaseMsgMaker implements IMsgMaker {
      */
     @Override
     public SendSmsRequest makeMsg(String msgId) {
+        return makeMsg(messagePrepareService.querySmsByMsgId(msgId));
+    }
+
+    /**
+     * 使用内存中的短信消息组织阿里云短信消息
+     *
+     * @param tMsgSms 短信消息，需包含模板参数
+     * @return SendSmsRequest
+     */
+    public SendSmsRequest makeMsg(TMsgSms tMsgSms) {
         SendSmsRequest request = new SendSmsRequest();
         //使用post提交
         request.setSysMethod(MethodType.POST);
         //必填:短信签名-可在短信控制台中找到
 
-        TMsgSms tMsgSms = messagePrepareService.querySmsByMsgId(msgId);
         MessageConfig messageConfig = messageConfigService.queryByMsgType(1);
         Map<String,Object> configMap = messageConfig.getConfigurationMap();
         request.setSignName((String) configMap.get("aliyunSign"));
@@ -110,6 +110,23 @@ public class HttpMsgMaker extends BaseMsgMaker implements IMsgMaker {
     @Override
     public HttpMsg makeMsg(String msgId) {
         log.info("开始构建HttpMsg, msgId: {}", msgId);
+        log.debug("查询TMsgHttp, msgId: {}", msgId);
+        TMsgHttp tMsgHttp = tMsgHttpMapper.selectByPrimaryKey(msgId);
+        if (tMsgHttp == null) {
+            log.error("TMsgHttp未找到, msgId: {}", msgId);
+            throw new RuntimeException("TMsgHttp未找到, msgId: " + msgId);
+        }
+        return makeMsg(tMsgHttp);
+    }
+
+    /**
+     * 使用内存中的消息对象组织HttpMsg，不再按msgId查询数据库
+     *
+     * @param tMsgHttp HTTP消息
+     * @return HttpMsg
+     */
+    public HttpMsg makeMsg(TMsgHttp tMsgHttp) {
+        String msgId = tMsgHttp.getId();
         HttpMsg httpMsg = new HttpMsg();
         try {
             log.debug("查询MessageConfig, msgId: {}, msgType: 5", msgId);
@@ -123,13 +140,7 @@ public class HttpMsgMaker extends BaseMsgMaker implements IMsgMaker {
             Map<String,Object> configMap = JSONObject.parseObject(messageConfig.getConfiguration());
             log.debug("Configuration解析成功, msgId: {}, configKeys: {}", msgId, configMap.keySet());
             
-            log.debug("查询TMsgHttp, msgId: {}", msgId);
-            TMsgHttp tMsgHttp = tMsgHttpMapper.selectByPrimaryKey(msgId);
-            if (tMsgHttp == null) {
-                log.error("TMsgHttp未找到, msgId: {}", msgId);
-                throw new RuntimeException("TMsgHttp未找到, msgId: " + msgId);
-            }
-            log.info("TMsgHttp查询成功, msgId: {}, msgName: {}, url: {}, method: {}", 
+            log.info("TMsgHttp, msgId: {}, msgName: {}, url: {}, method: {}", 
                     msgId, tMsgHttp.getMsgName(), tMsgHttp.getUrl(), tMsgHttp.getMethod());
 
             httpMsg.setUrl(tMsgHttp.getUrl());
@@ -54,8 +54,16 @@ public class TxYunMsgMaker extends BaseMsgMaker implements IMsgMaker{
      */
     @Override
     public String[] makeMsg(String msgId) {
+        return makeMsg(tMsgSmsMapper.selectByPrimaryKey(msgId));
+    }
 
-        TMsgSms tMsgSms = tMsgSmsMapper.selectByPrimaryKey(msgId);
+    /**
+     * 使用内存中的短信消息组织腾讯云短信消息
+     *
+     * @param tMsgSms 短信消息，需包含模板参数
+     * @return String[]
+     */
+    public String[] makeMsg(TMsgSms tMsgSms) {
         List<TTemplateData> templateDataList = tMsgSms.getTemplateDataList();
         for (int i = 0; i < templateDataList.size(); i++) {
             paramList.set(i, templateDataList.get(i).getValue());
@@ -66,11 +66,19 @@ public class WxCpMsgMaker extends BaseMsgMaker implements IMsgMaker {
      */
     @Override
     public WxCpMessage makeMsg(String msgId) {
+        return makeMsg(tMsgWxCpMapper.selectByPrimaryKey(msgId));
+    }
+
+    /**
+     * 使用内存中的消息对象组织企业微信消息
+     *
+     * @param tMsgWxCp 企业微信消息
+     * @return WxCpMessage
+     */
+    public WxCpMessage makeMsg(TMsgWxCp tMsgWxCp) {
 
         WxCpMessage wxCpMessage = null;
 
-        TMsgWxCp tMsgWxCp = tMsgWxCpMapper.selectByPrimaryKey(msgId);
-        wxCpMessage.setToUser(tMsgWxCp.getPreviewUser());
         String msgType = tMsgWxCp.getCpMsgType();
         if ("图文消息".equals(msgType)) {
             NewArticle article = new NewArticle();
@@ -90,6 +98,7 @@ public class WxCpMsgMaker extends BaseMsgMaker implements IMsgMaker {
             article.setUrl(tMsgWxCp.getUrl());
 
             wxCpMessage = WxCpMessage.NEWS().addArticle(article).build();
+            wxCpMessage.setToUser(tMsgWxCp.getPreviewUser());
         } else if ("文本消息".equals(msgType)) {
             String content = tMsgWxCp.getContent();
             wxCpMessage = WxCpMessage.TEXT().agentId(Integer.valueOf(tMsgWxCp.getAgentId())).toUser(tMsgWxCp.getPreviewUser()).content(content).build();
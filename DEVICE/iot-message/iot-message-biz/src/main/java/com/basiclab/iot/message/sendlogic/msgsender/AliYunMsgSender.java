@@ -10,9 +10,9 @@ import com.aliyuncs.profile.DefaultProfile;
 import com.basiclab.iot.message.domain.entity.MessageConfig;
 import com.basiclab.iot.message.domain.entity.TMsgSms;
 import com.basiclab.iot.message.domain.model.SendResult;
-import com.basiclab.iot.message.mapper.TMsgSmsMapper;
 import com.basiclab.iot.message.sendlogic.msgmaker.AliyunMsgMaker;
 import com.basiclab.iot.message.service.MessageConfigService;
+import com.basiclab.iot.message.service.MessagePrepareService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,18 +42,35 @@ public class AliYunMsgSender implements IMsgSender {
     private MessageConfigService messageConfigService;
 
     @Autowired
-    private TMsgSmsMapper tMsgSmsMapper;
+    private MessagePrepareService messagePrepareService;
 
 
     @Override
     public SendResult send(String msgId) {
+        try {
+            return send(messagePrepareService.querySmsByMsgId(msgId));
+        } catch (Exception e) {
+            SendResult sendResult = new SendResult();
+            sendResult.setSuccess(false);
+            sendResult.setInfo(e.getMessage());
+            log.error(ExceptionUtils.getStackTrace(e));
+            return sendResult;
+        }
+    }
+
+    /**
+     * 使用内存中的短信消息发送，不再按msgId查询数据库
+     *
+     * @param tMsgSms 短信消息，需包含模板参数
+     * @return 发送结果
+     */
+    public SendResult send(TMsgSms tMsgSms) {
         SendResult sendResult = new SendResult();
         IAcsClient iAcsClient = getAliyunIAcsClient();
 
         try {
             //初始化acsClient,暂不支持region化
-            SendSmsRequest sendSmsRequest = aliyunMsgMaker.makeMsg(msgId);
-            TMsgSms tMsgSms = tMsgSmsMapper.selectByPrimaryKey(msgId);
+            SendSmsRequest sendSmsRequest = aliyunMsgMaker.makeMsg(tMsgSms);
             sendResult.setMsgName(tMsgSms.getMsgName());
             sendSmsRequest.setPhoneNumbers(sendSmsRequest.getPhoneNumbers());
             SendSmsResponse response = iAcsClient.getAcsResponse(sendSmsRequest);
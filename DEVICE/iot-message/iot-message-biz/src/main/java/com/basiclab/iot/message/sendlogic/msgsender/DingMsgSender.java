@@ -19,7 +19,6 @@ import com.basiclab.iot.message.mapper.TMsgDingMapper;
 import com.basiclab.iot.message.mapper.TPreviewUserGroupMapper;
 import com.basiclab.iot.message.mapper.TPreviewUserMapper;
 import com.basiclab.iot.message.sendlogic.PushControl;
-import com.basiclab.iot.message.sendlogic.msgmaker.DingMsgMaker;
 import com.basiclab.iot.message.service.MessageConfigService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
@@ -49,9 +48,6 @@ public class DingMsgSender implements IMsgSender {
     public volatile static DefaultDingTalkClient robotClient;
     public static TimedCache<String, String> accessTokenTimedCache;
 
-    @Autowired
-    private DingMsgMaker dingMsgMaker;
-
     @Autowired
     private TMsgDingMapper tMsgDingMapper;
 
@@ -68,19 +64,28 @@ public class DingMsgSender implements IMsgSender {
     public SendResult send(String msgId) {
         log.info("钉钉发送开始 params is:"+msgId);
         TMsgDing tMsgDing = tMsgDingMapper.selectByPrimaryKey(msgId);
+        return send(tMsgDing);
+    }
+
+    /**
+     * 使用内存中的钉钉消息发送，不再按msgId查询数据库
+     *
+     * @param tMsgDing 钉钉消息
+     * @return 发送结果
+     */
+    public SendResult send(TMsgDing tMsgDing) {
         if ("work".equals(tMsgDing.getRadioType())) {
-            return sendWorkMsg(msgId);
+            return sendWorkMsg(tMsgDing);
         } else {
-            return sendRobotMsg(msgId);
+            return sendRobotMsg(tMsgDing);
         }
     }
 
-    public SendResult sendWorkMsg(String msgId) {
+    public SendResult sendWorkMsg(TMsgDing dingMsg) {
         DefaultDingTalkClient defaultDingTalkClient = getDefaultDingTalkClient();
         SendResult sendResult = new SendResult();
 
         try {
-            TMsgDing dingMsg = dingMsgMaker.makeMsg(msgId);
             sendResult.setMsgName(dingMsg.getMsgName());
 
 
@@ -121,11 +126,10 @@ public class DingMsgSender implements IMsgSender {
         return sendResult;
     }
 
-    public SendResult sendRobotMsg(String msgId) {
+    public SendResult sendRobotMsg(TMsgDing dingMsg) {
         SendResult sendResult = new SendResult();
 
         try {
-            TMsgDing dingMsg = dingMsgMaker.makeMsg(msgId);
             DingTalkClient client = getRobotClient(dingMsg);
             OapiRobotSendRequest request2 = new OapiRobotSendRequest();
 
@@ -35,16 +35,26 @@ public class FeishuMsgSender implements IMsgSender {
     @Override
     public SendResult send(String msgId) {
         log.info("飞书发送开始 params is:" + msgId);
+        TMsgFeishu feishuMsg = feishuMsgMaker.makeMsg(msgId);
+        if (feishuMsg == null) {
+            SendResult sendResult = new SendResult();
+            sendResult.setSuccess(false);
+            sendResult.setInfo("飞书消息不存在: " + msgId);
+            return sendResult;
+        }
+        return send(feishuMsg);
+    }
+
+    /**
+     * 使用内存中的飞书消息发送，不再按msgId查询数据库
+     *
+     * @param feishuMsg 飞书消息
+     * @return 发送结果
+     */
+    public SendResult send(TMsgFeishu feishuMsg) {
         SendResult sendResult = new SendResult();
         
         try {
-            TMsgFeishu feishuMsg = feishuMsgMaker.makeMsg(msgId);
-            if (feishuMsg == null) {
-                sendResult.setSuccess(false);
-                sendResult.setInfo("飞书消息不存在: " + msgId);
-                return sendResult;
-            }
-            
             sendResult.setMsgName(feishuMsg.getMsgName());
             
             String webHook = feishuMsg.getWebHook();
@@ -1,22 +1,20 @@
 package com.basiclab.iot.message.sendlogic.msgsender;
 
-import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.Header;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.json.JSONUtil;
 import com.basiclab.iot.message.domain.entity.MessageConfig;
+import com.basiclab.iot.message.domain.entity.TMsgHttp;
 import com.basiclab.iot.message.domain.model.HttpSendResult;
 import com.basiclab.iot.message.domain.model.SendResult;
 import com.basiclab.iot.message.domain.model.bean.HttpMsg;
+import com.basiclab.iot.message.sendlogic.http.WebhookDeliveryEngine;
 import com.basiclab.iot.message.sendlogic.msgmaker.HttpMsgMaker;
 import com.basiclab.iot.message.service.MessageConfigService;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.net.HttpCookie;
@@ -25,9 +23,7 @@ import java.net.Proxy;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
 
 /**
  * Http消息发送器
@@ -50,8 +46,8 @@ public class HttpMsgSender implements IMsgSender {
     @Autowired
     private MessageConfigService messageConfigService;
 
-    // 创建独立的线程池，避免使用Tomcat线程
-    private final Executor asyncExecutor = Executors.newFixedThreadPool(10);
+    @Autowired
+    private WebhookDeliveryEngine webhookDeliveryEngine;
 
     @Override
     public HttpSendResult send(String msgId) {
@@ -66,6 +62,32 @@ public class HttpMsgSender implements IMsgSender {
         }
     }
 
+    /**
+     * 使用内存中的消息对象发送（不从数据库读取）
+     */
+    public HttpSendResult send(TMsgHttp tMsgHttp) {
+        log.info("HTTP发送开始, msgId: {}", tMsgHttp.getId());
+        return sendAsync(tMsgHttp).join();
+    }
+
+    /**
+     * 使用内存中的消息对象异步发送，请求在途和重试等待期间不占用调用线程
+     */
+    public CompletableFuture<HttpSendResult> sendAsync(TMsgHttp tMsgHttp) {
+        HttpMsg httpMsg;
+        try {
+            httpMsg = httpMsgMaker.makeMsg(tMsgHttp);
+        } catch (Exception e) {
+            log.error("HTTP消息构建异常, msgId: {}, error: {}", tMsgHttp.getId(), e.getMessage());
+            HttpSendResult sendResult = new HttpSendResult();
+            sendResult.setMsgName(tMsgHttp.getMsgName());
+            sendResult.setSuccess(false);
+            sendResult.setInfo(e.getMessage());
+            return CompletableFuture.completedFuture(sendResult);
+        }
+        return asyncSendWithHttpMsg(httpMsg);
+    }
+
     /**
      * 直接使用HttpMsg对象发送（不从数据库读取）
      * 用于支持前端直接传递HTTP参数的情况
@@ -73,50 +95,38 @@ public class HttpMsgSender implements IMsgSender {
     public HttpSendResult sendWithHttpMsg(HttpMsg httpMsg) {
         log.info("使用HttpMsg对象直接发送, msgName: {}, method: {}, url: {}",
                 httpMsg.getMsgName(), httpMsg.getMethod(), httpMsg.getUrl());
-        try {
-            // 使用独立的线程池执行，避免死锁
-            CompletableFuture<HttpSendResult> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    // 先尝试 Hutool
-                    HttpSendResult hutoolResult = sendUseHutoolWithMsg(httpMsg);
-                    if (hutoolResult.isSuccess()) {
-                        log.info("Hutool 发送成功");
-                        return hutoolResult;
-                    }
-
-                    log.info("Hutool 发送失败，尝试 OkHttp");
-                    return sendUseOkHttpWithMsg(httpMsg);
-                } catch (Exception e) {
-                    log.error("异步发送失败: {}", e.getMessage());
-                    HttpSendResult result = new HttpSendResult();
-                    result.setMsgName(httpMsg.getMsgName());
-                    result.setSuccess(false);
-                    result.setInfo("异步发送失败: " + e.getMessage());
-                    return result;
-                }
-            }, asyncExecutor);
-
-            // 等待结果，设置超时
-            HttpSendResult result = future.get(30, TimeUnit.SECONDS);
-            log.info("HTTP发送完成, msgName: {}, success: {}", httpMsg.getMsgName(), result.isSuccess());
-            return result;
-
-        } catch (Exception e) {
-            log.error("HTTP发送过程中发生异常, msgName: {}, error: {}", httpMsg.getMsgName(), e.getMessage(), e);
-            HttpSendResult result = new HttpSendResult();
-            result.setMsgName(httpMsg.getMsgName());
-            result.setSuccess(false);
-            result.setInfo("发送异常: " + e.getMessage());
-            return result;
-        }
+        HttpSendResult result = sendUseOkHttpWithMsg(httpMsg);
+        log.info("HTTP发送完成, msgName: {}, success: {}", httpMsg.getMsgName(), result.isSuccess());
+        return result;
     }
 
     /**
-     * 异步发送方法
+     * 异步发送方法，由 {@link WebhookDeliveryEngine} 投递，不占用调用线程
      */
-    @Async
     public CompletableFuture<HttpSendResult> asyncSendWithHttpMsg(HttpMsg httpMsg) {
-        return CompletableFuture.supplyAsync(() -> sendWithHttpMsg(httpMsg), asyncExecutor);
+        Request request;
+        OkHttpClient client;
+        try {
+            request = buildRequest(httpMsg);
+            client = getOkHttpClient();
+        } catch (Exception e) {
+            log.error("HTTP请求构建异常, msgName: {}, error: {}", httpMsg.getMsgName(), e.getMessage());
+            return CompletableFuture.completedFuture(failure(httpMsg, e.getMessage()));
+        }
+        log.info("HTTP请求构建完成, method: {}, url: {}", request.method(), request.url());
+        return webhookDeliveryEngine.deliver(client, request).handle((response, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("HTTP消息发送异常, url: {}, error: {}", request.url(), cause.getMessage());
+                return failure(httpMsg, cause.getMessage());
+            }
+            try {
+                return toSendResult(httpMsg, request, response);
+            } finally {
+                // 确保响应被关闭，防止连接泄漏
+                response.close();
+            }
+        });
     }
 
     @Override
@@ -125,328 +135,174 @@ public class HttpMsgSender implements IMsgSender {
     }
 
     /**
-     * 直接使用HttpMsg对象发送（Hutool实现，用于OPTIONS等方法）
+     * 直接使用HttpMsg对象发送（不从数据库读取），同步等待投递结果
      */
-    public HttpSendResult sendUseHutoolWithMsg(HttpMsg httpMsg) {
-        HttpSendResult sendResult = new HttpSendResult();
-        sendResult.setMsgName(httpMsg.getMsgName());
-        HttpResponse httpResponse;
-        try {
-            log.debug("使用Hutool发送HTTP请求, url: {}, method: {}", httpMsg.getUrl(), httpMsg.getMethod());
+    public HttpSendResult sendUseOkHttpWithMsg(HttpMsg httpMsg) {
+        log.info("开始使用OkHttp发送消息（直接使用HttpMsg对象）, msgName: {}, method: {}, url: {}",
+                httpMsg.getMsgName(), httpMsg.getMethod(), httpMsg.getUrl());
+        return asyncSendWithHttpMsg(httpMsg).join();
+    }
 
-            // 如果请求的是本地服务，使用127.0.0.1而不是localhost
-            String finalUrl = httpMsg.getUrl();
-            if (isLocalRequest(finalUrl)) {
-                finalUrl = finalUrl.replace("localhost:", "127.0.0.1:");
-                log.debug("本地请求，使用127.0.0.1: {}", finalUrl);
+    private Request buildRequest(HttpMsg httpMsg) {
+        Request.Builder requestBuilder = new Request.Builder();
+
+        RequestBody requestBody = null;
+        // 优先使用body，只有当body为空时才使用params
+        if (!"GET".equals(httpMsg.getMethod()) &&
+                httpMsg.getBody() != null && !httpMsg.getBody().trim().isEmpty()) {
+            log.info("构建JSON/文本请求体, bodyType: {}, bodyLength: {}",
+                    httpMsg.getBodyType(), httpMsg.getBody().length());
+            String bodyType = httpMsg.getBodyType() != null ? httpMsg.getBodyType() : "application/json";
+            MediaType mediaType = MediaType.parse(bodyType + "; charset=utf-8");
+            requestBody = RequestBody.create(httpMsg.getBody(), mediaType);
+        } else if (!"GET".equals(httpMsg.getMethod()) &&
+                httpMsg.getParamMap() != null && !httpMsg.getParamMap().isEmpty()) {
+            log.debug("构建表单请求体, paramCount: {}", httpMsg.getParamMap().size());
+            FormBody.Builder formBodyBuilder = new FormBody.Builder();
+            for (Map.Entry<String, Object> paramEntry : httpMsg.getParamMap().entrySet()) {
+                formBodyBuilder.add(paramEntry.getKey(), (String) paramEntry.getValue());
             }
+            requestBody = formBodyBuilder.build();
+        } else if (!"GET".equals(httpMsg.getMethod())) {
+            // POST/PUT/PATCH等请求，如果没有body和params，创建一个空的JSON body
+            log.debug("构建空请求体, method: {}", httpMsg.getMethod());
+            MediaType mediaType = MediaType.parse("application/json; charset=utf-8");
+            requestBody = RequestBody.create("{}", mediaType);
+        }
 
-            HttpRequest httpRequest;
-            switch (httpMsg.getMethod().toUpperCase()) {
-                case "GET":
-                    httpRequest = HttpRequest.get(finalUrl);
-                    break;
-                case "POST":
-                    httpRequest = HttpRequest.post(finalUrl);
-                    break;
-                case "PUT":
-                    httpRequest = HttpRequest.put(finalUrl);
-                    break;
-                case "PATCH":
-                    httpRequest = HttpRequest.patch(finalUrl);
-                    break;
-                case "DELETE":
-                    httpRequest = HttpRequest.delete(finalUrl);
-                    break;
-                case "HEAD":
-                    httpRequest = HttpRequest.head(finalUrl);
-                    break;
-                case "OPTIONS":
-                    httpRequest = HttpRequest.options(finalUrl);
-                    break;
-                default:
-                    httpRequest = HttpRequest.get(finalUrl).form(httpMsg.getParamMap());
+        // 添加必要的请求头
+        if (requestBody != null) {
+            // 自动添加 Content-Type 头
+            String contentType = httpMsg.getBodyType();
+            if (StringUtils.isEmpty(contentType) && httpMsg.getBody() != null
+                    && httpMsg.getBody().trim().startsWith("{")) {
+                contentType = "application/json";
             }
-
-            // 设置较短的超时时间，避免阻塞
-            httpRequest.timeout(10000); // 10秒
-
-            // 优先使用body，只有当body为空时才使用params
-            if (StringUtils.isNotEmpty(httpMsg.getBody())) {
-                log.debug("设置请求体, length: {}", httpMsg.getBody().length());
-                httpRequest.body(httpMsg.getBody());
-            } else if (httpMsg.getParamMap() != null && !httpMsg.getParamMap().isEmpty()) {
-                log.debug("设置表单参数, paramCount: {}", httpMsg.getParamMap().size());
-                httpRequest.form(httpMsg.getParamMap());
+            if (StringUtils.isNotEmpty(contentType)) {
+                requestBuilder.addHeader("Content-Type", contentType + "; charset=utf-8");
             }
+        }
 
-            // 设置请求头
-            if (httpMsg.getHeaderMap() != null && !httpMsg.getHeaderMap().isEmpty()) {
-                log.debug("设置请求头, headerCount: {}", httpMsg.getHeaderMap().size());
-                for (Map.Entry<String, Object> entry : httpMsg.getHeaderMap().entrySet()) {
-                    httpRequest.header(entry.getKey(), (String) entry.getValue());
-                }
-            }
+        // 添加 User-Agent 头
+        requestBuilder.addHeader("User-Agent", "OkHttpClient");
 
-            // 设置Content-Type
-            if (StringUtils.isNotEmpty(httpMsg.getBody())) {
-                String contentType = httpMsg.getBodyType();
-                if (StringUtils.isEmpty(contentType)) {
-                    contentType = "application/json";
-                }
-                httpRequest.header("Content-Type", contentType + "; charset=utf-8");
-            }
+        // 添加 Accept 头
+        requestBuilder.addHeader("Accept", "application/json");
 
-            // 添加User-Agent
-            httpRequest.header("User-Agent", "Hutool-HTTP");
+        // 添加配置的请求头
+        if (httpMsg.getHeaderMap() != null && !httpMsg.getHeaderMap().isEmpty()) {
+            log.debug("添加请求头, headerCount: {}", httpMsg.getHeaderMap().size());
+            for (Map.Entry<String, Object> headerEntry : httpMsg.getHeaderMap().entrySet()) {
+                requestBuilder.addHeader(headerEntry.getKey(), (String) headerEntry.getValue());
+            }
+        }
+        if (httpMsg.getCookies() != null && !httpMsg.getCookies().isEmpty()) {
+            log.debug("添加Cookie, cookieCount: {}", httpMsg.getCookies().size());
+            requestBuilder.addHeader(Header.COOKIE.toString(), cookieHeader(httpMsg.getCookies()));
+        }
 
-            // 添加Accept
-            httpRequest.header("Accept", "application/json");
+        // 如果请求的是本地服务，使用127.0.0.1而不是localhost
+        String finalUrl = httpMsg.getUrl();
+        if (isLocalRequest(finalUrl)) {
+            finalUrl = finalUrl.replace("localhost:", "127.0.0.1:");
+            log.debug("本地请求，使用127.0.0.1: {}", finalUrl);
+        }
 
-            if (httpMsg.getCookies() != null && !httpMsg.getCookies().isEmpty()) {
-                HttpCookie[] cookies = ArrayUtil.toArray(httpMsg.getCookies(), HttpCookie.class);
-                httpRequest.cookie(cookies);
-            }
+        log.debug("设置HTTP方法和URL, method: {}, url: {}", httpMsg.getMethod(), finalUrl);
 
-            log.info("Hutool发送请求: {} {}", httpMsg.getMethod(), finalUrl);
+        switch (httpMsg.getMethod().toUpperCase()) {
+            case "GET":
+                HttpUrl.Builder urlBuilder = HttpUrl.parse(finalUrl).newBuilder();
+                if (httpMsg.getParamMap() != null && !httpMsg.getParamMap().isEmpty()) {
+                    for (Map.Entry<String, Object> paramEntry : httpMsg.getParamMap().entrySet()) {
+                        urlBuilder.addQueryParameter(paramEntry.getKey(), (String) paramEntry.getValue());
+                    }
+                }
+                requestBuilder.url(urlBuilder.build()).get();
+                break;
+            case "POST":
+                requestBuilder.url(finalUrl).post(requestBody);
+                break;
+            case "PUT":
+                requestBuilder.url(finalUrl).put(requestBody);
+                break;
+            case "PATCH":
+                requestBuilder.url(finalUrl).patch(requestBody);
+                break;
+            case "DELETE":
+                requestBuilder.url(finalUrl).delete(requestBody);
+                break;
+            case "HEAD":
+                requestBuilder.url(finalUrl).head();
+                break;
+            case "OPTIONS":
+                requestBuilder.url(finalUrl).method("OPTIONS", null);
+                break;
+            default:
+                requestBuilder.url(finalUrl);
+        }
 
-            httpResponse = httpRequest.execute();
+        return requestBuilder.build();
+    }
 
-            log.info("Hutool响应: status={}, length={}",
-                    httpResponse.getStatus(), httpResponse.body().length());
+    private HttpSendResult toSendResult(HttpMsg httpMsg, Request request, Response response) {
+        HttpSendResult sendResult = new HttpSendResult();
+        sendResult.setMsgName(httpMsg.getMsgName());
+        log.info("HTTP请求执行完成, responseCode: {}, requestUrl: {}", response.code(), request.url());
 
-            if (!httpResponse.isOk()) {
-                sendResult.setSuccess(false);
-                sendResult.setInfo("HTTP " + httpResponse.getStatus() + ": " + httpResponse.body());
-                return sendResult;
+        // 读取响应体
+        String responseBody = "";
+        if (response.body() != null) {
+            try {
+                responseBody = response.body().string();
+            } catch (Exception e) {
+                log.warn("读取响应体失败: {}", e.getMessage());
             }
+        }
 
-        } catch (Exception e) {
-            log.error("Hutool发送异常: {}", e.getMessage());
+        if (!response.isSuccessful()) {
             sendResult.setSuccess(false);
-            sendResult.setInfo("Hutool发送异常: " + e.getMessage());
+            sendResult.setInfo("HTTP请求失败，状态码: " + response.code() + ", 响应: " + responseBody);
+            log.warn("HTTP请求失败, responseCode: {}, responseBody: {}", response.code(), responseBody);
             return sendResult;
         }
-
-        StringBuilder headerBuilder = StrUtil.builder();
-        for (Map.Entry<String, List<String>> entry : httpResponse.headers().entrySet()) {
-            headerBuilder.append(entry.getKey()).append(": ").append(entry.getValue()).append(StrUtil.CRLF);
-        }
-        sendResult.setHeaders(headerBuilder.toString());
-
-        String body = httpResponse.body();
-        sendResult.setInfo(body);
-        if (body != null && body.startsWith("{") && body.endsWith("}")) {
+        sendResult.setInfo(responseBody);
+        if (responseBody != null && responseBody.startsWith("{") && responseBody.endsWith("}")) {
             try {
-                body = JSONUtil.toJsonPrettyStr(body);
+                responseBody = JSONUtil.toJsonPrettyStr(responseBody);
             } catch (Exception e) {
-                log.error("JSON格式化错误: {}", e.toString());
+                log.error("格式化JSON响应失败, error: {}", e.getMessage());
             }
         }
-        sendResult.setBody(body);
+        sendResult.setBody(responseBody);
+
+        sendResult.setHeaders(response.headers().toString());
 
         StringBuilder cookiesBuilder = StrUtil.builder();
-        List<String> headerList = httpResponse.headerList(Header.SET_COOKIE.toString());
-        if (headerList != null) {
-            for (String cookieStr : headerList) {
-                cookiesBuilder.append(cookieStr).append(StrUtil.CRLF);
-            }
+        List<String> headerList = response.headers(Header.SET_COOKIE.toString());
+        for (String cookieStr : headerList) {
+            cookiesBuilder.append(cookieStr).append(StrUtil.CRLF);
         }
 
         sendResult.setCookies(cookiesBuilder.toString());
-        sendResult.setSuccess(true);
 
+        sendResult.setSuccess(true);
+        log.info("HTTP消息发送成功, responseCode: {}", response.code());
         return sendResult;
     }
 
-    /**
-     * 直接使用HttpMsg对象发送（不从数据库读取）
-     */
-    public HttpSendResult sendUseOkHttpWithMsg(HttpMsg httpMsg) {
-        log.info("开始使用OkHttp发送消息（直接使用HttpMsg对象）, msgName: {}, method: {}, url: {}",
-                httpMsg.getMsgName(), httpMsg.getMethod(), httpMsg.getUrl());
+    private HttpSendResult failure(HttpMsg httpMsg, String info) {
         HttpSendResult sendResult = new HttpSendResult();
-        Response response = null;
-        try {
-            log.debug("准备获取OkHttpClient");
-            OkHttpClient okHttpClient = getOkHttpClient();
-            log.debug("OkHttpClient获取成功");
-
-            sendResult.setMsgName(httpMsg.getMsgName());
-
-            log.debug("开始构建HTTP请求");
-            Request.Builder requestBuilder = new Request.Builder();
-
-            RequestBody requestBody = null;
-            // 优先使用body，只有当body为空时才使用params
-            if (!"GET".equals(httpMsg.getMethod()) &&
-                    httpMsg.getBody() != null && !httpMsg.getBody().trim().isEmpty()) {
-                log.info("构建JSON/文本请求体, bodyType: {}, bodyLength: {}",
-                        httpMsg.getBodyType(), httpMsg.getBody().length());
-                String bodyType = httpMsg.getBodyType() != null ? httpMsg.getBodyType() : "application/json";
-                MediaType mediaType = MediaType.parse(bodyType + "; charset=utf-8");
-                requestBody = RequestBody.create(httpMsg.getBody(), mediaType);
-            } else if (!"GET".equals(httpMsg.getMethod()) &&
-                    httpMsg.getParamMap() != null && !httpMsg.getParamMap().isEmpty()) {
-                log.debug("构建表单请求体, paramCount: {}", httpMsg.getParamMap().size());
-                FormBody.Builder formBodyBuilder = new FormBody.Builder();
-                for (Map.Entry<String, Object> paramEntry : httpMsg.getParamMap().entrySet()) {
-                    formBodyBuilder.add(paramEntry.getKey(), (String) paramEntry.getValue());
-                }
-                requestBody = formBodyBuilder.build();
-            } else if (!"GET".equals(httpMsg.getMethod())) {
-                // POST/PUT/PATCH等请求，如果没有body和params，创建一个空的JSON body
-                log.debug("构建空请求体, method: {}", httpMsg.getMethod());
-                MediaType mediaType = MediaType.parse("application/json; charset=utf-8");
-                requestBody = RequestBody.create("{}", mediaType);
-            }
-
-            // 添加必要的请求头
-            if (requestBody != null) {
-                // 自动添加 Content-Type 头
-                String contentType = httpMsg.getBodyType();
-                if (StringUtils.isEmpty(contentType) && httpMsg.getBody() != null
-                        && httpMsg.getBody().trim().startsWith("{")) {
-                    contentType = "application/json";
-                }
-                if (StringUtils.isNotEmpty(contentType)) {
-                    requestBuilder.addHeader("Content-Type", contentType + "; charset=utf-8");
-                }
-            }
-
-            // 添加 User-Agent 头
-            requestBuilder.addHeader("User-Agent", "OkHttpClient");
-
-            // 添加 Accept 头
-            requestBuilder.addHeader("Accept", "application/json");
-
-            // 添加配置的请求头
-            if (httpMsg.getHeaderMap() != null && !httpMsg.getHeaderMap().isEmpty()) {
-                log.debug("添加请求头, headerCount: {}", httpMsg.getHeaderMap().size());
-                for (Map.Entry<String, Object> headerEntry : httpMsg.getHeaderMap().entrySet()) {
-                    requestBuilder.addHeader(headerEntry.getKey(), (String) headerEntry.getValue());
-                }
-            }
-            if (httpMsg.getCookies() != null && !httpMsg.getCookies().isEmpty()) {
-                log.debug("添加Cookie, cookieCount: {}", httpMsg.getCookies().size());
-                requestBuilder.addHeader(Header.COOKIE.toString(), cookieHeader(httpMsg.getCookies()));
-            }
-
-            // 如果请求的是本地服务，使用127.0.0.1而不是localhost
-            String finalUrl = httpMsg.getUrl();
-            if (isLocalRequest(finalUrl)) {
-                finalUrl = finalUrl.replace("localhost:", "127.0.0.1:");
-                log.debug("本地请求，使用127.0.0.1: {}", finalUrl);
-            }
-
-            log.debug("设置HTTP方法和URL, method: {}, url: {}", httpMsg.getMethod(), finalUrl);
-
-            switch (httpMsg.getMethod().toUpperCase()) {
-                case "GET":
-                    HttpUrl.Builder urlBuilder = HttpUrl.parse(finalUrl).newBuilder();
-                    if (httpMsg.getParamMap() != null && !httpMsg.getParamMap().isEmpty()) {
-                        for (Map.Entry<String, Object> paramEntry : httpMsg.getParamMap().entrySet()) {
-                            urlBuilder.addQueryParameter(paramEntry.getKey(), (String) paramEntry.getValue());
-                        }
-                    }
-                    requestBuilder.url(urlBuilder.build()).get();
-                    break;
-                case "POST":
-                    requestBuilder.url(finalUrl).post(requestBody);
-                    break;
-                case "PUT":
-                    requestBuilder.url(finalUrl).put(requestBody);
-                    break;
-                case "PATCH":
-                    requestBuilder.url(finalUrl).patch(requestBody);
-                    break;
-                case "DELETE":
-                    requestBuilder.url(finalUrl).delete(requestBody);
-                    break;
-                case "HEAD":
-                    requestBuilder.url(finalUrl).head();
-                    break;
-                case "OPTIONS":
-                    log.info("OPTIONS方法，切换到Hutool实现");
-                    return sendUseHutoolWithMsg(httpMsg);
-                default:
-                    requestBuilder.url(finalUrl);
-            }
-
-            Request request = requestBuilder.build();
-
-            log.info("HTTP请求构建完成, method: {}, url: {}", request.method(), request.url());
-
-            log.debug("开始执行HTTP请求");
-            response = okHttpClient.newCall(request).execute();
-            log.info("HTTP请求执行完成, responseCode: {}, requestUrl: {}",
-                    response.code(), request.url());
-
-            // 读取响应体
-            String responseBody = "";
-            if (response.body() != null) {
-                try {
-                    responseBody = response.body().string();
-                } catch (Exception e) {
-                    log.warn("读取响应体失败: {}", e.getMessage());
-                }
-            }
-
-            if (!response.isSuccessful()) {
-                sendResult.setSuccess(false);
-                sendResult.setInfo("HTTP请求失败，状态码: " + response.code() + ", 响应: " + responseBody);
-                log.warn("HTTP请求失败, responseCode: {}, responseBody: {}", response.code(), responseBody);
-                return sendResult;
-            }
-            sendResult.setInfo(responseBody);
-            if (responseBody != null && responseBody.startsWith("{") && responseBody.endsWith("}")) {
-                try {
-                    responseBody = JSONUtil.toJsonPrettyStr(responseBody);
-                } catch (Exception e) {
-                    log.error("格式化JSON响应失败, error: {}", e.getMessage());
-                }
-            }
-            sendResult.setBody(responseBody);
-
-            sendResult.setHeaders(response.headers().toString());
-
-            StringBuilder cookiesBuilder = StrUtil.builder();
-            List<String> headerList = response.headers(Header.SET_COOKIE.toString());
-            for (String cookieStr : headerList) {
-                cookiesBuilder.append(cookieStr).append(StrUtil.CRLF);
-            }
-
-            sendResult.setCookies(cookiesBuilder.toString());
-
-            sendResult.setSuccess(true);
-            log.info("HTTP消息发送成功, responseCode: {}", response.code());
-            return sendResult;
-        } catch (Exception e) {
-            log.error("HTTP消息发送异常, error: {}", e.getMessage());
-            sendResult.setSuccess(false);
-            sendResult.setInfo(e.getMessage());
-            return sendResult;
-        } finally {
-            // 确保响应被关闭，防止连接泄漏
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    log.warn("关闭响应时出错: {}", e.getMessage());
-                }
-            }
-        }
+        sendResult.setMsgName(httpMsg.getMsgName());
+        sendResult.setSuccess(false);
+        sendResult.setInfo(info);
+        return sendResult;
     }
 
     public HttpSendResult sendUseOkHttp(String msgId) {
         log.info("开始使用OkHttp发送消息, msgId: {}", msgId);
         HttpSendResult sendResult = new HttpSendResult();
-        Response response = null;
         try {
-            log.debug("准备获取OkHttpClient, msgId: {}", msgId);
-            OkHttpClient okHttpClient = getOkHttpClient();
-            log.debug("OkHttpClient获取成功, msgId: {}", msgId);
-
             log.debug("准备构建HttpMsg, msgId: {}", msgId);
             HttpMsg httpMsg = httpMsgMaker.makeMsg(msgId);
             log.info("HttpMsg构建成功, msgId: {}, method: {}, url: {}, msgName: {}",
@@ -507,11 +363,7 @@ public class HttpMsgSender implements IMsgSender {
 
             if (messageConfig == null) {
                 log.warn("未找到消息类型为5的配置，使用默认配置");
-                return new OkHttpClient.Builder()
-                        .connectTimeout(10, TimeUnit.SECONDS)  // 较短超时
-                        .readTimeout(10, TimeUnit.SECONDS)
-                        .writeTimeout(10, TimeUnit.SECONDS)
-                        .build();
+                return webhookDeliveryEngine.newClientBuilder().build();
             }
 
             Map<String, Object> configMap = messageConfig.getConfigurationMap();
@@ -520,10 +372,8 @@ public class HttpMsgSender implements IMsgSender {
             synchronized (HttpMsgSender.class) {
                 if (okHttpClient == null) {
                     log.debug("开始构建OkHttpClient");
-                    OkHttpClient.Builder builder = new OkHttpClient.Builder()
-                            .connectTimeout(10, TimeUnit.SECONDS)  // 较短超时，避免死锁
-                            .readTimeout(10, TimeUnit.SECONDS)
-                            .writeTimeout(10, TimeUnit.SECONDS);
+                    // 共享投递引擎的 Dispatcher 和连接池，超时、并发限制由引擎统一配置
+                    OkHttpClient.Builder builder = webhookDeliveryEngine.newClientBuilder();
 
                     boolean isHttpUseProxy = false;
                     if (configMap.containsKey("isHttpUseProxy")) {
@@ -549,10 +399,6 @@ public class HttpMsgSender implements IMsgSender {
                         }
                     }
 
-                    // 使用较小的连接池
-                    ConnectionPool pool = new ConnectionPool(5, 5, TimeUnit.MINUTES);
-                    builder.connectionPool(pool);
-
                     okHttpClient = builder.build();
                     log.info("OkHttpClient构建成功");
                 }
@@ -560,11 +406,7 @@ public class HttpMsgSender implements IMsgSender {
         } catch (Exception e) {
             log.error("获取OkHttpClient失败, error: {}", e.getMessage(), e);
             // 返回默认客户端
-            return new OkHttpClient.Builder()
-                    .connectTimeout(10, TimeUnit.SECONDS)
-                    .readTimeout(10, TimeUnit.SECONDS)
-                    .writeTimeout(10, TimeUnit.SECONDS)
-                    .build();
+            return webhookDeliveryEngine.newClientBuilder().build();
         }
 
         return okHttpClient;
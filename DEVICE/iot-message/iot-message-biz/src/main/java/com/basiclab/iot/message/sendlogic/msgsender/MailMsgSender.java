@@ -8,6 +8,8 @@ import com.basiclab.iot.message.domain.entity.TMsgMail;
 import com.basiclab.iot.message.domain.model.SendResult;
 import com.basiclab.iot.message.mapper.TPreviewUserGroupMapper;
 import com.basiclab.iot.message.mapper.TPreviewUserMapper;
+import com.basiclab.iot.message.sendlogic.mail.MailAttachmentCache;
+import com.basiclab.iot.message.sendlogic.mail.SmtpMailTransport;
 import com.basiclab.iot.message.sendlogic.msgmaker.MailMsgMaker;
 import com.basiclab.iot.message.service.MessageConfigService;
 import lombok.extern.slf4j.Slf4j;
@@ -16,15 +18,13 @@ import org.apache.commons.compress.utils.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -46,8 +46,11 @@ public class MailMsgSender {
     @Autowired
     private MessageConfigService messageConfigService;
 
-    @Value("${mail.annex.dir}")
-    private String mailAnnexDir;
+    @Autowired
+    private SmtpMailTransport smtpMailTransport;
+
+    @Autowired
+    private MailAttachmentCache mailAttachmentCache;
 
     @Autowired
     private TPreviewUserMapper tPreviewUserMapper;
@@ -57,15 +60,31 @@ public class MailMsgSender {
 
     public SendResult send(String msgId,String content) {
         log.info("邮件发送开始 params is:"+msgId);
+        TMsgMail mailMsg;
+        try {
+            mailMsg = mailMsgMaker.makeMsg(msgId,content);
+        } catch (Exception e) {
+            SendResult sendResult = new SendResult();
+            sendResult.setSuccess(false);
+            sendResult.setInfo(e.getMessage());
+            log.error("邮件发送失败，错误信息: {}", e.getMessage(), e);
+            return sendResult;
+        }
+        return send(mailMsg);
+    }
+
+    /**
+     * 使用内存中的邮件消息发送，不再按msgId查询数据库
+     *
+     * @param mailMsg 邮件消息
+     * @return 发送结果
+     */
+    public SendResult send(TMsgMail mailMsg) {
         SendResult sendResult = new SendResult();
 
         try {
-            TMsgMail mailMsg = mailMsgMaker.makeMsg(msgId,content);
             sendResult.setMsgName(mailMsg.getMsgName());
             String previewUser = mailMsg.getPreviewUser();
-            String files = mailMsg.getFiles();
-            List<File> mailFiles = new ArrayList<>();
-            getMailFiles(files, mailFiles);
             List<String> tos = Lists.newArrayList();
             
             // 优先使用直接指定的收件人（previewUser）
@@ -117,11 +136,12 @@ public class MailMsgSender {
                 ccList = new ArrayList<>(ccs);
             }
             MailAccount mailAccount = getMailAccount();
-            log.info("开始发送邮件，标题: {}, 收件人数量: {}", mailMsg.getTitle(), tos.size());
-            if (CollectionUtils.isEmpty(mailFiles)) {
-                MailUtil.send(mailAccount, tos, ccList, null, mailMsg.getTitle(), mailMsg.getContent(), true);
-            } else {
-                MailUtil.send(mailAccount, tos, ccList, null, mailMsg.getTitle(), mailMsg.getContent(), true, mailFiles.toArray(new File[0]));
+            Map<String, File> mailFiles = getMailFiles(mailMsg.getFiles());
+            try {
+                log.info("开始发送邮件，标题: {}, 收件人数量: {}", mailMsg.getTitle(), tos.size());
+                smtpMailTransport.send(mailAccount, tos, ccList, mailMsg.getTitle(), mailMsg.getContent(), mailFiles);
+            } finally {
+                mailFiles.values().forEach(mailAttachmentCache::release);
             }
             log.info("邮件发送成功，收件人: {}", tos);
             sendResult.setSuccess(true);
@@ -136,92 +156,34 @@ public class MailMsgSender {
         return sendResult;
     }
 
-    private void getMailFiles(String files, List<File> mailFiles) throws IOException {
-        if(StringUtils.isNotEmpty(files)) {
-            JSONObject jsonObject = JSONObject.parseObject(files);
-            String filePath = jsonObject.getString("filePath");
-            String fileName = jsonObject.getString("fileName");
-            
-            if(StringUtils.isBlank(filePath)) {
-                log.warn("文件路径为空，跳过文件下载");
-                return;
-            }
-            
-            log.info("开始下载邮件附件，文件路径: {}, 文件名: {}", filePath, fileName);
-            URL url = new URL(filePath);
-            HttpURLConnection httpURLConnection = null;
-            BufferedInputStream bin = null;
-            FileOutputStream out = null;
-            
-            try {
-                URLConnection urlConnection = url.openConnection();
-                httpURLConnection = (HttpURLConnection) urlConnection;
-                // 设置连接超时为30秒
-                httpURLConnection.setConnectTimeout(1000 * 30);
-                // 设置读取超时为60秒
-                httpURLConnection.setReadTimeout(1000 * 60);
-                httpURLConnection.setRequestMethod("GET");
-                httpURLConnection.setRequestProperty("Charset", "UTF-8");
-                // 设置用户代理，避免某些服务器拒绝请求
-                httpURLConnection.setRequestProperty("User-Agent", "Mozilla/5.0");
-                
-                log.debug("尝试连接文件服务器: {}", filePath);
-                httpURLConnection.connect();
-                
-                int responseCode = httpURLConnection.getResponseCode();
-                if (responseCode != HttpURLConnection.HTTP_OK) {
-                    throw new IOException("文件下载失败，HTTP响应码: " + responseCode);
-                }
-                
-                String path = mailAnnexDir + File.separatorChar + fileName;
-                log.info("存储位置目录：{}", path);
-                File file = new File(path);
-                
-                // 校验文件夹目录是否存在，不存在就创建一个目录
-                if (!file.getParentFile().exists()) {
-                    file.getParentFile().mkdirs();
-                }
-                
-                bin = new BufferedInputStream(httpURLConnection.getInputStream());
-                out = new FileOutputStream(file);
-                
-                int size = 0;
-                byte[] b = new byte[20480];
-                long totalBytes = 0;
-                //把输入流的文件读取到字节数据b中，然后输出到指定目录的文件
-                while ((size = bin.read(b)) != -1) {
-                    out.write(b, 0, size);
-                    totalBytes += size;
-                }
-                out.flush();
-                
-                log.info("文件下载成功，文件名: {}, 大小: {} bytes", fileName, totalBytes);
-                mailFiles.add(file);
-                
-            } catch (IOException e) {
-                log.error("下载邮件附件失败，文件路径: {}, 错误信息: {}", filePath, e.getMessage(), e);
-                throw e;
-            } finally {
-                // 确保资源被正确关闭
-                if (bin != null) {
-                    try {
-                        bin.close();
-                    } catch (IOException e) {
-                        log.warn("关闭输入流失败: {}", e.getMessage());
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    } catch (IOException e) {
-                        log.warn("关闭输出流失败: {}", e.getMessage());
-                    }
-                }
-                if (httpURLConnection != null) {
-                    httpURLConnection.disconnect();
-                }
-            }
+    /**
+     * 从附件缓存获取邮件附件，发送完成后需释放
+     *
+     * @param files 附件信息，JSON 格式：{"filePath": "...", "fileName": "..."}
+     * @return 附件名称 → 文件
+     */
+    private Map<String, File> getMailFiles(String files) throws IOException {
+        Map<String, File> mailFiles = new LinkedHashMap<>();
+        if (StringUtils.isEmpty(files)) {
+            return mailFiles;
+        }
+        JSONObject jsonObject = JSONObject.parseObject(files);
+        String filePath = jsonObject.getString("filePath");
+        String fileName = jsonObject.getString("fileName");
+        if (StringUtils.isBlank(filePath)) {
+            log.warn("文件路径为空，跳过文件下载");
+            return mailFiles;
+        }
+        if (StringUtils.isBlank(fileName)) {
+            fileName = StringUtils.substringAfterLast(StringUtils.substringBefore(filePath, "?"), "/");
+        }
+        try {
+            mailFiles.put(fileName, mailAttachmentCache.acquire(filePath));
+        } catch (IOException e) {
+            log.error("下载邮件附件失败，文件路径: {}, 错误信息: {}", filePath, e.getMessage(), e);
+            throw e;
         }
+        return mailFiles;
     }
 
 
@@ -54,16 +54,25 @@ public class TxYunMsgSender implements IMsgSender {
     @Override
     public SendResult send(String msgId) {
         log.info("腾讯云发送开始 params is:"+msgId);
+        return send(tMsgSmsMapper.selectByPrimaryKey(msgId));
+    }
+
+    /**
+     * 使用内存中的短信消息发送，不再按msgId查询数据库
+     *
+     * @param tMsgSms 短信消息，需包含模板参数
+     * @return 发送结果
+     */
+    public SendResult send(TMsgSms tMsgSms) {
         SmsSingleSender smsSingleSender = getTxYunSender();
         SendResult sendResult = new SendResult();
         try {
-            TMsgSms tMsgSms = tMsgSmsMapper.selectByPrimaryKey(msgId);
             sendResult.setMsgName(tMsgSms.getMsgName());
             MessageConfig messageConfig = messageConfigService.queryByMsgType(2);
             Map<String, Object> configMap = messageConfig.getConfigurationMap();
             int templateId = Integer.parseInt(tMsgSms.getTemplateId());
             String smsSign = (String) configMap.get("txyunSign");
-            String[] params = txYunMsgMaker.makeMsg(msgId);
+            String[] params = txYunMsgMaker.makeMsg(tMsgSms);
 //            String telNum = tMsgSms.getPreviewUser();
             List<String> previewUsers = new ArrayList<>();
             String userGroupId = tMsgSms.getUserGroupId();
@@ -58,11 +58,20 @@ public class WxCpMsgSender implements IMsgSender {
     @Override
     public SendResult send(String msgId) {
         log.info("微信发送开始 params is:"+msgId);
+        return send(tMsgWxCpMapper.selectByPrimaryKey(msgId));
+    }
+
+    /**
+     * 使用内存中的企业微信消息发送，不再按msgId查询数据库
+     *
+     * @param tMsgWxCp 企业微信消息
+     * @return 发送结果
+     */
+    public SendResult send(TMsgWxCp tMsgWxCp) {
         SendResult sendResult = new SendResult();
         WxCpService wxCpService = getWxCpServicegetWxCpService();
         try {
-            WxCpMessage wxCpMessage = wxCpMsgMaker.makeMsg(msgId);
-            TMsgWxCp tMsgWxCp = tMsgWxCpMapper.selectByPrimaryKey(msgId);
+            WxCpMessage wxCpMessage = wxCpMsgMaker.makeMsg(tMsgWxCp);
             sendResult.setMsgName(tMsgWxCp.getMsgName());
 //            String openId = wxCpMessage.getToUser();
             List<String> previewUsers = new ArrayList<>();
@@ -7,5 +7,7 @@ import java.util.List;
 public interface PushHistoryService {
     TPushHistory add(TPushHistory tPushHistory);
 
+    void addBatch(List<TPushHistory> tPushHistories);
+
     List<TPushHistory> query(TPushHistory tPushHistory);
 }
@@ -1,20 +1,24 @@
 package com.basiclab.iot.message.service.impl;
 
-import com.basiclab.iot.message.common.MessageSendCommon;
 import com.basiclab.iot.message.domain.entity.*;
 import com.basiclab.iot.message.domain.model.AlertNotificationMessage;
-import com.basiclab.iot.message.domain.model.SendResult;
 import com.basiclab.iot.message.domain.model.vo.MessagePrepareVO;
 import com.basiclab.iot.message.sendlogic.MessageTypeEnum;
+import com.basiclab.iot.message.sendlogic.dispatch.AlertStormAggregator;
+import com.basiclab.iot.message.sendlogic.dispatch.NotificationDispatcher;
 import com.basiclab.iot.message.service.AlertNotificationService;
-import com.basiclab.iot.message.service.MessagePrepareService;
 import com.basiclab.iot.system.api.notify.NotifyTemplateApi;
 import com.basiclab.iot.system.api.notify.dto.NotifyTemplateRespDTO;
 import com.basiclab.iot.common.domain.CommonResult;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.util.HashMap;
 import java.util.List;
@@ -33,14 +37,34 @@ import java.util.UUID;
 public class AlertNotificationServiceImpl implements AlertNotificationService {
 
     @Autowired
-    private MessageSendCommon messageSendCommon;
-
-    @Autowired
-    private MessagePrepareService messagePrepareService;
+    private NotificationDispatcher notificationDispatcher;
 
     @Resource
     private NotifyTemplateApi notifyTemplateApi;
 
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    /**
+     * 是否开启告警风暴聚合
+     */
+    @Value("${notification.alert-aggregation.enabled:true}")
+    private boolean aggregationEnabled;
+
+    /**
+     * 聚合窗口长度，同一设备、任务、通知方式在窗口内只立即发送第一条告警
+     */
+    @Value("${notification.alert-aggregation.window-ms:60000}")
+    private long aggregationWindowMillis;
+
+    /**
+     * 同时存在的聚合窗口数上限
+     */
+    @Value("${notification.alert-aggregation.max-windows:10000}")
+    private int aggregationMaxWindows;
+
+    private AlertStormAggregator alertStormAggregator;
+
     /**
      * 通知方式到消息类型的映射表（优化：使用Map替代switch-case）
      * 支持6种通知方式：
@@ -72,6 +96,21 @@ public class AlertNotificationServiceImpl implements AlertNotificationService {
         put("lark", MessageTypeEnum.FEISHU_CODE);
     }};
 
+    @PostConstruct
+    public void init() {
+        if (aggregationEnabled) {
+            alertStormAggregator = new AlertStormAggregator(aggregationWindowMillis, aggregationMaxWindows,
+                    this::sendDigestNotification, meterRegistryProvider.getIfAvailable()).start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (alertStormAggregator != null) {
+            alertStormAggregator.shutdown();
+        }
+    }
+
     @Override
     public void processAlertNotification(AlertNotificationMessage notificationMessage) {
         try {
@@ -102,6 +141,14 @@ public class AlertNotificationServiceImpl implements AlertNotificationService {
                         log.warn("通知渠道配置不完整: method={}, template_id={}", method, templateIdObj);
                         continue;
                     }
+
+                    // 告警风暴：窗口内的重复告警只计数，窗口结束时合并为一条汇总通知
+                    if (alertStormAggregator != null && !alertStormAggregator.admit(notificationMessage, method)) {
+                        log.debug("告警已合并到聚合窗口: method={}, deviceId={}, taskId={}, alertId={}",
+                                method, notificationMessage.getDeviceId(), notificationMessage.getTaskId(),
+                                notificationMessage.getAlertId());
+                        continue;
+                    }
                     
                     // 获取模板并格式化内容
                     String content = getTemplateContent(templateIdObj, templateParams);
@@ -121,6 +168,41 @@ public class AlertNotificationServiceImpl implements AlertNotificationService {
         }
     }
 
+    /**
+     * 发送聚合窗口的汇总通知：汇总信息 + 最近一条告警按模板格式化的内容
+     */
+    private void sendDigestNotification(AlertStormAggregator.AlertWindow window) {
+        AlertNotificationMessage latest = window.getLatest();
+        Object templateIdObj = null;
+        for (Map<String, Object> channel : latest.getChannels()) {
+            if (window.getMethod().equals(channel.get("method"))) {
+                templateIdObj = channel.get("template_id");
+                break;
+            }
+        }
+        Map<String, Object> templateParams = buildTemplateParams(latest);
+        String content = templateIdObj != null ? getTemplateContent(templateIdObj, templateParams)
+                : buildDefaultContent(templateParams);
+
+        StringBuilder digest = new StringBuilder();
+        digest.append("【告警汇总】").append((window.getWindowEnd() - window.getWindowStart()) / 1000)
+                .append("秒内同类告警").append(window.getSuppressedCount()).append("条已合并\n");
+        if (window.getFirstAlertTime() != null) {
+            digest.append("首次告警时间: ").append(window.getFirstAlertTime()).append("\n");
+        }
+        if (window.getLastAlertTime() != null) {
+            digest.append("最近告警时间: ").append(window.getLastAlertTime()).append("\n");
+        }
+        digest.append("事件统计: ");
+        window.getEventCounts().forEach((event, count) -> digest.append(event).append("×").append(count).append(" "));
+        digest.append("\n\n").append(content);
+
+        log.info("发送告警汇总通知: method={}, deviceId={}, taskId={}, 合并告警数={}",
+                window.getMethod(), latest.getDeviceId(), latest.getTaskId(), window.getSuppressedCount());
+        sendNotificationByMethod(window.getMethod(), latest.getNotifyUsers(),
+                String.format("告警汇总-%s", latest.getDeviceName()), digest.toString(), latest);
+    }
+
     /**
      * 构建模板参数（用于${}占位符替换）
      */
@@ -303,7 +385,8 @@ public class AlertNotificationServiceImpl implements AlertNotificationService {
     }
 
     /**
-     * 准备并发送消息
+     * 准备消息并提交到通知分发器异步发送
+     * 消息对象只保存在内存中，不写入消息表
      *
      * @param msgType 消息类型
      * @param method 通知方式
@@ -330,19 +413,8 @@ public class AlertNotificationServiceImpl implements AlertNotificationService {
             // 根据消息类型准备消息（优化：使用策略模式）
             prepareMessageByType(messagePrepareVO, msgType, user, title, content, msgId);
 
-            // 准备消息（保存到数据库）
-            messagePrepareVO = messagePrepareService.add(messagePrepareVO);
-
-            // 发送消息
-            SendResult result;
-            if (msgType == MessageTypeEnum.EMAIL_CODE) {
-                result = messageSendCommon.messageMailSend(msgType, msgId, content);
-            } else {
-                result = messageSendCommon.messageSend(msgType, msgId);
-            }
-
-            log.info("告警通知发送结果: msgId={}, method={}, success={}, info={}",
-                    msgId, method, result.isSuccess(), result.getInfo());
+            // 按渠道异步发送，发送结果由分发器批量写入推送历史
+            notificationDispatcher.dispatch(msgId, messagePrepareVO);
 
         } catch (Exception e) {
             log.error("准备并发送消息失败: msgType={}, method={}, msgId={}, error={}",
@@ -32,6 +32,21 @@ public class TPushHistoryServiceImpl implements PushHistoryService {
         return tPushHistory;
     }
 
+    @Override
+    public void addBatch(List<TPushHistory> tPushHistories) {
+        if (tPushHistories.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        for (TPushHistory tPushHistory : tPushHistories) {
+            tPushHistory.setId(UUID.randomUUID().toString());
+            if (tPushHistory.getCreateTime() == null) {
+                tPushHistory.setCreateTime(now);
+            }
+        }
+        tPushHistoryMapper.insertBatch(tPushHistories);
+    }
+
     @Override
     public List<TPushHistory> query( TPushHistory tPushHistory) {
         return tPushHistoryMapper.selectByMsgType(tPushHistory.getMsgType(),tPushHistory.getMsgName());
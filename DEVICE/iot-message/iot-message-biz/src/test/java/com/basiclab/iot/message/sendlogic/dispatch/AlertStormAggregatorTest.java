@@ -0,0 +1,179 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import com.basiclab.iot.message.domain.model.AlertNotificationMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link AlertStormAggregator} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class AlertStormAggregatorTest {
+
+    private final List<AlertStormAggregator.AlertWindow> digests = new CopyOnWriteArrayList<>();
+
+    private AlertStormAggregator aggregator;
+
+    @AfterEach
+    public void tearDown() {
+        if (aggregator != null) {
+            aggregator.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdmit_firstAlertSentAndRestSuppressedWithinWindow() {
+        aggregator = new AlertStormAggregator(TimeUnit.MINUTES.toMillis(1), 100, digests::add, null);
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS"));
+        assertFalse(aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS"));
+        assertFalse(aggregator.admit(alert("d1", 1, "smoke", "10:00:02"), "sms"));
+        // 设备、任务、通知方式任一不同都是独立的窗口
+        assertTrue(aggregator.admit(alert("d2", 1, "fire", "10:00:03"), "SMS"));
+        assertTrue(aggregator.admit(alert("d1", 2, "fire", "10:00:04"), "SMS"));
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:05"), "EMAIL"));
+        assertTrue(digests.isEmpty());
+    }
+
+    @Test
+    public void testFlushExpired_emitsDigestAndOpensNextWindow() throws InterruptedException {
+        CountDownLatch digested = new CountDownLatch(1);
+        aggregator = new AlertStormAggregator(100, 100, window -> {
+            digests.add(window);
+            digested.countDown();
+        }, null).start();
+        AlertNotificationMessage last = alert("d1", 1, "smoke", "10:00:02");
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS"));
+        assertFalse(aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS"));
+        assertFalse(aggregator.admit(last, "SMS"));
+        assertTrue(digested.await(5, TimeUnit.SECONDS));
+
+        AlertStormAggregator.AlertWindow window = digests.get(0);
+        assertEquals("d1:1:sms", window.getKey());
+        assertEquals(2, window.getSuppressedCount());
+        assertEquals(1, window.getEventCounts().get("fire"));
+        assertEquals(1, window.getEventCounts().get("smoke"));
+        assertEquals("10:00:01", window.getFirstAlertTime());
+        assertEquals("10:00:02", window.getLastAlertTime());
+        assertSame(last, window.getLatest());
+        // 告警仍在持续时开启了下一个窗口，下一条告警继续被汇总
+        assertFalse(aggregator.admit(alert("d1", 1, "fire", "10:00:03"), "SMS"));
+    }
+
+    @Test
+    public void testFlushExpired_quietWindowClosesWithoutDigest() throws InterruptedException {
+        aggregator = new AlertStormAggregator(50, 100, digests::add, null).start();
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS"));
+        Thread.sleep(300);
+
+        assertTrue(digests.isEmpty());
+        // 窗口内没有新告警，窗口已关闭，下一条告警立即发送
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS"));
+    }
+
+    @Test
+    public void testAdmit_expiredWindowNotYetFlushedEmitsDigest() throws InterruptedException {
+        // 不启动检查线程，由 admit 结束已到期的窗口
+        aggregator = new AlertStormAggregator(50, 100, digests::add, null);
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS"));
+        assertFalse(aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS"));
+        Thread.sleep(100);
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:02"), "SMS"));
+        assertEquals(1, digests.size());
+        assertEquals(1, digests.get(0).getSuppressedCount());
+    }
+
+    @Test
+    public void testAdmit_overflowEvictsEldestWindowWithDigest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        aggregator = new AlertStormAggregator(TimeUnit.MINUTES.toMillis(1), 2, digests::add, registry);
+
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS"));
+        assertFalse(aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS"));
+        assertTrue(aggregator.admit(alert("d2", 1, "fire", "10:00:02"), "SMS"));
+        // 第三个窗口超出上限，最早的 d1 窗口被提前结束并发出汇总
+        assertTrue(aggregator.admit(alert("d3", 1, "fire", "10:00:03"), "SMS"));
+
+        assertEquals(1, digests.size());
+        assertEquals("d1:1:sms", digests.get(0).getKey());
+        assertEquals(1, registry.get("iot.message.notification.aggregation.windows.evicted").counter().count());
+        assertEquals(2, registry.get("iot.message.notification.aggregation.windows.active").gauge().value());
+        // 被淘汰的设备重新开始窗口，同时淘汰没有被抑制告警的 d2 窗口，不发出汇总
+        assertTrue(aggregator.admit(alert("d1", 1, "fire", "10:00:04"), "SMS"));
+        assertEquals(1, digests.size());
+        assertFalse(aggregator.admit(alert("d3", 1, "fire", "10:00:05"), "SMS"));
+    }
+
+    @Test
+    public void testShutdown_emitsPendingDigests() {
+        aggregator = new AlertStormAggregator(TimeUnit.MINUTES.toMillis(1), 100, digests::add, null);
+        aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS");
+        aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS");
+        aggregator.admit(alert("d2", 1, "fire", "10:00:02"), "SMS");
+
+        aggregator.shutdown();
+        aggregator = null;
+
+        // 只有存在被抑制告警的窗口才发出汇总
+        assertEquals(1, digests.size());
+        assertEquals("d1:1:sms", digests.get(0).getKey());
+    }
+
+    @Test
+    public void testEmitDigest_handlerFailureDoesNotPropagate() {
+        aggregator = new AlertStormAggregator(TimeUnit.MINUTES.toMillis(1), 1, window -> {
+            throw new IllegalStateException("fail");
+        }, null);
+        aggregator.admit(alert("d1", 1, "fire", "10:00:00"), "SMS");
+        aggregator.admit(alert("d1", 1, "fire", "10:00:01"), "SMS");
+
+        assertTrue(aggregator.admit(alert("d2", 1, "fire", "10:00:02"), "SMS"));
+    }
+
+    @Test
+    public void testRecord_missingAlertInfoCountedAsUnknown() {
+        aggregator = new AlertStormAggregator(TimeUnit.MINUTES.toMillis(1), 100, digests::add, null);
+        AlertNotificationMessage message = alert("d1", 1, "fire", "10:00:00");
+        aggregator.admit(message, "SMS");
+        AlertNotificationMessage noInfo = alert("d1", 1, null, null);
+        noInfo.setAlert(null);
+        aggregator.admit(noInfo, "SMS");
+
+        aggregator.shutdown();
+        aggregator = null;
+
+        assertEquals(1, digests.get(0).getEventCounts().get("unknown"));
+        assertNull(digests.get(0).getFirstAlertTime());
+    }
+
+    private static AlertNotificationMessage alert(String deviceId, Integer taskId, String event, String time) {
+        AlertNotificationMessage message = new AlertNotificationMessage();
+        message.setDeviceId(deviceId);
+        message.setTaskId(taskId);
+        AlertNotificationMessage.AlertInfo alert = new AlertNotificationMessage.AlertInfo();
+        alert.setEvent(event);
+        alert.setTime(time);
+        message.setAlert(alert);
+        return message;
+    }
+
+}
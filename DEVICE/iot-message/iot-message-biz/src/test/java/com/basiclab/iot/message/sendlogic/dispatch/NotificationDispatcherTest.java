@@ -0,0 +1,237 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import com.basiclab.iot.message.domain.entity.TMsgDing;
+import com.basiclab.iot.message.domain.entity.TMsgHttp;
+import com.basiclab.iot.message.domain.entity.TMsgMail;
+import com.basiclab.iot.message.domain.model.HttpSendResult;
+import com.basiclab.iot.message.domain.model.SendResult;
+import com.basiclab.iot.message.domain.model.vo.MessagePrepareVO;
+import com.basiclab.iot.message.sendlogic.MessageTypeEnum;
+import com.basiclab.iot.message.sendlogic.msgsender.DingMsgSender;
+import com.basiclab.iot.message.sendlogic.msgsender.HttpMsgSender;
+import com.basiclab.iot.message.sendlogic.msgsender.MailMsgSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link NotificationDispatcher} 的单元测试，渠道发送器和推送历史写入器均为模拟对象
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class NotificationDispatcherTest {
+
+    private final MailMsgSender mailMsgSender = mock(MailMsgSender.class);
+
+    private final DingMsgSender dingMsgSender = mock(DingMsgSender.class);
+
+    private final HttpMsgSender httpMsgSender = mock(HttpMsgSender.class);
+
+    private final PushHistoryBatchWriter pushHistoryBatchWriter = mock(PushHistoryBatchWriter.class);
+
+    /**
+     * 邮件发送所在的线程名
+     */
+    private final List<String> mailThreads = new CopyOnWriteArrayList<>();
+
+    /**
+     * 邮件发送阻塞直到测试放行
+     */
+    private final CountDownLatch mailBlocked = new CountDownLatch(1);
+
+    private volatile boolean blockMail;
+
+    private SimpleMeterRegistry registry;
+
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        when(mailMsgSender.send(any(TMsgMail.class))).thenAnswer(invocation -> {
+            mailThreads.add(Thread.currentThread().getName());
+            if (blockMail) {
+                mailBlocked.await();
+            }
+            return success();
+        });
+        when(dingMsgSender.send(any(TMsgDing.class))).thenThrow(new IllegalStateException("钉钉接口异常"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mailBlocked.countDown();
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    public void testDispatch_routesToChannelAndRecordsHistory() {
+        dispatcher = newDispatcher(2, 10);
+
+        assertTrue(dispatcher.dispatch("m1", message(MessageTypeEnum.EMAIL_CODE)));
+        assertTrue(dispatcher.dispatch("m2", message(MessageTypeEnum.DING_CODE)));
+
+        verify(pushHistoryBatchWriter, timeout(5000)).add(eq(MessageTypeEnum.EMAIL_CODE), eq("m1"), any(SendResult.class));
+        ArgumentCaptor<SendResult> failure = ArgumentCaptor.forClass(SendResult.class);
+        verify(pushHistoryBatchWriter, timeout(5000)).add(eq(MessageTypeEnum.DING_CODE), eq("m2"), failure.capture());
+        // 发送器抛出的异常记为发送失败
+        assertFalse(failure.getValue().isSuccess());
+        assertEquals("钉钉接口异常", failure.getValue().getInfo());
+        assertTrue(mailThreads.get(0).startsWith("notify-email-"));
+        assertEquals(1, registry.get("iot.message.notification.send")
+                .tags("channel", "email", "result", "success").timer().count());
+        assertEquals(1, registry.get("iot.message.notification.send")
+                .tags("channel", "ding", "result", "failure").timer().count());
+    }
+
+    @Test
+    public void testDispatch_unsupportedMessageType() {
+        dispatcher = newDispatcher(2, 10);
+
+        assertFalse(dispatcher.dispatch("m1", message(99)));
+
+        verify(pushHistoryBatchWriter, never()).add(any(Integer.class), any(), any());
+    }
+
+    @Test
+    public void testInit_registersSendTimersOnce() {
+        dispatcher = newDispatcher(2, 10);
+        // 每个渠道的成功、失败各一个
+        assertEquals(14, registry.find("iot.message.notification.send").timers().size());
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatch("m" + i, message(MessageTypeEnum.EMAIL_CODE));
+        }
+
+        verify(pushHistoryBatchWriter, timeout(5000).times(3))
+                .add(eq(MessageTypeEnum.EMAIL_CODE), any(), any(SendResult.class));
+        assertEquals(14, registry.find("iot.message.notification.send").timers().size());
+    }
+
+    @Test
+    public void testDispatch_fullQueueSendsInCaller() throws InterruptedException {
+        dispatcher = newDispatcher(1, 1);
+        blockMail = true;
+
+        // 第一条占用唯一的渠道线程，第二条进入队列
+        dispatcher.dispatch("m1", message(MessageTypeEnum.EMAIL_CODE));
+        waitForMailSends(1);
+        dispatcher.dispatch("m2", message(MessageTypeEnum.EMAIL_CODE));
+        blockMail = false;
+        // 队列已满，由提交线程直接发送
+        dispatcher.dispatch("m3", message(MessageTypeEnum.EMAIL_CODE));
+
+        assertEquals(Thread.currentThread().getName(), mailThreads.get(1));
+        verify(pushHistoryBatchWriter).add(eq(MessageTypeEnum.EMAIL_CODE), eq("m3"), any(SendResult.class));
+        mailBlocked.countDown();
+        verify(pushHistoryBatchWriter, timeout(5000).times(3))
+                .add(eq(MessageTypeEnum.EMAIL_CODE), any(), any(SendResult.class));
+    }
+
+    @Test
+    public void testDispatch_afterShutdownSendsInCaller() {
+        dispatcher = newDispatcher(2, 10);
+        dispatcher.destroy();
+
+        assertTrue(dispatcher.dispatch("m1", message(MessageTypeEnum.EMAIL_CODE)));
+
+        // 线程池已关闭：通知不丢弃，在提交线程同步发送
+        assertEquals(Thread.currentThread().getName(), mailThreads.get(0));
+        verify(pushHistoryBatchWriter).add(eq(MessageTypeEnum.EMAIL_CODE), eq("m1"), any(SendResult.class));
+    }
+
+    @Test
+    public void testDispatch_httpPendingLimitFailsAfterTimeout() {
+        dispatcher = newDispatcher(2, 10);
+        ReflectionTestUtils.setField(dispatcher, "httpAcquireTimeoutMillis", 50L);
+        CompletableFuture<HttpSendResult> pending = new CompletableFuture<>();
+        when(httpMsgSender.sendAsync(any(TMsgHttp.class))).thenReturn(pending);
+
+        assertTrue(dispatcher.dispatch("m1", message(MessageTypeEnum.HTTP_CODE)));
+        // 未完成的投递已达上限，等待超时记为失败
+        assertTrue(dispatcher.dispatch("m2", message(MessageTypeEnum.HTTP_CODE)));
+
+        ArgumentCaptor<SendResult> rejected = ArgumentCaptor.forClass(SendResult.class);
+        verify(pushHistoryBatchWriter).add(eq(MessageTypeEnum.HTTP_CODE), eq("m2"), rejected.capture());
+        assertFalse(rejected.getValue().isSuccess());
+        verify(httpMsgSender).sendAsync(any(TMsgHttp.class));
+
+        // 投递完成后释放名额，记录结果
+        HttpSendResult result = new HttpSendResult();
+        result.setSuccess(true);
+        pending.complete(result);
+        verify(pushHistoryBatchWriter).add(MessageTypeEnum.HTTP_CODE, "m1", result);
+        assertEquals(1, ((Semaphore) ReflectionTestUtils.getField(dispatcher, "httpPending"))
+                .availablePermits());
+    }
+
+    @SuppressWarnings("unchecked")
+    private NotificationDispatcher newDispatcher(int threads, int queueCapacity) {
+        NotificationDispatcher dispatcher = new NotificationDispatcher();
+        ObjectProvider<MeterRegistry> meterRegistryProvider = mock(ObjectProvider.class);
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(registry);
+        ReflectionTestUtils.setField(dispatcher, "meterRegistryProvider", meterRegistryProvider);
+        ReflectionTestUtils.setField(dispatcher, "mailMsgSender", mailMsgSender);
+        ReflectionTestUtils.setField(dispatcher, "dingMsgSender", dingMsgSender);
+        ReflectionTestUtils.setField(dispatcher, "httpMsgSender", httpMsgSender);
+        ReflectionTestUtils.setField(dispatcher, "pushHistoryBatchWriter", pushHistoryBatchWriter);
+        ReflectionTestUtils.setField(dispatcher, "threads", threads);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(dispatcher, "shutdownTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(dispatcher, "httpMaxPending", 1);
+        ReflectionTestUtils.setField(dispatcher, "httpAcquireTimeoutMillis", 1000L);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    private void waitForMailSends(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mailThreads.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, mailThreads.size());
+    }
+
+    private static MessagePrepareVO message(int msgType) {
+        MessagePrepareVO message = new MessagePrepareVO();
+        message.setMsgType(msgType);
+        message.setMsgName("告警通知");
+        message.setT_Msg_Mail(new TMsgMail());
+        message.setT_Msg_Ding(new TMsgDing());
+        message.setT_Msg_Http(new TMsgHttp());
+        return message;
+    }
+
+    private static SendResult success() {
+        SendResult result = new SendResult();
+        result.setSuccess(true);
+        return result;
+    }
+
+}
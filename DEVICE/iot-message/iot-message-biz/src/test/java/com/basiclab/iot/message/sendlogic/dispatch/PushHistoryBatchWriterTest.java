@@ -0,0 +1,122 @@
+package com.basiclab.iot.message.sendlogic.dispatch;
+
+import com.basiclab.iot.message.domain.entity.TPushHistory;
+import com.basiclab.iot.message.domain.model.SendResult;
+import com.basiclab.iot.message.service.PushHistoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * {@link PushHistoryBatchWriter} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class PushHistoryBatchWriterTest {
+
+    private final PushHistoryService pushHistoryService = mock(PushHistoryService.class);
+
+    /**
+     * 每次批量写入的记录，写入线程会复用批次列表，这里保存副本
+     */
+    private final List<List<TPushHistory>> batches = new CopyOnWriteArrayList<>();
+
+    private PushHistoryBatchWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        doAnswer(invocation -> {
+            batches.add(new ArrayList<>((List<TPushHistory>) invocation.getArgument(0)));
+            return null;
+        }).when(pushHistoryService).addBatch(anyList());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.destroy();
+        }
+    }
+
+    @Test
+    public void testAdd_writesInBatchesOfBatchSize() throws InterruptedException {
+        writer = newWriter(3, 200);
+
+        for (int i = 0; i < 7; i++) {
+            writer.add(3, "m" + i, result(i % 2 == 0));
+        }
+        waitForWritten(7);
+
+        // 攒满 batchSize 立即写入，剩余的在 flushInterval 到期后写入
+        assertEquals(3, batches.get(0).size());
+        assertEquals(3, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+        TPushHistory first = batches.get(0).get(0);
+        assertEquals("m0", first.getMsgId());
+        assertEquals("成功", first.getResult());
+        assertEquals("失败，失败原因：超时", batches.get(0).get(1).getResult());
+        verify(pushHistoryService, never()).add(any());
+    }
+
+    @Test
+    public void testDestroy_flushesPendingRecords() {
+        writer = newWriter(100, 500);
+        writer.add(3, "m1", result(true));
+        writer.add(3, "m2", result(true));
+
+        writer.destroy();
+
+        assertEquals(2, written());
+        // 关闭后的记录在调用线程直接写库
+        writer.add(3, "m3", result(true));
+        verify(pushHistoryService).add(any(TPushHistory.class));
+        writer = null;
+    }
+
+    private PushHistoryBatchWriter newWriter(int batchSize, long flushIntervalMillis) {
+        PushHistoryBatchWriter writer = new PushHistoryBatchWriter();
+        ReflectionTestUtils.setField(writer, "pushHistoryService", pushHistoryService);
+        ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writer, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 100);
+        writer.init();
+        return writer;
+    }
+
+    private void waitForWritten(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, written());
+    }
+
+    private int written() {
+        return batches.stream().mapToInt(List::size).sum();
+    }
+
+    private static SendResult result(boolean success) {
+        SendResult result = new SendResult();
+        result.setSuccess(success);
+        result.setMsgName("告警通知");
+        result.setInfo(success ? null : "超时");
+        return result;
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.basiclab.iot.message.sendlogic.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link WebhookDeliveryEngine} 的单元测试，使用本地 HTTP 服务按顺序返回预设的状态码
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class WebhookDeliveryEngineTest {
+
+    private HttpServer server;
+
+    /**
+     * 依次返回的状态码，用完后返回 200
+     */
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private SimpleMeterRegistry registry;
+
+    private WebhookDeliveryEngine engine;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            requestCount.incrementAndGet();
+            Integer status = statuses.poll();
+            // 每次响应后关闭连接，避免重试复用已被本地服务关闭的连接
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(status != null ? status : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (engine != null) {
+            engine.destroy();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void testDeliver_retriesServerErrorsUntilSuccess() throws Exception {
+        engine = newEngine(3, 100);
+        statuses.add(500);
+        statuses.add(503);
+
+        try (Response response = deliver(url())) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(3, requestCount.get());
+        assertEquals(2, registry.get("iot.message.webhook.retry").counter().count());
+        assertEquals(1, deliveryCount("success"));
+    }
+
+    @Test
+    public void testDeliver_retriesExhaustedReturnsLastResponse() throws Exception {
+        engine = newEngine(2, 100);
+        for (int i = 0; i < 3; i++) {
+            statuses.add(429);
+        }
+
+        try (Response response = deliver(url())) {
+            assertEquals(429, response.code());
+        }
+        // 首次请求 + 2 次重试
+        assertEquals(3, requestCount.get());
+        assertEquals(1, deliveryCount("failure"));
+    }
+
+    @Test
+    public void testDeliver_clientErrorNotRetried() throws Exception {
+        engine = newEngine(3, 100);
+        statuses.add(400);
+
+        try (Response response = deliver(url())) {
+            assertEquals(400, response.code());
+        }
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testDeliver_connectionFailureRetriedThenFails() throws IOException {
+        engine = newEngine(2, 100);
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> deliver("http://127.0.0.1:" + closedPort + "/hook"));
+        assertTrue(e.getCause() instanceof IOException);
+        assertEquals(2, registry.get("iot.message.webhook.retry").counter().count());
+    }
+
+    @Test
+    public void testDeliver_circuitOpensAfterConsecutiveFailuresAndRecoversAfterProbe() throws Exception {
+        engine = newEngine(0, 2);
+        ReflectionTestUtils.setField(engine, "openMillis", 200L);
+        statuses.add(500);
+        statuses.add(500);
+
+        deliver(url()).close();
+        deliver(url()).close();
+        // 连续失败达到阈值，熔断期间直接失败，不发出请求
+        ExecutionException e = assertThrows(ExecutionException.class, () -> deliver(url()));
+        assertTrue(e.getCause() instanceof WebhookDeliveryEngine.CircuitOpenException);
+        assertEquals(2, requestCount.get());
+        assertEquals(1, registry.get("iot.message.webhook.circuit.open").gauge().value());
+        assertEquals(1, deliveryCount("rejected"));
+
+        // 熔断到期后放行探测请求，成功即恢复
+        Thread.sleep(300);
+        try (Response response = deliver(url())) {
+            assertEquals(200, response.code());
+        }
+        try (Response response = deliver(url())) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(4, requestCount.get());
+        assertEquals(0, registry.get("iot.message.webhook.circuit.open").gauge().value());
+    }
+
+    @Test
+    public void testDestroy_failsDeliveriesWaitingForRetry() throws Exception {
+        engine = newEngine(3, 100);
+        ReflectionTestUtils.setField(engine, "retryBaseMillis", 60000L);
+        ReflectionTestUtils.setField(engine, "retryMaxMillis", 60000L);
+        statuses.add(500);
+        OkHttpClient client = engine.newClientBuilder().build();
+        CompletableFuture<Response> future = engine.deliver(client, new Request.Builder().url(url()).get().build());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.get("iot.message.webhook.retry").counter().count() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        engine.destroy();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+        assertEquals(1, requestCount.get());
+        assertEquals(1, deliveryCount("failure"));
+    }
+
+    @Test
+    public void testInit_registersDeliveryTimersOnce() throws Exception {
+        engine = newEngine(0, 100);
+        assertEquals(3, registry.find("iot.message.webhook.delivery").timers().size());
+
+        deliver(url()).close();
+        deliver(url()).close();
+
+        assertEquals(3, registry.find("iot.message.webhook.delivery").timers().size());
+        assertEquals(2, deliveryCount("success"));
+    }
+
+    @Test
+    public void testEvictIdleBreakers_keepsOpenBreakers() throws Exception {
+        engine = newEngine(0, 1);
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        deliver(url()).close();
+        assertThrows(ExecutionException.class, () -> deliver("http://127.0.0.1:" + closedPort + "/hook"));
+        Map<String, ?> breakers = getBreakers();
+        assertEquals(2, breakers.size());
+
+        ReflectionTestUtils.invokeMethod(engine, "evictIdleBreakers", 0L);
+
+        // 正常的主机被清理，熔断中的主机保留
+        assertEquals(1, breakers.size());
+        assertTrue(breakers.containsKey("127.0.0.1:" + closedPort));
+        try (Response response = deliver(url())) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(2, breakers.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> getBreakers() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(engine, "breakers");
+    }
+
+    @SuppressWarnings("unchecked")
+    private WebhookDeliveryEngine newEngine(int maxRetries, int failureThreshold) {
+        WebhookDeliveryEngine engine = new WebhookDeliveryEngine();
+        ObjectProvider<MeterRegistry> meterRegistryProvider = mock(ObjectProvider.class);
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(registry);
+        ReflectionTestUtils.setField(engine, "meterRegistryProvider", meterRegistryProvider);
+        ReflectionTestUtils.setField(engine, "maxRequests", 16);
+        ReflectionTestUtils.setField(engine, "maxRequestsPerHost", 8);
+        ReflectionTestUtils.setField(engine, "maxIdleConnections", 4);
+        ReflectionTestUtils.setField(engine, "keepAliveMillis", 1000L);
+        ReflectionTestUtils.setField(engine, "timeoutMillis", 2000L);
+        ReflectionTestUtils.setField(engine, "maxRetries", maxRetries);
+        ReflectionTestUtils.setField(engine, "retryBaseMillis", 1L);
+        ReflectionTestUtils.setField(engine, "retryMaxMillis", 10L);
+        ReflectionTestUtils.setField(engine, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(engine, "openMillis", 30000L);
+        ReflectionTestUtils.setField(engine, "idleMillis", 600000L);
+        engine.init();
+        return engine;
+    }
+
+    private Response deliver(String url) throws Exception {
+        OkHttpClient client = engine.newClientBuilder().build();
+        CompletableFuture<Response> future = engine.deliver(client, new Request.Builder().url(url).get().build());
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 投递耗时在 future 完成后的回调中记录，可能晚于调用方拿到结果，短暂等待
+     */
+    private long deliveryCount(String result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (true) {
+            Timer timer = registry.find("iot.message.webhook.delivery").tag("result", result).timer();
+            if ((timer != null && timer.count() > 0) || System.currentTimeMillis() > deadline) {
+                return timer != null ? timer.count() : 0;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/hook";
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.basiclab.iot.message.sendlogic.mail;
+
+import cn.hutool.extra.mail.MailAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SmtpMailTransport} 的单元测试：收件人分批投递、连接复用、部分收件人拒收、地址格式错误和旧连接池清理
+ * <p>
+ * 通过 mail.smtp.class 把 SMTP 协议替换为 {@link RecordingTransport}（在 META-INF/javamail.providers 中注册），
+ * 只记录投递，不建立网络连接
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class SmtpMailTransportTest {
+
+    /**
+     * 服务端拒收的收件人
+     */
+    private static final String REJECTED = "rejected@example.com";
+
+    private static final AtomicInteger CONNECTS = new AtomicInteger();
+
+    private static final AtomicInteger CLOSES = new AtomicInteger();
+
+    /**
+     * 每次投递实际送达的收件人
+     */
+    private static final Queue<List<String>> DELIVERIES = new ConcurrentLinkedQueue<>();
+
+    private SmtpMailTransport mailTransport;
+
+    private MailAccount account;
+
+    @BeforeEach
+    public void setUp() {
+        CONNECTS.set(0);
+        CLOSES.set(0);
+        DELIVERIES.clear();
+        mailTransport = new SmtpMailTransport();
+        ReflectionTestUtils.setField(mailTransport, "maxSessions", 2);
+        ReflectionTestUtils.setField(mailTransport, "idleTimeoutMillis", 60000L);
+        ReflectionTestUtils.setField(mailTransport, "borrowTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(mailTransport, "recipientBatchSize", 2);
+        mailTransport.init();
+
+        account = new MailAccount() {
+            @Override
+            public Properties getSmtpProps() {
+                Properties props = super.getSmtpProps();
+                props.setProperty("mail.smtp.class", RecordingTransport.class.getName());
+                return props;
+            }
+        };
+        account.setHost("smtp.example.com");
+        account.setPort(25);
+        account.setAuth(true);
+        account.setUser("user");
+        account.setPass("pass");
+        account.setFrom("from@example.com");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mailTransport.destroy();
+    }
+
+    @Test
+    public void testSend_batchesAndReusesConnection() throws Exception {
+        List<String> tos = Arrays.asList("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+
+        mailTransport.send(account, tos, Collections.singletonList("cc@example.com"), "subject", "<p>html</p>", null);
+
+        // 抄送人只随第一批投递
+        assertEquals(Arrays.asList(
+                Arrays.asList("a@example.com", "b@example.com", "cc@example.com"),
+                Arrays.asList("c@example.com", "d@example.com"),
+                Collections.singletonList("e@example.com")), new ArrayList<>(DELIVERIES));
+        assertEquals(1, CONNECTS.get());
+
+        // 第二封邮件复用已认证的连接
+        mailTransport.send(account, Collections.singletonList("f@example.com"), null, "subject", "<p>html</p>", null);
+        assertEquals(1, CONNECTS.get());
+        assertEquals(4, DELIVERIES.size());
+    }
+
+    @Test
+    public void testSend_partialRejection() {
+        List<String> tos = Arrays.asList("a@example.com", REJECTED, "c@example.com");
+
+        MessagingException e = assertThrows(MessagingException.class,
+                () -> mailTransport.send(account, tos, null, "subject", "<p>html</p>", null));
+
+        // 拒收的收件人之外，同批和后续批次的收件人都已投递
+        assertTrue(e.getMessage().contains(REJECTED));
+        assertEquals(Arrays.asList(
+                Collections.singletonList("a@example.com"),
+                Collections.singletonList("c@example.com")), new ArrayList<>(DELIVERIES));
+    }
+
+    @Test
+    public void testSend_malformedAddress() {
+        List<String> tos = Arrays.asList("a@example.com", "b@example.com", "bad address@", "c@example.com");
+
+        MessagingException e = assertThrows(MessagingException.class,
+                () -> mailTransport.send(account, tos, null, "subject", "<p>html</p>", null));
+
+        // 格式错误的地址在投递前剔除，不影响其他收件人
+        assertTrue(e.getMessage().contains("bad address@"));
+        assertEquals(Arrays.asList(
+                Arrays.asList("a@example.com", "b@example.com"),
+                Collections.singletonList("c@example.com")), new ArrayList<>(DELIVERIES));
+        assertFalse(DELIVERIES.stream().anyMatch(batch -> batch.contains("bad address@")));
+    }
+
+    @Test
+    public void testEvictIdlePools_removesPoolsReplacedByNewAccountConfig() throws Exception {
+        mailTransport.send(account, Collections.singletonList("a@example.com"), null, "subject", "<p>html</p>", null);
+        // 密码变更后使用新的连接池
+        account.setPass("new-pass");
+        mailTransport.send(account, Collections.singletonList("b@example.com"), null, "subject", "<p>html</p>", null);
+        assertEquals(2, getPools().size());
+        assertEquals(2, CONNECTS.get());
+
+        ReflectionTestUtils.setField(mailTransport, "idleTimeoutMillis", 0L);
+        ReflectionTestUtils.invokeMethod(mailTransport, "evictIdlePools");
+
+        // 空闲连接关闭后，连接池从池表中移除
+        assertTrue(getPools().isEmpty());
+        assertEquals(2, CLOSES.get());
+        ReflectionTestUtils.setField(mailTransport, "idleTimeoutMillis", 60000L);
+        mailTransport.send(account, Collections.singletonList("c@example.com"), null, "subject", "<p>html</p>", null);
+        assertEquals(1, getPools().size());
+        assertEquals(3, DELIVERIES.size());
+    }
+
+    @Test
+    public void testEvictIdlePools_keepsPoolInUse() throws Exception {
+        mailTransport.send(account, Collections.singletonList("a@example.com"), null, "subject", "<p>html</p>", null);
+        Object pool = getPools().values().iterator().next();
+        ReflectionTestUtils.invokeMethod(pool, "enter");
+
+        ReflectionTestUtils.setField(mailTransport, "idleTimeoutMillis", 0L);
+        ReflectionTestUtils.invokeMethod(mailTransport, "evictIdlePools");
+        assertEquals(1, getPools().size());
+
+        ReflectionTestUtils.invokeMethod(pool, "exit");
+        ReflectionTestUtils.invokeMethod(mailTransport, "evictIdlePools");
+        assertTrue(getPools().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> getPools() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(mailTransport, "pools");
+    }
+
+    /**
+     * 记录投递的 SMTP 实现，按 mail.smtp.sendpartial 模拟服务端拒收 {@link #REJECTED}
+     */
+    public static class RecordingTransport extends Transport {
+
+        public RecordingTransport(Session session, URLName urlName) {
+            super(session, urlName);
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) {
+            CONNECTS.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public synchronized void close() throws MessagingException {
+            CLOSES.incrementAndGet();
+            super.close();
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            List<Address> valid = new ArrayList<>();
+            List<Address> invalid = new ArrayList<>();
+            for (Address address : addresses) {
+                (REJECTED.equals(address.toString()) ? invalid : valid).add(address);
+            }
+            if (invalid.isEmpty()) {
+                DELIVERIES.add(toStrings(valid));
+                return;
+            }
+            Address[] invalidAddresses = invalid.toArray(new Address[0]);
+            if (Boolean.parseBoolean(session.getProperty("mail.smtp.sendpartial"))) {
+                DELIVERIES.add(toStrings(valid));
+                throw new SendFailedException("550 rejected", null, valid.toArray(new Address[0]), null, invalidAddresses);
+            }
+            throw new SendFailedException("550 rejected", null, null, valid.toArray(new Address[0]), invalidAddresses);
+        }
+
+        private static List<String> toStrings(List<Address> addresses) {
+            List<String> result = new ArrayList<>(addresses.size());
+            addresses.forEach(address -> result.add(address.toString()));
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.basiclab.iot.sink.biz;
+
+import cn.hutool.core.util.StrUtil;
+import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
+import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
+import com.basiclab.iot.sink.mq.message.IotDeviceRouteMessage;
+import com.basiclab.iot.sink.util.IotDeviceMessageUtils;
+import com.basiclab.iot.sink.util.IotSinkRedisKeyConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IotDeviceRouteTable
+ * <p>
+ * 下行消息发送方本地的 设备 → serverId 路由表：
+ * 1. 订阅网关发布的 {@link IotDeviceRouteMessage} 增量，设备连接、断开后本地路由随之更新，不再每条消息查询 Redis
+ * 2. 本实例启动前已连接的设备没有增量，未命中时批量（MGET）查询 Redis 并短时缓存，包括不存在的结果
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class IotDeviceRouteTable implements IotMessageSubscriber<IotDeviceRouteMessage>, SmartInitializingSingleton {
+
+    /**
+     * Redis 查询结果的缓存时间，兜底增量消息丢失或订阅之前的数据
+     */
+    private static final long LOOKUP_EXPIRE_SECONDS = 30;
+
+    /**
+     * Redis 查询结果的最大缓存数
+     */
+    private static final long LOOKUP_MAXIMUM_SIZE = 100000;
+
+    /**
+     * 增量路由的最大缓存数，超出后按最近最少使用淘汰，淘汰的设备回源 Redis
+     */
+    private static final long ROUTE_MAXIMUM_SIZE = 1000000;
+
+    @Resource
+    private ObjectProvider<IotMessageBus> messageBusProvider;
+
+    @Resource
+    private ObjectProvider<RedisService> redisServiceProvider;
+
+    @Value("${server.port:0}")
+    private Integer serverPort;
+
+    /**
+     * 由增量维护的路由，设备断开时删除
+     * <p>
+     * 过期时间与 Redis 中映射的过期时间一致（每次连接都会重新写入），断开增量丢失时路由不会长期优先于 Redis
+     */
+    private final Cache<Long, String> routes = CacheBuilder.newBuilder()
+            .expireAfterWrite(IotSinkRedisKeyConstants.DEVICE_SERVER_ID_EXPIRE_DAYS, TimeUnit.DAYS)
+            .maximumSize(ROUTE_MAXIMUM_SIZE)
+            .build();
+
+    /**
+     * Redis 查询结果，Optional.empty() 表示设备没有路由
+     */
+    private final Cache<Long, Optional<String>> lookups = CacheBuilder.newBuilder()
+            .expireAfterWrite(LOOKUP_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(LOOKUP_MAXIMUM_SIZE)
+            .build();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // 在所有单例 bean 初始化完成后注册订阅器，避免循环依赖
+        IotMessageBus messageBus = messageBusProvider.getIfAvailable();
+        if (messageBus == null) {
+            log.info("[afterSingletonsInstantiated][消息总线不存在，设备路由只查询 Redis]");
+            return;
+        }
+        messageBus.register(this);
+        log.info("[afterSingletonsInstantiated][设备路由表订阅成功，主题：{}，分组：{}]", getTopic(), getGroup());
+    }
+
+    @Override
+    public String getTopic() {
+        return IotDeviceRouteMessage.MESSAGE_BUS_DEVICE_ROUTE_TOPIC;
+    }
+
+    @Override
+    public String getGroup() {
+        // 每个实例使用独立的 Group，确保所有实例都收到全部增量
+        return "iot-device-route-" + IotDeviceMessageUtils.generateServerId(serverPort);
+    }
+
+    @Override
+    public Object getOrderingKey(IotDeviceRouteMessage message) {
+        // 同一设备的增量按顺序处理
+        return message.getDeviceId();
+    }
+
+    @Override
+    public void onMessage(IotDeviceRouteMessage message) {
+        if (message == null || message.getDeviceId() == null) {
+            return;
+        }
+        Long deviceId = message.getDeviceId();
+        if (IotDeviceRouteMessage.ACTION_ONLINE.equals(message.getAction())) {
+            if (StrUtil.isNotBlank(message.getServerId())) {
+                routes.put(deviceId, message.getServerId());
+            }
+        } else if (IotDeviceRouteMessage.ACTION_OFFLINE.equals(message.getAction())) {
+            if (StrUtil.isBlank(message.getServerId())) {
+                routes.invalidate(deviceId);
+            } else {
+                // 只删除仍指向该网关的路由：设备已重连到其他网关时，旧网关的断开增量可能后到
+                routes.asMap().remove(deviceId, message.getServerId());
+            }
+        } else {
+            log.warn("[onMessage][未知的设备路由操作类型: {}，设备 ID: {}]", message.getAction(), deviceId);
+            return;
+        }
+        lookups.invalidate(deviceId);
+        log.debug("[onMessage][设备路由变更，action: {}，设备 ID: {}，serverId: {}]",
+                message.getAction(), deviceId, message.getServerId());
+    }
+
+    /**
+     * 获取设备所在网关的 serverId
+     *
+     * @param deviceId 设备 ID
+     * @return serverId，设备没有路由时返回 null
+     */
+    public String getServerId(Long deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        return getServerIds(Collections.singletonList(deviceId)).get(deviceId);
+    }
+
+    /**
+     * 批量获取设备所在网关的 serverId，本地未命中的设备合并为一次 Redis MGET
+     *
+     * @param deviceIds 设备 ID 列表
+     * @return 设备 ID → serverId，没有路由的设备不包含在结果中
+     */
+    public Map<Long, String> getServerIds(Collection<Long> deviceIds) {
+        Map<Long, String> result = new HashMap<>();
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long deviceId : deviceIds) {
+            if (deviceId == null) {
+                continue;
+            }
+            String serverId = routes.getIfPresent(deviceId);
+            if (serverId != null) {
+                result.put(deviceId, serverId);
+                continue;
+            }
+            Optional<String> lookup = lookups.getIfPresent(deviceId);
+            if (lookup != null) {
+                lookup.ifPresent(value -> result.put(deviceId, value));
+            } else {
+                misses.add(deviceId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            result.putAll(lookupRedis(misses));
+        }
+        return result;
+    }
+
+    private Map<Long, String> lookupRedis(Set<Long> deviceIds) {
+        RedisService redisService = redisServiceProvider.getIfAvailable();
+        if (redisService == null) {
+            return new HashMap<>();
+        }
+        List<Long> ids = new ArrayList<>(deviceIds);
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long deviceId : ids) {
+            keys.add(IotSinkRedisKeyConstants.buildDeviceServerIdKey(deviceId));
+        }
+        Map<Long, String> result = new HashMap<>();
+        try {
+            List<?> values = redisService.multiGet(keys);
+            for (int i = 0; i < ids.size(); i++) {
+                Object value = values != null && i < values.size() ? values.get(i) : null;
+                String serverId = value != null ? String.valueOf(value) : null;
+                // 查询期间可能收到了增量，以增量为准
+                String route = routes.getIfPresent(ids.get(i));
+                if (route != null) {
+                    result.put(ids.get(i), route);
+                    continue;
+                }
+                lookups.put(ids.get(i), Optional.ofNullable(serverId));
+                if (serverId != null) {
+                    result.put(ids.get(i), serverId);
+                }
+            }
+        } catch (Exception e) {
+            // 查询失败时不缓存，消息退化为发送到通用 Topic
+            log.error("[lookupRedis][批量查询设备 serverId 失败，设备数: {}]", ids.size(), e);
+        }
+        return result;
+    }
+
+}
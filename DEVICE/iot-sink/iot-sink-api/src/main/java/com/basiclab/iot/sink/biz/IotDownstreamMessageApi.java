@@ -2,6 +2,7 @@ package com.basiclab.iot.sink.biz;
 
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -40,7 +41,7 @@ public interface IotDownstreamMessageApi {
     /**
      * 根据设备 ID 发送下行消息
      * <p>
-     * 自动从 Redis 中查找设备对应的 serverId，然后发送消息
+     * 自动从设备路由表中查找设备对应的 serverId，然后发送消息
      * 如果找不到 serverId，则发送到通用 Topic，由所有网关实例处理
      *
      * @param deviceId 设备 ID
@@ -48,6 +49,17 @@ public interface IotDownstreamMessageApi {
      */
     void sendDownstreamMessageByDeviceId(Long deviceId, IotDeviceMessage message);
 
+    /**
+     * 批量发送下行消息
+     * <p>
+     * 未指定 serverId 的消息按设备 ID 批量查找所在网关，再按网关分组批量发送；
+     * 找不到 serverId 的消息发送到通用 Topic，由所有网关实例处理
+     *
+     * @param messages 设备消息列表，每条消息必须包含 deviceId
+     * @return 提交发送的消息数量
+     */
+    int sendDownstreamMessages(Collection<IotDeviceMessage> messages);
+
     /**
      * 关闭设备连接
      * <p>
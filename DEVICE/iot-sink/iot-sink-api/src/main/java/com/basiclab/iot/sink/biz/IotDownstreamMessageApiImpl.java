@@ -7,14 +7,20 @@ import com.basiclab.iot.sink.enums.IotDeviceTopicMethodMapping;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import com.basiclab.iot.sink.mq.producer.IotDeviceMessageProducer;
 import com.basiclab.iot.sink.protocol.mqtt.manager.IotMqttConnectionManager;
-import com.basiclab.iot.sink.service.DeviceServerIdService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * IotDownstreamMessageApiImpl
@@ -33,6 +39,8 @@ public class IotDownstreamMessageApiImpl implements IotDownstreamMessageApi {
 
     private final IotDeviceMessageProducer deviceMessageProducer;
 
+    private final IotDeviceRouteTable deviceRouteTable;
+
     @Override
     public void sendDownstreamMessage(IotDeviceMessage message) {
         if (message == null) {
@@ -107,18 +115,8 @@ public class IotDownstreamMessageApiImpl implements IotDownstreamMessageApi {
         // 数据下行前置处理：根据 Topic 标准映射验证并标准化 method 字段
         normalizeDownstreamMethodByTopic(message);
 
-        // 从 Redis 中查找设备对应的 serverId（如果 DeviceServerIdService 存在）
-        DeviceServerIdService deviceServerIdService = null;
-        try {
-            deviceServerIdService = SpringUtil.getBean(DeviceServerIdService.class);
-        } catch (Exception e) {
-            log.debug("[sendDownstreamMessageByDeviceId][DeviceServerIdService 不存在，将发送到通用 Topic，设备 ID: {}]", deviceId);
-        }
-
-        String serverId = null;
-        if (deviceServerIdService != null) {
-            serverId = deviceServerIdService.getDeviceServerId(deviceId);
-        }
+        // 从本地设备路由表中查找设备对应的 serverId
+        String serverId = deviceRouteTable.getServerId(deviceId);
 
         if (StrUtil.isNotBlank(serverId)) {
             log.debug("[sendDownstreamMessageByDeviceId][找到设备 serverId，发送到指定网关，设备 ID: {}，serverId: {}，消息 ID: {}]",
@@ -132,6 +130,47 @@ public class IotDownstreamMessageApiImpl implements IotDownstreamMessageApi {
         }
     }
 
+    @Override
+    public int sendDownstreamMessages(Collection<IotDeviceMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+
+        // 1. 校验并标准化，收集需要查找 serverId 的设备
+        List<IotDeviceMessage> validMessages = new ArrayList<>(messages.size());
+        Set<Long> lookupDeviceIds = new HashSet<>();
+        for (IotDeviceMessage message : messages) {
+            if (message == null || message.getDeviceId() == null) {
+                log.warn("[sendDownstreamMessages][消息或设备 ID 为空，忽略发送，消息 ID: {}]",
+                        message != null ? message.getId() : null);
+                continue;
+            }
+            normalizeDownstreamMethodByTopic(message);
+            validMessages.add(message);
+            if (StrUtil.isBlank(message.getServerId())) {
+                lookupDeviceIds.add(message.getDeviceId());
+            }
+        }
+
+        // 2. 批量查找 serverId，按网关分组（null 表示通用 Topic）
+        Map<Long, String> serverIds = lookupDeviceIds.isEmpty() ? Collections.emptyMap()
+                : deviceRouteTable.getServerIds(lookupDeviceIds);
+        Map<String, List<IotDeviceMessage>> messagesByServerId = new LinkedHashMap<>();
+        for (IotDeviceMessage message : validMessages) {
+            String serverId = StrUtil.isNotBlank(message.getServerId()) ? message.getServerId()
+                    : serverIds.get(message.getDeviceId());
+            messagesByServerId.computeIfAbsent(serverId, k -> new ArrayList<>()).add(message);
+        }
+
+        // 3. 每个网关一批发送
+        messagesByServerId.forEach((serverId, serverMessages) -> {
+            log.debug("[sendDownstreamMessages][批量发送下行消息，serverId: {}，消息数: {}]",
+                    serverId != null ? serverId : "通用 Topic", serverMessages.size());
+            deviceMessageProducer.sendDeviceMessagesToGateway(serverId, serverMessages);
+        });
+        return validMessages.size();
+    }
+
     @Override
     public int closeConnection(List<String> clientIds) {
         if (clientIds == null || clientIds.isEmpty()) {
@@ -1,5 +1,6 @@
 package com.basiclab.iot.sink.enums;
 
+import com.basiclab.iot.sink.util.IotTopicTrie;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -206,22 +207,32 @@ public enum IotDeviceTopicEnum {
      * @return 匹配的枚举，如果未匹配到则返回 null
      */
     public static IotDeviceTopicEnum matchTopic(String topic) {
-        if (topic == null || topic.isEmpty()) {
-            return null;
-        }
+        return TopicTrieHolder.TRIE.match(topic);
+    }
 
-        // 将实际的 topic 转换为模板格式进行匹配
-        for (IotDeviceTopicEnum topicEnum : values()) {
-            String pattern = topicEnum.topicTemplate
-                    .replace("${productIdentification}", "[^/]+")
-                    .replace("${deviceIdentification}", "[^/]+")
-                    .replace("${identifier}", "[^/]+")
-                    .replace("/", "\\/");
-            if (topic.matches("^" + pattern + "$")) {
-                return topicEnum;
+    /**
+     * 根据 Topic 匹配枚举，并解析出 Topic 中的产品标识、设备标识和 identifier
+     *
+     * @param topic 实际的 Topic
+     * @return 匹配结果，如果未匹配到则返回 null
+     */
+    public static IotTopicTrie.Match<IotDeviceTopicEnum> resolveTopic(String topic) {
+        return TopicTrieHolder.TRIE.resolve(topic);
+    }
+
+    /**
+     * Topic 前缀树，类加载时按枚举声明顺序构建一次
+     */
+    private static final class TopicTrieHolder {
+
+        private static final IotTopicTrie<IotDeviceTopicEnum> TRIE = new IotTopicTrie<>();
+
+        static {
+            for (IotDeviceTopicEnum topicEnum : values()) {
+                TRIE.register(topicEnum.topicTemplate, topicEnum);
             }
         }
-        return null;
+
     }
 
     /**
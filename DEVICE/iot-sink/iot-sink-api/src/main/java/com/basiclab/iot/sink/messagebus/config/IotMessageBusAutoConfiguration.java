@@ -3,20 +3,30 @@ package com.basiclab.iot.sink.messagebus.config;
 import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
 import com.basiclab.iot.sink.messagebus.core.local.IotLocalMessageBus;
 import com.basiclab.iot.sink.messagebus.core.kafka.IotKafkaMessageBus;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotDeviceMessageBinarySerializer;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotJsonMessageSerializer;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializer;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializerRegistry;
 import com.basiclab.iot.sink.mq.producer.IotDeviceMessageProducer;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * IotMessageBusAutoConfiguration
@@ -44,9 +54,10 @@ public class IotMessageBusAutoConfiguration {
     public static class IotLocalMessageBusConfiguration {
 
         @Bean
-        public IotLocalMessageBus iotLocalMessageBus(ApplicationContext applicationContext) {
+        public IotLocalMessageBus iotLocalMessageBus(IotMessageBusProperties properties,
+                                                     ObjectProvider<MeterRegistry> meterRegistry) {
             log.info("[iotLocalMessageBus][创建 IoT Local 消息总线]");
-            return new IotLocalMessageBus(applicationContext);
+            return new IotLocalMessageBus(properties.getLocal(), meterRegistry.getIfAvailable());
         }
 
     }
@@ -58,14 +69,47 @@ public class IotMessageBusAutoConfiguration {
     @ConditionalOnClass(KafkaTemplate.class)
     public static class IotKafkaMessageBusConfiguration {
 
+        @Bean
+        public IotJsonMessageSerializer iotJsonMessageSerializer() {
+            return new IotJsonMessageSerializer();
+        }
+
+        @Bean
+        public IotDeviceMessageBinarySerializer iotDeviceMessageBinarySerializer() {
+            return new IotDeviceMessageBinarySerializer();
+        }
+
+        /**
+         * 汇总所有 {@link IotMessageSerializer} Bean，自定义序列化器注册为 Bean 即可参与收发
+         */
+        @Bean
+        public IotMessageSerializerRegistry iotMessageSerializerRegistry(ObjectProvider<IotMessageSerializer> serializers,
+                                                                         IotMessageBusProperties properties) {
+            return new IotMessageSerializerRegistry(serializers.orderedStream().collect(Collectors.toList()),
+                    properties.getKafka().getSerializer());
+        }
+
         @Bean
         public IotKafkaMessageBus iotKafkaMessageBus(
-                @org.springframework.beans.factory.annotation.Qualifier("iotKafkaTemplate") KafkaTemplate<String, String> kafkaTemplate,
+                @org.springframework.beans.factory.annotation.Qualifier("producerConfigs") Map<String, Object> producerConfigs,
                 @org.springframework.beans.factory.annotation.Qualifier("iotKafkaConsumerBootstrapServers") String consumerBootstrapServers,
                 @org.springframework.beans.factory.annotation.Qualifier("iotKafkaDefaultGroupId") String defaultGroupId,
-                Map<String, Object> consumerConfigs) {
+                Map<String, Object> consumerConfigs,
+                IotMessageBusProperties properties,
+                IotMessageSerializerRegistry serializerRegistry,
+                ObjectProvider<MeterRegistry> meterRegistry) {
             log.info("[iotKafkaMessageBus][创建 IoT Kafka 消息总线]");
-            return new IotKafkaMessageBus(kafkaTemplate, consumerBootstrapServers, defaultGroupId, consumerConfigs);
+            // 消息总线使用独立的生产者，按 basiclab.iot.message-bus.kafka.producer 调优批量发送
+            IotMessageBusProperties.ProducerProperties producer = properties.getKafka().getProducer();
+            Map<String, Object> props = new HashMap<>(producerConfigs);
+            props.put(ProducerConfig.LINGER_MS_CONFIG, producer.getLingerMs());
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, producer.getBatchSize());
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producer.getCompressionType());
+            // 消息体由 IotMessageSerializer 序列化为字节，内容类型写入消息头
+            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+            KafkaTemplate<String, byte[]> kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props));
+            return new IotKafkaMessageBus(kafkaTemplate, consumerBootstrapServers, defaultGroupId, consumerConfigs,
+                    properties.getKafka(), serializerRegistry, meterRegistry.getIfAvailable());
         }
 
     }
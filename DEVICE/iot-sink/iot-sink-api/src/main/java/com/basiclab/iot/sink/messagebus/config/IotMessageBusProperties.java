@@ -5,6 +5,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * IotMessageBusProperties
@@ -26,4 +28,124 @@ public class IotMessageBusProperties {
     @NotNull(message = "IoT 消息总线类型不能为空")
     private String type = "local";
 
-}
\ No newline at end of file
+    /**
+     * Kafka 消息总线配置
+     */
+    private KafkaProperties kafka = new KafkaProperties();
+
+    /**
+     * Local 消息总线配置
+     */
+    private LocalProperties local = new LocalProperties();
+
+    @Data
+    public static class KafkaProperties {
+
+        /**
+         * 每个订阅者默认的消费线程数（同时消费的分区数）
+         */
+        private Integer concurrency = 1;
+
+        /**
+         * 每个订阅者默认的按顺序键并行处理线程数，为 1 时在消费线程上直接处理
+         */
+        private Integer parallelism = 1;
+
+        /**
+         * 按订阅者分组（group）覆盖的配置
+         */
+        private Map<String, SubscriberProperties> subscribers = new HashMap<>();
+
+        /**
+         * 消息总线生产者配置，覆盖 spring.kafka.iot.producer 中的对应项
+         */
+        private ProducerProperties producer = new ProducerProperties();
+
+        /**
+         * 发送消息使用的序列化器：json（默认）、binary（设备消息紧凑二进制），或自定义序列化器的名称
+         * <p>
+         * 接收时按消息头中的内容类型解析，因此可以逐个服务切换，新旧格式的生产者可以共存
+         */
+        private String serializer = "json";
+
+    }
+
+    @Data
+    public static class LocalProperties {
+
+        /**
+         * 每个订阅者默认的处理线程数，顺序键相同的消息由同一线程按发布顺序处理
+         */
+        private Integer parallelism = 1;
+
+        /**
+         * 每个处理线程的队列容量，队列满时发布线程最多等待 offerTimeoutMs（背压）
+         */
+        private Integer queueCapacity = 10000;
+
+        /**
+         * 开启丢弃（shedEnabled）时，队列满后发布线程的最长等待时间（毫秒），超时后丢弃消息并计数
+         * 未开启丢弃时，发布线程按该间隔重试入队直到成功
+         */
+        private Long offerTimeoutMs = 100L;
+
+        /**
+         * 队列满且等待 offerTimeoutMs 后仍无法入队时，是否丢弃消息（load shedding）
+         * 默认不丢弃：发布线程阻塞直到入队（背压），不会丢失消息；
+         * 发布线程是 Vert.x 的 event loop、且允许丢失的订阅者（如高频遥测）可按分组开启
+         */
+        private Boolean shedEnabled = false;
+
+        /**
+         * 每次批量处理的最大消息数
+         */
+        private Integer batchSize = 100;
+
+        /**
+         * 按订阅者分组（group）覆盖的配置，仅 parallelism、shedEnabled 生效
+         */
+        private Map<String, SubscriberProperties> subscribers = new HashMap<>();
+
+    }
+
+    @Data
+    public static class ProducerProperties {
+
+        /**
+         * 批次最大等待时间（毫秒），在吞吐和延迟之间取舍
+         */
+        private Integer lingerMs = 5;
+
+        /**
+         * 单个分区批次的最大字节数
+         */
+        private Integer batchSize = 65536;
+
+        /**
+         * 压缩算法：none、gzip、snappy、lz4、zstd
+         */
+        private String compressionType = "lz4";
+
+    }
+
+    @Data
+    public static class SubscriberProperties {
+
+        /**
+         * 消费线程数（同时消费的分区数）
+         */
+        private Integer concurrency;
+
+        /**
+         * 按顺序键并行处理线程数
+         */
+        private Integer parallelism;
+
+        /**
+         * 队列满时是否丢弃消息，仅 Local 消息总线生效，为空时使用 local.shed-enabled
+         */
+        private Boolean shedEnabled;
+
+    }
+
+}
@@ -17,6 +17,19 @@ public interface IotMessageBus {
      */
     void post(String topic, Object message);
 
+    /**
+     * 按路由键发布消息到消息总线
+     * <p>
+     * 相同路由键的消息保证按发布顺序投递（Kafka 实现中路由到同一分区）
+     *
+     * @param topic   主题
+     * @param key     路由键，例如设备编号；为 null 时等同于 {@link #post(String, Object)}
+     * @param message 消息内容
+     */
+    default void post(String topic, String key, Object message) {
+        post(topic, message);
+    }
+
     /**
      * 注册消息订阅者
      *
@@ -1,5 +1,9 @@
 package com.basiclab.iot.sink.messagebus.core;
 
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
 /**
  * IotMessageSubscriber
  *
@@ -26,4 +30,49 @@ public interface IotMessageSubscriber<T> {
      */
     void onMessage(T message);
 
-}
\ No newline at end of file
+    /**
+     * 批量处理接收到的消息
+     * <p>
+     * 同一批次内的消息需按顺序处理，顺序键（见 {@link #getOrderingKey(Object)}）相同的消息总是在同一批次中。
+     * 默认逐条调用 {@link #onMessage(Object)}，单条消息的异常不影响后续消息
+     *
+     * @param messages 消息列表
+     */
+    default void onMessages(List<T> messages) {
+        for (T message : messages) {
+            try {
+                onMessage(message);
+            } catch (Exception e) {
+                LoggerFactory.getLogger(getClass()).error("[onMessages][topic({}/{}) 处理消息异常]",
+                        getTopic(), getGroup(), e);
+            }
+        }
+    }
+
+    /**
+     * 消息的顺序键，顺序键相同的消息按接收顺序串行处理，不同顺序键的消息可以并行处理
+     * <p>
+     * 仅在消息总线收到的消息没有 key 时使用；返回 null 时按分区保证顺序
+     *
+     * @param message 消息内容
+     * @return 顺序键，例如设备编号
+     */
+    default Object getOrderingKey(T message) {
+        return null;
+    }
+
+    /**
+     * @return 消费线程数（同时消费的分区数），小于等于 0 时使用消息总线配置
+     */
+    default int getConcurrency() {
+        return 0;
+    }
+
+    /**
+     * @return 按顺序键并行处理的线程数，小于等于 0 时使用消息总线配置
+     */
+    default int getParallelism() {
+        return 0;
+    }
+
+}
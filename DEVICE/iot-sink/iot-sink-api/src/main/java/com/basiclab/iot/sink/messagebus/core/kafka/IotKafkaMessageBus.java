@@ -1,28 +1,39 @@
 package com.basiclab.iot.sink.messagebus.core.kafka;
 
 import cn.hutool.core.util.TypeUtil;
-import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.sink.messagebus.config.IotMessageBusProperties;
 import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
 import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializer;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializerRegistry;
+import com.basiclab.iot.sink.util.IotMessageBusTopicUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
-import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
-import org.springframework.kafka.listener.MessageListener;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -35,24 +46,38 @@ import java.util.regex.Pattern;
 @Slf4j
 public class IotKafkaMessageBus implements IotMessageBus {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private static final String METRIC_PREFIX = "iot.message-bus.kafka";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
     private final String bootstrapServers;
     private final String defaultGroupId;
     private final Map<String, Object> consumerConfigs;
+    private final IotMessageBusProperties.KafkaProperties kafkaProperties;
+    private final IotMessageSerializerRegistry serializerRegistry;
+    private final MeterRegistry meterRegistry;
     
     @Getter
     private final List<IotMessageSubscriber<?>> subscribers = new ArrayList<>();
     
-    private final List<ConcurrentMessageListenerContainer<String, String>> containers = new ArrayList<>();
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+
+    private final List<IotKafkaSubscriberDispatcher> dispatchers = new ArrayList<>();
 
-    public IotKafkaMessageBus(KafkaTemplate<String, String> kafkaTemplate, 
+    public IotKafkaMessageBus(KafkaTemplate<String, byte[]> kafkaTemplate, 
                                String bootstrapServers,
                                String defaultGroupId,
-                               Map<String, Object> consumerConfigs) {
+                               Map<String, Object> consumerConfigs,
+                               IotMessageBusProperties.KafkaProperties kafkaProperties,
+                               IotMessageSerializerRegistry serializerRegistry,
+                               MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
         this.bootstrapServers = bootstrapServers;
         this.defaultGroupId = defaultGroupId;
         this.consumerConfigs = consumerConfigs;
+        this.kafkaProperties = kafkaProperties != null ? kafkaProperties : new IotMessageBusProperties.KafkaProperties();
+        this.serializerRegistry = serializerRegistry != null ? serializerRegistry
+                : new IotMessageSerializerRegistry(Collections.emptyList(), null);
+        this.meterRegistry = meterRegistry;
     }
 
     @PostConstruct
@@ -63,7 +88,7 @@ public class IotKafkaMessageBus implements IotMessageBus {
     @PreDestroy
     public void destroy() {
         // 停止所有容器
-        for (ConcurrentMessageListenerContainer<String, String> container : containers) {
+        for (ConcurrentMessageListenerContainer<String, byte[]> container : containers) {
             try {
                 container.stop();
                 log.info("[destroy][停止 Kafka 消费者容器成功]");
@@ -71,21 +96,71 @@ public class IotKafkaMessageBus implements IotMessageBus {
                 log.error("[destroy][停止 Kafka 消费者容器异常]", e);
             }
         }
+        dispatchers.forEach(IotKafkaSubscriberDispatcher::shutdown);
+        // 发送缓冲区中的消息后关闭生产者
+        try {
+            kafkaTemplate.flush();
+            if (kafkaTemplate.getProducerFactory() instanceof DisposableBean) {
+                ((DisposableBean) kafkaTemplate.getProducerFactory()).destroy();
+            }
+        } catch (Exception e) {
+            log.error("[destroy][关闭 Kafka 生产者异常]", e);
+        }
         log.info("[destroy][Kafka 消息总线销毁完成]");
     }
 
     @Override
     public void post(String topic, Object message) {
+        post(topic, null, message);
+    }
+
+    /**
+     * 异步发送消息，发送结果通过回调记录耗时和失败指标
+     * <p>
+     * 相同 key 的消息路由到同一分区，保证顺序；消息体按配置的序列化器编码，内容类型写入消息头
+     */
+    @Override
+    public void post(String topic, String key, Object message) {
+        long start = System.nanoTime();
         try {
-            String messageJson = JsonUtils.toJsonString(message);
-            kafkaTemplate.send(topic, messageJson);
-            log.debug("[post][topic({}) 发送消息成功]", topic);
+            IotMessageSerializer serializer = serializerRegistry.getWriter(message);
+            ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, serializer.serialize(message));
+            record.headers().add(IotMessageSerializer.HEADER_CONTENT_TYPE,
+                    serializer.getContentType().getBytes(StandardCharsets.UTF_8));
+            kafkaTemplate.send(record).addCallback(
+                    result -> recordSend(topic, start, null),
+                    ex -> {
+                        recordSend(topic, start, ex);
+                        log.error("[post][topic({}) key({}) 发送消息失败]", topic, key, ex);
+                    });
+            log.debug("[post][topic({}) key({}) 提交发送]", topic, key);
         } catch (Exception e) {
+            recordSend(topic, start, e);
             log.error("[post][topic({}) 发送消息失败]", topic, e);
             throw new RuntimeException("发送消息到 Kafka 失败", e);
         }
     }
 
+    private void recordSend(String topic, long start, Throwable error) {
+        if (meterRegistry == null) {
+            return;
+        }
+        if (error == null) {
+            Timer.builder(METRIC_PREFIX + ".send.latency")
+                    .description("消息总线发送耗时（提交到 broker 确认）")
+                    .tag("topic", topic)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            Counter.builder(METRIC_PREFIX + ".send.failures")
+                    .description("消息总线发送失败次数")
+                    .tag("topic", topic)
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
     @Override
     public void register(IotMessageSubscriber<?> subscriber) {
         Type type = TypeUtil.getTypeArgument(subscriber.getClass(), 0);
@@ -101,103 +176,78 @@ public class IotKafkaMessageBus implements IotMessageBus {
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
 
-        // 创建消费者工厂
-        ConsumerFactory<String, String> consumerFactory = new DefaultKafkaConsumerFactory<>(props);
+        // 创建消费者工厂；开启指标时绑定 Kafka 客户端指标（含 records-lag、records-consumed-rate）
+        DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = new DefaultKafkaConsumerFactory<>(props);
+        if (meterRegistry != null) {
+            consumerFactory.addListener(new MicrometerConsumerListener<>(meterRegistry,
+                    Collections.singletonList(Tag.of("subscriber", groupId))));
+        }
 
         // 创建容器属性
         // 如果 topic 包含 MQTT 通配符格式（如 iot/#），需要转换为 Kafka 正则表达式
         ContainerProperties containerProps;
-        if (topic.contains("#") || topic.contains("+")) {
+        if (IotMessageBusTopicUtils.isWildcard(topic)) {
             // 将 MQTT 通配符格式转换为 Kafka 正则表达式
             // iot/# -> ^iot/.*
             // iot/+/device -> ^iot/[^/]+/device
-            String regexPattern = convertMqttWildcardToKafkaRegex(topic);
+            String regexPattern = IotMessageBusTopicUtils.convertMqttWildcardToRegex(topic);
             Pattern pattern = Pattern.compile(regexPattern);
             containerProps = new ContainerProperties(pattern);
             log.info("[register][将 MQTT 通配符主题 {} 转换为 Kafka 正则表达式: {}]", topic, regexPattern);
         } else {
             containerProps = new ContainerProperties(topic);
         }
-        containerProps.setMessageListener(new MessageListener<String, String>() {
-            @Override
-            @SuppressWarnings("unchecked")
-            public void onMessage(ConsumerRecord<String, String> record) {
-                try {
-                    String value = record.value();
-                    Object message = JsonUtils.parseObject(value, type);
-                    ((IotMessageSubscriber<Object>) subscriber).onMessage(message);
-                } catch (Exception e) {
-                    log.error("[onMessage][topic({}/{}) 处理消息异常]",
-                            topic, groupId, e);
-                }
-            }
-        });
-        containerProps.setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        // 批量监听：按顺序键并行处理，整批处理完成后提交 offset
+        int concurrency = resolveConcurrency(subscriber, groupId);
+        int parallelism = resolveParallelism(subscriber, groupId);
+        IotKafkaSubscriberDispatcher dispatcher = new IotKafkaSubscriberDispatcher(subscriber, type, parallelism,
+                serializerRegistry, meterRegistry);
+        containerProps.setMessageListener(dispatcher);
+        containerProps.setAckMode(ContainerProperties.AckMode.BATCH);
 
         // 创建并启动容器
-        ConcurrentMessageListenerContainer<String, String> container =
+        ConcurrentMessageListenerContainer<String, byte[]> container =
                 new ConcurrentMessageListenerContainer<>(consumerFactory, containerProps);
-        container.setConcurrency(1);
+        container.setConcurrency(concurrency);
         container.setBeanName("iot-kafka-listener-" + topic + "-" + groupId);
         container.start();
 
         containers.add(container);
+        dispatchers.add(dispatcher);
         subscribers.add(subscriber);
 
-        log.info("[register][topic({}/{}) 注册消费者({})成功]",
-                topic, groupId, subscriber.getClass().getName());
+        log.info("[register][topic({}/{}) 注册消费者({})成功，concurrency: {}, parallelism: {}]",
+                topic, groupId, subscriber.getClass().getName(), concurrency, parallelism);
     }
 
     /**
-     * 将 MQTT 通配符格式转换为 Kafka 正则表达式
-     * 
-     * MQTT 通配符规则：
-     * - # 表示匹配零个或多个层级（只能放在最后）
-     * - + 表示匹配单个层级
-     * 
-     * Kafka 使用 Java 正则表达式：
-     * - .* 表示匹配任意字符（零个或多个）
-     * - [^/]+ 表示匹配除 / 外的任意字符（一个或多个）
-     * 
-     * @param mqttTopic MQTT 格式的主题（如 iot/# 或 iot/+/device）
-     * @return Kafka 正则表达式（如 ^iot/.* 或 ^iot/[^/]+/device）
+     * 消费线程数：订阅者指定 > 按分组配置 > 默认配置
      */
-    private String convertMqttWildcardToKafkaRegex(String mqttTopic) {
-        if (mqttTopic == null || mqttTopic.isEmpty()) {
-            return mqttTopic;
+    private int resolveConcurrency(IotMessageSubscriber<?> subscriber, String groupId) {
+        if (subscriber.getConcurrency() > 0) {
+            return subscriber.getConcurrency();
         }
-        
-        // 转义特殊字符（除了 # 和 +）
-        String regex = mqttTopic
-                .replace(".", "\\.")
-                .replace("$", "\\$")
-                .replace("^", "\\^")
-                .replace("[", "\\[")
-                .replace("]", "\\]")
-                .replace("(", "\\(")
-                .replace(")", "\\)")
-                .replace("{", "\\{")
-                .replace("}", "\\}")
-                .replace("|", "\\|");
-        
-        // 处理 # 通配符（只能出现在最后，匹配零个或多个层级）
-        if (regex.endsWith("/#")) {
-            regex = regex.substring(0, regex.length() - 2) + ".*";
-        } else if (regex.endsWith("#")) {
-            regex = regex.substring(0, regex.length() - 1) + ".*";
+        IotMessageBusProperties.SubscriberProperties subscriberProperties = kafkaProperties.getSubscribers().get(groupId);
+        if (subscriberProperties != null && subscriberProperties.getConcurrency() != null) {
+            return Math.max(subscriberProperties.getConcurrency(), 1);
+        }
+        return Math.max(kafkaProperties.getConcurrency(), 1);
+    }
+
+    /**
+     * 并行处理线程数：订阅者指定 > 按分组配置 > 默认配置
+     */
+    private int resolveParallelism(IotMessageSubscriber<?> subscriber, String groupId) {
+        if (subscriber.getParallelism() > 0) {
+            return subscriber.getParallelism();
         }
-        
-        // 处理 + 通配符（匹配单个层级，即匹配除 / 外的任意字符）
-        regex = regex.replace("+", "[^/]+");
-        
-        // 添加行首锚点
-        if (!regex.startsWith("^")) {
-            regex = "^" + regex;
+        IotMessageBusProperties.SubscriberProperties subscriberProperties = kafkaProperties.getSubscribers().get(groupId);
+        if (subscriberProperties != null && subscriberProperties.getParallelism() != null) {
+            return Math.max(subscriberProperties.getParallelism(), 1);
         }
-        
-        return regex;
+        return Math.max(kafkaProperties.getParallelism(), 1);
     }
 
 }
@@ -0,0 +1,244 @@
+package com.basiclab.iot.sink.messagebus.core.kafka;
+
+import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializer;
+import com.basiclab.iot.sink.messagebus.core.serializer.IotMessageSerializerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.BatchMessageListener;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IotKafkaSubscriberDispatcher
+ * <p>
+ * 单个订阅者的 Kafka 批量监听器：消费线程拉取到一批记录后，按顺序键分配到 parallelism 条处理通道，
+ * 通道之间并行处理、通道内部按接收顺序串行处理，全部处理完成后返回，由容器提交本批 offset（AckMode.BATCH）。
+ * <p>
+ * 顺序键优先取记录的 key（无需在消费线程上解析消息）；记录没有 key 时解析消息并取
+ * {@link IotMessageSubscriber#getOrderingKey(Object)}；仍为 null 时使用分区号，保持分区内有序。
+ * <p>
+ * 消息体按消息头中的内容类型选择 {@link IotMessageSerializer} 解析，没有消息头的消息按 JSON 解析
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+class IotKafkaSubscriberDispatcher implements BatchMessageListener<String, byte[]> {
+
+    private static final String METRIC_PREFIX = "iot.message-bus.kafka";
+
+    private final IotMessageSubscriber<Object> subscriber;
+
+    private final Type type;
+
+    private final int parallelism;
+
+    private final IotMessageSerializerRegistry serializerRegistry;
+
+    /**
+     * 通道处理线程池，parallelism 为 1 时为 null，直接在消费线程上处理
+     */
+    private final ThreadPoolExecutor executor;
+
+    private Counter consumedCounter;
+    private Counter failureCounter;
+    private Timer batchTimer;
+
+    @SuppressWarnings("unchecked")
+    IotKafkaSubscriberDispatcher(IotMessageSubscriber<?> subscriber, Type type, int parallelism,
+                                 IotMessageSerializerRegistry serializerRegistry, MeterRegistry meterRegistry) {
+        this.subscriber = (IotMessageSubscriber<Object>) subscriber;
+        this.type = type;
+        this.parallelism = Math.max(parallelism, 1);
+        this.serializerRegistry = serializerRegistry;
+        if (this.parallelism > 1) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            String threadPrefix = "iot-kafka-" + subscriber.getGroup() + "-";
+            this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, threadPrefix + threadIndex.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.executor = null;
+        }
+        if (meterRegistry != null) {
+            consumedCounter = Counter.builder(METRIC_PREFIX + ".consumed")
+                    .description("订阅者消费的消息数")
+                    .tag("topic", subscriber.getTopic()).tag("group", subscriber.getGroup())
+                    .register(meterRegistry);
+            failureCounter = Counter.builder(METRIC_PREFIX + ".failures")
+                    .description("订阅者解析或处理失败的消息数")
+                    .tag("topic", subscriber.getTopic()).tag("group", subscriber.getGroup())
+                    .register(meterRegistry);
+            batchTimer = Timer.builder(METRIC_PREFIX + ".batch.latency")
+                    .description("订阅者处理一批消息的耗时")
+                    .tag("topic", subscriber.getTopic()).tag("group", subscriber.getGroup())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void onMessage(List<ConsumerRecord<String, byte[]>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (executor == null) {
+                List<Item> items = new ArrayList<>(records.size());
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    items.add(new Item(record));
+                }
+                process(items);
+            } else {
+                dispatch(records);
+            }
+        } finally {
+            if (consumedCounter != null) {
+                consumedCounter.increment(records.size());
+                batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 按顺序键分配通道并行处理，等待所有通道处理完成
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatch(List<ConsumerRecord<String, byte[]>> records) {
+        List<Item>[] lanes = new List[parallelism];
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Item item = new Item(record);
+            Object orderingKey = record.key();
+            if (orderingKey == null) {
+                item.parse();
+                if (item.message != null) {
+                    orderingKey = subscriber.getOrderingKey(item.message);
+                }
+                if (orderingKey == null) {
+                    orderingKey = record.partition();
+                }
+            }
+            int lane = (orderingKey.hashCode() & Integer.MAX_VALUE) % parallelism;
+            if (lanes[lane] == null) {
+                lanes[lane] = new ArrayList<>();
+            }
+            lanes[lane].add(item);
+        }
+
+        int laneCount = 0;
+        for (List<Item> lane : lanes) {
+            if (lane != null) {
+                laneCount++;
+            }
+        }
+        CountDownLatch latch = new CountDownLatch(laneCount);
+        for (List<Item> lane : lanes) {
+            if (lane == null) {
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    process(lane);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        // 必须等待本批全部处理完成后再返回，否则 offset 会先于处理提交
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 解析并按顺序处理一个通道中的消息
+     */
+    private void process(List<Item> items) {
+        List<Object> messages = new ArrayList<>(items.size());
+        for (Item item : items) {
+            item.parse();
+            if (item.message != null) {
+                messages.add(item.message);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            subscriber.onMessages(messages);
+        } catch (Exception e) {
+            increment(failureCounter);
+            log.error("[process][topic({}/{}) 处理消息异常，消息数: {}]",
+                    subscriber.getTopic(), subscriber.getGroup(), messages.size(), e);
+        }
+    }
+
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 待处理的记录，消息在首次需要时才解析
+     */
+    private final class Item {
+
+        private final ConsumerRecord<String, byte[]> record;
+        private Object message;
+        private boolean parsed;
+
+        private Item(ConsumerRecord<String, byte[]> record) {
+            this.record = record;
+        }
+
+        private void parse() {
+            if (parsed) {
+                return;
+            }
+            parsed = true;
+            try {
+                Header header = record.headers().lastHeader(IotMessageSerializer.HEADER_CONTENT_TYPE);
+                String contentType = header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+                message = serializerRegistry.getReader(contentType).deserialize(record.value(), type);
+            } catch (Exception e) {
+                increment(failureCounter);
+                log.error("[parse][topic({}/{}) 解析消息异常]", subscriber.getTopic(), subscriber.getGroup(), e);
+            }
+        }
+
+    }
+
+}
@@ -1,67 +1,403 @@
 package com.basiclab.iot.sink.messagebus.core.local;
 
-import cn.hutool.core.collection.CollUtil;
+import com.basiclab.iot.sink.messagebus.config.IotMessageBusProperties;
 import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
 import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
-import lombok.RequiredArgsConstructor;
+import com.basiclab.iot.sink.util.IotMessageBusTopicUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.event.EventListener;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
  * IotLocalMessageBus
+ * <p>
+ * 单机模式的消息总线，发布与处理异步解耦：
+ * <ul>
+ *     <li>订阅关系按主题保存为写时复制数组，发布时无锁读取；支持与 Kafka 实现相同的 MQTT 通配符（# 与 +）</li>
+ *     <li>每个订阅者拥有 parallelism 条处理通道，每条通道为有界队列 + 独立线程，批量调用 {@link IotMessageSubscriber#onMessages(List)}</li>
+ *     <li>通道按路由键（其次为 {@link IotMessageSubscriber#getOrderingKey(Object)}）选择，相同键的消息按发布顺序处理；
+ *     没有顺序键的消息轮询分配</li>
+ *     <li>队列满时默认阻塞发布线程直到入队（背压），不丢失消息；按分组开启 shedEnabled 后，
+ *     最多等待 offerTimeoutMs，仍无法入队则丢弃消息并计数（load shedding），每个订阅者限频打印告警</li>
+ * </ul>
+ * 发布线程（通常是 Vert.x 的 event loop）只负责入队，不再同步执行订阅者的数据库等耗时操作
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
  * @wechat EasyAIoT2025
  */
-@RequiredArgsConstructor
 @Slf4j
 public class IotLocalMessageBus implements IotMessageBus {
 
-    private final ApplicationContext applicationContext;
+    private static final String METRIC_PREFIX = "iot.message-bus.local";
 
     /**
-     * 订阅者映射表
+     * 主题匹配结果的最大缓存数量，超过后不再缓存，每次重新匹配
+     */
+    private static final int MAX_RESOLVED_TOPICS = 1024;
+
+    /**
+     * 丢弃消息的告警日志间隔
+     */
+    private static final long SHED_LOG_INTERVAL_MS = 5000;
+
+    /**
+     * 未开启丢弃时，发布线程每次等待入队的最长时间
+     */
+    private static final long BLOCK_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+
+    private final IotMessageBusProperties.LocalProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 精确主题的订阅者
      * Key: topic
      */
-    private final Map<String, List<IotMessageSubscriber<?>>> subscribers = new HashMap<>();
+    private final ConcurrentMap<String, Subscription[]> exactSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * 通配符主题的订阅者
+     */
+    private volatile Subscription[] wildcardSubscriptions = EMPTY;
+
+    /**
+     * 主题到订阅者的匹配结果缓存，注册订阅者时整体替换
+     */
+    private volatile ConcurrentMap<String, Subscription[]> resolvedSubscriptions = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    private final long offerTimeoutNanos;
+
+    public IotLocalMessageBus(IotMessageBusProperties.LocalProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties != null ? properties : new IotMessageBusProperties.LocalProperties();
+        this.meterRegistry = meterRegistry;
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(this.properties.getOfferTimeoutMs(), 0L));
+    }
 
     @Override
     public void post(String topic, Object message) {
-        applicationContext.publishEvent(new IotLocalMessage(topic, message));
+        post(topic, null, message);
     }
 
     @Override
-    public void register(IotMessageSubscriber<?> subscriber) {
+    public void post(String topic, String key, Object message) {
+        if (!running) {
+            log.warn("[post][topic({}) 消息总线已关闭，忽略消息]", topic);
+            return;
+        }
+        for (Subscription subscription : resolve(topic)) {
+            subscription.offer(key, message);
+        }
+    }
+
+    @Override
+    public synchronized void register(IotMessageSubscriber<?> subscriber) {
         String topic = subscriber.getTopic();
-        List<IotMessageSubscriber<?>> topicSubscribers = subscribers.computeIfAbsent(topic, k -> new ArrayList<>());
-        topicSubscribers.add(subscriber);
-        log.info("[register][topic({}/{}) 注册消费者({})成功]",
-                topic, subscriber.getGroup(), subscriber.getClass().getName());
+        Subscription subscription = new Subscription(subscriber, resolveParallelism(subscriber));
+        if (IotMessageBusTopicUtils.isWildcard(topic)) {
+            wildcardSubscriptions = append(wildcardSubscriptions, subscription);
+        } else {
+            exactSubscriptions.put(topic, append(exactSubscriptions.getOrDefault(topic, EMPTY), subscription));
+        }
+        // 先更新订阅关系再替换缓存，保证之后的匹配一定能看到新的订阅者
+        resolvedSubscriptions = new ConcurrentHashMap<>();
+        log.info("[register][topic({}/{}) 注册消费者({})成功，parallelism: {}]",
+                topic, subscriber.getGroup(), subscriber.getClass().getName(), subscription.lanes.length);
     }
 
-    @EventListener
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    public void onMessage(IotLocalMessage message) {
-        String topic = message.getTopic();
-        List<IotMessageSubscriber<?>> topicSubscribers = subscribers.get(topic);
-        if (CollUtil.isEmpty(topicSubscribers)) {
-            return;
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        List<Subscription> subscriptions = new ArrayList<>(Arrays.asList(wildcardSubscriptions));
+        exactSubscriptions.values().forEach(array -> subscriptions.addAll(Arrays.asList(array)));
+        // 处理完队列中剩余的消息后退出，最多等待 10 秒
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        for (Subscription subscription : subscriptions) {
+            subscription.awaitTermination(deadline);
+        }
+        log.info("[destroy][Local 消息总线销毁完成]");
+    }
+
+    private Subscription[] resolve(String topic) {
+        ConcurrentMap<String, Subscription[]> cache = resolvedSubscriptions;
+        Subscription[] resolved = cache.get(topic);
+        if (resolved != null) {
+            return resolved;
+        }
+        resolved = exactSubscriptions.getOrDefault(topic, EMPTY);
+        for (Subscription subscription : wildcardSubscriptions) {
+            if (subscription.pattern.matcher(topic).matches()) {
+                resolved = append(resolved, subscription);
+            }
+        }
+        if (cache.size() < MAX_RESOLVED_TOPICS) {
+            cache.put(topic, resolved);
+        }
+        return resolved;
+    }
+
+    private static Subscription[] append(Subscription[] array, Subscription subscription) {
+        Subscription[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = subscription;
+        return result;
+    }
+
+    /**
+     * 队列满时是否丢弃消息：按分组配置 > 默认配置
+     */
+    private boolean resolveShedEnabled(IotMessageSubscriber<?> subscriber) {
+        IotMessageBusProperties.SubscriberProperties subscriberProperties =
+                subscriber.getGroup() != null ? properties.getSubscribers().get(subscriber.getGroup()) : null;
+        if (subscriberProperties != null && subscriberProperties.getShedEnabled() != null) {
+            return subscriberProperties.getShedEnabled();
+        }
+        return Boolean.TRUE.equals(properties.getShedEnabled());
+    }
+
+    /**
+     * 处理线程数：订阅者指定 > 按分组配置 > 默认配置
+     */
+    private int resolveParallelism(IotMessageSubscriber<?> subscriber) {
+        if (subscriber.getParallelism() > 0) {
+            return subscriber.getParallelism();
+        }
+        IotMessageBusProperties.SubscriberProperties subscriberProperties =
+                subscriber.getGroup() != null ? properties.getSubscribers().get(subscriber.getGroup()) : null;
+        if (subscriberProperties != null && subscriberProperties.getParallelism() != null) {
+            return Math.max(subscriberProperties.getParallelism(), 1);
         }
-        for (IotMessageSubscriber subscriber : topicSubscribers) {
+        return Math.max(properties.getParallelism(), 1);
+    }
+
+    /**
+     * 单个订阅者的处理通道
+     */
+    private final class Subscription {
+
+        private final IotMessageSubscriber<Object> subscriber;
+        private final Pattern pattern;
+        private final Lane[] lanes;
+        private final AtomicInteger roundRobin = new AtomicInteger();
+        private final boolean shedEnabled;
+
+        /**
+         * 上次打印丢弃告警以来丢弃的消息数，以及上次打印的时间
+         */
+        private final AtomicLong shedSinceLastLog = new AtomicLong();
+        private final AtomicLong lastShedLogTime = new AtomicLong();
+
+        private Counter blockedCounter;
+        private Counter shedCounter;
+        private Counter failureCounter;
+        private Timer batchTimer;
+
+        @SuppressWarnings("unchecked")
+        private Subscription(IotMessageSubscriber<?> subscriber, int parallelism) {
+            this.subscriber = (IotMessageSubscriber<Object>) subscriber;
+            this.pattern = IotMessageBusTopicUtils.isWildcard(subscriber.getTopic())
+                    ? Pattern.compile(IotMessageBusTopicUtils.convertMqttWildcardToRegex(subscriber.getTopic())) : null;
+            this.shedEnabled = resolveShedEnabled(subscriber);
+            if (meterRegistry != null) {
+                String group = String.valueOf(subscriber.getGroup());
+                blockedCounter = Counter.builder(METRIC_PREFIX + ".blocked")
+                        .description("队列已满、发布线程等待入队的次数")
+                        .tag("topic", subscriber.getTopic()).tag("group", group)
+                        .register(meterRegistry);
+                shedCounter = Counter.builder(METRIC_PREFIX + ".shed")
+                        .description("队列已满且等待超时被丢弃的消息数")
+                        .tag("topic", subscriber.getTopic()).tag("group", group)
+                        .register(meterRegistry);
+                failureCounter = Counter.builder(METRIC_PREFIX + ".failures")
+                        .description("订阅者处理失败的批次数")
+                        .tag("topic", subscriber.getTopic()).tag("group", group)
+                        .register(meterRegistry);
+                batchTimer = Timer.builder(METRIC_PREFIX + ".batch.latency")
+                        .description("订阅者处理一批消息的耗时")
+                        .tag("topic", subscriber.getTopic()).tag("group", group)
+                        .register(meterRegistry);
+                Gauge.builder(METRIC_PREFIX + ".queue.size", this, Subscription::queueSize)
+                        .description("订阅者待处理的消息数")
+                        .tag("topic", subscriber.getTopic()).tag("group", group)
+                        .register(meterRegistry);
+            }
+            this.lanes = new Lane[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                lanes[i] = new Lane(this, "iot-local-bus-" + subscriber.getGroup() + "-" + i);
+            }
+        }
+
+        private void offer(String key, Object message) {
+            Object orderingKey = key;
+            if (orderingKey == null && lanes.length > 1) {
+                try {
+                    orderingKey = subscriber.getOrderingKey(message);
+                } catch (Exception e) {
+                    log.warn("[offer][topic({}/{}) 获取顺序键异常]", subscriber.getTopic(), subscriber.getGroup(), e);
+                }
+            }
+            int index;
+            if (lanes.length == 1) {
+                index = 0;
+            } else if (orderingKey != null) {
+                index = (orderingKey.hashCode() & Integer.MAX_VALUE) % lanes.length;
+            } else {
+                index = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % lanes.length;
+            }
+            lanes[index].offer(message);
+        }
+
+        private void process(List<Object> messages) {
+            long start = System.nanoTime();
+            try {
+                subscriber.onMessages(messages);
+            } catch (Exception e) {
+                if (failureCounter != null) {
+                    failureCounter.increment();
+                }
+                log.error("[process][topic({}/{}) 消费者({}) 处理异常，消息数: {}]", subscriber.getTopic(),
+                        subscriber.getGroup(), subscriber.getClass().getName(), messages.size(), e);
+            } finally {
+                if (batchTimer != null) {
+                    batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private double queueSize() {
+            int size = 0;
+            for (Lane lane : lanes) {
+                size += lane.queue.size();
+            }
+            return size;
+        }
+
+        private void awaitTermination(long deadline) {
+            for (Lane lane : lanes) {
+                try {
+                    lane.worker.join(Math.max(deadline - System.currentTimeMillis(), 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (lane.worker.isAlive()) {
+                    log.warn("[awaitTermination][topic({}/{}) 未处理完的消息数: {}]",
+                            subscriber.getTopic(), subscriber.getGroup(), lane.queue.size());
+                }
+            }
+        }
+
+    }
+
+    /**
+     * 处理通道：有界队列 + 单个处理线程，通道内按入队顺序处理
+     */
+    private final class Lane implements Runnable {
+
+        private final Subscription subscription;
+        private final ArrayBlockingQueue<Object> queue;
+        private final Thread worker;
+
+        private Lane(Subscription subscription, String threadName) {
+            this.subscription = subscription;
+            this.queue = new ArrayBlockingQueue<>(Math.max(properties.getQueueCapacity(), 1));
+            this.worker = new Thread(this, threadName);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        private void offer(Object message) {
+            if (queue.offer(message)) {
+                return;
+            }
+            if (Thread.currentThread() == worker) {
+                // 订阅者在处理线程中向自己订阅的主题发布消息，阻塞会造成死锁，直接处理
+                subscription.process(Collections.singletonList(message));
+                return;
+            }
+            if (subscription.blockedCounter != null) {
+                subscription.blockedCounter.increment();
+            }
+            boolean offered;
             try {
-                subscriber.onMessage(message.getMessage());
-            } catch (Exception ex) {
-                log.error("[onMessage][topic({}/{}) message({}) 消费者({}) 处理异常]",
-                        subscriber.getTopic(), subscriber.getGroup(), message.getMessage(), subscriber.getClass().getName(), ex);
+                offered = subscription.shedEnabled ? offerTimeoutNanos > 0
+                        && queue.offer(message, offerTimeoutNanos, TimeUnit.NANOSECONDS) : offerBlocking(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                offered = false;
+            }
+            if (!offered) {
+                shed();
+            }
+        }
+
+        /**
+         * 阻塞直到入队；消息总线关闭后处理线程不再消费，此时放弃入队
+         */
+        private boolean offerBlocking(Object message) throws InterruptedException {
+            long waitNanos = offerTimeoutNanos > 0 ? offerTimeoutNanos : BLOCK_RETRY_NANOS;
+            while (running) {
+                if (queue.offer(message, waitNanos, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void shed() {
+            if (subscription.shedCounter != null) {
+                subscription.shedCounter.increment();
+            }
+            // 每个订阅者独立限频，一个订阅者持续丢弃时不会掩盖其他订阅者的告警
+            long shed = subscription.shedSinceLastLog.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = subscription.lastShedLogTime.get();
+            if (now - last >= SHED_LOG_INTERVAL_MS && subscription.lastShedLogTime.compareAndSet(last, now)) {
+                subscription.shedSinceLastLog.addAndGet(-shed);
+                log.warn("[shed][topic({}/{}) 处理队列已满，丢弃消息数: {}（{} 毫秒内只打印一次）]",
+                        subscription.subscriber.getTopic(), subscription.subscriber.getGroup(), shed,
+                        SHED_LOG_INTERVAL_MS);
+            }
+        }
+
+        @Override
+        public void run() {
+            int batchSize = Math.max(properties.getBatchSize(), 1);
+            List<Object> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                Object first;
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                subscription.process(batch);
+                batch.clear();
             }
         }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,437 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IotDeviceMessageBinarySerializer
+ * <p>
+ * {@link IotDeviceMessage} 的紧凑二进制序列化器，格式如下：
+ * <ul>
+ *     <li>魔数（1 字节）+ 版本（1 字节）</li>
+ *     <li>字段存在位图（varint），只写出非 null 的字段</li>
+ *     <li>字符串为 varint 长度 + UTF-8；整数为 zigzag varint；reportTime 为 UTC 秒数 + 纳秒，不丢失精度</li>
+ *     <li>params / data 为带类型标记的值树：null、布尔、整数、浮点、字符串、Map、List；
+ *     其他类型（自定义对象、BigDecimal 等）内嵌为 JSON 文本，解码结果与 JSON 序列化器一致</li>
+ * </ul>
+ * 数值的解码类型与 JSON 一致：能放入 int 的整数解码为 Integer，其余为 Long；浮点解码为 Double
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDeviceMessageBinarySerializer implements IotMessageSerializer {
+
+    public static final String NAME = "binary";
+
+    public static final String CONTENT_TYPE = "application/x-iot-device-message";
+
+    private static final byte MAGIC = (byte) 0xD1;
+    private static final byte VERSION = 1;
+
+    private static final int FIELD_ID = 1;
+    private static final int FIELD_REPORT_TIME = 1 << 1;
+    private static final int FIELD_DEVICE_ID = 1 << 2;
+    private static final int FIELD_TENANT_ID = 1 << 3;
+    private static final int FIELD_SERVER_ID = 1 << 4;
+    private static final int FIELD_REQUEST_ID = 1 << 5;
+    private static final int FIELD_METHOD = 1 << 6;
+    private static final int FIELD_PARAMS = 1 << 7;
+    private static final int FIELD_DATA = 1 << 8;
+    private static final int FIELD_CODE = 1 << 9;
+    private static final int FIELD_MSG = 1 << 10;
+    private static final int FIELD_NEED_REPLY = 1 << 11;
+    private static final int FIELD_TOPIC = 1 << 12;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_STRING = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_LIST = 8;
+    private static final byte TAG_JSON = 9;
+
+    /**
+     * 值树的最大嵌套深度，防止异常数据导致栈溢出
+     */
+    private static final int MAX_DEPTH = 64;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public boolean supports(Object message) {
+        return message instanceof IotDeviceMessage;
+    }
+
+    @Override
+    public byte[] serialize(Object message) {
+        IotDeviceMessage msg = (IotDeviceMessage) message;
+        int mask = 0;
+        mask |= msg.getId() != null ? FIELD_ID : 0;
+        mask |= msg.getReportTime() != null ? FIELD_REPORT_TIME : 0;
+        mask |= msg.getDeviceId() != null ? FIELD_DEVICE_ID : 0;
+        mask |= msg.getTenantId() != null ? FIELD_TENANT_ID : 0;
+        mask |= msg.getServerId() != null ? FIELD_SERVER_ID : 0;
+        mask |= msg.getRequestId() != null ? FIELD_REQUEST_ID : 0;
+        mask |= msg.getMethod() != null ? FIELD_METHOD : 0;
+        mask |= msg.getParams() != null ? FIELD_PARAMS : 0;
+        mask |= msg.getData() != null ? FIELD_DATA : 0;
+        mask |= msg.getCode() != null ? FIELD_CODE : 0;
+        mask |= msg.getMsg() != null ? FIELD_MSG : 0;
+        mask |= msg.getNeedReply() != null ? FIELD_NEED_REPLY : 0;
+        mask |= msg.getTopic() != null ? FIELD_TOPIC : 0;
+
+        Output out = new Output();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(mask);
+        if ((mask & FIELD_ID) != 0) {
+            out.writeString(msg.getId());
+        }
+        if ((mask & FIELD_REPORT_TIME) != 0) {
+            out.writeZigZag(msg.getReportTime().toEpochSecond(ZoneOffset.UTC));
+            out.writeVarLong(msg.getReportTime().getNano());
+        }
+        if ((mask & FIELD_DEVICE_ID) != 0) {
+            out.writeZigZag(msg.getDeviceId());
+        }
+        if ((mask & FIELD_TENANT_ID) != 0) {
+            out.writeZigZag(msg.getTenantId());
+        }
+        if ((mask & FIELD_SERVER_ID) != 0) {
+            out.writeString(msg.getServerId());
+        }
+        if ((mask & FIELD_REQUEST_ID) != 0) {
+            out.writeString(msg.getRequestId());
+        }
+        if ((mask & FIELD_METHOD) != 0) {
+            out.writeString(msg.getMethod());
+        }
+        if ((mask & FIELD_PARAMS) != 0) {
+            writeValue(out, msg.getParams());
+        }
+        if ((mask & FIELD_DATA) != 0) {
+            writeValue(out, msg.getData());
+        }
+        if ((mask & FIELD_CODE) != 0) {
+            out.writeZigZag(msg.getCode());
+        }
+        if ((mask & FIELD_MSG) != 0) {
+            out.writeString(msg.getMsg());
+        }
+        if ((mask & FIELD_NEED_REPLY) != 0) {
+            out.writeByte(msg.getNeedReply() ? TAG_TRUE : TAG_FALSE);
+        }
+        if ((mask & FIELD_TOPIC) != 0) {
+            out.writeString(msg.getTopic());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] data, Type type) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        Input in = new Input(data);
+        if (in.readByte() != MAGIC) {
+            throw new IllegalArgumentException("非设备消息二进制格式");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的设备消息二进制版本: " + version);
+        }
+        long mask = in.readVarLong();
+        IotDeviceMessage msg = new IotDeviceMessage();
+        if ((mask & FIELD_ID) != 0) {
+            msg.setId(in.readString());
+        }
+        if ((mask & FIELD_REPORT_TIME) != 0) {
+            long epochSecond = in.readZigZag();
+            msg.setReportTime(LocalDateTime.ofEpochSecond(epochSecond, (int) in.readVarLong(), ZoneOffset.UTC));
+        }
+        if ((mask & FIELD_DEVICE_ID) != 0) {
+            msg.setDeviceId(in.readZigZag());
+        }
+        if ((mask & FIELD_TENANT_ID) != 0) {
+            msg.setTenantId(in.readZigZag());
+        }
+        if ((mask & FIELD_SERVER_ID) != 0) {
+            msg.setServerId(in.readString());
+        }
+        if ((mask & FIELD_REQUEST_ID) != 0) {
+            msg.setRequestId(in.readString());
+        }
+        if ((mask & FIELD_METHOD) != 0) {
+            msg.setMethod(in.readString());
+        }
+        if ((mask & FIELD_PARAMS) != 0) {
+            msg.setParams(readValue(in, 0));
+        }
+        if ((mask & FIELD_DATA) != 0) {
+            msg.setData(readValue(in, 0));
+        }
+        if ((mask & FIELD_CODE) != 0) {
+            msg.setCode((int) in.readZigZag());
+        }
+        if ((mask & FIELD_MSG) != 0) {
+            msg.setMsg(in.readString());
+        }
+        if ((mask & FIELD_NEED_REPLY) != 0) {
+            msg.setNeedReply(in.readByte() == TAG_TRUE);
+        }
+        if ((mask & FIELD_TOPIC) != 0) {
+            msg.setTopic(in.readString());
+        }
+        if (type == null || type == IotDeviceMessage.class) {
+            return msg;
+        }
+        // 订阅者声明的不是 IotDeviceMessage：按 JSON 结构转换，与 JSON 序列化器的结果保持一致
+        return JsonUtils.parseObject(JsonUtils.toJsonByte(msg), type);
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            out.writeZigZag(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            long longValue = (Long) value;
+            out.writeByte(longValue == (int) longValue ? TAG_INT : TAG_LONG);
+            out.writeZigZag(longValue);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            out.writeByte(TAG_STRING);
+            out.writeString(value.toString());
+        } else if (value instanceof Map) {
+            // 与 JSON（NON_NULL）一致，不写出值为 null 的条目
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = 0;
+            for (Object entryValue : map.values()) {
+                size += entryValue != null ? 1 : 0;
+            }
+            out.writeByte(TAG_MAP);
+            out.writeVarLong(size);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() != null) {
+                    out.writeString(String.valueOf(entry.getKey()));
+                    writeValue(out, entry.getValue());
+                }
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            out.writeVarLong(collection.size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(TAG_JSON);
+            out.writeBytes(JsonUtils.toJsonByte(value));
+        }
+    }
+
+    private static Object readValue(Input in, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("设备消息嵌套层级超过 " + MAX_DEPTH);
+        }
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return (int) in.readZigZag();
+            case TAG_LONG:
+                return in.readZigZag();
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TAG_STRING:
+                return in.readString();
+            case TAG_MAP: {
+                int size = in.readLength();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max((int) (size / 0.75f) + 1, 16));
+                for (int i = 0; i < size; i++) {
+                    String key = in.readString();
+                    map.put(key, readValue(in, depth + 1));
+                }
+                return map;
+            }
+            case TAG_LIST: {
+                int size = in.readLength();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case TAG_JSON:
+                return JsonUtils.parseObject(in.readBytes(), Object.class);
+            default:
+                throw new IllegalArgumentException("未知的值类型标记: " + tag);
+        }
+    }
+
+    /**
+     * 可扩容的写缓冲
+     */
+    private static final class Output {
+
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+            }
+        }
+
+        void writeByte(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+    }
+
+    /**
+     * 读缓冲，越界时抛出 {@link IllegalArgumentException}
+     */
+    private static final class Input {
+
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        private void require(int n) {
+            if (n < 0 || pos + n > buf.length) {
+                throw new IllegalArgumentException("设备消息二进制数据不完整");
+            }
+        }
+
+        byte readByte() {
+            require(1);
+            return buf[pos++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("非法的 varint");
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buf[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        /**
+         * 读取长度并校验剩余字节数，每个元素至少占 1 字节
+         */
+        int readLength() {
+            long length = readVarLong();
+            if (length > buf.length - pos) {
+                throw new IllegalArgumentException("设备消息二进制数据不完整");
+            }
+            return (int) length;
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readLength();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import com.basiclab.iot.common.utils.json.JsonUtils;
+
+import java.lang.reflect.Type;
+
+/**
+ * IotJsonMessageSerializer
+ * <p>
+ * JSON 序列化器，兼容未携带内容类型消息头的历史消息
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotJsonMessageSerializer implements IotMessageSerializer {
+
+    public static final String NAME = "json";
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public boolean supports(Object message) {
+        return true;
+    }
+
+    @Override
+    public byte[] serialize(Object message) {
+        return JsonUtils.toJsonByte(message);
+    }
+
+    @Override
+    public Object deserialize(byte[] data, Type type) {
+        return JsonUtils.parseObject(data, type);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import java.lang.reflect.Type;
+
+/**
+ * IotMessageSerializer
+ * <p>
+ * 消息总线的消息序列化器（SPI），注册为 Spring Bean 即可生效。
+ * 发送时按 {@link #getContentType()} 写入消息头，接收时按消息头选择对应的序列化器，
+ * 因此不同序列化方式的生产者可以同时向同一主题发送
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public interface IotMessageSerializer {
+
+    /**
+     * 消息头：内容类型
+     */
+    String HEADER_CONTENT_TYPE = "content-type";
+
+    /**
+     * @return 序列化器名称，用于配置 basiclab.iot.message-bus.kafka.serializer
+     */
+    String getName();
+
+    /**
+     * @return 内容类型，写入消息头
+     */
+    String getContentType();
+
+    /**
+     * 是否支持序列化该消息，不支持时回退为 JSON
+     *
+     * @param message 消息内容
+     * @return 是否支持
+     */
+    boolean supports(Object message);
+
+    /**
+     * 序列化
+     *
+     * @param message 消息内容
+     * @return 字节数组
+     */
+    byte[] serialize(Object message);
+
+    /**
+     * 反序列化
+     *
+     * @param data 字节数组
+     * @param type 目标类型
+     * @return 消息内容
+     */
+    Object deserialize(byte[] data, Type type);
+
+}
@@ -0,0 +1,88 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IotMessageSerializerRegistry
+ * <p>
+ * 消息序列化器注册表：
+ * <ul>
+ *     <li>发送时使用配置的序列化器，该序列化器不支持的消息回退为 JSON</li>
+ *     <li>接收时按消息头中的内容类型选择序列化器，没有消息头的消息按 JSON 处理</li>
+ * </ul>
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+public class IotMessageSerializerRegistry {
+
+    private final IotMessageSerializer jsonSerializer;
+
+    private final IotMessageSerializer writeSerializer;
+
+    private final Map<String, IotMessageSerializer> serializersByContentType = new HashMap<>();
+
+    public IotMessageSerializerRegistry(List<IotMessageSerializer> serializers, String name) {
+        IotMessageSerializer json = null;
+        IotMessageSerializer configured = null;
+        for (IotMessageSerializer serializer : serializers) {
+            serializersByContentType.putIfAbsent(serializer.getContentType(), serializer);
+            if (json == null && IotJsonMessageSerializer.CONTENT_TYPE.equals(serializer.getContentType())) {
+                json = serializer;
+            }
+            if (configured == null && serializer.getName().equals(name)) {
+                configured = serializer;
+            }
+        }
+        if (json == null) {
+            json = new IotJsonMessageSerializer();
+            serializersByContentType.put(json.getContentType(), json);
+        }
+        if (configured == null) {
+            if (StrUtil.isNotEmpty(name) && !IotJsonMessageSerializer.NAME.equals(name)) {
+                log.warn("[IotMessageSerializerRegistry][序列化器({}) 不存在，使用 JSON]", name);
+            }
+            configured = json;
+        }
+        this.jsonSerializer = json;
+        this.writeSerializer = configured;
+        log.info("[IotMessageSerializerRegistry][发送消息使用序列化器({})，支持接收的内容类型: {}]",
+                writeSerializer.getName(), serializersByContentType.keySet());
+    }
+
+    /**
+     * 获得发送消息使用的序列化器
+     *
+     * @param message 消息内容
+     * @return 序列化器
+     */
+    public IotMessageSerializer getWriter(Object message) {
+        return writeSerializer.supports(message) ? writeSerializer : jsonSerializer;
+    }
+
+    /**
+     * 获得接收消息使用的序列化器
+     *
+     * @param contentType 消息头中的内容类型，可以为 null
+     * @return 序列化器
+     * @throws IllegalArgumentException 内容类型不受支持
+     */
+    public IotMessageSerializer getReader(String contentType) {
+        if (contentType == null) {
+            return jsonSerializer;
+        }
+        IotMessageSerializer serializer = serializersByContentType.get(contentType);
+        if (serializer == null) {
+            throw new IllegalArgumentException("不支持的消息内容类型: " + contentType);
+        }
+        return serializer;
+    }
+
+}
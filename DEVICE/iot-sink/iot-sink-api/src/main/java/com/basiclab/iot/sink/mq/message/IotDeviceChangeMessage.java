@@ -0,0 +1,53 @@
+package com.basiclab.iot.sink.mq.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * IotDeviceChangeMessage
+ * <p>
+ * 设备变更通知，由 iot-device 在设备修改、删除并提交事务后发布，iot-sink 收到后失效本地的设备缓存
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IotDeviceChangeMessage {
+
+    /**
+     * 【消息总线】设备变更通知 Topic
+     *
+     * 不能以 iot 开头：IotDeviceTopicSubscriber 订阅的 iot/# 按前缀匹配，会把变更通知当作设备消息消费
+     */
+    public static final String MESSAGE_BUS_DEVICE_CHANGE_TOPIC = "device_change";
+
+    /**
+     * 操作类型：修改
+     */
+    public static final String ACTION_UPDATE = "update";
+    /**
+     * 操作类型：删除
+     */
+    public static final String ACTION_DELETE = "delete";
+
+    /**
+     * 操作类型
+     *
+     * 可选值：{@link #ACTION_UPDATE}、{@link #ACTION_DELETE}
+     */
+    private String action;
+
+    /**
+     * 变更的设备编号列表
+     */
+    private List<Long> deviceIds;
+
+}
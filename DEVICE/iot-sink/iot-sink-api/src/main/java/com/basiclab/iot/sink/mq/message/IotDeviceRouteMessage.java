@@ -0,0 +1,58 @@
+package com.basiclab.iot.sink.mq.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * IotDeviceRouteMessage
+ * <p>
+ * 设备路由变更（增量），网关在设备连接、断开时发布，下行消息发送方据此维护本地的 设备 → serverId 路由表
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IotDeviceRouteMessage {
+
+    /**
+     * 【消息总线】设备路由变更 Topic
+     *
+     * 不能以 iot 开头：IotDeviceTopicSubscriber 订阅的 iot/# 按前缀匹配，会把路由消息当作设备消息消费
+     */
+    public static final String MESSAGE_BUS_DEVICE_ROUTE_TOPIC = "device_route";
+
+    /**
+     * 操作类型：设备连接到网关
+     */
+    public static final String ACTION_ONLINE = "online";
+    /**
+     * 操作类型：设备从网关断开
+     */
+    public static final String ACTION_OFFLINE = "offline";
+
+    /**
+     * 操作类型
+     *
+     * 可选值：{@link #ACTION_ONLINE}、{@link #ACTION_OFFLINE}
+     */
+    private String action;
+
+    /**
+     * 设备编号
+     */
+    private Long deviceId;
+
+    /**
+     * 网关的 serverId 标识
+     *
+     * 断开时可能为空，为空表示无条件删除该设备的路由
+     */
+    private String serverId;
+
+}
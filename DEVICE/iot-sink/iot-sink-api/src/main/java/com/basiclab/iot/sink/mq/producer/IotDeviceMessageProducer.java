@@ -5,6 +5,8 @@ import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import com.basiclab.iot.sink.util.IotDeviceMessageUtils;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Collection;
+
 /**
  * IotDeviceMessageProducer
  *
@@ -23,7 +25,7 @@ public class IotDeviceMessageProducer {
      * @param message 设备消息
      */
     public void sendDeviceMessage(IotDeviceMessage message) {
-        messageBus.post(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, message);
+        messageBus.post(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, buildRoutingKey(message), message);
     }
 
     /**
@@ -33,7 +35,34 @@ public class IotDeviceMessageProducer {
      * @param message 设备消息
      */
     public void sendDeviceMessageToGateway(String serverId, IotDeviceMessage message) {
-        messageBus.post(IotDeviceMessageUtils.buildMessageBusGatewayDeviceMessageTopic(serverId), message);
+        messageBus.post(IotDeviceMessageUtils.buildMessageBusGatewayDeviceMessageTopic(serverId),
+                buildRoutingKey(message), message);
+    }
+
+    /**
+     * 批量发送网关设备消息
+     * <p>
+     * 目标 Topic 只解析一次，消息连续提交给生产者，由生产者按分区合并为批次发送
+     *
+     * @param serverId 网关的 serverId 标识，为空时发送到通用 Topic
+     * @param messages 设备消息列表
+     */
+    public void sendDeviceMessagesToGateway(String serverId, Collection<IotDeviceMessage> messages) {
+        String topic = serverId != null ? IotDeviceMessageUtils.buildMessageBusGatewayDeviceMessageTopic(serverId)
+                : IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC;
+        for (IotDeviceMessage message : messages) {
+            messageBus.post(topic, buildRoutingKey(message), message);
+        }
+    }
+
+    /**
+     * 以设备编号作为路由键，保证同一设备的消息按顺序投递
+     *
+     * @param message 设备消息
+     * @return 路由键，设备编号为空时返回 null
+     */
+    private static String buildRoutingKey(IotDeviceMessage message) {
+        return message.getDeviceId() != null ? String.valueOf(message.getDeviceId()) : null;
     }
 
 }
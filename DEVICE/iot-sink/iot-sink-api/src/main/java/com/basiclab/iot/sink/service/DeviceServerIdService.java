@@ -32,5 +32,15 @@ public interface DeviceServerIdService {
      */
     void removeDeviceServerId(Long deviceId);
 
+    /**
+     * 删除设备与 serverId 的映射，仅当映射仍指向该 serverId 时删除
+     * <p>
+     * 设备已重连到其他网关时，旧网关的断开处理不会覆盖新的映射
+     *
+     * @param deviceId 设备 ID
+     * @param serverId 网关 serverId
+     */
+    void removeDeviceServerId(Long deviceId, String serverId);
+
 }
 
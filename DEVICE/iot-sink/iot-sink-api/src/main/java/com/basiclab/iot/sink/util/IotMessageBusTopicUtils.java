@@ -0,0 +1,78 @@
+package com.basiclab.iot.sink.util;
+
+/**
+ * IotMessageBusTopicUtils
+ * <p>
+ * 消息总线主题工具类。订阅主题支持 MQTT 通配符，Kafka 与 Local 消息总线使用相同的匹配规则
+ * <p>
+ * 注意：消息总线的主题名使用 "_" 分隔（如 iot_device_message、iot_device_message_{serverId}），不含 "/"，
+ * 因此 "/#" 按前缀匹配处理，iot/# 匹配所有以 iot 开头的主题
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotMessageBusTopicUtils {
+
+    /**
+     * 是否为通配符主题
+     *
+     * @param topic 主题
+     * @return 是否包含 MQTT 通配符 # 或 +
+     */
+    public static boolean isWildcard(String topic) {
+        return topic != null && (topic.contains("#") || topic.contains("+"));
+    }
+
+    /**
+     * 将 MQTT 通配符格式转换为 Java 正则表达式
+     * 
+     * MQTT 通配符规则：
+     * - # 表示匹配零个或多个层级（只能放在最后）
+     * - + 表示匹配单个层级
+     * 
+     * Kafka 使用 Java 正则表达式：
+     * - .* 表示匹配任意字符（零个或多个）
+     * - [^/]+ 表示匹配除 / 外的任意字符（一个或多个）
+     * 
+     * @param mqttTopic MQTT 格式的主题（如 iot/# 或 iot/+/device）
+     * @return 正则表达式（如 ^iot.* 或 ^iot/[^/]+/device）
+     */
+    public static String convertMqttWildcardToRegex(String mqttTopic) {
+        if (mqttTopic == null || mqttTopic.isEmpty()) {
+            return mqttTopic;
+        }
+        
+        // 转义特殊字符（除了 # 和 +）
+        String regex = mqttTopic
+                .replace(".", "\\.")
+                .replace("$", "\\$")
+                .replace("^", "\\^")
+                .replace("[", "\\[")
+                .replace("]", "\\]")
+                .replace("(", "\\(")
+                .replace(")", "\\)")
+                .replace("{", "\\{")
+                .replace("}", "\\}")
+                .replace("|", "\\|");
+        
+        // 处理 # 通配符（只能出现在最后，匹配零个或多个层级）
+        // 主题名不含 "/"，iot/# 需要匹配 iot_device_message 等主题，因此按前缀匹配
+        if (regex.endsWith("/#")) {
+            regex = regex.substring(0, regex.length() - 2) + ".*";
+        } else if (regex.endsWith("#")) {
+            regex = regex.substring(0, regex.length() - 1) + ".*";
+        }
+        
+        // 处理 + 通配符（匹配单个层级，即匹配除 / 外的任意字符）
+        regex = regex.replace("+", "[^/]+");
+        
+        // 添加行首锚点
+        if (!regex.startsWith("^")) {
+            regex = "^" + regex;
+        }
+        
+        return regex;
+    }
+
+}
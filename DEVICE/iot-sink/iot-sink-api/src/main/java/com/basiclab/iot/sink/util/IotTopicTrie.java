@@ -0,0 +1,263 @@
+package com.basiclab.iot.sink.util;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IotTopicTrie
+ * <p>
+ * Topic 模板的分段前缀树，用于替代“每条消息 × 每个模板”的正则匹配。
+ * 模板在启动时注册一次，匹配时按 "/" 逐段在树上查找，字面量段通过 regionMatches 比较，不产生中间字符串。
+ * <p>
+ * 模板语法与原有的正则匹配（${xxx} 替换为 [^/]+ 后整串匹配）一致：
+ * <ul>
+ *     <li>${xxx}：占位符，匹配单个非空段，可在 {@link #resolve(String)} 中取出对应的值</li>
+ *     <li>其他：字面量段，精确匹配；"#" 等 MQTT 通配符同样按字面量处理</li>
+ * </ul>
+ * 匹配优先级：字面量 > 占位符；同一模板重复注册时保留先注册的值，与原有按注册顺序逐个匹配、先命中先返回的行为一致。
+ * <p>
+ * 注册应在启动阶段完成，注册完成后的匹配是只读操作，可并发调用。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotTopicTrie<T> {
+
+    public static final String VARIABLE_PRODUCT_IDENTIFICATION = "productIdentification";
+    public static final String VARIABLE_DEVICE_IDENTIFICATION = "deviceIdentification";
+    public static final String VARIABLE_IDENTIFIER = "identifier";
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * 模板中占位符的最大数量，用于分配匹配时的捕获数组
+     */
+    private int maxVariables;
+
+    /**
+     * 注册 Topic 模板
+     *
+     * @param template Topic 模板，例如 /iot/${productIdentification}/${deviceIdentification}/property/upstream/report
+     * @param value    模板对应的值
+     * @return 模板已注册时返回先注册的值（本次注册不生效），否则返回 null
+     */
+    public T register(String template, T value) {
+        if (template == null || value == null) {
+            return null;
+        }
+        Node<T> node = root;
+        List<String> variables = new ArrayList<>();
+        for (String segment : template.split("/", -1)) {
+            if (isVariable(segment)) {
+                variables.add(segment.substring(2, segment.length() - 1));
+                if (node.variableChild == null) {
+                    node.variableChild = new Node<>();
+                }
+                node = node.variableChild;
+            } else {
+                node = node.getOrCreateLiteralChild(segment);
+            }
+        }
+        if (node.terminal != null) {
+            return node.terminal.value;
+        }
+        node.terminal = new Terminal<>(value, variables.toArray(new String[0]));
+        maxVariables = Math.max(maxVariables, variables.size());
+        return null;
+    }
+
+    /**
+     * 匹配 Topic
+     *
+     * @param topic 实际的 Topic
+     * @return 匹配到的值，未匹配返回 null
+     */
+    public T match(String topic) {
+        if (topic == null || topic.isEmpty()) {
+            return null;
+        }
+        Terminal<T> terminal = find(root, topic, 0, null, 0);
+        return terminal != null ? terminal.value : null;
+    }
+
+    /**
+     * 匹配 Topic，并取出模板中占位符对应的值
+     *
+     * @param topic 实际的 Topic
+     * @return 匹配结果，未匹配返回 null
+     */
+    public Match<T> resolve(String topic) {
+        if (topic == null || topic.isEmpty()) {
+            return null;
+        }
+        // 每个占位符占用两个位置：段起始下标、段结束下标
+        int[] captures = new int[Math.max(maxVariables, 1) * 2];
+        Terminal<T> terminal = find(root, topic, 0, captures, 0);
+        if (terminal == null) {
+            return null;
+        }
+        Match<T> match = new Match<>(terminal.value);
+        for (int i = 0; i < terminal.variables.length; i++) {
+            String variableValue = topic.substring(captures[i * 2], captures[i * 2 + 1]);
+            switch (terminal.variables[i]) {
+                case VARIABLE_PRODUCT_IDENTIFICATION:
+                    match.productIdentification = variableValue;
+                    break;
+                case VARIABLE_DEVICE_IDENTIFICATION:
+                    match.deviceIdentification = variableValue;
+                    break;
+                case VARIABLE_IDENTIFIER:
+                    match.identifier = variableValue;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * 从 start 处开始匹配 node 的子树
+     *
+     * @param node          当前节点
+     * @param topic         实际的 Topic
+     * @param start         当前段在 topic 中的起始下标；topic.length() + 1 表示已经没有剩余段
+     * @param captures      占位符捕获数组，为 null 时不捕获
+     * @param variableIndex 下一个占位符的序号
+     * @return 命中的模板终点，未命中返回 null
+     */
+    private Terminal<T> find(Node<T> node, String topic, int start, int[] captures, int variableIndex) {
+        int length = topic.length();
+        if (start > length) {
+            // 所有段已消费完
+            return node.terminal;
+        }
+        int end = topic.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+        int segmentLength = end - start;
+
+        // 1. 字面量
+        Node<T> literal = node.findLiteralChild(topic, start, segmentLength);
+        if (literal != null) {
+            Terminal<T> terminal = find(literal, topic, end + 1, captures, variableIndex);
+            if (terminal != null) {
+                return terminal;
+            }
+        }
+        // 2. 占位符（必须是非空段）
+        if (node.variableChild != null && segmentLength > 0) {
+            if (captures != null) {
+                captures[variableIndex * 2] = start;
+                captures[variableIndex * 2 + 1] = end;
+            }
+            return find(node.variableChild, topic, end + 1, captures, variableIndex + 1);
+        }
+        return null;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() > 3 && segment.startsWith("${") && segment.endsWith("}");
+    }
+
+    private static final class Node<T> {
+
+        /**
+         * 字面量子节点。同一层的字面量通常只有个位数，线性比较比哈希查找更省（无需截取子串）
+         */
+        private String[] literalKeys = new String[0];
+        @SuppressWarnings("unchecked")
+        private Node<T>[] literalChildren = new Node[0];
+
+        private Node<T> variableChild;
+
+        /**
+         * 以当前节点结尾的模板
+         */
+        private Terminal<T> terminal;
+
+        private Node<T> findLiteralChild(String topic, int start, int segmentLength) {
+            String[] keys = literalKeys;
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                if (key.length() == segmentLength && topic.regionMatches(start, key, 0, segmentLength)) {
+                    return literalChildren[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<T> getOrCreateLiteralChild(String segment) {
+            for (int i = 0; i < literalKeys.length; i++) {
+                if (literalKeys[i].equals(segment)) {
+                    return literalChildren[i];
+                }
+            }
+            int size = literalKeys.length;
+            String[] keys = new String[size + 1];
+            Node<T>[] children = new Node[size + 1];
+            System.arraycopy(literalKeys, 0, keys, 0, size);
+            System.arraycopy(literalChildren, 0, children, 0, size);
+            Node<T> child = new Node<>();
+            keys[size] = segment;
+            children[size] = child;
+            literalKeys = keys;
+            literalChildren = children;
+            return child;
+        }
+
+    }
+
+    /**
+     * 模板终点：注册时创建，匹配时直接返回，不产生额外对象
+     */
+    private static final class Terminal<T> {
+
+        private final T value;
+        /**
+         * 模板中的占位符名称，按出现顺序
+         */
+        private final String[] variables;
+
+        private Terminal(T value, String[] variables) {
+            this.value = value;
+            this.variables = variables;
+        }
+
+    }
+
+    /**
+     * Topic 匹配结果
+     */
+    @Getter
+    public static final class Match<T> {
+
+        /**
+         * 模板对应的值
+         */
+        private final T value;
+        /**
+         * 产品唯一标识（模板中的 ${productIdentification}）
+         */
+        private String productIdentification;
+        /**
+         * 设备唯一标识（模板中的 ${deviceIdentification}）
+         */
+        private String deviceIdentification;
+        /**
+         * 标识符（模板中的 ${identifier}）
+         */
+        private String identifier;
+
+        private Match(T value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.basiclab.iot.sink.biz;
+
+import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.sink.mq.message.IotDeviceRouteMessage;
+import com.basiclab.iot.sink.util.IotSinkRedisKeyConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link IotDeviceRouteTable} 的单元测试：增量维护、过期的断开增量、MGET 回源与不存在结果的缓存
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDeviceRouteTableTest {
+
+    /**
+     * 模拟 Redis 中的 设备 → serverId 映射
+     */
+    private final Map<String, String> redis = new HashMap<>();
+
+    private RedisService redisService;
+
+    private IotDeviceRouteTable routeTable;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisService = mock(RedisService.class);
+        when(redisService.multiGet(anyCollection())).thenAnswer(invocation -> {
+            List<String> values = new ArrayList<>();
+            for (String key : invocation.<Collection<String>>getArgument(0)) {
+                values.add(redis.get(key));
+            }
+            return values;
+        });
+        ObjectProvider<RedisService> redisServiceProvider = mock(ObjectProvider.class);
+        when(redisServiceProvider.getIfAvailable()).thenReturn(redisService);
+
+        routeTable = new IotDeviceRouteTable();
+        ReflectionTestUtils.setField(routeTable, "redisServiceProvider", redisServiceProvider);
+    }
+
+    @Test
+    public void testOnMessage_staleOfflineKeepsNewerOnline() {
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_ONLINE, 1L, "gateway-a"));
+        // 设备重连到 gateway-b，gateway-a 的断开增量后到
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_ONLINE, 1L, "gateway-b"));
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_OFFLINE, 1L, "gateway-a"));
+
+        assertEquals("gateway-b", routeTable.getServerId(1L));
+        verify(redisService, never()).multiGet(anyCollection());
+
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_OFFLINE, 1L, "gateway-b"));
+        assertNull(routeTable.getServerId(1L));
+    }
+
+    @Test
+    public void testGetServerIds_missesMergedIntoOneMultiGet() {
+        redis.put(IotSinkRedisKeyConstants.buildDeviceServerIdKey(2L), "gateway-a");
+        redis.put(IotSinkRedisKeyConstants.buildDeviceServerIdKey(3L), "gateway-b");
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_ONLINE, 1L, "gateway-c"));
+
+        Map<Long, String> serverIds = routeTable.getServerIds(Arrays.asList(1L, 2L, 3L, 4L));
+
+        Map<Long, String> expected = new HashMap<>();
+        expected.put(1L, "gateway-c");
+        expected.put(2L, "gateway-a");
+        expected.put(3L, "gateway-b");
+        assertEquals(expected, serverIds);
+        // 增量命中的设备 1 不查询 Redis，其余设备合并为一次 MGET
+        verify(redisService, times(1)).multiGet(Arrays.asList(
+                IotSinkRedisKeyConstants.buildDeviceServerIdKey(2L),
+                IotSinkRedisKeyConstants.buildDeviceServerIdKey(3L),
+                IotSinkRedisKeyConstants.buildDeviceServerIdKey(4L)));
+    }
+
+    @Test
+    public void testGetServerIds_missingRouteCached() {
+        assertTrue(routeTable.getServerIds(Arrays.asList(5L, 6L)).isEmpty());
+        // 设备没有路由的结果也被缓存，不再查询 Redis
+        assertTrue(routeTable.getServerIds(Arrays.asList(5L, 6L)).isEmpty());
+        verify(redisService, times(1)).multiGet(anyCollection());
+
+        // 收到增量后以增量为准
+        routeTable.onMessage(route(IotDeviceRouteMessage.ACTION_ONLINE, 5L, "gateway-a"));
+        assertEquals("gateway-a", routeTable.getServerId(5L));
+        verify(redisService, times(1)).multiGet(anyCollection());
+    }
+
+    @Test
+    public void testGetServerIds_redisFailureNotCached() {
+        when(redisService.multiGet(anyCollection())).thenThrow(new IllegalStateException("redis down"))
+                .thenReturn(Arrays.asList("gateway-a"));
+
+        assertNull(routeTable.getServerId(7L));
+        assertEquals("gateway-a", routeTable.getServerId(7L));
+    }
+
+    private static IotDeviceRouteMessage route(String action, Long deviceId, String serverId) {
+        return IotDeviceRouteMessage.builder().action(action).deviceId(deviceId).serverId(serverId).build();
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.basiclab.iot.sink.biz;
+
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import com.basiclab.iot.sink.mq.producer.IotDeviceMessageProducer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link IotDownstreamMessageApiImpl#sendDownstreamMessages} 的单元测试：批量查找路由后按网关分组发送
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDownstreamMessageApiImplTest {
+
+    private IotDeviceMessageProducer producer;
+
+    private IotDeviceRouteTable routeTable;
+
+    private IotDownstreamMessageApiImpl downstreamMessageApi;
+
+    @BeforeEach
+    public void setUp() {
+        producer = mock(IotDeviceMessageProducer.class);
+        routeTable = mock(IotDeviceRouteTable.class);
+        downstreamMessageApi = new IotDownstreamMessageApiImpl(producer, routeTable);
+    }
+
+    @Test
+    public void testSendDownstreamMessages_groupedByServerId() {
+        Map<Long, String> routes = new HashMap<>();
+        routes.put(1L, "gateway-a");
+        routes.put(2L, "gateway-b");
+        routes.put(3L, "gateway-a");
+        when(routeTable.getServerIds(anyCollection())).thenReturn(routes);
+        IotDeviceMessage m1 = message(1L, null);
+        IotDeviceMessage m2 = message(2L, null);
+        IotDeviceMessage m3 = message(3L, null);
+        IotDeviceMessage m4 = message(4L, null);
+        // 指定了 serverId 的消息不查找路由
+        IotDeviceMessage m5 = message(5L, "gateway-b");
+
+        int sent = downstreamMessageApi.sendDownstreamMessages(Arrays.asList(m1, m2, m3, m4, m5, null, message(null, null)));
+
+        assertEquals(5, sent);
+        verify(routeTable).getServerIds(new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L)));
+        verify(producer).sendDeviceMessagesToGateway("gateway-a", Arrays.asList(m1, m3));
+        verify(producer).sendDeviceMessagesToGateway("gateway-b", Arrays.asList(m2, m5));
+        // 没有路由的设备发送到通用 Topic
+        verify(producer).sendDeviceMessagesToGateway(null, Collections.singletonList(m4));
+        verifyNoMoreInteractions(producer);
+    }
+
+    @Test
+    public void testSendDownstreamMessages_allWithServerIdSkipsLookup() {
+        IotDeviceMessage m1 = message(1L, "gateway-a");
+
+        assertEquals(1, downstreamMessageApi.sendDownstreamMessages(Collections.singletonList(m1)));
+        verify(routeTable, never()).getServerIds(anyCollection());
+        verify(producer).sendDeviceMessagesToGateway("gateway-a", Collections.singletonList(m1));
+    }
+
+    private static IotDeviceMessage message(Long deviceId, String serverId) {
+        return IotDeviceMessage.builder().id("m" + deviceId).deviceId(deviceId).serverId(serverId).build();
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.basiclab.iot.sink.messagebus.core.local;
+
+import com.basiclab.iot.sink.messagebus.config.IotMessageBusProperties;
+import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import com.basiclab.iot.sink.mq.message.IotDeviceRouteMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IotLocalMessageBus} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotLocalMessageBusTest {
+
+    private static final String TOPIC = "iot_device_message/test";
+
+    private IotLocalMessageBus messageBus;
+
+    @BeforeEach
+    public void setUp() {
+        messageBus = new IotLocalMessageBus(null, null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        messageBus.destroy();
+    }
+
+    @Test
+    public void testPost_wildcardSubscriberReceivesMessageBusTopics() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        RecordingSubscriber wildcard = new RecordingSubscriber("iot/#", latch);
+        messageBus.register(wildcard);
+
+        messageBus.post(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, "upstream");
+        messageBus.post(String.format(IotDeviceMessage.MESSAGE_BUS_GATEWAY_DEVICE_MESSAGE_TOPIC, "mqtt_1"), "downstream");
+        messageBus.post("other_topic", "ignored");
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 等待可能误投递的消息
+        Thread.sleep(100);
+        assertEquals(2, wildcard.messages.size());
+        assertTrue(wildcard.messages.contains("upstream"));
+        assertTrue(wildcard.messages.contains("downstream"));
+    }
+
+    @Test
+    public void testPost_wildcardSubscriberSkipsRouteTopic() throws InterruptedException {
+        CountDownLatch wildcardLatch = new CountDownLatch(1);
+        CountDownLatch routeLatch = new CountDownLatch(1);
+        RecordingSubscriber wildcard = new RecordingSubscriber("iot/#", wildcardLatch);
+        RecordingSubscriber route = new RecordingSubscriber(IotDeviceRouteMessage.MESSAGE_BUS_DEVICE_ROUTE_TOPIC, routeLatch);
+        messageBus.register(wildcard);
+        messageBus.register(route);
+
+        messageBus.post(IotDeviceRouteMessage.MESSAGE_BUS_DEVICE_ROUTE_TOPIC, "route");
+        messageBus.post(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, "upstream");
+
+        assertTrue(routeLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(wildcardLatch.await(5, TimeUnit.SECONDS));
+        // 等待可能误投递的消息
+        Thread.sleep(100);
+        assertEquals(1, route.messages.size());
+        assertEquals(1, wildcard.messages.size());
+        assertEquals("upstream", wildcard.messages.get(0));
+    }
+
+    @Test
+    public void testPost_exactSubscriber() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        RecordingSubscriber exact = new RecordingSubscriber(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, latch);
+        messageBus.register(exact);
+
+        messageBus.post(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC, "upstream");
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("upstream", exact.messages.get(0));
+    }
+
+    @Test
+    public void testPost_shedEnabledFullLaneShedsInsteadOfBlocking() throws InterruptedException {
+        messageBus.destroy();
+        IotMessageBusProperties.LocalProperties properties = new IotMessageBusProperties.LocalProperties();
+        properties.setQueueCapacity(1);
+        properties.setBatchSize(1);
+        properties.setOfferTimeoutMs(50L);
+        // 只为该分组开启丢弃
+        IotMessageBusProperties.SubscriberProperties subscriberProperties = new IotMessageBusProperties.SubscriberProperties();
+        subscriberProperties.setShedEnabled(true);
+        properties.getSubscribers().put("blocking", subscriberProperties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        messageBus = new IotLocalMessageBus(properties, registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSubscriber blocking = new BlockingSubscriber(started, release);
+        messageBus.register(blocking);
+
+        // 第一条被处理线程取走并阻塞，第二条占满队列，之后的消息等待超时后被丢弃
+        messageBus.post(TOPIC, "m1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        messageBus.post(TOPIC, "m2");
+        long start = System.nanoTime();
+        messageBus.post(TOPIC, "m3");
+        messageBus.post(TOPIC, "m4");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs < 2000, "发布线程不应被长时间阻塞，实际耗时: " + elapsedMs);
+        assertEquals(2, registry.get("iot.message-bus.local.shed").counter().count());
+        release.countDown();
+        messageBus.destroy();
+        assertEquals(2, blocking.messages.size());
+    }
+
+    @Test
+    public void testPost_fullLaneBlocksByDefault() throws Exception {
+        messageBus.destroy();
+        IotMessageBusProperties.LocalProperties properties = new IotMessageBusProperties.LocalProperties();
+        properties.setQueueCapacity(1);
+        properties.setBatchSize(1);
+        properties.setOfferTimeoutMs(50L);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        messageBus = new IotLocalMessageBus(properties, registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSubscriber blocking = new BlockingSubscriber(started, release);
+        messageBus.register(blocking);
+
+        messageBus.post(TOPIC, "m1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        messageBus.post(TOPIC, "m2");
+        // 队列已满：发布线程阻塞等待，超过 offerTimeoutMs 也不丢弃
+        ExecutorService publisher = Executors.newSingleThreadExecutor();
+        Future<?> posted = publisher.submit(() -> messageBus.post(TOPIC, "m3"));
+        Thread.sleep(200);
+        assertFalse(posted.isDone());
+
+        release.countDown();
+        posted.get(5, TimeUnit.SECONDS);
+        publisher.shutdown();
+        messageBus.destroy();
+        assertEquals(Arrays.asList("m1", "m2", "m3"), blocking.messages);
+        assertEquals(0, registry.get("iot.message-bus.local.shed").counter().count());
+        assertTrue(registry.get("iot.message-bus.local.blocked").counter().count() >= 1);
+    }
+
+    private static final class BlockingSubscriber implements IotMessageSubscriber<String> {
+
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        private BlockingSubscriber(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String getTopic() {
+            return TOPIC;
+        }
+
+        @Override
+        public String getGroup() {
+            return "blocking";
+        }
+
+        @Override
+        public void onMessage(String message) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(message);
+        }
+
+    }
+
+    private static final class RecordingSubscriber implements IotMessageSubscriber<String> {
+
+        private final String topic;
+        private final CountDownLatch latch;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        private RecordingSubscriber(String topic, CountDownLatch latch) {
+            this.topic = topic;
+            this.latch = latch;
+        }
+
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public String getGroup() {
+            return "test";
+        }
+
+        @Override
+        public void onMessage(String message) {
+            messages.add(message);
+            latch.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IotDeviceMessageBinarySerializer} 的单元测试：各字段往返、空值、嵌套结构、非 ASCII 字符串与非法版本
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDeviceMessageBinarySerializerTest {
+
+    private final IotDeviceMessageBinarySerializer serializer = new IotDeviceMessageBinarySerializer();
+
+    @Test
+    public void testRoundTrip_allFields() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("temperature", 26.5);
+        params.put("humidity", 61);
+        params.put("pressure", 101325L);
+        params.put("counter", 1L << 40);
+        params.put("switch", true);
+        params.put("mode", "auto");
+        IotDeviceMessage message = IotDeviceMessage.builder()
+                .id("4f0a2c3e8b1d4c5e9a7b6d5c4b3a2910")
+                .reportTime(LocalDateTime.of(2026, 1, 1, 12, 0, 0, 123456789))
+                .deviceId(1024L).tenantId(-1L).serverId("mqtt_10.0.0.8_1883")
+                .requestId("1001").method("thing.property.post")
+                .params(params).data("ok")
+                .code(-200).msg("success").needReply(false)
+                .topic("/iot/product_001/device_000001/property/upstream/report")
+                .build();
+
+        IotDeviceMessage result = roundTrip(message);
+
+        // 能放入 int 的 Long 按 JSON 的规则解码为 Integer
+        Map<String, Object> expectedParams = new LinkedHashMap<>(params);
+        expectedParams.put("pressure", 101325);
+        message.setParams(expectedParams);
+        assertEquals(message, result);
+    }
+
+    @Test
+    public void testRoundTrip_nullFieldsOmitted() {
+        IotDeviceMessage message = IotDeviceMessage.builder().deviceId(1L).build();
+
+        IotDeviceMessage result = roundTrip(message);
+
+        assertEquals(message, result);
+        assertNull(result.getParams());
+        assertNull(result.getData());
+        assertNull(result.getReportTime());
+    }
+
+    @Test
+    public void testRoundTrip_emptyParamsAndData() {
+        IotDeviceMessage message = IotDeviceMessage.builder()
+                .params(Collections.emptyMap()).data(Collections.emptyList()).msg("").build();
+
+        IotDeviceMessage result = roundTrip(message);
+
+        assertEquals(Collections.emptyMap(), result.getParams());
+        assertEquals(Collections.emptyList(), result.getData());
+        assertEquals("", result.getMsg());
+    }
+
+    @Test
+    public void testRoundTrip_nestedMapsAndLists() {
+        Map<String, Object> location = new LinkedHashMap<>();
+        location.put("lat", 31.2304);
+        location.put("lng", 121.4737);
+        location.put("tags", Arrays.asList("a", 1, null, Collections.singletonMap("deep", false)));
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("location", location);
+        params.put("ignored", null);
+        IotDeviceMessage message = IotDeviceMessage.builder().params(params).build();
+
+        IotDeviceMessage result = roundTrip(message);
+
+        // 与 JSON（NON_NULL）一致，Map 中值为 null 的条目不写出，List 中的 null 保留
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("location", location);
+        assertEquals(expected, result.getParams());
+    }
+
+    @Test
+    public void testRoundTrip_nonAsciiStrings() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("名称", "温度传感器 🌡");
+        params.put("状态", "正常");
+        IotDeviceMessage message = IotDeviceMessage.builder()
+                .msg("设备离线，请检查网络").topic("/iot/产品/设备/property").params(params).build();
+
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    public void testDeserialize_unknownVersionRejected() {
+        byte[] payload = serializer.serialize(IotDeviceMessage.builder().deviceId(1L).build());
+        payload[1] = 99;
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> serializer.deserialize(payload, IotDeviceMessage.class));
+        assertTrue(e.getMessage().contains("99"));
+    }
+
+    @Test
+    public void testDeserialize_truncatedPayloadRejected() {
+        byte[] payload = serializer.serialize(IotDeviceMessage.builder().id("message-id").build());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> serializer.deserialize(Arrays.copyOf(payload, payload.length - 3), IotDeviceMessage.class));
+    }
+
+    private IotDeviceMessage roundTrip(IotDeviceMessage message) {
+        return (IotDeviceMessage) serializer.deserialize(serializer.serialize(message), IotDeviceMessage.class);
+    }
+
+}
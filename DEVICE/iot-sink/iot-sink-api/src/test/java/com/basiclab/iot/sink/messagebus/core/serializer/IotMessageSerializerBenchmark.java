@@ -0,0 +1,106 @@
+package com.basiclab.iot.sink.messagebus.core.serializer;
+
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息总线序列化器的 JMH 基准测试：JSON vs 设备消息二进制
+ *
+ * 以属性上报消息（10 个属性）为样本，测试序列化、反序列化耗时；载荷字节数作为 serialize 的辅助计数 payloadBytes 输出
+ *
+ * 运行方式：mvn -Pbenchmark test-compile 后，在 IDE 中运行 main 方法
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IotMessageSerializerBenchmark {
+
+    @Param({IotJsonMessageSerializer.NAME, IotDeviceMessageBinarySerializer.NAME})
+    private String serializerName;
+
+    private IotMessageSerializer serializer;
+
+    private IotDeviceMessage message;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        serializer = IotDeviceMessageBinarySerializer.NAME.equals(serializerName)
+                ? new IotDeviceMessageBinarySerializer() : new IotJsonMessageSerializer();
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("temperature", 26.5);
+        params.put("humidity", 61);
+        params.put("pressure", 101325L);
+        params.put("voltage", 3.7);
+        params.put("switch", true);
+        params.put("mode", "auto");
+        params.put("signal", -67);
+        params.put("battery", 88);
+        params.put("firmware", "v2.3.1");
+        params.put("location", "A-03-12");
+        message = IotDeviceMessage.builder()
+                .id("4f0a2c3e8b1d4c5e9a7b6d5c4b3a2910")
+                .reportTime(LocalDateTime.of(2026, 1, 1, 12, 0, 0))
+                .deviceId(1024L).tenantId(1L).serverId("mqtt_10.0.0.8_1883")
+                .requestId("1001").method("thing.property.post")
+                .params(params)
+                .topic("/iot/product_001/device_000001/property/upstream/report")
+                .build();
+        payload = serializer.serialize(message);
+    }
+
+    @Benchmark
+    public byte[] serialize(PayloadSize size) {
+        byte[] bytes = serializer.serialize(message);
+        size.payloadBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(payload, IotDeviceMessage.class);
+    }
+
+    /**
+     * 序列化后的载荷字节数，随耗时一起出现在 JMH 结果中
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long payloadBytes;
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IotMessageSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.basiclab.iot.sink.util;
+
+import com.basiclab.iot.sink.mq.message.IotDeviceChangeMessage;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+import com.basiclab.iot.sink.mq.message.IotDeviceRouteMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IotMessageBusTopicUtils} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotMessageBusTopicUtilsTest {
+
+    @Test
+    public void testConvertMqttWildcardToRegex() {
+        assertEquals("^iot.*", IotMessageBusTopicUtils.convertMqttWildcardToRegex("iot/#"));
+        assertEquals("^iot/[^/]+/device", IotMessageBusTopicUtils.convertMqttWildcardToRegex("iot/+/device"));
+        assertEquals("^iot\\.device.*", IotMessageBusTopicUtils.convertMqttWildcardToRegex("iot.device#"));
+    }
+
+    /**
+     * iot/#（IotDeviceTopicSubscriber）需要匹配实际的消息总线主题，与 Kafka 订阅时使用的 Pattern 一致
+     */
+    @Test
+    public void testMultiLevelWildcard_matchesMessageBusTopics() {
+        Pattern pattern = Pattern.compile(IotMessageBusTopicUtils.convertMqttWildcardToRegex("iot/#"));
+
+        assertTrue(pattern.matcher(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC).matches());
+        assertTrue(pattern.matcher(IotDeviceMessageUtils.buildMessageBusGatewayDeviceMessageTopic("mqtt_10.0.0.8_1883")).matches());
+        assertFalse(pattern.matcher("device_iot_message").matches());
+    }
+
+    /**
+     * 路由变更、设备变更通知不是设备消息，不能被 iot/# 匹配，否则 IotDeviceTopicSubscriber 会按 IotDeviceMessage 反序列化它们
+     */
+    @Test
+    public void testMultiLevelWildcard_skipsNonDeviceMessageTopics() {
+        Pattern pattern = Pattern.compile(IotMessageBusTopicUtils.convertMqttWildcardToRegex("iot/#"));
+
+        assertFalse(pattern.matcher(IotDeviceRouteMessage.MESSAGE_BUS_DEVICE_ROUTE_TOPIC).matches());
+        assertFalse(pattern.matcher(IotDeviceChangeMessage.MESSAGE_BUS_DEVICE_CHANGE_TOPIC).matches());
+    }
+
+    @Test
+    public void testIsWildcard() {
+        assertTrue(IotMessageBusTopicUtils.isWildcard("iot/#"));
+        assertTrue(IotMessageBusTopicUtils.isWildcard("iot/+/device"));
+        assertFalse(IotMessageBusTopicUtils.isWildcard(IotDeviceMessage.MESSAGE_BUS_DEVICE_MESSAGE_TOPIC));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.basiclab.iot.sink.util;
+
+import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Topic 匹配的 JMH 基准测试：原有的逐个枚举正则匹配 vs {@link IotTopicTrie}
+ *
+ * 运行方式：mvn -Pbenchmark test-compile 后，在 IDE 中运行 main 方法
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IotTopicTrieBenchmark {
+
+    /**
+     * first：第一个枚举；last：最后一个枚举；miss：不匹配任何枚举
+     */
+    @Param({"first", "last", "miss"})
+    private String topicCase;
+
+    private String topic;
+
+    @Setup
+    public void setup() {
+        IotDeviceTopicEnum[] values = IotDeviceTopicEnum.values();
+        switch (topicCase) {
+            case "first":
+                topic = values[0].buildTopic("product_001", "device_000001", "temperature");
+                break;
+            case "last":
+                topic = values[values.length - 1].buildTopic("product_001", "device_000001", "temperature");
+                break;
+            default:
+                topic = "/iot/product_001/device_000001/unknown/upstream/report";
+                break;
+        }
+    }
+
+    @Benchmark
+    public IotDeviceTopicEnum regex() {
+        for (IotDeviceTopicEnum topicEnum : IotDeviceTopicEnum.values()) {
+            String pattern = topicEnum.getTopicTemplate()
+                    .replace("${productIdentification}", "[^/]+")
+                    .replace("${deviceIdentification}", "[^/]+")
+                    .replace("${identifier}", "[^/]+")
+                    .replace("/", "\\/");
+            if (topic.matches("^" + pattern + "$")) {
+                return topicEnum;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public IotDeviceTopicEnum trie() {
+        return IotDeviceTopicEnum.matchTopic(topic);
+    }
+
+    @Benchmark
+    public IotTopicTrie.Match<IotDeviceTopicEnum> trieResolve() {
+        return IotDeviceTopicEnum.resolveTopic(topic);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IotTopicTrieBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.basiclab.iot.sink.util;
+
+import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link IotTopicTrie} 的单元测试
+ *
+ * 以原有的正则匹配（${xxx} 替换为 [^/]+ 后整串匹配，按注册顺序先命中先返回）作为基准，校验前缀树的匹配结果一致
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotTopicTrieTest {
+
+    /**
+     * 编解码器的 Topic 模式，其中两个 TCP 编解码器的模式相同
+     */
+    private static final List<String> CODEC_TEMPLATES = Arrays.asList(
+            "/iot/${productIdentification}/${deviceIdentification}/#",
+            "/tcp/${productIdentification}/${deviceIdentification}/#",
+            "/tcp/${productIdentification}/${deviceIdentification}/#",
+            "/alink/${productIdentification}/${deviceIdentification}/#");
+
+    @Test
+    public void testMatchTopic_sameAsRegex() {
+        for (String topic : sampleTopics()) {
+            assertEquals(regexMatch(topic), IotDeviceTopicEnum.matchTopic(topic), topic);
+        }
+    }
+
+    @Test
+    public void testMatch_codecTemplates_sameAsRegex() {
+        IotTopicTrie<Integer> trie = new IotTopicTrie<>();
+        for (int i = 0; i < CODEC_TEMPLATES.size(); i++) {
+            trie.register(CODEC_TEMPLATES.get(i), i);
+        }
+        List<String> topics = sampleTopics();
+        topics.addAll(Arrays.asList("/tcp/p1/d1/#", "/tcp/p1/d1/property/post", "/tcp/p1/d1", "/tcp/p1/d1/#/x",
+                "/alink/p1/d1/#", "/alink/p1/d1/+", "/iot/p1/d1/#", "/iot/p1/d1/"));
+        for (String topic : topics) {
+            Integer expected = null;
+            for (int i = 0; i < CODEC_TEMPLATES.size() && expected == null; i++) {
+                if (topic.matches(toRegex(CODEC_TEMPLATES.get(i)))) {
+                    expected = i;
+                }
+            }
+            assertEquals(expected, trie.match(topic), topic);
+        }
+    }
+
+    @Test
+    public void testRegister_duplicate() {
+        IotTopicTrie<String> trie = new IotTopicTrie<>();
+        String template = "/tcp/${productIdentification}/${deviceIdentification}/#";
+
+        assertNull(trie.register(template, "binary"));
+        // 重复注册返回先注册的值，匹配结果不变
+        assertEquals("binary", trie.register(template, "json"));
+        assertEquals("binary", trie.match("/tcp/p1/d1/#"));
+        // "#" 按字面量匹配
+        assertNull(trie.match("/tcp/p1/d1/property/post"));
+    }
+
+    @Test
+    public void testResolve() {
+        IotTopicTrie.Match<IotDeviceTopicEnum> match = IotDeviceTopicEnum.resolveTopic(
+                IotDeviceTopicEnum.SHADOW_UPSTREAM_REPORT.buildTopic("p1", "d1"));
+
+        assertEquals(IotDeviceTopicEnum.SHADOW_UPSTREAM_REPORT, match.getValue());
+        assertEquals("p1", match.getProductIdentification());
+        assertEquals("d1", match.getDeviceIdentification());
+        assertNull(match.getIdentifier());
+    }
+
+    /**
+     * 每个枚举模板生成：正常 Topic、空段、多一段、少一段、"#" / "+" 通配符段
+     */
+    private static List<String> sampleTopics() {
+        List<String> topics = new ArrayList<>();
+        for (IotDeviceTopicEnum topicEnum : IotDeviceTopicEnum.values()) {
+            String topic = topicEnum.buildTopic("p1", "d1", "id1");
+            topics.add(topic);
+            topics.add(topicEnum.buildTopic("", "d1", "id1"));
+            topics.add(topicEnum.buildTopic("p1", "#", "+"));
+            topics.add(topic + "/extra");
+            topics.add(topic + "/");
+            topics.add(topic.substring(0, topic.lastIndexOf('/')));
+            topics.add(topic.replace("/iot/", "/iot/x/"));
+        }
+        topics.addAll(Arrays.asList("/", "//", "/iot", "/iot/p1/d1", "iot/p1/d1/config/upstream/query"));
+        return topics;
+    }
+
+    private static IotDeviceTopicEnum regexMatch(String topic) {
+        for (IotDeviceTopicEnum topicEnum : IotDeviceTopicEnum.values()) {
+            if (topic.matches(toRegex(topicEnum.getTopicTemplate()))) {
+                return topicEnum;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 原有的模板转正则逻辑
+     */
+    private static String toRegex(String template) {
+        String pattern = template
+                .replace("${productIdentification}", "[^/]+")
+                .replace("${deviceIdentification}", "[^/]+")
+                .replace("${identifier}", "[^/]+")
+                .replace("/", "\\/");
+        return "^" + pattern + "$";
+    }
+
+}
@@ -29,7 +29,7 @@ public class IotTcpBinaryDeviceMessageCodec implements IotDeviceMessageCodec {
     /**
      * 协议魔术字，用于协议识别
      */
-    private static final byte MAGIC_NUMBER = (byte) 0x7E;
+    static final byte MAGIC_NUMBER = (byte) 0x7E;
 
     /**
      * 协议版本号
@@ -49,12 +49,17 @@ public class IotTcpBinaryDeviceMessageCodec implements IotDeviceMessageCodec {
     /**
      * 协议头部固定长度（魔术字 + 版本号 + 消息类型 + 消息长度）
      */
-    private static final int HEADER_FIXED_LENGTH = 7;
+    static final int HEADER_FIXED_LENGTH = 7;
+
+    /**
+     * 消息长度字段在头部中的偏移量（魔术字 + 版本号 + 消息类型）
+     */
+    static final int LENGTH_FIELD_OFFSET = 3;
 
     /**
      * 最小消息长度（头部 + 消息ID长度 + 方法名长度）
      */
-    private static final int MIN_MESSAGE_LENGTH = HEADER_FIXED_LENGTH + 4;
+    static final int MIN_MESSAGE_LENGTH = HEADER_FIXED_LENGTH + 4;
 
     @Override
     public String topic() {
@@ -0,0 +1,206 @@
+package com.basiclab.iot.sink.codec.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * IotTcpFrameDecoder
+ * <p>
+ * TCP 流式分帧器，位于编解码器之前，负责把 TCP 字节流切分为完整的消息帧：
+ * <ul>
+ *     <li>二进制帧：以 {@link IotTcpBinaryDeviceMessageCodec#MAGIC_NUMBER} 开头，按头部中 4 字节的消息总长度切分</li>
+ *     <li>JSON 帧：以 '{' 或 '[' 开头，按括号配对切分（忽略字符串内的括号），帧之间的空白/换行被跳过，
+ *     因此同时兼容“一包一条 JSON”和“换行分隔的 JSON 流”</li>
+ * </ul>
+ * 一个数据块中的多帧会被依次全部解出；半帧会被缓存到累积缓冲区，等待后续数据块补齐。
+ * 累积缓冲区在连接生命周期内复用，已消费的字节通过 discardSomeReadBytes 回收；
+ * 数据块恰好是一整帧时（一包一帧，最常见的情况）直接把数据块的底层数组交给下游，不再分配和复制。
+ * <p>
+ * 注意：非线程安全，每个连接一个实例，且只能在该连接的 event loop 上调用
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotTcpFrameDecoder implements Handler<Buffer> {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int maxFrameSize;
+
+    private final Handler<byte[]> frameHandler;
+
+    /**
+     * 半帧累积缓冲区
+     */
+    private final ByteBuf cumulation = Unpooled.buffer(INITIAL_CAPACITY);
+
+    // ========== JSON 扫描状态（跨数据块保留，避免对半帧重复扫描） ==========
+
+    /**
+     * 已扫描的字节数（相对当前帧起始位置）
+     */
+    private int jsonScanned;
+    private int jsonDepth;
+    private boolean jsonInString;
+    private boolean jsonEscaped;
+
+    public IotTcpFrameDecoder(int maxFrameSize, Handler<byte[]> frameHandler) {
+        this.maxFrameSize = maxFrameSize;
+        this.frameHandler = frameHandler;
+    }
+
+    /**
+     * 处理一个 TCP 数据块
+     *
+     * @param chunk 数据块
+     * @throws IllegalStateException 帧格式非法或超过最大帧长度时抛出，调用方应断开连接
+     */
+    @Override
+    public void handle(Buffer chunk) {
+        if (chunk == null || chunk.length() == 0) {
+            return;
+        }
+        ByteBuf in;
+        if (cumulation.isReadable()) {
+            cumulation.writeBytes(chunk.getByteBuf());
+            in = cumulation;
+        } else {
+            // 快速路径：没有半帧时直接在数据块上解帧，无需先复制到累积缓冲区
+            in = chunk.getByteBuf();
+        }
+        try {
+            decodeFrames(in);
+            if (in != cumulation && in.isReadable()) {
+                // 数据块末尾残留半帧，转存到累积缓冲区
+                cumulation.writeBytes(in);
+            }
+            cumulation.discardSomeReadBytes();
+        } catch (RuntimeException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    /**
+     * 清空累积缓冲区和扫描状态，解帧失败或连接关闭时调用
+     */
+    public void reset() {
+        cumulation.clear();
+        resetJsonState();
+    }
+
+    private void decodeFrames(ByteBuf in) {
+        while (in.isReadable()) {
+            int frameLength;
+            if (jsonScanned == 0) {
+                skipWhitespace(in);
+                if (!in.isReadable()) {
+                    return;
+                }
+            }
+            byte first = in.getByte(in.readerIndex());
+            if (first == IotTcpBinaryDeviceMessageCodec.MAGIC_NUMBER) {
+                frameLength = binaryFrameLength(in);
+            } else if (first == '{' || first == '[') {
+                frameLength = jsonFrameLength(in);
+            } else {
+                throw new IllegalStateException("无法识别的帧起始字节: " + first);
+            }
+            if (frameLength < 0) {
+                // 半帧，等待更多数据
+                return;
+            }
+            byte[] frame = readFrame(in, frameLength);
+            frameHandler.handle(frame);
+        }
+    }
+
+    /**
+     * 读出一帧
+     * <p>
+     * 数据块由 Vert.x 为每次读取单独分配，帧恰好覆盖其整个底层数组时直接复用该数组；
+     * 累积缓冲区在连接内复用，其数组不能交给下游，必须复制
+     */
+    private byte[] readFrame(ByteBuf in, int frameLength) {
+        byte[] frame = ByteBufUtil.getBytes(in, in.readerIndex(), frameLength, in == cumulation);
+        in.skipBytes(frameLength);
+        return frame;
+    }
+
+    /**
+     * 计算二进制帧长度
+     *
+     * @return 帧长度；数据不足时返回 -1
+     */
+    private int binaryFrameLength(ByteBuf in) {
+        if (in.readableBytes() < IotTcpBinaryDeviceMessageCodec.HEADER_FIXED_LENGTH) {
+            return -1;
+        }
+        int frameLength = in.getInt(in.readerIndex() + IotTcpBinaryDeviceMessageCodec.LENGTH_FIELD_OFFSET);
+        if (frameLength < IotTcpBinaryDeviceMessageCodec.MIN_MESSAGE_LENGTH || frameLength > maxFrameSize) {
+            throw new IllegalStateException("非法的二进制帧长度: " + frameLength + "，最大允许: " + maxFrameSize);
+        }
+        return in.readableBytes() >= frameLength ? frameLength : -1;
+    }
+
+    /**
+     * 计算 JSON 帧长度（括号配对）
+     *
+     * @return 帧长度；数据不足时返回 -1
+     */
+    private int jsonFrameLength(ByteBuf in) {
+        int start = in.readerIndex();
+        int readable = in.readableBytes();
+        for (int i = jsonScanned; i < readable; i++) {
+            if (i >= maxFrameSize) {
+                throw new IllegalStateException("JSON 帧超过最大长度: " + maxFrameSize);
+            }
+            byte b = in.getByte(start + i);
+            if (jsonInString) {
+                if (jsonEscaped) {
+                    jsonEscaped = false;
+                } else if (b == '\\') {
+                    jsonEscaped = true;
+                } else if (b == '"') {
+                    jsonInString = false;
+                }
+                continue;
+            }
+            if (b == '"') {
+                jsonInString = true;
+            } else if (b == '{' || b == '[') {
+                jsonDepth++;
+            } else if (b == '}' || b == ']') {
+                jsonDepth--;
+                if (jsonDepth == 0) {
+                    resetJsonState();
+                    return i + 1;
+                }
+            }
+        }
+        jsonScanned = readable;
+        return -1;
+    }
+
+    private void resetJsonState() {
+        jsonScanned = 0;
+        jsonDepth = 0;
+        jsonInString = false;
+        jsonEscaped = false;
+    }
+
+    private static void skipWhitespace(ByteBuf in) {
+        while (in.isReadable()) {
+            byte b = in.getByte(in.readerIndex());
+            if (b != ' ' && b != '\r' && b != '\n' && b != '\t') {
+                return;
+            }
+            in.skipBytes(1);
+        }
+    }
+
+}
@@ -7,7 +7,9 @@ import org.springframework.validation.annotation.Validated;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @ConfigurationProperties(prefix = "basiclab.iot.sink")
 @Validated
@@ -38,6 +40,36 @@ private RpcProperties rpc;
      */
     private TopicProperties topic;
 
+    /**
+     * TDengine 写入配置
+     */
+    private TdengineProperties tdengine = new TdengineProperties();
+
+    /**
+     * 产品 JS 脚本执行配置
+     */
+    private ScriptProperties script = new ScriptProperties();
+
+    /**
+     * 设备状态（Redis）写入配置
+     */
+    private DeviceStateProperties deviceState = new DeviceStateProperties();
+
+    /**
+     * 设备事件分片执行器配置
+     */
+    private EventExecutorProperties eventExecutor = new EventExecutorProperties();
+
+    /**
+     * 设备消息事件分发配置
+     */
+    private EventDispatchProperties eventDispatch = new EventDispatchProperties();
+
+    /**
+     * 设备信息本地缓存配置
+     */
+    private DeviceCacheProperties deviceCache = new DeviceCacheProperties();
+
     @Data
     public static class RpcProperties {
 
@@ -326,6 +358,11 @@ private RpcProperties rpc;
          */
         private Integer maxConnections = 1000;
 
+        /**
+         * 单帧最大长度（字节），超过则视为非法数据并断开连接
+         */
+        private Integer maxFrameSize = 65536;
+
         /**
          * 是否启用SSL
          */
@@ -454,4 +491,203 @@ private RpcProperties rpc;
         }
     }
 
+    @Data
+    public static class TdengineProperties {
+
+        /**
+         * 是否启用批量写入
+         * true: 数据先进入内存队列，由后台线程按条数或时间合并为多表 insert 语句写入
+         * false: 每条消息单独执行一次 insert
+         */
+        private Boolean batchEnabled = true;
+
+        /**
+         * 单次批量写入的最大行数
+         */
+        private Integer batchSize = 500;
+
+        /**
+         * 批量写入的最大等待时间（毫秒），未攒满 batchSize 时到时间也会写入
+         */
+        private Long flushIntervalMs = 1000L;
+
+        /**
+         * 写入队列容量
+         */
+        private Integer queueCapacity = 20000;
+
+        /**
+         * 队列满时入队的最大等待时间（毫秒），超时后由调用线程同步写入（背压）
+         */
+        private Long offerTimeoutMs = 100L;
+
+        /**
+         * 后台写入线程数
+         */
+        private Integer writerThreads = 2;
+
+    }
+
+    @Data
+    public static class ScriptProperties {
+
+        /**
+         * 每个产品脚本上下文池的最大容量，每个上下文持有一个独立的脚本引擎
+         * 为 0 时取 CPU 核数
+         */
+        private Integer poolSize = 0;
+
+        /**
+         * 添加脚本时预热（提前编译并初始化）的上下文数量
+         */
+        private Integer warmUpSize = 1;
+
+        /**
+         * 从上下文池租借上下文的最大等待时间（毫秒）
+         */
+        private Long leaseTimeoutMs = 1000L;
+
+        /**
+         * 单次脚本调用的超时时间（毫秒），超时的上下文会被丢弃
+         * 小于等于 0 时不限时，直接在调用线程上执行
+         */
+        private Long invokeTimeoutMs = 500L;
+
+        /**
+         * 单次脚本调用的 CPU 时间预算（毫秒），超出时调用失败并丢弃所用上下文，同时记录告警和指标
+         * 小于等于 0 时不统计
+         */
+        private Long cpuBudgetMs = 100L;
+
+        /**
+         * 脚本执行线程数，为 0 时取 CPU 核数的 2 倍
+         */
+        private Integer executorThreads = 0;
+
+        /**
+         * 脚本执行线程池的等待队列容量
+         */
+        private Integer executorQueueCapacity = 10000;
+
+    }
+
+    @Data
+    public static class DeviceStateProperties {
+
+        /**
+         * 是否启用合并写入
+         * true: 同一设备在 flushIntervalMs 内的多次更新先在内存中合并，再批量以 pipeline 写入 Redis
+         * false: 每条消息直接执行一次合并脚本
+         */
+        private Boolean batchEnabled = true;
+
+        /**
+         * 合并窗口（毫秒）
+         */
+        private Long flushIntervalMs = 50L;
+
+        /**
+         * 单个 pipeline 中的最大设备数
+         */
+        private Integer batchSize = 500;
+
+        /**
+         * 待写入设备数上限，超过时由调用线程直接写入（背压）
+         */
+        private Integer maxPendingDevices = 50000;
+
+    }
+
+    @Data
+    public static class EventExecutorProperties {
+
+        /**
+         * 分片数（每个分片一个线程），同一设备的事件总是由同一分片按顺序处理
+         * 为 0 时取 CPU 核数的 2 倍
+         */
+        private Integer shards = 0;
+
+        /**
+         * 每个分片的队列容量
+         */
+        private Integer queueCapacity = 2000;
+
+        /**
+         * 无设备编号（无顺序要求）事件的共享队列容量，由空闲分片窃取执行
+         */
+        private Integer unorderedQueueCapacity = 10000;
+
+        /**
+         * 队列满时入队的最大等待时间（毫秒），超时后丢弃事件并计入 shed 指标
+         */
+        private Long offerTimeoutMs = 100L;
+
+    }
+
+    @Data
+    public static class EventDispatchProperties {
+
+        /**
+         * 每个 Topic 默认的最大待处理事件数，超过时丢弃事件，避免单个 Topic 占满分片队列
+         */
+        private Integer queueCapacity = 5000;
+
+        /**
+         * 按 Topic 覆盖的配置，key 为 IotDeviceTopicEnum 的枚举名称，忽略大小写和分隔符，如 property-upstream-report
+         */
+        private Map<String, TopicDispatchProperties> topics = new HashMap<>();
+
+    }
+
+    @Data
+    public static class TopicDispatchProperties {
+
+        /**
+         * 最大待处理事件数
+         */
+        private Integer queueCapacity;
+
+    }
+
+    @Data
+    public static class DeviceCacheProperties {
+
+        /**
+         * 缓存刷新间隔，设备修改、删除时由 iot-device 通过消息总线推送失效，这里只作为兜底
+         */
+        private Duration refreshInterval = Duration.ofHours(2);
+
+        /**
+         * 缓存未命中时的合并窗口（毫秒），窗口内的并发未命中合并为一次 IN 查询
+         * 小于等于 0 时不合并，逐条查询
+         */
+        private Long batchWindowMs = 2L;
+
+        /**
+         * 单次 IN 查询的最大设备数
+         */
+        private Integer batchSize = 500;
+
+        /**
+         * 是否按产品预加载：某个产品首次未命中时，异步加载该产品下的全部设备
+         */
+        private Boolean preloadEnabled = true;
+
+        /**
+         * 单个产品预加载的最大设备数
+         */
+        private Integer preloadMaxDevices = 10000;
+
+        /**
+         * 预加载线程数，与合并未命中的批量加载线程相互独立
+         */
+        private Integer preloadThreads = 2;
+
+        /**
+         * 等待预加载的产品数上限，超过时跳过预加载，设备改为按未命中批量加载
+         */
+        private Integer preloadQueueCapacity = 64;
+
+    }
+
 }
@@ -5,6 +5,9 @@ import com.basiclab.iot.sink.dal.dataobject.DeviceDO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * DeviceMapper
  *
@@ -34,6 +37,35 @@ public interface DeviceMapper extends BaseMapper<DeviceDO> {
      */
     DeviceDO selectById(@Param("id") Long id);
 
+    /**
+     * 根据ID列表批量查询设备
+     *
+     * @param ids 设备ID列表
+     * @return 设备列表
+     */
+    List<DeviceDO> selectListByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 根据产品唯一标识和设备唯一标识列表批量查询设备
+     *
+     * @param productIdentification 产品唯一标识
+     * @param deviceIdentifications 设备唯一标识列表
+     * @return 设备列表
+     */
+    List<DeviceDO> selectListByProductIdentificationAndDeviceIdentifications(
+            @Param("productIdentification") String productIdentification,
+            @Param("deviceIdentifications") Collection<String> deviceIdentifications);
+
+    /**
+     * 根据产品唯一标识查询设备（用于预加载缓存）
+     *
+     * @param productIdentification 产品唯一标识
+     * @param limit 最大条数
+     * @return 设备列表
+     */
+    List<DeviceDO> selectListByProductIdentification(@Param("productIdentification") String productIdentification,
+                                                     @Param("limit") Integer limit);
+
     /**
      * 根据客户端ID、用户名、密码、设备状态和协议类型查询设备（用于认证）
      *
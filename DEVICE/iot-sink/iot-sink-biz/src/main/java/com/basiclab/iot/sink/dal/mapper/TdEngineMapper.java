@@ -5,6 +5,8 @@ import com.basiclab.iot.tdengine.domain.model.TableDTO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * TdEngineMapper
  *
@@ -23,5 +25,12 @@ public interface TdEngineMapper {
      * @param tableDTO 表数据DTO
      */
     void insertTableData(TableDTO tableDTO);
+
+    /**
+     * 多表批量插入数据（一条 SQL 写入多个子表）
+     *
+     * @param tableList 表数据DTO列表
+     */
+    void insertMultiTableData(@Param("tableList") List<TableDTO> tableList);
 }
 
@@ -0,0 +1,237 @@
+package com.basiclab.iot.sink.javascript;
+
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * IotDeviceMessageScriptView
+ * <p>
+ * 暴露给 JS 脚本（protocolToRawData）的设备消息视图，替代“序列化为 JSON 再解析为 Map”的转换。
+ * 字段在读取时才从 {@link IotDeviceMessage} 中取值，呈现的结构与原 JSON 转换结果保持一致：
+ * <ul>
+ *     <li>值为 null 的字段不出现（对应 JSON 序列化的 NON_NULL）</li>
+ *     <li>reportTime 以毫秒时间戳呈现</li>
+ *     <li>params / data 在首次读取时才转换：Map、集合逐层复制，基础类型直接返回，其他对象转换为 Map</li>
+ * </ul>
+ * 脚本对视图的写入记录在覆盖表中，对 params / data 内部的修改只作用于副本，均不会修改原消息
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDeviceMessageScriptView extends AbstractMap<String, Object> {
+
+    private static final String[] KEYS = {
+            "id", "reportTime", "deviceId", "tenantId", "serverId",
+            "requestId", "method", "params", "data", "code", "msg", "needReply", "topic"
+    };
+
+    /**
+     * 未转换标记，用于 params / data 的延迟转换
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private final IotDeviceMessage message;
+
+    private Object params = UNRESOLVED;
+    private Object data = UNRESOLVED;
+
+    /**
+     * 脚本写入的字段，value 为 null 表示已删除；首次写入时才创建
+     */
+    private Map<String, Object> overrides;
+
+    public IotDeviceMessageScriptView(IotDeviceMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        if (overrides != null && overrides.containsKey(key)) {
+            return overrides.get(key);
+        }
+        return getField((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = get(key);
+        if (overrides == null) {
+            overrides = new HashMap<>();
+        }
+        overrides.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        return put((String) key, null);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Iterator<Entry<String, Object>> it = iterator(); it.hasNext(); it.next()) {
+                    size++;
+                }
+                return size;
+            }
+
+        };
+    }
+
+    private Object getField(String key) {
+        switch (key) {
+            case "id":
+                return message.getId();
+            case "reportTime":
+                return toTimestamp(message.getReportTime());
+            case "deviceId":
+                return message.getDeviceId();
+            case "tenantId":
+                return message.getTenantId();
+            case "serverId":
+                return message.getServerId();
+            case "requestId":
+                return message.getRequestId();
+            case "method":
+                return message.getMethod();
+            case "params":
+                if (params == UNRESOLVED) {
+                    params = toScriptValue(message.getParams());
+                }
+                return params;
+            case "data":
+                if (data == UNRESOLVED) {
+                    data = toScriptValue(message.getData());
+                }
+                return data;
+            case "code":
+                return message.getCode();
+            case "msg":
+                return message.getMsg();
+            case "needReply":
+                return message.getNeedReply();
+            case "topic":
+                return message.getTopic();
+            default:
+                return null;
+        }
+    }
+
+    private static Long toTimestamp(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null;
+    }
+
+    /**
+     * 将 params / data 转换为脚本可直接访问的值
+     * <p>
+     * Map、集合逐层复制，脚本修改嵌套结构（如 params.x.y = 1）时不会影响原消息
+     */
+    private static Object toScriptValue(Object value) {
+        if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new LinkedHashMap<>(Math.max(16, map.size() * 4 / 3 + 1));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), toScriptValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> copy = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                copy.add(toScriptValue(element));
+            }
+            return copy;
+        }
+        // 自定义对象：保持与原 JSON 转换一致的结构，转换结果本身就是新对象
+        return JsonUtils.parseObject(JsonUtils.toJsonString(value), Object.class);
+    }
+
+    /**
+     * 依次遍历未被覆盖的消息字段和覆盖表，跳过值为 null 的字段
+     */
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int keyIndex;
+        private final Iterator<Entry<String, Object>> overrideIterator =
+                overrides != null ? new HashMap<>(overrides).entrySet().iterator() : null;
+        private Entry<String, Object> next;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            while (keyIndex < KEYS.length) {
+                String key = KEYS[keyIndex++];
+                if (overrides != null && overrides.containsKey(key)) {
+                    continue;
+                }
+                Object value = getField(key);
+                if (value != null) {
+                    next = new SimpleImmutableEntry<>(key, value);
+                    return true;
+                }
+            }
+            while (overrideIterator != null && overrideIterator.hasNext()) {
+                Entry<String, Object> entry = overrideIterator.next();
+                if (entry.getValue() != null) {
+                    next = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Object> entry = next;
+            next = null;
+            return entry;
+        }
+
+    }
+
+}
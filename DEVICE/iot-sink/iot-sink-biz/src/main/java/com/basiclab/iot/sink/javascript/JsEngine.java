@@ -6,10 +6,14 @@ import org.slf4j.LoggerFactory;
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 
 /**
  * JsEngine
+ * <p>
+ * 负责探测可用的 JavaScript 引擎，并为每个脚本上下文创建相互隔离的 {@link ScriptEngine}。
+ * 引擎实例本身不是线程安全的，且同一引擎内所有脚本共享全局作用域，因此不再提供全局共享的引擎实例
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
@@ -26,7 +30,8 @@ public enum JsEngine {
         return LoggerFactory.getLogger(JsEngine.class);
     }
 
-    private final ScriptEngine engine;
+    private final ScriptEngineFactory engineFactory;
+    private final JsUtilFunction jsUtil = new JsUtilFunction();
     private final String jsGlobalImport;
 
     JsEngine() {
@@ -45,14 +50,9 @@ public enum JsEngine {
             throw new RuntimeException("无法找到可用的 JavaScript 引擎，请确保已安装 JavaScript 引擎（如 GraalVM）");
         }
 
-        this.engine = jsEngine;
+        this.engineFactory = jsEngine.getFactory();
         getLog().info("[JsEngine][初始化 JavaScript 引擎: {}]", jsEngine.getClass().getName());
 
-        // 添加全局工具类
-        Bindings globalBindings = engine.createBindings();
-        globalBindings.put("jsUtil", new JsUtilFunction());
-        engine.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
-
         // 生成全局导入文本
         this.jsGlobalImport = generateJsGlobalImport();
     }
@@ -76,12 +76,17 @@ public enum JsEngine {
     }
 
     /**
-     * 获取 engine
+     * 创建一个独立的 engine，拥有自己的全局作用域
      *
      * @return ScriptEngine
      */
-    public static ScriptEngine getEngine() {
-        return INSTANCE.engine;
+    public static ScriptEngine createEngine() {
+        ScriptEngine engine = INSTANCE.engineFactory.getScriptEngine();
+        // 添加全局工具类（无状态，可在引擎间共享）
+        Bindings globalBindings = engine.createBindings();
+        globalBindings.put("jsUtil", INSTANCE.jsUtil);
+        engine.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+        return engine;
     }
 
     /**
@@ -0,0 +1,225 @@
+package com.basiclab.iot.sink.javascript;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JsScriptContextPool
+ * <p>
+ * 单个产品脚本的上下文池。每个上下文持有一个独立的 {@link ScriptEngine}，脚本在其中编译并初始化一次，
+ * 同一时刻只会被一个线程租借使用，因此上下文之间互不干扰，调用并发度随池容量线性扩展。
+ * <p>
+ * 上下文按需创建，最多 maxSize 个；池满时租借方最多等待 leaseTimeoutMs。
+ * 执行超时的上下文可能仍在运行脚本，脚本真正结束后才调用 {@link #discard(Context)} 丢弃，
+ * 在此之前它继续占用容量名额，因此失控脚本最多占满本产品的 maxSize 个执行线程，不会无限堆积
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+class JsScriptContextPool {
+
+    @Getter
+    private final String productIdentification;
+
+    private final ContextFactory contextFactory;
+
+    private final int maxSize;
+
+    private final BlockingQueue<Context> idle;
+
+    /**
+     * 已创建（空闲 + 租借中）的上下文数量
+     */
+    private final AtomicInteger created = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    JsScriptContextPool(String productIdentification, String jsText, int maxSize) {
+        this(productIdentification, maxSize, () -> createContext(jsText));
+    }
+
+    JsScriptContextPool(String productIdentification, int maxSize, ContextFactory contextFactory) {
+        this.productIdentification = productIdentification;
+        this.contextFactory = contextFactory;
+        this.maxSize = Math.max(maxSize, 1);
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    /**
+     * 预热：提前创建上下文
+     *
+     * @param size 预热数量
+     * @throws ScriptException 编译失败
+     */
+    void warmUp(int size) throws ScriptException {
+        int target = Math.min(Math.max(size, 1), maxSize);
+        while (created.get() < target) {
+            Context context = tryCreate();
+            if (context == null) {
+                return;
+            }
+            idle.offer(context);
+        }
+    }
+
+    /**
+     * 租借上下文
+     *
+     * @param timeoutMs 最大等待时间（毫秒）
+     * @return 上下文，超时返回 null
+     * @throws ScriptException      创建上下文时编译失败
+     * @throws InterruptedException 等待被中断
+     */
+    Context lease(long timeoutMs) throws ScriptException, InterruptedException {
+        Context context = idle.poll();
+        if (context != null) {
+            return context;
+        }
+        context = tryCreate();
+        if (context != null) {
+            return context;
+        }
+        return idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 归还上下文。池已关闭时直接丢弃
+     *
+     * @param context 上下文
+     */
+    void release(Context context) {
+        if (closed || !idle.offer(context)) {
+            discard(context);
+            return;
+        }
+        // 归还与 close 并发时，close 可能已清空空闲队列，这里补一次清理
+        if (closed && idle.remove(context)) {
+            discard(context);
+        }
+    }
+
+    /**
+     * 丢弃上下文（执行超时或状态不可信），关闭其引擎并释放一个容量名额
+     * <p>
+     * 执行超时的上下文必须等脚本真正结束后再丢弃，否则名额被提前释放，失控脚本会在执行线程池中无限堆积
+     *
+     * @param context 上下文
+     */
+    void discard(Context context) {
+        context.close();
+        created.decrementAndGet();
+    }
+
+    /**
+     * 关闭池，空闲上下文立即释放，租借中的上下文在归还时释放
+     */
+    void close() {
+        closed = true;
+        Context context;
+        while ((context = idle.poll()) != null) {
+            discard(context);
+        }
+    }
+
+    int getCreatedCount() {
+        return created.get();
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    private Context tryCreate() throws ScriptException {
+        while (true) {
+            int current = created.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            return contextFactory.create();
+        } catch (ScriptException | RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 在独立的引擎中编译并初始化脚本
+     *
+     * @param jsText JS 脚本文本
+     * @return 上下文
+     * @throws ScriptException 编译失败
+     */
+    static Context createContext(String jsText) throws ScriptException {
+        ScriptEngine engine = JsEngine.createEngine();
+        // JS 前加入全局导入
+        String js = JsEngine.getJsGlobalImport() + jsText;
+        // 编译并初始化，识别和加载脚本中定义的函数
+        ((Compilable) engine).compile(js).eval();
+        return new Context(engine);
+    }
+
+    /**
+     * 上下文工厂
+     */
+    @FunctionalInterface
+    interface ContextFactory {
+
+        /**
+         * 创建并初始化一个上下文
+         *
+         * @return 上下文
+         * @throws ScriptException 编译失败
+         */
+        Context create() throws ScriptException;
+
+    }
+
+    /**
+     * 脚本上下文：一个独立的引擎及其中已初始化的脚本
+     */
+    static final class Context {
+
+        @Getter
+        private final ScriptEngine engine;
+
+        Context(ScriptEngine engine) {
+            this.engine = engine;
+        }
+
+        Invocable getInvocable() {
+            return (Invocable) engine;
+        }
+
+        /**
+         * 关闭引擎（如 GraalJS 的引擎持有 polyglot 上下文，需显式关闭才能释放）
+         */
+        void close() {
+            if (!(engine instanceof AutoCloseable)) {
+                return;
+            }
+            try {
+                ((AutoCloseable) engine).close();
+            } catch (Exception e) {
+                log.warn("[close][关闭脚本引擎失败]", e);
+            }
+        }
+
+    }
+
+}
@@ -1,20 +1,43 @@
 package com.basiclab.iot.sink.javascript;
 
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * JsScriptManager
+ * <p>
+ * 每个产品脚本对应一个 {@link JsScriptContextPool}，池中每个上下文是一个独立的脚本引擎，
+ * 调用时租借一个上下文独占使用，不同产品、不同线程之间互不干扰。
+ * 调用受 invokeTimeoutMs 限时（超时的上下文在脚本结束后丢弃），受 cpuBudgetMs 约束（超出预算的调用判定失败并丢弃上下文），
+ * 并统计按产品维度的调用耗时
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
@@ -25,13 +48,65 @@ import java.util.concurrent.ConcurrentMap;
 @Component
 public class JsScriptManager {
 
+    private static final String METRIC_PREFIX = "iot.sink.js";
+
+    private static final String FUNCTION_RAW_DATA_TO_PROTOCOL = "rawDataToProtocol";
+    private static final String FUNCTION_PROTOCOL_TO_RAW_DATA = "protocolToRawData";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private IotGatewayProperties.ScriptProperties properties;
+
     /**
-     * JS 编译缓存，key 为产品标识（productIdentification）
+     * 产品脚本上下文池，key 为产品标识（productIdentification）
      */
-    private final ConcurrentMap<String, CompiledScript> compiledCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JsScriptContextPool> contextPools = new ConcurrentHashMap<>();
 
     /**
-     * 编译 JS 脚本
+     * 调用耗时指标，key 为 产品标识:函数名
+     */
+    private final ConcurrentMap<String, Timer> invokeTimers = new ConcurrentHashMap<>();
+
+    /**
+     * 限时调用的执行线程池
+     */
+    private ThreadPoolExecutor executor;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @PostConstruct
+    public void init() {
+        properties = gatewayProperties.getScript() != null
+                ? gatewayProperties.getScript() : new IotGatewayProperties.ScriptProperties();
+        int cores = Runtime.getRuntime().availableProcessors();
+        int executorThreads = properties.getExecutorThreads() > 0 ? properties.getExecutorThreads() : cores * 2;
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(executorThreads, executorThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(properties.getExecutorQueueCapacity()), r -> {
+            Thread t = new Thread(r, "iot-js-executor-" + threadIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[init][JS 脚本执行器初始化完成，poolSize: {}, invokeTimeoutMs: {}, cpuBudgetMs: {}, executorThreads: {}]",
+                getPoolSize(), properties.getInvokeTimeoutMs(), properties.getCpuBudgetMs(), executorThreads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        clearAll();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 编译 JS 脚本（在独立的引擎中）
      *
      * @param jsText JS 脚本文本
      * @return 编译后的脚本
@@ -44,7 +119,7 @@ public class JsScriptManager {
             log.debug("[compileScript][编译 JS 脚本，长度: {}]", js.length());
         }
         // 编译 JS 脚本
-        CompiledScript compiledScript = ((Compilable) JsEngine.getEngine()).compile(js);
+        CompiledScript compiledScript = ((Compilable) JsEngine.createEngine()).compile(js);
         // 初始化，识别和加载脚本中定义的函数
         compiledScript.eval();
         return compiledScript;
@@ -111,15 +186,21 @@ public class JsScriptManager {
 
     /**
      * 添加产品脚本
+     * <p>
+     * 新脚本的上下文池预热成功后才替换旧池，编译失败时旧脚本继续生效
      *
      * @param productIdentification 产品标识
      * @param jsText                JS 脚本文本
      * @throws ScriptException 编译失败
      */
     public void addScript(String productIdentification, String jsText) throws ScriptException {
-        CompiledScript compiledScript = compileScript(jsText);
-        compiledCache.put(productIdentification, compiledScript);
-        log.info("[addScript][添加产品脚本成功，产品标识: {}]", productIdentification);
+        JsScriptContextPool pool = new JsScriptContextPool(productIdentification, jsText, getPoolSize());
+        pool.warmUp(properties.getWarmUpSize());
+        JsScriptContextPool old = contextPools.put(productIdentification, pool);
+        if (old != null) {
+            old.close();
+        }
+        log.info("[addScript][添加产品脚本成功，产品标识: {}，预热上下文数: {}]", productIdentification, pool.getCreatedCount());
     }
 
     /**
@@ -128,8 +209,9 @@ public class JsScriptManager {
      * @param productIdentification 产品标识
      */
     public void removeScript(String productIdentification) {
-        CompiledScript removed = compiledCache.remove(productIdentification);
+        JsScriptContextPool removed = contextPools.remove(productIdentification);
         if (removed != null) {
+            removed.close();
             log.info("[removeScript][删除产品脚本成功，产品标识: {}]", productIdentification);
         }
     }
@@ -141,7 +223,7 @@ public class JsScriptManager {
      * @return 是否有脚本
      */
     public boolean hasScript(String productIdentification) {
-        return compiledCache.containsKey(productIdentification);
+        return contextPools.containsKey(productIdentification);
     }
 
     /**
@@ -153,25 +235,7 @@ public class JsScriptManager {
      * @return 转换后的数据，如果失败或没有脚本则返回空数组
      */
     public byte[] invokeRawDataToProtocol(String productIdentification, String topic, byte[] rawData) {
-        CompiledScript compiledScript = compiledCache.get(productIdentification);
-        if (compiledScript == null) {
-            log.debug("[invokeRawDataToProtocol][产品脚本不存在，产品标识: {}]", productIdentification);
-            return new byte[0];
-        }
-
-        try {
-            Invocable invocable = (Invocable) compiledScript.getEngine();
-            Object result = invocable.invokeFunction("rawDataToProtocol", topic, rawData);
-            if (result instanceof byte[]) {
-                return (byte[]) result;
-            } else {
-                log.warn("[invokeRawDataToProtocol][脚本返回类型错误，产品标识: {}]", productIdentification);
-                return new byte[0];
-            }
-        } catch (ScriptException | NoSuchMethodException e) {
-            log.error("[invokeRawDataToProtocol][脚本执行失败，产品标识: {}]", productIdentification, e);
-            return new byte[0];
-        }
+        return invoke(productIdentification, FUNCTION_RAW_DATA_TO_PROTOCOL, topic, rawData);
     }
 
     /**
@@ -183,42 +247,241 @@ public class JsScriptManager {
      * @return 转换后的原始数据，如果失败或没有脚本则返回空数组
      */
     public byte[] invokeProtocolToRawData(String productIdentification, String topic, Map<String, Object> jsonData) {
-        CompiledScript compiledScript = compiledCache.get(productIdentification);
-        if (compiledScript == null) {
-            log.debug("[invokeProtocolToRawData][产品脚本不存在，产品标识: {}]", productIdentification);
-            return new byte[0];
+        return invoke(productIdentification, FUNCTION_PROTOCOL_TO_RAW_DATA, topic, jsonData);
+    }
+
+    /**
+     * 租借上下文并执行脚本函数
+     *
+     * @param productIdentification 产品标识
+     * @param function              函数名
+     * @param topic                 主题
+     * @param data                  函数参数
+     * @return 转换后的数据，如果失败或没有脚本则返回空数组
+     */
+    private byte[] invoke(String productIdentification, String function, String topic, Object data) {
+        JsScriptContextPool pool = contextPools.get(productIdentification);
+        if (pool == null) {
+            log.debug("[invoke][产品脚本不存在，产品标识: {}，函数: {}]", productIdentification, function);
+            return EMPTY;
         }
 
+        long start = System.nanoTime();
+        JsScriptContextPool.Context context = null;
         try {
-            Invocable invocable = (Invocable) compiledScript.getEngine();
-            Object result = invocable.invokeFunction("protocolToRawData", topic, jsonData);
+            context = pool.lease(properties.getLeaseTimeoutMs());
+            if (context == null) {
+                increment("lease.timeouts", productIdentification);
+                log.warn("[invoke][租借脚本上下文超时，产品标识: {}，函数: {}]", productIdentification, function);
+                return EMPTY;
+            }
+            Object result;
+            long invokeTimeoutMs = properties.getInvokeTimeoutMs();
+            if (invokeTimeoutMs <= 0) {
+                result = doInvoke(productIdentification, context, function, topic, data);
+            } else {
+                JsScriptContextPool.Context leased = context;
+                TimedInvocation invocation = new TimedInvocation(pool, leased,
+                        () -> doInvoke(productIdentification, leased, function, topic, data));
+                executor.execute(invocation);
+                try {
+                    result = invocation.result.get(invokeTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!invocation.abandon()) {
+                        // 超时的同时刚好执行完成，结果仍然有效
+                        result = invocation.result.get();
+                    } else {
+                        // 上下文已移交给执行任务：脚本结束（或出队发现已放弃）时由任务丢弃或归还
+                        context = null;
+                        increment("invoke.timeouts", productIdentification);
+                        log.warn("[invoke][脚本执行超时，上下文在脚本结束后丢弃，产品标识: {}，函数: {}，超时: {}ms]",
+                                productIdentification, function, invokeTimeoutMs);
+                        return EMPTY;
+                    }
+                }
+            }
             if (result instanceof byte[]) {
                 return (byte[]) result;
-            } else {
-                log.warn("[invokeProtocolToRawData][脚本返回类型错误，产品标识: {}]", productIdentification);
-                return new byte[0];
             }
+            log.warn("[invoke][脚本返回类型错误，产品标识: {}，函数: {}]", productIdentification, function);
+            return EMPTY;
+        } catch (CpuBudgetExceededException e) {
+            // 不限时调用：脚本在当前线程执行，上下文仍归调用方
+            pool.discard(context);
+            context = null;
+            return EMPTY;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CpuBudgetExceededException) {
+                // 限时调用在超时前完成：上下文仍归调用方
+                pool.discard(context);
+                context = null;
+                return EMPTY;
+            }
+            log.error("[invoke][脚本执行失败，产品标识: {}，函数: {}]", productIdentification, function, e.getCause());
+            return EMPTY;
         } catch (ScriptException | NoSuchMethodException e) {
-            log.error("[invokeProtocolToRawData][脚本执行失败，产品标识: {}]", productIdentification, e);
-            return new byte[0];
+            log.error("[invoke][脚本执行失败，产品标识: {}，函数: {}]", productIdentification, function, e);
+            return EMPTY;
+        } catch (RejectedExecutionException e) {
+            increment("invoke.rejected", productIdentification);
+            log.warn("[invoke][脚本执行线程池已满，产品标识: {}，函数: {}]", productIdentification, function);
+            return EMPTY;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EMPTY;
+        } finally {
+            if (context != null) {
+                pool.release(context);
+            }
+            recordLatency(productIdentification, function, System.nanoTime() - start);
         }
     }
 
+    /**
+     * 在已租借的上下文中执行脚本函数，并检查 CPU 时间预算
+     * <p>
+     * 脚本引擎无法被中途打断，预算在脚本返回后检查：超出预算的调用结果不可用，
+     * 抛出 {@link CpuBudgetExceededException} 由调用方丢弃上下文（脚本可能在上下文中留下了大量全局状态）。
+     * 执行时长的硬上限仍由 invokeTimeoutMs 保证
+     *
+     * @throws CpuBudgetExceededException 脚本 CPU 时间超出预算
+     */
+    private Object doInvoke(String productIdentification, JsScriptContextPool.Context context,
+                            String function, String topic, Object data) throws ScriptException, NoSuchMethodException {
+        long cpuBudgetMs = properties.getCpuBudgetMs();
+        boolean measureCpu = cpuBudgetMs > 0 && threadMXBean.isCurrentThreadCpuTimeSupported();
+        long cpuStart = measureCpu ? threadMXBean.getCurrentThreadCpuTime() : 0L;
+        Object result = context.getInvocable().invokeFunction(function, topic, data);
+        if (measureCpu) {
+            long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+            if (cpuNanos > TimeUnit.MILLISECONDS.toNanos(cpuBudgetMs)) {
+                increment("cpu.budget.exceeded", productIdentification);
+                log.warn("[doInvoke][脚本 CPU 时间超出预算，调用失败并丢弃上下文，产品标识: {}，函数: {}，CPU 耗时: {}ms，预算: {}ms]",
+                        productIdentification, function, TimeUnit.NANOSECONDS.toMillis(cpuNanos), cpuBudgetMs);
+                throw new CpuBudgetExceededException(TimeUnit.NANOSECONDS.toMillis(cpuNanos), cpuBudgetMs);
+            }
+        }
+        return result;
+    }
+
+    private int getPoolSize() {
+        return properties.getPoolSize() > 0 ? properties.getPoolSize() : Runtime.getRuntime().availableProcessors();
+    }
+
+    private void recordLatency(String productIdentification, String function, long nanos) {
+        if (meterRegistry == null) {
+            return;
+        }
+        invokeTimers.computeIfAbsent(productIdentification + ":" + function,
+                key -> Timer.builder(METRIC_PREFIX + ".invoke.latency")
+                        .description("产品 JS 脚本调用耗时")
+                        .tag("product", productIdentification)
+                        .tag("function", function)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void increment(String name, String productIdentification) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder(METRIC_PREFIX + "." + name)
+                .tag("product", productIdentification)
+                .register(meterRegistry)
+                .increment();
+    }
+
     /**
      * 获取所有已加载的产品标识
      *
      * @return 产品标识集合
      */
     public java.util.Set<String> getAllLoadedProductIdentifications() {
-        return new java.util.HashSet<>(compiledCache.keySet());
+        return new java.util.HashSet<>(contextPools.keySet());
     }
 
     /**
      * 清空所有脚本缓存
      */
     public void clearAll() {
-        compiledCache.clear();
+        contextPools.values().forEach(JsScriptContextPool::close);
+        contextPools.clear();
         log.info("[clearAll][清空所有脚本缓存]");
     }
-}
 
+    /**
+     * 脚本 CPU 时间超出预算
+     */
+    private static final class CpuBudgetExceededException extends ScriptException {
+
+        private CpuBudgetExceededException(long cpuMs, long budgetMs) {
+            super("脚本 CPU 时间超出预算，CPU 耗时: " + cpuMs + "ms，预算: " + budgetMs + "ms");
+        }
+
+    }
+
+    /**
+     * 限时执行的一次脚本调用
+     * <p>
+     * 脚本引擎无法被中断，超时后脚本仍会在执行线程上跑完。调用方超时放弃时把上下文移交给本任务：
+     * 脚本尚未开始则直接归还上下文；脚本正在执行则等它结束后再丢弃上下文，
+     * 在此之前上下文一直占用池的容量名额，使失控脚本受池容量约束，而不是不断占用新的执行线程
+     */
+    private static final class TimedInvocation implements Runnable {
+
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+
+        private final JsScriptContextPool pool;
+        private final JsScriptContextPool.Context context;
+        private final Callable<Object> call;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private TimedInvocation(JsScriptContextPool pool, JsScriptContextPool.Context context, Callable<Object> call) {
+            this.pool = pool;
+            this.context = context;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                // 调用方已放弃，脚本未执行过，上下文状态完好
+                pool.release(context);
+                return;
+            }
+            try {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    // 调用方已超时放弃，脚本执行期间的上下文状态不可信
+                    pool.discard(context);
+                }
+            }
+        }
+
+        /**
+         * 调用方超时放弃本次调用，上下文交由任务处理
+         *
+         * @return 是否放弃成功；任务已执行完成时返回 false，上下文仍归调用方
+         */
+        private boolean abandon() {
+            while (true) {
+                int current = state.get();
+                if (current == DONE) {
+                    return false;
+                }
+                if (state.compareAndSet(current, ABANDONED)) {
+                    return true;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,297 @@
+package com.basiclab.iot.sink.messagebus.executor;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * IotDeviceShardedExecutor
+ * <p>
+ * 按设备分片的执行器，用于 sink 的设备事件处理：
+ * <ul>
+ *     <li>有设备编号的任务按编号哈希进入固定分片，每个分片由单个线程按提交顺序执行，保证同一设备 FIFO</li>
+ *     <li>没有设备编号（无顺序要求）的任务进入共享队列，由空闲的分片线程窃取执行</li>
+ *     <li>队列均有界；队列满时最多等待 offerTimeoutMs，仍无法入队则丢弃任务（load shedding）并计数，
+ *     不再由调用线程（如 Kafka 消费线程）执行，避免阻塞时长不可控</li>
+ * </ul>
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class IotDeviceShardedExecutor {
+
+    private static final String METRIC_PREFIX = "iot.sink.event.executor";
+
+    /**
+     * 空闲分片线程的最长休眠时间，作为唤醒遗漏时的兜底
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * 丢弃任务的告警日志间隔
+     */
+    private static final long SHED_LOG_INTERVAL_MS = 5000;
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Shard[] shards;
+
+    private ArrayBlockingQueue<Task> unorderedQueue;
+
+    private long offerTimeoutNanos;
+
+    private volatile boolean running;
+
+    private final AtomicLong lastShedLogTime = new AtomicLong();
+
+    private Timer lagTimer;
+    private Counter orderedShedCounter;
+    private Counter unorderedShedCounter;
+    private Counter stealCounter;
+    private Counter failureCounter;
+
+    @PostConstruct
+    public void init() {
+        IotGatewayProperties.EventExecutorProperties properties = gatewayProperties.getEventExecutor() != null
+                ? gatewayProperties.getEventExecutor() : new IotGatewayProperties.EventExecutorProperties();
+        int shardCount = properties.getShards() > 0 ? properties.getShards()
+                : Runtime.getRuntime().availableProcessors() * 2;
+        offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(properties.getOfferTimeoutMs(), 0L));
+        unorderedQueue = new ArrayBlockingQueue<>(Math.max(properties.getUnorderedQueueCapacity(), 1));
+        running = true;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, Math.max(properties.getQueueCapacity(), 1));
+        }
+        initMetrics();
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+        log.info("[init][设备分片执行器启动完成，shards: {}, queueCapacity: {}, unorderedQueueCapacity: {}, offerTimeoutMs: {}]",
+                shardCount, properties.getQueueCapacity(), properties.getUnorderedQueueCapacity(),
+                properties.getOfferTimeoutMs());
+    }
+
+    private void initMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        lagTimer = Timer.builder(METRIC_PREFIX + ".lag")
+                .description("任务从提交到开始执行的等待耗时")
+                .register(meterRegistry);
+        orderedShedCounter = Counter.builder(METRIC_PREFIX + ".shed")
+                .description("队列已满被丢弃的任务数")
+                .tag("ordered", "true")
+                .register(meterRegistry);
+        unorderedShedCounter = Counter.builder(METRIC_PREFIX + ".shed")
+                .description("队列已满被丢弃的任务数")
+                .tag("ordered", "false")
+                .register(meterRegistry);
+        stealCounter = Counter.builder(METRIC_PREFIX + ".steals")
+                .description("空闲分片从共享队列窃取执行的任务数")
+                .register(meterRegistry);
+        failureCounter = Counter.builder(METRIC_PREFIX + ".failures")
+                .description("执行异常的任务数")
+                .register(meterRegistry);
+        for (Shard shard : shards) {
+            Gauge.builder(METRIC_PREFIX + ".queue.size", shard.queue, ArrayBlockingQueue::size)
+                    .description("分片待执行的任务数")
+                    .tag("shard", String.valueOf(shard.index))
+                    .register(meterRegistry);
+        }
+        Gauge.builder(METRIC_PREFIX + ".queue.size", unorderedQueue, ArrayBlockingQueue::size)
+                .description("分片待执行的任务数")
+                .tag("shard", "unordered")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (shards == null) {
+            return;
+        }
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        // 执行完队列中剩余的任务后退出，最多等待 10 秒
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("[destroy][设备分片执行器关闭完成]");
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param deviceId 设备编号，相同编号的任务按提交顺序执行；为 null 时表示没有顺序要求
+     * @param task     任务
+     * @return 是否提交成功；队列满且等待超时时丢弃任务，返回 false
+     */
+    public boolean execute(Long deviceId, Runnable task) {
+        Task wrapped = new Task(task);
+        if (deviceId == null) {
+            if (!offer(unorderedQueue, wrapped)) {
+                shed(unorderedShedCounter, null);
+                return false;
+            }
+            wakeUpIdleShard();
+            return true;
+        }
+        Shard shard = shards[(Long.hashCode(deviceId) & Integer.MAX_VALUE) % shards.length];
+        if (!offer(shard.queue, wrapped)) {
+            shed(orderedShedCounter, deviceId);
+            return false;
+        }
+        if (shard.idle) {
+            LockSupport.unpark(shard.thread);
+        }
+        return true;
+    }
+
+    private boolean offer(ArrayBlockingQueue<Task> queue, Task task) {
+        if (!running) {
+            return false;
+        }
+        if (queue.offer(task)) {
+            return true;
+        }
+        if (offerTimeoutNanos <= 0) {
+            return false;
+        }
+        try {
+            return queue.offer(task, offerTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void shed(Counter counter, Long deviceId) {
+        if (counter != null) {
+            counter.increment();
+        }
+        long now = System.currentTimeMillis();
+        long last = lastShedLogTime.get();
+        if (now - last >= SHED_LOG_INTERVAL_MS && lastShedLogTime.compareAndSet(last, now)) {
+            log.warn("[shed][设备事件队列已满，丢弃任务，deviceId: {}（{} 毫秒内只打印一次）]",
+                    deviceId, SHED_LOG_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * 唤醒一个空闲分片执行共享队列中的任务，从随机位置开始查找以分散负载
+     */
+    private void wakeUpIdleShard() {
+        int start = ThreadLocalRandom.current().nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(start + i) % shards.length];
+            if (shard.idle) {
+                LockSupport.unpark(shard.thread);
+                return;
+            }
+        }
+    }
+
+    private void run(Task task) {
+        if (lagTimer != null) {
+            lagTimer.record(System.nanoTime() - task.submitTime, TimeUnit.NANOSECONDS);
+        }
+        try {
+            task.runnable.run();
+        } catch (Throwable e) {
+            if (failureCounter != null) {
+                failureCounter.increment();
+            }
+            log.error("[run][设备事件任务执行异常]", e);
+        }
+    }
+
+    private static final class Task {
+
+        private final Runnable runnable;
+        private final long submitTime = System.nanoTime();
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+    }
+
+    /**
+     * 分片：有界队列 + 单个线程，优先执行本分片的任务，空闲时窃取共享队列中的任务
+     */
+    private final class Shard implements Runnable {
+
+        private final int index;
+        private final ArrayBlockingQueue<Task> queue;
+        private final Thread thread;
+
+        /**
+         * 是否即将休眠，提交方据此决定是否需要唤醒
+         */
+        private volatile boolean idle;
+
+        private Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "iot-device-event-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task = queue.poll();
+                if (task == null) {
+                    task = unorderedQueue.poll();
+                    if (task != null && stealCounter != null) {
+                        stealCounter.increment();
+                    }
+                }
+                if (task != null) {
+                    IotDeviceShardedExecutor.this.run(task);
+                    continue;
+                }
+                if (!running) {
+                    return;
+                }
+                // 先声明空闲再复查队列，避免提交方入队后错过唤醒
+                idle = true;
+                if (queue.isEmpty() && unorderedQueue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+
+    }
+
+}
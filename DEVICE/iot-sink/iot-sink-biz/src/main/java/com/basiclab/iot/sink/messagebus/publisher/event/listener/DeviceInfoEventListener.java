@@ -3,7 +3,6 @@ package com.basiclab.iot.sink.messagebus.publisher.event.listener;
 import com.basiclab.iot.sink.messagebus.publisher.event.DeviceInfoEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 /**
@@ -18,7 +17,6 @@ import org.springframework.stereotype.Component;
 @Component
 public class DeviceInfoEventListener {
 
-    @Async("iotDeviceEventExecutor")
     @EventListener
     public void handleDeviceInfoEvent(DeviceInfoEvent event) {
         try {
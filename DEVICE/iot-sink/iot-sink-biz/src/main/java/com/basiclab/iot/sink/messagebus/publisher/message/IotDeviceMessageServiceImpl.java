@@ -3,13 +3,15 @@ package com.basiclab.iot.sink.messagebus.publisher.message;
 import cn.hutool.core.lang.Assert;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.extra.spring.SpringUtil;
-import com.basiclab.iot.common.utils.json.JsonUtils;
 import com.basiclab.iot.sink.biz.dto.IotDeviceRespDTO;
 import com.basiclab.iot.sink.codec.IotDeviceMessageCodec;
+import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+import com.basiclab.iot.sink.javascript.IotDeviceMessageScriptView;
 import com.basiclab.iot.sink.javascript.JsScriptManager;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import com.basiclab.iot.sink.mq.producer.IotDeviceMessageProducer;
 import com.basiclab.iot.sink.service.device.DeviceService;
+import com.basiclab.iot.sink.util.IotTopicTrie;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
@@ -60,6 +62,16 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
      */
     private final List<IotDeviceMessageCodec> codecList = new ArrayList<>();
 
+    /**
+     * 使用默认 supports() 的编解码器的 Topic 模式前缀树，value 为编解码器在 {@link #codecList} 中的下标
+     */
+    private final IotTopicTrie<Integer> codecTrie = new IotTopicTrie<>();
+
+    /**
+     * 重写了 supports() 的编解码器在 {@link #codecList} 中的下标，按顺序排列
+     */
+    private final List<Integer> customSupportsCodecIndexes = new ArrayList<>();
+
     @PostConstruct
     public void init() {
         // 初始化时，从 Spring 容器中获取所有 IotDeviceMessageCodec 的实现类
@@ -74,6 +86,38 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
                 log.warn("[init][编解码器未提供 Topic 模式，跳过注册: {}]", codec.getClass().getName());
             }
         }
+        buildCodecIndex();
+    }
+
+    /**
+     * 构建编解码器索引
+     * <p>
+     * 使用默认 supports()（模板正则匹配）的编解码器注册到前缀树，重写了 supports() 的编解码器仍逐个调用，
+     * 两者按 {@link #codecList} 中的顺序合并，保持原有“先注册先命中”的匹配顺序
+     */
+    private void buildCodecIndex() {
+        for (int i = 0; i < codecList.size(); i++) {
+            IotDeviceMessageCodec codec = codecList.get(i);
+            if (overridesSupports(codec)) {
+                customSupportsCodecIndexes.add(i);
+                continue;
+            }
+            Integer existing = codecTrie.register(codec.topic(), i);
+            if (existing != null) {
+                log.warn("[buildCodecIndex][编解码器 Topic 模式重复: {}，按注册顺序使用 {}，忽略 {}]", codec.topic(),
+                        codecList.get(existing).getClass().getName(), codec.getClass().getName());
+            }
+        }
+        log.info("[buildCodecIndex][编解码器索引构建完成，前缀树匹配: {} 个，自定义匹配: {} 个]",
+                codecList.size() - customSupportsCodecIndexes.size(), customSupportsCodecIndexes.size());
+    }
+
+    private static boolean overridesSupports(IotDeviceMessageCodec codec) {
+        try {
+            return codec.getClass().getMethod("supports", String.class).getDeclaringClass() != IotDeviceMessageCodec.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 
     @Override
@@ -91,19 +135,14 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         
         // 2. 数据下行前置处理：使用 JS 脚本将平台标准化格式转换为设备原始数据
         // 从 topic 中解析 productIdentification
-        String[] topicParts = topic.split("/");
-        String productId = null;
-        if (topicParts.length >= 3) {
-            productId = topicParts[2]; // 通常格式为 /iot/{productIdentification}/{deviceIdentification}/...
-        }
+        IotTopicTrie.Match<IotDeviceTopicEnum> topicMatch = IotDeviceTopicEnum.resolveTopic(topic);
+        String productId = resolveProductIdentification(topic, topicMatch);
         
-        // 将消息对象转换为 Map（平台标准化格式）
-        Map<String, Object> messageMap = JsonUtils.parseObject(JsonUtils.toJsonString(message), Map.class);
-        
-        // 调用 JS 脚本进行前置处理
+        // 调用 JS 脚本进行前置处理：仅在产品配置了脚本时，才将消息以 Map 视图（平台标准化格式）暴露给脚本
         byte[] scriptResult = null;
-        if (productId != null) {
-            scriptResult = jsScriptManager.invokeProtocolToRawData(productId, topic, messageMap);
+        if (productId != null && jsScriptManager.hasScript(productId)) {
+            scriptResult = jsScriptManager.invokeProtocolToRawData(productId, topic,
+                    new IotDeviceMessageScriptView(message));
         }
         
         // 如果脚本返回了数据，使用脚本处理后的数据；否则使用编解码器编码
@@ -114,7 +153,7 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         }
         
         // 3. 如果脚本没有返回数据，使用编解码器编码
-        IotDeviceMessageCodec codec = getCodecByTopic(topic);
+        IotDeviceMessageCodec codec = getCodecByTopic(topic, topicMatch != null ? topicMatch.getValue() : null);
         return codec.encode(message);
     }
 
@@ -143,12 +182,10 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         Assert.notBlank(topic, "Topic 不能为空");
         
         // 1. 数据上行前置处理：使用 JS 脚本将设备原始数据转换为平台标准化格式
-        // 从 topic 中解析 productIdentification
-        String[] topicParts = topic.split("/");
-        String productId = null;
-        if (topicParts.length >= 3) {
-            productId = topicParts[2]; // 通常格式为 /iot/{productIdentification}/{deviceIdentification}/...
-        }
+        // 从 topic 中解析 productIdentification（同时完成 Topic 枚举匹配，后续复用）
+        IotTopicTrie.Match<IotDeviceTopicEnum> topicMatch = IotDeviceTopicEnum.resolveTopic(topic);
+        IotDeviceTopicEnum topicEnum = topicMatch != null ? topicMatch.getValue() : null;
+        String productId = resolveProductIdentification(topic, topicMatch);
         
         // 调用 JS 脚本进行前置处理
         byte[] scriptResult = bytes;
@@ -162,7 +199,7 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         }
         
         // 2. 获取编解码器（通过 topic 匹配）
-        IotDeviceMessageCodec codec = getCodecByTopic(topic);
+        IotDeviceMessageCodec codec = getCodecByTopic(topic, topicEnum);
         
         // 3. 解码消息
         IotDeviceMessage message = codec.decode(scriptResult);
@@ -171,8 +208,6 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         if (message != null) {
             message.setTopic(topic);
             // 根据 topic 枚举判断是否需要回复
-            com.basiclab.iot.sink.enums.IotDeviceTopicEnum topicEnum = 
-                    com.basiclab.iot.sink.enums.IotDeviceTopicEnum.matchTopic(topic);
             if (topicEnum != null) {
                 message.setNeedReply(topicEnum.isNeedReply());
             }
@@ -204,31 +239,55 @@ public class IotDeviceMessageServiceImpl implements IotDeviceMessageService {
         deviceMessageProducer.sendDeviceMessage(message);
     }
 
+    /**
+     * 解析 Topic 中的产品唯一标识
+     * <p>
+     * 标准 Topic 直接取前缀树解析出的 ${productIdentification}；其他 Topic 按 /{prefix}/{productIdentification}/... 取第 3 段
+     *
+     * @param topic      实际的 Topic
+     * @param topicMatch Topic 枚举匹配结果
+     * @return 产品唯一标识
+     */
+    private String resolveProductIdentification(String topic, IotTopicTrie.Match<IotDeviceTopicEnum> topicMatch) {
+        if (topicMatch != null && topicMatch.getProductIdentification() != null) {
+            return topicMatch.getProductIdentification();
+        }
+        String[] topicParts = topic.split("/");
+        return topicParts.length >= 3 ? topicParts[2] : null;
+    }
+
     /**
      * 根据 Topic 获取编解码器
+     * <p>
+     * 匹配顺序与原有逻辑一致：先按注册顺序取第一个 supports() 的编解码器，再按 Topic 枚举的模板查找
      *
-     * @param topic 实际的 Topic
+     * @param topic     实际的 Topic
+     * @param topicEnum Topic 枚举（已匹配时传入，未匹配为 null）
      * @return 编解码器实例
      */
-    private IotDeviceMessageCodec getCodecByTopic(String topic) {
-        // 1. 优先通过 supports() 方法匹配
-        for (IotDeviceMessageCodec codec : codecList) {
-            if (codec.supports(topic)) {
-                return codec;
+    private IotDeviceMessageCodec getCodecByTopic(String topic, IotDeviceTopicEnum topicEnum) {
+        // 1. 按注册顺序取第一个 supports() 的编解码器：前缀树命中的下标与排在它之前的自定义匹配比较
+        Integer trieIndex = codecTrie.match(topic);
+        for (Integer index : customSupportsCodecIndexes) {
+            if (trieIndex != null && index > trieIndex) {
+                break;
+            }
+            if (codecList.get(index).supports(topic)) {
+                return codecList.get(index);
             }
         }
-        
+        if (trieIndex != null) {
+            return codecList.get(trieIndex);
+        }
+
         // 2. 如果未匹配到，尝试通过 topic 枚举匹配
-        com.basiclab.iot.sink.enums.IotDeviceTopicEnum topicEnum = 
-                com.basiclab.iot.sink.enums.IotDeviceTopicEnum.matchTopic(topic);
         if (topicEnum != null) {
-            String topicPattern = topicEnum.getTopicTemplate();
-            IotDeviceMessageCodec codec = codecMap.get(topicPattern);
+            IotDeviceMessageCodec codec = codecMap.get(topicEnum.getTopicTemplate());
             if (codec != null) {
                 return codec;
             }
         }
-        
+
         throw new IllegalArgumentException("不支持的 Topic: " + topic);
     }
 
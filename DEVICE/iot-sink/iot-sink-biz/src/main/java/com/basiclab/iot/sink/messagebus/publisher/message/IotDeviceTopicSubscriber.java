@@ -3,6 +3,7 @@ package com.basiclab.iot.sink.messagebus.publisher.message;
 import cn.hutool.core.util.StrUtil;
 import com.basiclab.iot.sink.config.IotGatewayProperties;
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+import com.basiclab.iot.sink.messagebus.executor.IotDeviceShardedExecutor;
 import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
 import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
@@ -38,6 +39,9 @@ public class IotDeviceTopicSubscriber implements IotMessageSubscriber<IotDeviceM
     @Resource
     private IotGatewayProperties gatewayProperties;
 
+    @Resource
+    private IotDeviceShardedExecutor deviceExecutor;
+
     @Override
     public void afterSingletonsInstantiated() {
         // 在所有单例 bean 初始化完成后注册订阅器，避免循环依赖
@@ -58,6 +62,12 @@ public class IotDeviceTopicSubscriber implements IotMessageSubscriber<IotDeviceM
         return "iot-device-topic-subscriber";
     }
 
+    @Override
+    public Object getOrderingKey(IotDeviceMessage message) {
+        // 同一设备的消息按顺序处理，不同设备之间并行
+        return message.getDeviceId();
+    }
+
     @Override
     public void onMessage(IotDeviceMessage message) {
         try {
@@ -95,8 +105,9 @@ public class IotDeviceTopicSubscriber implements IotMessageSubscriber<IotDeviceM
                 }
             }
 
-            // 4. 发布事件，由对应的 EventListener 异步处理
-            publishEvent(message, topicEnum);
+            // 4. 按设备分片异步发布事件，同一设备的事件按顺序由对应的 EventListener 处理
+            // 队列满被丢弃时，执行器已计数并限频告警
+            deviceExecutor.execute(message.getDeviceId(), () -> publishEvent(message, topicEnum));
 
         } catch (Exception e) {
             log.error("[onMessage][处理设备消息失败，messageId: {}, topic: {}]",
@@ -106,7 +117,7 @@ public class IotDeviceTopicSubscriber implements IotMessageSubscriber<IotDeviceM
     }
 
     /**
-     * 发布事件，由对应的 EventListener 异步处理
+     * 发布事件，在设备分片线程上由对应的 EventListener 同步处理
      *
      * @param message   消息
      * @param topicEnum Topic 枚举
@@ -0,0 +1,72 @@
+package com.basiclab.iot.sink.messagebus.subscriber;
+
+import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
+import com.basiclab.iot.sink.messagebus.core.IotMessageSubscriber;
+import com.basiclab.iot.sink.mq.message.IotDeviceChangeMessage;
+import com.basiclab.iot.sink.service.device.DeviceService;
+import com.basiclab.iot.sink.util.IotDeviceMessageUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * IotDeviceChangeSubscriber
+ * <p>
+ * 订阅 iot-device 发布的设备变更通知，失效本地的设备缓存
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+@ConditionalOnBean(IotMessageBus.class)
+public class IotDeviceChangeSubscriber implements IotMessageSubscriber<IotDeviceChangeMessage> {
+
+    @Resource
+    private IotMessageBus messageBus;
+
+    @Resource
+    private DeviceService deviceService;
+
+    @Value("${server.port:8080}")
+    private Integer serverPort;
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.register(this);
+        log.info("[subscribe][设备变更通知订阅成功，主题：{}，分组：{}]", getTopic(), getGroup());
+    }
+
+    @Override
+    public String getTopic() {
+        return IotDeviceChangeMessage.MESSAGE_BUS_DEVICE_CHANGE_TOPIC;
+    }
+
+    @Override
+    public String getGroup() {
+        // 每个网关实例使用独立的 Group，确保所有实例都能收到通知并失效各自的本地缓存
+        return "iot-gateway-device-change-" + IotDeviceMessageUtils.generateServerId(serverPort);
+    }
+
+    @Override
+    public void onMessage(IotDeviceChangeMessage message) {
+        if (message == null || message.getDeviceIds() == null || message.getDeviceIds().isEmpty()) {
+            log.warn("[onMessage][设备变更通知为空，跳过处理]");
+            return;
+        }
+        try {
+            deviceService.invalidateDevices(message.getDeviceIds());
+            log.debug("[onMessage][设备变更，失效设备缓存，action: {}, deviceIds: {}]",
+                    message.getAction(), message.getDeviceIds());
+        } catch (Exception e) {
+            log.error("[onMessage][失效设备缓存失败，action: {}, deviceIds: {}]",
+                    message.getAction(), message.getDeviceIds(), e);
+        }
+    }
+
+}
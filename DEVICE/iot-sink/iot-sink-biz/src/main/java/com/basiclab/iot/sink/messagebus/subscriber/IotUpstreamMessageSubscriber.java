@@ -51,6 +51,12 @@ public class IotUpstreamMessageSubscriber implements IotMessageSubscriber<IotDev
         return "iot-gateway-upstream-subscriber";
     }
 
+    @Override
+    public Object getOrderingKey(IotDeviceMessage message) {
+        // 同一设备的消息按顺序处理，不同设备之间并行
+        return message.getDeviceId();
+    }
+
     @Override
     public void onMessage(IotDeviceMessage message) {
         log.debug("[onMessage][接收到上行消息, messageId: {}, method: {}, deviceId: {}, serverId: {}]",
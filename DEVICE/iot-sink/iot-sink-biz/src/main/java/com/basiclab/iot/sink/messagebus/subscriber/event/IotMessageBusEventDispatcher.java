@@ -0,0 +1,192 @@
+package com.basiclab.iot.sink.messagebus.subscriber.event;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+import com.basiclab.iot.sink.messagebus.executor.IotDeviceShardedExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IotMessageBusEventDispatcher
+ * <p>
+ * 按 {@link IotDeviceTopicEnum} 索引的设备消息事件分发器，替代广播式的 Spring 事件：
+ * 启动时把所有 {@link IotMessageBusEventListener} 按 Topic 注册，每条消息只提交一个任务，
+ * 且只调用该 Topic 的监听器。
+ * <p>
+ * 事件在 {@link IotDeviceShardedExecutor} 中按设备编号分片执行，同一设备的事件按接收顺序处理。
+ * 每个 Topic 限制最大待处理事件数，超过时丢弃（load shedding），热点 Topic（如属性上报）堆积时不会占满分片队列。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class IotMessageBusEventDispatcher {
+
+    private static final String METRIC_PREFIX = "iot.sink.event.dispatch";
+
+    @Autowired(required = false)
+    private List<IotMessageBusEventListener> listeners = Collections.emptyList();
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    @Resource
+    private IotDeviceShardedExecutor deviceExecutor;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Map<IotDeviceTopicEnum, Route> routes = new EnumMap<>(IotDeviceTopicEnum.class);
+
+    @PostConstruct
+    public void init() {
+        IotGatewayProperties.EventDispatchProperties properties = gatewayProperties.getEventDispatch() != null
+                ? gatewayProperties.getEventDispatch() : new IotGatewayProperties.EventDispatchProperties();
+        Map<IotDeviceTopicEnum, List<IotMessageBusEventListener>> listenersByTopic = new EnumMap<>(IotDeviceTopicEnum.class);
+        for (IotMessageBusEventListener listener : listeners) {
+            listenersByTopic.computeIfAbsent(listener.getTopicEnum(), k -> new ArrayList<>()).add(listener);
+        }
+        listenersByTopic.forEach((topicEnum, topicListeners) -> routes.put(topicEnum,
+                new Route(topicEnum, topicListeners.toArray(new IotMessageBusEventListener[0]), properties)));
+        log.info("[init][设备消息事件分发器初始化完成，Topic 数: {}, 监听器数: {}]", routes.size(), listeners.size());
+    }
+
+    /**
+     * 将事件提交给对应 Topic 的监听器异步处理
+     *
+     * @param event 事件
+     * @return 是否有监听器接收
+     */
+    public boolean dispatch(IotMessageBusEvent event) {
+        Route route = routes.get(event.getTopicEnum());
+        if (route == null) {
+            log.debug("[dispatch][Topic({}) 没有监听器，忽略事件，messageId: {}]",
+                    event.getTopicEnum(), event.getMessage().getId());
+            return false;
+        }
+        if (route.pending.incrementAndGet() > route.queueCapacity) {
+            route.pending.decrementAndGet();
+            route.shed(event);
+            return false;
+        }
+        long submitTime = System.nanoTime();
+        boolean submitted = deviceExecutor.execute(event.getMessage().getDeviceId(), () -> {
+            try {
+                route.handle(event, submitTime);
+            } finally {
+                route.pending.decrementAndGet();
+            }
+        });
+        if (!submitted) {
+            route.pending.decrementAndGet();
+            route.shed(event);
+        }
+        return submitted;
+    }
+
+    /**
+     * 按 Topic 查找覆盖配置，key 忽略大小写和分隔符，PROPERTY_UPSTREAM_REPORT 与 property-upstream-report 等价
+     */
+    private static IotGatewayProperties.TopicDispatchProperties findTopicProperties(
+            IotGatewayProperties.EventDispatchProperties properties, IotDeviceTopicEnum topicEnum) {
+        String name = normalizeTopicKey(topicEnum.name());
+        for (Map.Entry<String, IotGatewayProperties.TopicDispatchProperties> entry : properties.getTopics().entrySet()) {
+            if (normalizeTopicKey(entry.getKey()).equals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String normalizeTopicKey(String key) {
+        return key.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
+    }
+
+    /**
+     * 单个 Topic 的监听器和待处理事件计数
+     */
+    private final class Route {
+
+        private final IotDeviceTopicEnum topicEnum;
+        private final IotMessageBusEventListener[] listeners;
+        private final int queueCapacity;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Timer waitTimer;
+        private Timer latencyTimer;
+        private Counter shedCounter;
+
+        private Route(IotDeviceTopicEnum topicEnum, IotMessageBusEventListener[] listeners,
+                      IotGatewayProperties.EventDispatchProperties properties) {
+            this.topicEnum = topicEnum;
+            this.listeners = listeners;
+            IotGatewayProperties.TopicDispatchProperties topicProperties = findTopicProperties(properties, topicEnum);
+            this.queueCapacity = Math.max(topicProperties != null && topicProperties.getQueueCapacity() != null
+                    ? topicProperties.getQueueCapacity() : properties.getQueueCapacity(), 1);
+            if (meterRegistry != null) {
+                waitTimer = Timer.builder(METRIC_PREFIX + ".wait")
+                        .description("设备消息事件在队列中的等待耗时")
+                        .tag("topic", topicEnum.name())
+                        .register(meterRegistry);
+                latencyTimer = Timer.builder(METRIC_PREFIX + ".latency")
+                        .description("设备消息事件的处理耗时")
+                        .tag("topic", topicEnum.name())
+                        .register(meterRegistry);
+                shedCounter = Counter.builder(METRIC_PREFIX + ".shed")
+                        .description("待处理事件过多被丢弃的事件数")
+                        .tag("topic", topicEnum.name())
+                        .register(meterRegistry);
+                Gauge.builder(METRIC_PREFIX + ".queue.size", pending, AtomicInteger::get)
+                        .description("设备消息事件的待处理数")
+                        .tag("topic", topicEnum.name())
+                        .register(meterRegistry);
+            }
+        }
+
+        private void shed(IotMessageBusEvent event) {
+            if (shedCounter != null) {
+                shedCounter.increment();
+            }
+            log.debug("[shed][Topic({}) 待处理事件过多，丢弃事件，messageId: {}, deviceId: {}]",
+                    topicEnum, event.getMessage().getId(), event.getMessage().getDeviceId());
+        }
+
+        private void handle(IotMessageBusEvent event, long submitTime) {
+            long start = System.nanoTime();
+            try {
+                for (IotMessageBusEventListener listener : listeners) {
+                    try {
+                        listener.onEvent(event);
+                    } catch (Exception e) {
+                        log.error("[handle][Topic({}) 监听器({}) 处理事件异常，messageId: {}]", topicEnum,
+                                listener.getClass().getSimpleName(), event.getMessage().getId(), e);
+                    }
+                }
+            } finally {
+                if (latencyTimer != null) {
+                    waitTimer.record(start - submitTime, TimeUnit.NANOSECONDS);
+                    latencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.basiclab.iot.sink.messagebus.subscriber.event;
+
+import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
+
+/**
+ * IotMessageBusEventListener
+ * <p>
+ * 设备消息事件监听器，由 {@link IotMessageBusEventDispatcher} 按 {@link #getTopicEnum()} 注册，
+ * 只接收对应 Topic 的事件
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public interface IotMessageBusEventListener {
+
+    /**
+     * @return 监听的 Topic
+     */
+    IotDeviceTopicEnum getTopicEnum();
+
+    /**
+     * 处理事件，在该 Topic 的处理线程池中执行
+     *
+     * @param event 事件
+     */
+    void onEvent(IotMessageBusEvent event);
+
+}
@@ -3,9 +3,9 @@ package com.basiclab.iot.sink.messagebus.subscriber.handler.impl;
 import com.basiclab.iot.sink.config.IotGatewayProperties;
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
 import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEvent;
+import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEventDispatcher;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationContext;
 
 import javax.annotation.Resource;
 
@@ -21,7 +21,7 @@ import javax.annotation.Resource;
 public abstract class AbstractTopicHandler {
 
     @Resource
-    private ApplicationContext applicationContext;
+    private IotMessageBusEventDispatcher eventDispatcher;
 
     @Resource
     private IotGatewayProperties gatewayProperties;
@@ -57,11 +57,9 @@ public abstract class AbstractTopicHandler {
                 }
             }
 
-            // 4. 发布事件，异步处理
+            // 4. 分发给该 Topic 的监听器，异步处理
             IotMessageBusEvent event = new IotMessageBusEvent(this, message, topicEnum);
-            applicationContext.publishEvent(event);
-
-            return true;
+            return eventDispatcher.dispatch(event);
         } catch (Exception e) {
             log.error("[handleAndPublishEvent][处理消息失败，messageId: {}, topic: {}, topicEnum: {}]",
                     message != null ? message.getId() : null,
@@ -2,9 +2,8 @@ package com.basiclab.iot.sink.messagebus.subscriber.listener;
 
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
 import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEvent;
+import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEventListener;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 /**
@@ -17,23 +16,23 @@ import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
-public class BroadcastDownstreamListener {
+public class BroadcastDownstreamListener implements IotMessageBusEventListener {
 
-    @Async("iotMessageBusSubscriberExecutor")
-    @EventListener
-    public void handleBroadcastDownstreamEvent(IotMessageBusEvent event) {
-        try {
-            if (event.getTopicEnum() != IotDeviceTopicEnum.BROADCAST_DOWNSTREAM) {
-                return;
-            }
+    @Override
+    public IotDeviceTopicEnum getTopicEnum() {
+        return IotDeviceTopicEnum.BROADCAST_DOWNSTREAM;
+    }
 
-            log.info("[handleBroadcastDownstreamEvent][处理广播消息下行消息，messageId: {}, topic: {}, deviceId: {}]",
+    @Override
+    public void onEvent(IotMessageBusEvent event) {
+        try {
+            log.info("[onEvent][处理广播消息下行消息，messageId: {}, topic: {}, deviceId: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), event.getMessage().getDeviceId());
 
             // TODO: 实现广播消息下行消息的业务逻辑
 
         } catch (Exception e) {
-            log.error("[handleBroadcastDownstreamEvent][处理广播消息下行消息失败，messageId: {}, topic: {}]",
+            log.error("[onEvent][处理广播消息下行消息失败，messageId: {}, topic: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), e);
         }
     }
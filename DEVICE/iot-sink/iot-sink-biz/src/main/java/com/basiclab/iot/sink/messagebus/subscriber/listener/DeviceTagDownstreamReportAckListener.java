@@ -2,9 +2,8 @@ package com.basiclab.iot.sink.messagebus.subscriber.listener;
 
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
 import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEvent;
+import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEventListener;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 /**
@@ -17,23 +16,23 @@ import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
-public class DeviceTagDownstreamReportAckListener {
+public class DeviceTagDownstreamReportAckListener implements IotMessageBusEventListener {
 
-    @Async("iotMessageBusSubscriberExecutor")
-    @EventListener
-    public void handleDeviceTagDownstreamReportAckEvent(IotMessageBusEvent event) {
-        try {
-            if (event.getTopicEnum() != IotDeviceTopicEnum.DEVICE_TAG_DOWNSTREAM_REPORT_ACK) {
-                return;
-            }
+    @Override
+    public IotDeviceTopicEnum getTopicEnum() {
+        return IotDeviceTopicEnum.DEVICE_TAG_DOWNSTREAM_REPORT_ACK;
+    }
 
-            log.info("[handleDeviceTagDownstreamReportAckEvent][处理设备标签上报确认下行消息，messageId: {}, topic: {}, deviceId: {}]",
+    @Override
+    public void onEvent(IotMessageBusEvent event) {
+        try {
+            log.info("[onEvent][处理设备标签上报确认下行消息，messageId: {}, topic: {}, deviceId: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), event.getMessage().getDeviceId());
 
             // TODO: 实现设备标签上报确认下行消息的业务逻辑
 
         } catch (Exception e) {
-            log.error("[handleDeviceTagDownstreamReportAckEvent][处理设备标签上报确认下行消息失败，messageId: {}, topic: {}]",
+            log.error("[onEvent][处理设备标签上报确认下行消息失败，messageId: {}, topic: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), e);
         }
     }
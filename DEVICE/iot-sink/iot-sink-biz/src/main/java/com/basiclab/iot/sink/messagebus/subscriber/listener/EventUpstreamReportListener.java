@@ -2,10 +2,9 @@ package com.basiclab.iot.sink.messagebus.subscriber.listener;
 
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
 import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEvent;
+import com.basiclab.iot.sink.messagebus.subscriber.event.IotMessageBusEventListener;
 import com.basiclab.iot.sink.service.data.DeviceDataStorageService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
@@ -20,27 +19,27 @@ import javax.annotation.Resource;
 
 @Slf4j
 @Component
-public class EventUpstreamReportListener {
+public class EventUpstreamReportListener implements IotMessageBusEventListener {
 
     @Resource
     private DeviceDataStorageService deviceDataStorageService;
 
-    @Async("iotMessageBusSubscriberExecutor")
-    @EventListener
-    public void handleEventUpstreamReportEvent(IotMessageBusEvent event) {
-        try {
-            if (event.getTopicEnum() != IotDeviceTopicEnum.EVENT_UPSTREAM_REPORT) {
-                return;
-            }
+    @Override
+    public IotDeviceTopicEnum getTopicEnum() {
+        return IotDeviceTopicEnum.EVENT_UPSTREAM_REPORT;
+    }
 
-            log.info("[handleEventUpstreamReportEvent][处理事件上报上行消息，messageId: {}, topic: {}, deviceId: {}]",
+    @Override
+    public void onEvent(IotMessageBusEvent event) {
+        try {
+            log.info("[onEvent][处理事件上报上行消息，messageId: {}, topic: {}, deviceId: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), event.getMessage().getDeviceId());
 
             // 存储数据到TDEngine和Redis
             deviceDataStorageService.storeDeviceData(event.getMessage(), event.getTopicEnum());
 
         } catch (Exception e) {
-            log.error("[handleEventUpstreamReportEvent][处理事件上报上行消息失败，messageId: {}, topic: {}]",
+            log.error("[onEvent][处理事件上报上行消息失败，messageId: {}, topic: {}]",
                     event.getMessage().getId(), event.getMessage().getTopic(), e);
         }
     }
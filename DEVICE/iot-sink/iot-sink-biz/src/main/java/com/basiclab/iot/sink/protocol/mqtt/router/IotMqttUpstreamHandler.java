@@ -325,7 +325,7 @@ public class IotMqttUpstreamHandler {
                 // 删除设备与 serverId 的映射
                 DeviceServerIdService deviceServerIdService = SpringUtil.getBean(DeviceServerIdService.class);
                 if (deviceServerIdService != null) {
-                    deviceServerIdService.removeDeviceServerId(connectionInfo.getDeviceId());
+                    deviceServerIdService.removeDeviceServerId(connectionInfo.getDeviceId(), serverId);
                 }
             }
 
@@ -42,6 +42,16 @@ public class IotTcpUpstreamProtocol {
 
     private NetServer tcpServer;
 
+    /**
+     * 获取单帧最大长度
+     *
+     * @return 单帧最大长度（字节）
+     */
+    public int getMaxFrameSize() {
+        Integer maxFrameSize = tcpProperties.getMaxFrameSize();
+        return maxFrameSize != null && maxFrameSize > 0 ? maxFrameSize : 65536;
+    }
+
     public IotTcpUpstreamProtocol(IotGatewayProperties.TcpProperties tcpProperties,
                                   IotDeviceService deviceService,
                                   IotDeviceMessageService messageService,
@@ -11,6 +11,7 @@ import com.basiclab.iot.sink.biz.dto.IotDeviceRespDTO;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
 import com.basiclab.iot.sink.util.IotDeviceAuthUtils;
 import com.basiclab.iot.sink.codec.tcp.IotTcpBinaryDeviceMessageCodec;
+import com.basiclab.iot.sink.codec.tcp.IotTcpFrameDecoder;
 import com.basiclab.iot.sink.codec.tcp.IotTcpJsonDeviceMessageCodec;
 import com.basiclab.iot.sink.protocol.tcp.IotTcpUpstreamProtocol;
 import com.basiclab.iot.sink.protocol.tcp.manager.IotTcpConnectionManager;
@@ -48,6 +49,8 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
 
     private final String serverId;
 
+    private final int maxFrameSize;
+
     public IotTcpUpstreamHandler(IotTcpUpstreamProtocol protocol,
                                  IotDeviceMessageService deviceMessageService,
                                  IotDeviceService deviceService,
@@ -57,6 +60,7 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
         this.connectionManager = connectionManager;
         this.deviceAuthService = SpringUtil.getBean(DeviceAuthService.class);
         this.serverId = protocol.getServerId();
+        this.maxFrameSize = protocol.getMaxFrameSize();
     }
 
     @Override
@@ -64,6 +68,15 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
         String clientId = IdUtil.simpleUUID();
         log.debug("[handle][设备连接，客户端 ID: {}，地址: {}]", clientId, socket.remoteAddress());
 
+        // 分帧器：TCP 数据块可能包含多帧或半帧，先切分为完整帧再交给编解码器
+        IotTcpFrameDecoder frameDecoder = new IotTcpFrameDecoder(maxFrameSize, frame -> {
+            try {
+                processMessage(clientId, frame, socket);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        });
+
         // 设置异常和关闭处理器
         socket.exceptionHandler(ex -> {
             log.warn("[handle][连接异常，客户端 ID: {}，地址: {}]", clientId, socket.remoteAddress());
@@ -71,13 +84,14 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
         });
         socket.closeHandler(v -> {
             log.debug("[handle][连接关闭，客户端 ID: {}，地址: {}]", clientId, socket.remoteAddress());
+            frameDecoder.reset();
             cleanupConnection(socket);
         });
 
         // 设置消息处理器
         socket.handler(buffer -> {
             try {
-                processMessage(clientId, buffer, socket);
+                frameDecoder.handle(buffer);
             } catch (Exception e) {
                 log.error("[handle][消息解码失败，断开连接，客户端 ID: {}，地址: {}，错误: {}]",
                         clientId, socket.remoteAddress(), e.getMessage());
@@ -91,13 +105,13 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
      * 处理消息
      *
      * @param clientId 客户端 ID
-     * @param buffer   消息
+     * @param bytes    完整的一帧消息
      * @param socket   网络连接
      * @throws Exception 消息解码失败时抛出异常
      */
-    private void processMessage(String clientId, Buffer buffer, NetSocket socket) throws Exception {
+    private void processMessage(String clientId, byte[] bytes, NetSocket socket) throws Exception {
         // 1. 基础检查
-        if (buffer == null || buffer.length() == 0) {
+        if (bytes == null || bytes.length == 0) {
             return;
         }
 
@@ -113,7 +127,6 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
         // 3. 解码消息
         IotDeviceMessage message;
         try {
-            byte[] bytes = buffer.getBytes();
             // 如果已认证，使用 topic 方式解码；否则使用默认方式
             if (productIdentification != null && deviceIdentification != null) {
                 // 构建 topic（TCP 协议使用 /tcp/{productIdentification}/{deviceIdentification}/... 格式）
@@ -324,7 +337,7 @@ public class IotTcpUpstreamHandler implements Handler<NetSocket> {
                 // 删除设备与 serverId 的映射
                 DeviceServerIdService deviceServerIdService = SpringUtil.getBean(DeviceServerIdService.class);
                 if (deviceServerIdService != null) {
-                    deviceServerIdService.removeDeviceServerId(connectionInfo.getDeviceId());
+                    deviceServerIdService.removeDeviceServerId(connectionInfo.getDeviceId(), serverId);
                 }
             }
 
@@ -3,7 +3,7 @@ package com.basiclab.iot.sink.service.data;
 import com.basiclab.iot.sink.enums.IotDeviceTopicEnum;
 import com.basiclab.iot.sink.enums.IotDeviceTopicMethodMapping;
 import com.basiclab.iot.sink.mq.message.IotDeviceMessage;
-import com.basiclab.iot.sink.service.tdengine.TdEngineService;
+import com.basiclab.iot.sink.service.tdengine.TdEngineBatchWriter;
 import com.basiclab.iot.tdengine.domain.Fields;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
 import cn.hutool.core.util.StrUtil;
@@ -36,7 +36,7 @@ public class DeviceDataStorageService {
     private static final String TD_DATABASE_NAME = "iot_device";
 
     @Resource
-    private TdEngineService tdEngineService;
+    private TdEngineBatchWriter tdEngineBatchWriter;
 
     @Resource
     private DeviceRedisStorageService deviceRedisStorageService;
@@ -145,10 +145,10 @@ public class DeviceDataStorageService {
             tableDTO.setSchemaFieldValues(schemaFieldValues);
             tableDTO.setTagsFieldValues(tagsFieldValues);
 
-            // 调用TDEngine服务插入数据
-            tdEngineService.insertTableData(tableDTO);
+            // 交给批量写入器，由后台线程合并为多表 insert 写入
+            tdEngineBatchWriter.write(tableDTO);
 
-            log.debug("[storeToTdEngine][TDEngine数据插入成功，tableName: {}]", tableName);
+            log.debug("[storeToTdEngine][TDEngine数据已提交写入，tableName: {}]", tableName);
         } catch (Exception e) {
             log.error("[storeToTdEngine][TDEngine数据插入失败，messageId: {}, topic: {}]", message.getId(), topicEnum.name(), e);
         }
@@ -0,0 +1,423 @@
+package com.basiclab.iot.sink.service.data;
+
+import cn.hutool.json.JSONUtil;
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import com.basiclab.iot.sink.util.IotSinkRedisKeyConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备状态 Redis 合并写入器
+ * <p>
+ * 设备消息产生的状态更新（Hash 字段覆盖、extension 子键合并）按设备 Key 在内存中合并，
+ * 由后台线程每 flushIntervalMs 将所有待写入设备以 pipeline 方式批量执行合并脚本（lua/device_state_merge.lua）。
+ * 脚本在 Redis 服务端完成 HSET、extension 子键合并和 EXPIRE，保证多实例并发上报同一设备时不丢更新。
+ * <p>
+ * 待写入设备数超过 maxPendingDevices 时，由调用线程执行一轮批量写入，形成背压。
+ * 取出与写入在同一把锁内完成，同一设备较早的状态正在写入时，较新的状态只能在其写完后写入，不会被旧值覆盖
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class DeviceRedisStateWriter {
+
+    private static final String METRIC_PREFIX = "iot.sink.device.state";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private IotGatewayProperties.DeviceStateProperties properties;
+
+    private DefaultRedisScript<Long> mergeScript;
+    private byte[] mergeScriptSha;
+
+    /**
+     * 待写入的设备状态，key 为设备数据 Redis Key
+     */
+    private final ConcurrentMap<String, PendingState> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 批量写入锁：从 pending 取出和执行脚本在同一次持有内完成
+     */
+    private final Object flushLock = new Object();
+
+    private Thread flushThread;
+
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary flushDevicesSummary;
+    private Counter coalescedCounter;
+    private Counter flushFailureCounter;
+    private Counter callerRunsCounter;
+
+    @PostConstruct
+    public void init() {
+        properties = gatewayProperties.getDeviceState() != null
+                ? gatewayProperties.getDeviceState() : new IotGatewayProperties.DeviceStateProperties();
+        mergeScript = new DefaultRedisScript<>();
+        mergeScript.setLocation(new ClassPathResource("lua/device_state_merge.lua"));
+        mergeScript.setResultType(Long.class);
+        mergeScriptSha = mergeScript.getSha1().getBytes(StandardCharsets.UTF_8);
+        initMetrics();
+        if (!Boolean.TRUE.equals(properties.getBatchEnabled())) {
+            log.info("[init][设备状态合并写入未启用，每条消息直接写入]");
+            return;
+        }
+        running = true;
+        flushThread = new Thread(this::runFlushLoop, "iot-device-state-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+        log.info("[init][设备状态合并写入器启动完成，flushIntervalMs: {}, batchSize: {}, maxPendingDevices: {}]",
+                properties.getFlushIntervalMs(), properties.getBatchSize(), properties.getMaxPendingDevices());
+    }
+
+    private void initMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        flushTimer = Timer.builder(METRIC_PREFIX + ".flush.latency")
+                .description("设备状态批量写入 Redis 耗时")
+                .register(meterRegistry);
+        flushDevicesSummary = DistributionSummary.builder(METRIC_PREFIX + ".flush.devices")
+                .description("设备状态单次批量写入的设备数")
+                .register(meterRegistry);
+        coalescedCounter = Counter.builder(METRIC_PREFIX + ".coalesced")
+                .description("在合并窗口内被合并的设备状态更新次数")
+                .register(meterRegistry);
+        flushFailureCounter = Counter.builder(METRIC_PREFIX + ".flush.failures")
+                .description("设备状态批量写入失败次数")
+                .register(meterRegistry);
+        callerRunsCounter = Counter.builder(METRIC_PREFIX + ".caller.runs")
+                .description("待写入设备过多由调用线程直接写入的次数")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".pending", pending, Map::size)
+                .description("待写入 Redis 的设备数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 创建一次设备状态更新
+     *
+     * @param redisKey 设备数据 Redis Key
+     * @return 设备状态更新
+     */
+    public StateUpdate update(String redisKey) {
+        return new StateUpdate(redisKey);
+    }
+
+    /**
+     * 提交设备状态更新
+     * <p>
+     * 值在提交时即完成序列化，之后对原对象的修改不会影响写入内容
+     *
+     * @param update 设备状态更新
+     */
+    public void submit(StateUpdate update) {
+        PendingState state = new PendingState();
+        RedisSerializer<Object> valueSerializer = getHashValueSerializer();
+        update.fields.forEach((field, value) -> state.fields.put(field, valueSerializer.serialize(value)));
+        update.extension.forEach((name, value) -> state.extension.put(name, toJsonFragment(value)));
+
+        if (flushThread == null) {
+            // 未启用合并写入：没有后台批次，直接写入
+            writeNow(update.redisKey, state);
+            return;
+        }
+        boolean overflow = pending.size() >= properties.getMaxPendingDevices() && !pending.containsKey(update.redisKey);
+        pending.merge(update.redisKey, state, (existing, incoming) -> {
+            increment(coalescedCounter);
+            existing.fields.putAll(incoming.fields);
+            existing.extension.putAll(incoming.extension);
+            return existing;
+        });
+        // 写入器已停止（最后一次写入可能已执行），或待写入设备过多：由调用线程执行一轮写入，降低上游消费速度。
+        // 不能绕过 pending 直接写入该设备，否则可能先于正在写入的旧状态落库而被旧值覆盖
+        if (overflow) {
+            increment(callerRunsCounter);
+            flushPending();
+        } else if (!running) {
+            flushPending();
+        }
+    }
+
+    private void runFlushLoop() {
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(properties.getFlushIntervalMs());
+            } catch (InterruptedException e) {
+                // 停止时被中断，执行最后一次写入后退出
+                running = false;
+            }
+            try {
+                flushPending();
+            } catch (Exception e) {
+                log.error("[runFlushLoop][设备状态批量写入线程异常]", e);
+            }
+        }
+    }
+
+    /**
+     * 写入一轮：最多写入进入本方法时的待写入设备数，避免调用线程在持续写入下无法返回
+     */
+    private void flushPending() {
+        int remaining = pending.size();
+        if (remaining == 0) {
+            return;
+        }
+        int batchSize = properties.getBatchSize();
+        List<String> keys = new ArrayList<>(Math.min(remaining, batchSize));
+        List<PendingState> states = new ArrayList<>(Math.min(remaining, batchSize));
+        while (remaining > 0) {
+            synchronized (flushLock) {
+                Iterator<String> iterator = pending.keySet().iterator();
+                while (iterator.hasNext() && keys.size() < Math.min(remaining, batchSize)) {
+                    String redisKey = iterator.next();
+                    // remove 与 submit 中的 merge 互斥：要么本轮写入，要么进入下一轮
+                    PendingState state = pending.remove(redisKey);
+                    if (state != null) {
+                        keys.add(redisKey);
+                        states.add(state);
+                    }
+                }
+                if (keys.isEmpty()) {
+                    return;
+                }
+                flush(keys, states);
+            }
+            remaining -= keys.size();
+            keys.clear();
+            states.clear();
+        }
+    }
+
+    private void flush(List<String> keys, List<PendingState> states) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            executePipelined(keys, states);
+        } catch (Exception e) {
+            // 脚本缓存丢失（如 Redis 重启）或网络异常：重新加载脚本后重试一次，脚本是幂等的
+            try {
+                loadScript();
+                executePipelined(keys, states);
+            } catch (Exception ex) {
+                increment(flushFailureCounter);
+                log.error("[flush][设备状态批量写入失败，丢弃本批，设备数: {}]", keys.size(), ex);
+            }
+        } finally {
+            if (flushTimer != null) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                flushDevicesSummary.record(keys.size());
+            }
+        }
+    }
+
+    private void executePipelined(List<String> keys, List<PendingState> states) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                connection.scriptingCommands().evalSha(mergeScriptSha, ReturnType.INTEGER, 1,
+                        buildKeysAndArgs(keys.get(i), states.get(i)));
+            }
+            return null;
+        });
+    }
+
+    private void writeNow(String redisKey, PendingState state) {
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> evalMergeScript(connection, redisKey, state));
+        } catch (Exception e) {
+            log.error("[writeNow][设备状态写入失败，redisKey: {}]", redisKey, e);
+        }
+    }
+
+    private Object evalMergeScript(RedisConnection connection, String redisKey, PendingState state) {
+        byte[][] keysAndArgs = buildKeysAndArgs(redisKey, state);
+        try {
+            return connection.scriptingCommands().evalSha(mergeScriptSha, ReturnType.INTEGER, 1, keysAndArgs);
+        } catch (Exception e) {
+            // 脚本未缓存时直接发送脚本内容，同时会在 Redis 端缓存
+            return connection.scriptingCommands().eval(
+                    mergeScript.getScriptAsString().getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 1, keysAndArgs);
+        }
+    }
+
+    private void loadScript() {
+        redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(mergeScript.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 构建脚本参数：KEYS[1]、过期时间、字段数量、字段对、extension 子键对
+     */
+    private byte[][] buildKeysAndArgs(String redisKey, PendingState state) {
+        byte[][] keysAndArgs = new byte[3 + state.fields.size() * 2 + state.extension.size() * 2][];
+        int i = 0;
+        keysAndArgs[i++] = redisKey.getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[i++] = String.valueOf(TimeUnit.DAYS.toSeconds(IotSinkRedisKeyConstants.DEVICE_DATA_EXPIRE_DAYS))
+                .getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[i++] = String.valueOf(state.fields.size()).getBytes(StandardCharsets.UTF_8);
+        for (Map.Entry<String, byte[]> entry : state.fields.entrySet()) {
+            keysAndArgs[i++] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            keysAndArgs[i++] = entry.getValue() != null ? entry.getValue() : EMPTY;
+        }
+        for (Map.Entry<String, byte[]> entry : state.extension.entrySet()) {
+            keysAndArgs[i++] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            keysAndArgs[i++] = entry.getValue();
+        }
+        return keysAndArgs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> getHashValueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+    }
+
+    /**
+     * 将 extension 子键的值转换为 JSON 片段，与原先整体 JSONUtil.toJsonStr(extension) 的结果保持一致
+     *
+     * @param value 值
+     * @return JSON 片段；null 表示删除该子键，返回空数组
+     */
+    private static byte[] toJsonFragment(Object value) {
+        if (value == null) {
+            return EMPTY;
+        }
+        String fragment;
+        if (value instanceof CharSequence) {
+            fragment = JSONUtil.quote(value.toString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            fragment = value.toString();
+        } else {
+            fragment = JSONUtil.toJsonStr(value);
+        }
+        return fragment.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 停止写入线程，并将剩余的设备状态写入 Redis
+     */
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flushThread.interrupt();
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+        log.info("[destroy][设备状态合并写入器已停止]");
+    }
+
+    /**
+     * 一次设备状态更新，由 {@link DeviceRedisStorageService} 按消息类型填充
+     */
+    public static final class StateUpdate {
+
+        private final String redisKey;
+
+        /**
+         * 直接覆盖的 Hash 字段
+         */
+        private final Map<String, Object> fields = new LinkedHashMap<>();
+
+        /**
+         * 合并到 extension 字段中的子键
+         */
+        private final Map<String, Object> extension = new LinkedHashMap<>();
+
+        private StateUpdate(String redisKey) {
+            this.redisKey = redisKey;
+        }
+
+        /**
+         * 覆盖 Hash 字段
+         *
+         * @param field Hash 字段
+         * @param value 值
+         * @return this
+         */
+        public StateUpdate putField(String field, Object value) {
+            fields.put(field, value);
+            return this;
+        }
+
+        /**
+         * 合并 extension 子键
+         *
+         * @param key   子键
+         * @param value 值，null 表示删除该子键
+         * @return this
+         */
+        public StateUpdate mergeExtension(String key, Object value) {
+            extension.put(key, value);
+            return this;
+        }
+
+        public String getRedisKey() {
+            return redisKey;
+        }
+
+    }
+
+    /**
+     * 待写入的设备状态（已序列化），只在 ConcurrentHashMap 的 merge / remove 中修改
+     */
+    private static final class PendingState {
+
+        private final Map<String, byte[]> fields = new LinkedHashMap<>();
+
+        private final Map<String, byte[]> extension = new LinkedHashMap<>();
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.basiclab.iot.sink.service.device;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * DeviceBatchLoader
+ * <p>
+ * 合并并发的缓存未命中：第一个未命中的 key 开启一个合并窗口，窗口内其他线程未命中的 key 一起在窗口结束后
+ * 以一次（或按 batchSize 分成若干次）批量查询加载，避免设备集中上线时逐条查询数据库。
+ * 同一个 key 的并发加载已由 Guava LoadingCache 合并，这里合并的是不同 key。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+public class DeviceBatchLoader<K, V> {
+
+    /**
+     * 调用方等待加载结果的最长时间
+     */
+    private static final long LOAD_TIMEOUT_MS = 10000;
+
+    private final String name;
+    private final long windowMs;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    /**
+     * 批量查询函数，返回的 Map 中不存在的 key 视为数据不存在
+     */
+    private final Function<List<K>, Map<K, V>> batchFunction;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public DeviceBatchLoader(String name, long windowMs, int batchSize, ScheduledExecutorService scheduler,
+                             Function<List<K>, Map<K, V>> batchFunction) {
+        this.name = name;
+        this.windowMs = windowMs;
+        this.batchSize = Math.max(batchSize, 1);
+        this.scheduler = scheduler;
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * 加载单个 key，阻塞直到所在批次查询完成
+     *
+     * @param key key
+     * @return 查询结果，数据不存在时返回 null
+     */
+    public V load(K key) {
+        if (windowMs <= 0) {
+            return batchFunction.apply(Collections.singletonList(key)).get(key);
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            future = existing;
+        } else if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+        try {
+            return future.get(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("加载设备(" + key + ") 被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("加载设备(" + key + ") 超时", e);
+        }
+    }
+
+    private void flush() {
+        // 先重置标记再取 key：之后加入的 key 会开启下一个窗口，不会被遗漏
+        scheduled.set(false);
+        List<K> keys = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<K> batchKeys = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            List<K> loadKeys = new ArrayList<>(batchKeys.size());
+            List<CompletableFuture<V>> futures = new ArrayList<>(batchKeys.size());
+            for (K key : batchKeys) {
+                CompletableFuture<V> future = pending.remove(key);
+                if (future != null) {
+                    loadKeys.add(key);
+                    futures.add(future);
+                }
+            }
+            if (loadKeys.isEmpty()) {
+                continue;
+            }
+            try {
+                Map<K, V> result = batchFunction.apply(loadKeys);
+                for (int i = 0; i < loadKeys.size(); i++) {
+                    futures.get(i).complete(result.get(loadKeys.get(i)));
+                }
+                log.debug("[flush][{} 批量加载完成，数量: {}, 命中: {}]", name, loadKeys.size(), result.size());
+            } catch (Throwable e) {
+                log.error("[flush][{} 批量加载失败，数量: {}]", name, loadKeys.size(), e);
+                futures.forEach(future -> future.completeExceptionally(e));
+            }
+        }
+    }
+
+}
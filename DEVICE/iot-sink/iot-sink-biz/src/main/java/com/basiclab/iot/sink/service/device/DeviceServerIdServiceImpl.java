@@ -1,10 +1,13 @@
 package com.basiclab.iot.sink.service.device;
 
 import com.basiclab.iot.common.service.RedisService;
+import com.basiclab.iot.sink.messagebus.core.IotMessageBus;
+import com.basiclab.iot.sink.mq.message.IotDeviceRouteMessage;
 import com.basiclab.iot.sink.service.DeviceServerIdService;
 import com.basiclab.iot.sink.util.IotSinkRedisKeyConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.TimeUnit;
@@ -30,6 +33,8 @@ public class DeviceServerIdServiceImpl implements DeviceServerIdService {
 
     private final RedisService redisService;
 
+    private final ObjectProvider<IotMessageBus> messageBusProvider;
+
     @Override
     public void saveDeviceServerId(Long deviceId, String serverId) {
         if (deviceId == null || serverId == null) {
@@ -40,6 +45,7 @@ public class DeviceServerIdServiceImpl implements DeviceServerIdService {
 
         String redisKey = IotSinkRedisKeyConstants.buildDeviceServerIdKey(deviceId);
         redisService.setCacheObject(redisKey, serverId, EXPIRE_TIME, EXPIRE_TIME_UNIT);
+        publishRoute(IotDeviceRouteMessage.ACTION_ONLINE, deviceId, serverId);
         log.debug("[saveDeviceServerId][保存设备 serverId 映射，设备 ID: {}，serverId: {}]", deviceId, serverId);
     }
 
@@ -67,8 +73,48 @@ public class DeviceServerIdServiceImpl implements DeviceServerIdService {
 
         String redisKey = IotSinkRedisKeyConstants.buildDeviceServerIdKey(deviceId);
         redisService.deleteObject(redisKey);
+        publishRoute(IotDeviceRouteMessage.ACTION_OFFLINE, deviceId, null);
         log.debug("[removeDeviceServerId][删除设备 serverId 映射，设备 ID: {}]", deviceId);
     }
 
+    @Override
+    public void removeDeviceServerId(Long deviceId, String serverId) {
+        if (serverId == null) {
+            removeDeviceServerId(deviceId);
+            return;
+        }
+        if (deviceId == null) {
+            return;
+        }
+
+        String redisKey = IotSinkRedisKeyConstants.buildDeviceServerIdKey(deviceId);
+        // 比较与删除在同一个 Lua 脚本中原子执行，避免读取之后设备重连到其他网关时误删新的映射
+        if (!redisService.deleteIfEquals(redisKey, serverId)) {
+            log.debug("[removeDeviceServerId][设备已连接到其他网关，保留映射，设备 ID: {}，serverId: {}]",
+                    deviceId, serverId);
+        }
+        // 路由表同样只删除仍指向该网关的路由
+        publishRoute(IotDeviceRouteMessage.ACTION_OFFLINE, deviceId, serverId);
+        log.debug("[removeDeviceServerId][删除设备 serverId 映射，设备 ID: {}，serverId: {}]", deviceId, serverId);
+    }
+
+    /**
+     * 发布设备路由增量，供下行消息发送方更新本地路由表
+     */
+    private void publishRoute(String action, Long deviceId, String serverId) {
+        IotMessageBus messageBus = messageBusProvider.getIfAvailable();
+        if (messageBus == null) {
+            return;
+        }
+        try {
+            messageBus.post(IotDeviceRouteMessage.MESSAGE_BUS_DEVICE_ROUTE_TOPIC, String.valueOf(deviceId),
+                    IotDeviceRouteMessage.builder().action(action).deviceId(deviceId).serverId(serverId).build());
+        } catch (Exception e) {
+            // 发布失败时路由表会在本地缓存过期后回源 Redis，这里只记录日志
+            log.error("[publishRoute][发布设备路由增量失败，action: {}，设备 ID: {}，serverId: {}]",
+                    action, deviceId, serverId, e);
+        }
+    }
+
 }
 
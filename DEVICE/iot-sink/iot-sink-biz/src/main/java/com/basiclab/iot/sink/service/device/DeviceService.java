@@ -3,6 +3,8 @@ package com.basiclab.iot.sink.service.device;
 import com.basiclab.iot.sink.biz.dto.IotDeviceRespDTO;
 import com.basiclab.iot.sink.dal.dataobject.DeviceDO;
 
+import java.util.Collection;
+
 /**
  * DeviceService
  *
@@ -41,5 +43,11 @@ public interface DeviceService {
      * @return 设备信息
      */
     DeviceDO getDeviceForAuth(String clientId, String userName, String password, String deviceStatus, String protocolType);
-}
 
+    /**
+     * 失效设备缓存（设备被修改或删除时调用）
+     *
+     * @param ids 设备ID列表
+     */
+    void invalidateDevices(Collection<Long> ids);
+}
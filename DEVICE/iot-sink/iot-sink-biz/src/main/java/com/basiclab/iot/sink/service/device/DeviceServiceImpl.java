@@ -1,23 +1,49 @@
 package com.basiclab.iot.sink.service.device;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.NamedThreadFactory;
 import com.basiclab.iot.common.core.KeyValue;
 import com.basiclab.iot.sink.biz.dto.IotDeviceRespDTO;
+import com.basiclab.iot.sink.config.IotGatewayProperties;
 import com.basiclab.iot.sink.dal.dataobject.DeviceDO;
 import com.basiclab.iot.sink.dal.mapper.DeviceMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.basiclab.iot.common.utils.cache.CacheUtils.buildAsyncReloadingCache;
 
 /**
  * DeviceServiceImpl
+ * <p>
+ * 设备信息本地缓存：
+ * 1. 并发的缓存未命中在短窗口内合并为 IN 批量查询，设备集中上线时不会逐条查询数据库
+ * 2. 某个产品首次未命中时异步预加载该产品下的设备；预加载使用独立的有界线程池，不会拖慢批量加载
+ * 3. iot-device 修改、删除设备后通过消息总线推送失效（见 {@link #invalidateDevices(Collection)}），
+ * 因此刷新间隔只作为兜底，可以配置为小时级
  *
  * @author 翱翔的雄库鲁
  * @email andywebjava@163.com
@@ -28,48 +54,120 @@ import static com.basiclab.iot.common.utils.cache.CacheUtils.buildAsyncReloading
 @Slf4j
 public class DeviceServiceImpl implements DeviceService {
 
-    private static final Duration CACHE_EXPIRE = Duration.ofMinutes(1);
+    @Resource
+    private DeviceMapper deviceMapper;
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    private IotGatewayProperties.DeviceCacheProperties cacheProperties;
+
+    /**
+     * 合并未命中的批量加载调度线程，只执行短小的 IN 查询，不与预加载共用，避免被预加载拖住导致认证超时
+     */
+    private ScheduledExecutorService batchScheduler;
+
+    /**
+     * 产品预加载线程池，线程数和等待队列均有界，队列满时放弃本次预加载
+     */
+    private ThreadPoolExecutor preloadExecutor;
 
     /**
      * 通过 id 查询设备的缓存
      */
-    private final LoadingCache<Long, IotDeviceRespDTO> deviceCaches = buildAsyncReloadingCache(
-            CACHE_EXPIRE,
-            new CacheLoader<Long, IotDeviceRespDTO>() {
-                @Override
-                public IotDeviceRespDTO load(Long id) {
-                    DeviceDO deviceDO = deviceMapper.selectById(id);
-                    Assert.notNull(deviceDO, "设备({}) 不能为空", id);
-                    IotDeviceRespDTO device = convertToDTO(deviceDO);
-                    // 相互缓存
-                    deviceCaches2.put(new KeyValue<>(device.getProductIdentification(), device.getDeviceIdentification()), device);
-                    return device;
-                }
-            });
+    private LoadingCache<Long, IotDeviceRespDTO> deviceCaches;
 
     /**
      * 通过 productIdentification + deviceIdentification 查询设备的缓存
      */
-    private final LoadingCache<KeyValue<String, String>, IotDeviceRespDTO> deviceCaches2 = buildAsyncReloadingCache(
-            CACHE_EXPIRE,
-            new CacheLoader<KeyValue<String, String>, IotDeviceRespDTO>() {
-                @Override
-                public IotDeviceRespDTO load(KeyValue<String, String> kv) {
-                    DeviceDO deviceDO = deviceMapper.selectByProductIdentificationAndDeviceIdentification(kv.getKey(), kv.getValue());
-                    Assert.notNull(deviceDO, "设备({}/{}) 不能为空", kv.getKey(), kv.getValue());
-                    IotDeviceRespDTO device = convertToDTO(deviceDO);
-                    // 相互缓存
-                    deviceCaches.put(device.getId(), device);
-                    return device;
-                }
-            });
+    private LoadingCache<KeyValue<String, String>, IotDeviceRespDTO> deviceCaches2;
 
-    @Resource
-    private DeviceMapper deviceMapper;
+    /**
+     * 设备编号 -> 该设备在 deviceCaches2 中的 key，失效时按设备编号直接定位，不遍历整个缓存
+     * <p>
+     * 设备标识可能在刷新后变化，因此一个设备可能对应多个 key；缓存没有容量淘汰，索引只在失效时清理
+     */
+    private final Map<Long, Set<KeyValue<String, String>>> deviceCaches2Keys = new ConcurrentHashMap<>();
+
+    /**
+     * 已预加载的产品及预加载时间，超过刷新间隔后允许再次预加载
+     */
+    private final Map<String, Long> preloadedProducts = new ConcurrentHashMap<>();
+
+    /**
+     * 失效序号，每次失效设备时递增
+     */
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    /**
+     * 设备编号 -> 最近一次失效时的序号，用于丢弃失效前开始查询、失效后才写入的加载结果
+     */
+    private final Cache<Long, Long> invalidatedDevices = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    @PostConstruct
+    public void init() {
+        cacheProperties = gatewayProperties.getDeviceCache() != null
+                ? gatewayProperties.getDeviceCache() : new IotGatewayProperties.DeviceCacheProperties();
+        batchScheduler = Executors.newScheduledThreadPool(2, new NamedThreadFactory("iot-device-cache-batch-", true));
+        int preloadThreads = Math.max(cacheProperties.getPreloadThreads(), 1);
+        preloadExecutor = new ThreadPoolExecutor(preloadThreads, preloadThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(cacheProperties.getPreloadQueueCapacity(), 1)),
+                new NamedThreadFactory("iot-device-cache-preload-", true));
+
+        DeviceBatchLoader<Long, IotDeviceRespDTO> idLoader = new DeviceBatchLoader<>("deviceCaches",
+                cacheProperties.getBatchWindowMs(), cacheProperties.getBatchSize(), batchScheduler, this::loadByIds);
+        deviceCaches = buildAsyncReloadingCache(cacheProperties.getRefreshInterval(),
+                new CacheLoader<Long, IotDeviceRespDTO>() {
+                    @Override
+                    public IotDeviceRespDTO load(Long id) {
+                        long sequence = invalidationSequence.get();
+                        IotDeviceRespDTO device = idLoader.load(id);
+                        Assert.notNull(device, "设备({}) 不能为空", id);
+                        // 相互缓存
+                        cache2IfNotInvalidated(device, sequence, true);
+                        return device;
+                    }
+                });
+
+        DeviceBatchLoader<KeyValue<String, String>, IotDeviceRespDTO> identificationLoader = new DeviceBatchLoader<>(
+                "deviceCaches2", cacheProperties.getBatchWindowMs(), cacheProperties.getBatchSize(), batchScheduler,
+                this::loadByIdentifications);
+        deviceCaches2 = buildAsyncReloadingCache(cacheProperties.getRefreshInterval(),
+                new CacheLoader<KeyValue<String, String>, IotDeviceRespDTO>() {
+                    @Override
+                    public IotDeviceRespDTO load(KeyValue<String, String> kv) {
+                        long sequence = invalidationSequence.get();
+                        IotDeviceRespDTO device = identificationLoader.load(kv);
+                        Assert.notNull(device, "设备({}/{}) 不能为空", kv.getKey(), kv.getValue());
+                        indexCache2Key(device.getId(), kv);
+                        // 相互缓存
+                        cacheIfNotInvalidated(deviceCaches.asMap(), device.getId(), device, sequence, true);
+                        return device;
+                    }
+                });
+        log.info("[init][设备缓存初始化完成，refreshInterval: {}, batchWindowMs: {}, batchSize: {}, preloadEnabled: {}]",
+                cacheProperties.getRefreshInterval(), cacheProperties.getBatchWindowMs(),
+                cacheProperties.getBatchSize(), cacheProperties.getPreloadEnabled());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        if (preloadExecutor != null) {
+            preloadExecutor.shutdownNow();
+        }
+    }
 
     @Override
     public IotDeviceRespDTO getDevice(String productIdentification, String deviceIdentification) {
-        return deviceCaches2.getUnchecked(new KeyValue<>(productIdentification, deviceIdentification));
+        KeyValue<String, String> key = new KeyValue<>(productIdentification, deviceIdentification);
+        if (deviceCaches2.getIfPresent(key) == null) {
+            preloadProduct(productIdentification);
+        }
+        return deviceCaches2.getUnchecked(key);
     }
 
     @Override
@@ -83,6 +181,159 @@ public class DeviceServiceImpl implements DeviceService {
                 clientId, userName, password, deviceStatus, protocolType);
     }
 
+    @Override
+    public void invalidateDevices(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        Set<Long> idSet = new HashSet<>(ids);
+        // 先记录失效序号再移除缓存，保证进行中的预加载在写入前后至少一次能看到失效
+        long sequence = invalidationSequence.incrementAndGet();
+        idSet.forEach(id -> invalidatedDevices.put(id, sequence));
+        deviceCaches.invalidateAll(idSet);
+        // deviceCaches2 按标识索引，且可能只缓存在其中一个缓存里，因此通过索引找到设备对应的 key 移除
+        for (Long id : idSet) {
+            Set<KeyValue<String, String>> keys = deviceCaches2Keys.remove(id);
+            if (keys != null) {
+                deviceCaches2.invalidateAll(keys);
+            }
+        }
+        log.debug("[invalidateDevices][失效设备缓存，设备编号: {}]", idSet);
+    }
+
+    /**
+     * 异步预加载产品下的设备，每个产品在一个刷新间隔内只预加载一次
+     */
+    private void preloadProduct(String productIdentification) {
+        if (!Boolean.TRUE.equals(cacheProperties.getPreloadEnabled()) || productIdentification == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long refreshIntervalMs = cacheProperties.getRefreshInterval().toMillis();
+        boolean[] triggered = new boolean[1];
+        preloadedProducts.compute(productIdentification, (key, last) -> {
+            if (last != null && now - last < refreshIntervalMs) {
+                return last;
+            }
+            triggered[0] = true;
+            return now;
+        });
+        if (!triggered[0]) {
+            return;
+        }
+        try {
+            preloadExecutor.execute(() -> doPreloadProduct(productIdentification));
+        } catch (RejectedExecutionException e) {
+            // 大量产品同时未命中（如重启后设备集中重连）：放弃本次预加载，设备仍可按批量未命中加载，下次未命中时再尝试
+            preloadedProducts.remove(productIdentification);
+            log.debug("[preloadProduct][预加载队列已满，跳过产品({}) 的预加载]", productIdentification);
+        }
+    }
+
+    /**
+     * 加载产品下的设备并写入缓存，在预加载线程池中执行
+     */
+    private void doPreloadProduct(String productIdentification) {
+        try {
+            long sequence = invalidationSequence.get();
+            List<DeviceDO> deviceDOs = deviceMapper.selectListByProductIdentification(
+                    productIdentification, cacheProperties.getPreloadMaxDevices());
+            for (DeviceDO deviceDO : deviceDOs) {
+                IotDeviceRespDTO device = convertToDTO(deviceDO);
+                // 不覆盖已有的缓存，避免用较旧的数据覆盖刚加载或刷新的数据；查询期间被失效的设备不写入
+                cacheIfNotInvalidated(deviceCaches.asMap(), device.getId(), device, sequence, false);
+                cache2IfNotInvalidated(device, sequence, false);
+            }
+            log.info("[preloadProduct][预加载产品({}) 设备完成，数量: {}]", productIdentification, deviceDOs.size());
+        } catch (Exception e) {
+            preloadedProducts.remove(productIdentification);
+            log.error("[preloadProduct][预加载产品({}) 设备失败]", productIdentification, e);
+        }
+    }
+
+    /**
+     * 写入缓存，设备在 sequence 之后被失效过时不写入
+     * <p>
+     * 写入后再检查一次：检查与写入之间发生的失效可能先于写入移除缓存，此时撤销本次写入
+     *
+     * @param cache     缓存
+     * @param key       缓存 key
+     * @param device    设备
+     * @param sequence  开始查询前的失效序号
+     * @param overwrite 是否覆盖已有的缓存
+     */
+    private <K> void cacheIfNotInvalidated(Map<K, IotDeviceRespDTO> cache, K key, IotDeviceRespDTO device,
+                                           long sequence, boolean overwrite) {
+        if (isInvalidatedSince(device.getId(), sequence)) {
+            return;
+        }
+        if (overwrite) {
+            cache.put(key, device);
+        } else if (cache.putIfAbsent(key, device) != null) {
+            return;
+        }
+        if (isInvalidatedSince(device.getId(), sequence)) {
+            cache.remove(key, device);
+        }
+    }
+
+    /**
+     * 按标识写入 deviceCaches2，先登记索引再写入，保证并发的失效能找到这个 key
+     */
+    private void cache2IfNotInvalidated(IotDeviceRespDTO device, long sequence, boolean overwrite) {
+        KeyValue<String, String> key = buildKey(device);
+        indexCache2Key(device.getId(), key);
+        cacheIfNotInvalidated(deviceCaches2.asMap(), key, device, sequence, overwrite);
+    }
+
+    /**
+     * 登记设备在 deviceCaches2 中的 key；在 compute 中添加，不会加到失效时刚移除的集合里
+     */
+    private void indexCache2Key(Long id, KeyValue<String, String> key) {
+        deviceCaches2Keys.compute(id, (k, keys) -> {
+            if (keys == null) {
+                keys = ConcurrentHashMap.newKeySet();
+            }
+            keys.add(key);
+            return keys;
+        });
+    }
+
+    private boolean isInvalidatedSince(Long id, long sequence) {
+        Long invalidatedSequence = invalidatedDevices.getIfPresent(id);
+        return invalidatedSequence != null && invalidatedSequence > sequence;
+    }
+
+    private Map<Long, IotDeviceRespDTO> loadByIds(List<Long> ids) {
+        List<DeviceDO> deviceDOs = deviceMapper.selectListByIds(ids);
+        Map<Long, IotDeviceRespDTO> result = new HashMap<>(deviceDOs.size() * 2);
+        for (DeviceDO deviceDO : deviceDOs) {
+            result.put(deviceDO.getId(), convertToDTO(deviceDO));
+        }
+        return result;
+    }
+
+    private Map<KeyValue<String, String>, IotDeviceRespDTO> loadByIdentifications(List<KeyValue<String, String>> keys) {
+        // 按产品分组，每个产品一次 IN 查询
+        Map<String, List<String>> deviceIdentificationsByProduct = new LinkedHashMap<>();
+        for (KeyValue<String, String> key : keys) {
+            deviceIdentificationsByProduct.computeIfAbsent(key.getKey(), k -> new ArrayList<>()).add(key.getValue());
+        }
+        Map<KeyValue<String, String>, IotDeviceRespDTO> result = new HashMap<>(keys.size() * 2);
+        deviceIdentificationsByProduct.forEach((productIdentification, deviceIdentifications) -> {
+            for (DeviceDO deviceDO : deviceMapper.selectListByProductIdentificationAndDeviceIdentifications(
+                    productIdentification, deviceIdentifications)) {
+                IotDeviceRespDTO device = convertToDTO(deviceDO);
+                result.put(buildKey(device), device);
+            }
+        });
+        return result;
+    }
+
+    private static KeyValue<String, String> buildKey(IotDeviceRespDTO device) {
+        return new KeyValue<>(device.getProductIdentification(), device.getDeviceIdentification());
+    }
+
     /**
      * 将 DeviceDO 转换为 IotDeviceRespDTO
      */
@@ -95,4 +346,3 @@ public class DeviceServiceImpl implements DeviceService {
         return dto;
     }
 }
-
@@ -0,0 +1,244 @@
+package com.basiclab.iot.sink.service.tdengine;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TDengine 批量写入器（write-behind）
+ * <p>
+ * 设备消息转换出的 {@link TableDTO} 先进入有界队列，由后台写入线程按条数（batchSize）或时间（flushIntervalMs）
+ * 合并为一条多表 insert 语句：insert into t1 using st1 tags (...) values (...) t2 using st2 tags (...) values (...)
+ * <p>
+ * 队列满时调用线程最多等待 offerTimeoutMs，仍无法入队则由调用线程同步写入，形成背压；
+ * 批量写入失败时退化为逐条写入，避免一条脏数据拖累整批
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class TdEngineBatchWriter {
+
+    private static final String METRIC_PREFIX = "iot.sink.tdengine";
+
+    /**
+     * 单次阻塞等待队列的最长时间，保证停止时写入线程能及时感知 running 变化
+     */
+    private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Resource
+    private TdEngineService tdEngineService;
+
+    @Resource
+    private IotGatewayProperties gatewayProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private IotGatewayProperties.TdengineProperties properties;
+
+    private BlockingQueue<TableDTO> queue;
+
+    private final List<Thread> writerThreads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary flushRowsSummary;
+    private Counter flushFailureCounter;
+    private Counter callerRunsCounter;
+
+    @PostConstruct
+    public void init() {
+        properties = gatewayProperties.getTdengine() != null
+                ? gatewayProperties.getTdengine() : new IotGatewayProperties.TdengineProperties();
+        if (!Boolean.TRUE.equals(properties.getBatchEnabled())) {
+            log.info("[init][TDengine 批量写入未启用，使用逐条写入]");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        initMetrics();
+
+        running = true;
+        for (int i = 0; i < properties.getWriterThreads(); i++) {
+            Thread thread = new Thread(this::runWriteLoop, "iot-tdengine-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            writerThreads.add(thread);
+        }
+        log.info("[init][TDengine 批量写入器启动完成，batchSize: {}, flushIntervalMs: {}, queueCapacity: {}, writerThreads: {}]",
+                properties.getBatchSize(), properties.getFlushIntervalMs(), properties.getQueueCapacity(),
+                properties.getWriterThreads());
+    }
+
+    private void initMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        flushTimer = Timer.builder(METRIC_PREFIX + ".flush.latency")
+                .description("TDengine 批量写入耗时")
+                .register(meterRegistry);
+        flushRowsSummary = DistributionSummary.builder(METRIC_PREFIX + ".flush.rows")
+                .description("TDengine 单次批量写入行数")
+                .register(meterRegistry);
+        flushFailureCounter = Counter.builder(METRIC_PREFIX + ".flush.failures")
+                .description("TDengine 批量写入失败次数")
+                .register(meterRegistry);
+        callerRunsCounter = Counter.builder(METRIC_PREFIX + ".caller.runs")
+                .description("队列已满由调用线程同步写入的次数")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queue.size", queue, BlockingQueue::size)
+                .description("TDengine 写入队列积压数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 写入一行数据
+     * <p>
+     * 批量写入启用时异步入队，否则同步写入
+     *
+     * @param tableDTO 表数据DTO
+     */
+    public void write(TableDTO tableDTO) {
+        if (queue == null || !running) {
+            tdEngineService.insertTableData(tableDTO);
+            return;
+        }
+        boolean offered;
+        try {
+            offered = queue.offer(tableDTO, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            // 队列已满：由调用线程直接写入，降低上游消费速度
+            increment(callerRunsCounter);
+            log.warn("[write][TDengine 写入队列已满，由调用线程同步写入，tableName: {}]", tableDTO.getTableName());
+            tdEngineService.insertTableData(tableDTO);
+            return;
+        }
+        // 入队期间写入器可能已停止：写入线程退出后无人消费，取回该行同步写入
+        if (!running && queue.remove(tableDTO)) {
+            tdEngineService.insertTableData(tableDTO);
+        }
+    }
+
+    private void runWriteLoop() {
+        int batchSize = properties.getBatchSize();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        long idlePollNanos = Math.min(flushIntervalNanos, MAX_POLL_NANOS);
+        List<TableDTO> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TableDTO first = queue.poll(idlePollNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批：直到达到 batchSize 或超过 flushInterval
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    TableDTO next = queue.poll(Math.min(remaining, MAX_POLL_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // 攒批时被中断：先写出已取出的行，再继续循环，是否退出只由 running 决定
+                flush(batch);
+            } catch (Exception e) {
+                log.error("[runWriteLoop][TDengine 批量写入线程异常]", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<TableDTO> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            tdEngineService.insertMultiTableData(batch);
+        } catch (Exception e) {
+            increment(flushFailureCounter);
+            log.warn("[flush][TDengine 批量写入失败，退化为逐条写入，rows: {}]", batch.size(), e);
+            for (TableDTO tableDTO : batch) {
+                try {
+                    tdEngineService.insertTableData(tableDTO);
+                } catch (Exception ex) {
+                    log.error("[flush][TDengine 逐条写入失败，丢弃该行，tableName: {}]", tableDTO.getTableName(), ex);
+                }
+            }
+        } finally {
+            if (flushTimer != null) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                flushRowsSummary.record(batch.size());
+            }
+        }
+    }
+
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 停止写入线程，并将队列中剩余数据写入 TDengine
+     */
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : writerThreads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // 写入线程退出后仍残留在队列中的行（并发入队或等待超时），由当前线程写出
+        List<TableDTO> batch = new ArrayList<>(properties.getBatchSize());
+        int remaining = 0;
+        while (queue.drainTo(batch, properties.getBatchSize()) > 0) {
+            remaining += batch.size();
+            flush(batch);
+            batch.clear();
+        }
+        log.info("[destroy][TDengine 批量写入器已停止，停止时补写: {}]", remaining);
+    }
+
+}
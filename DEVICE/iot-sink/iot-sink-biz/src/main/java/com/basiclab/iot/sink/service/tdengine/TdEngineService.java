@@ -2,6 +2,8 @@ package com.basiclab.iot.sink.service.tdengine;
 
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
 
+import java.util.List;
+
 /**
  * TdEngineService
  *
@@ -18,5 +20,14 @@ public interface TdEngineService {
      * @param tableDTO 表数据DTO
      */
     void insertTableData(TableDTO tableDTO);
+
+    /**
+     * 多表批量插入数据
+     * <p>
+     * 将多条记录（可属于不同超级表、不同子表）合并为一条 insert 语句写入
+     *
+     * @param tableList 表数据DTO列表
+     */
+    void insertMultiTableData(List<TableDTO> tableList);
 }
 
@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * TdEngineServiceImpl
@@ -37,5 +38,18 @@ public class TdEngineServiceImpl implements TdEngineService {
             throw e;
         }
     }
-}
 
+    @Override
+    public void insertMultiTableData(List<TableDTO> tableList) {
+        if (tableList == null || tableList.isEmpty()) {
+            return;
+        }
+        try {
+            tdEngineMapper.insertMultiTableData(tableList);
+            log.debug("[insertMultiTableData][TDEngine批量数据插入成功，rows: {}]", tableList.size());
+        } catch (Exception e) {
+            log.error("[insertMultiTableData][TDEngine批量数据插入失败，rows: {}]", tableList.size(), e);
+            throw e;
+        }
+    }
+}
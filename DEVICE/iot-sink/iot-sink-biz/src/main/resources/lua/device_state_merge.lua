@@ -0,0 +1,129 @@
+-- 设备状态合并写入（DeviceRedisStateWriter）
+-- KEYS[1]: 设备数据 Hash Key
+-- ARGV[1]: 过期时间（秒）
+-- ARGV[2]: 直接覆盖的 Hash 字段数量 n
+-- ARGV[3 .. 2 + 2n]: 字段名、字段值（已按 Hash 值序列化器序列化）成对出现
+-- 其余 ARGV: extension 子键名、子键 JSON 片段成对出现，片段为空串表示删除该子键
+--
+-- extension 字段存储的是“JSON 对象文本”经 JSON 序列化后的字符串。
+-- 合并时只在顶层按成员切分原文，不解码成员的值，避免 cjson 对数字精度、空数组的改写
+local key = KEYS[1]
+local extensionField = 'extension'
+
+-- 返回从 pos 开始的 JSON 字符串的结束引号位置
+local function scanString(text, pos)
+    local i = pos + 1
+    local len = #text
+    while i <= len do
+        local c = string.byte(text, i)
+        if c == 92 then
+            i = i + 2
+        elseif c == 34 then
+            return i
+        else
+            i = i + 1
+        end
+    end
+    error('unterminated string')
+end
+
+-- 返回从 pos 开始的 JSON 值的结束位置
+local function scanValue(text, pos)
+    local c = string.byte(text, pos)
+    if c == 34 then
+        return scanString(text, pos)
+    end
+    if c == 123 or c == 91 then
+        local depth = 0
+        local i = pos
+        local len = #text
+        while i <= len do
+            c = string.byte(text, i)
+            if c == 34 then
+                i = scanString(text, i)
+            elseif c == 123 or c == 91 then
+                depth = depth + 1
+            elseif c == 125 or c == 93 then
+                depth = depth - 1
+                if depth == 0 then
+                    return i
+                end
+            end
+            i = i + 1
+        end
+        error('unterminated value')
+    end
+    local stop = string.find(text, '[,}%s]', pos)
+    return (stop or (#text + 1)) - 1
+end
+
+-- 将 JSON 对象文本按顶层成员切分为 names（有序）和 values（原文片段）
+local function parseMembers(text, names, values)
+    local pos = string.find(text, '{', 1, true)
+    if not pos then
+        return
+    end
+    pos = pos + 1
+    while true do
+        pos = string.find(text, '[^%s,]', pos)
+        if not pos or string.byte(text, pos) == 125 then
+            return
+        end
+        local nameEnd = scanString(text, pos)
+        local name = cjson.decode(string.sub(text, pos, nameEnd))
+        pos = string.find(text, '%S', string.find(text, ':', nameEnd + 1, true) + 1)
+        local valueEnd = scanValue(text, pos)
+        if values[name] == nil then
+            names[#names + 1] = name
+        end
+        values[name] = string.sub(text, pos, valueEnd)
+        pos = valueEnd + 1
+    end
+end
+
+local fieldCount = tonumber(ARGV[2])
+local i = 3
+for _ = 1, fieldCount do
+    redis.call('HSET', key, ARGV[i], ARGV[i + 1])
+    i = i + 2
+end
+
+if i <= #ARGV then
+    local names, values = {}, {}
+    local stored = redis.call('HGET', key, extensionField)
+    if stored then
+        local ok, text = pcall(cjson.decode, stored)
+        if ok and type(text) == 'string' then
+            local parsed = pcall(parseMembers, text, names, values)
+            if not parsed then
+                -- 现有扩展信息格式非法，重新创建
+                names, values = {}, {}
+            end
+        end
+    end
+    while i <= #ARGV do
+        local name, fragment = ARGV[i], ARGV[i + 1]
+        if fragment == '' then
+            values[name] = nil
+        else
+            if values[name] == nil then
+                names[#names + 1] = name
+            end
+            values[name] = fragment
+        end
+        i = i + 2
+    end
+    local members = {}
+    for _, name in ipairs(names) do
+        local value = values[name]
+        if value ~= nil then
+            members[#members + 1] = cjson.encode(name) .. ':' .. value
+            -- 同名子键删除后又写入时只输出一次
+            values[name] = nil
+        end
+    end
+    redis.call('HSET', key, extensionField, cjson.encode('{' .. table.concat(members, ',') .. '}'))
+end
+
+redis.call('EXPIRE', key, tonumber(ARGV[1]))
+return 1
@@ -0,0 +1,162 @@
+package com.basiclab.iot.sink.codec.tcp;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IotTcpFrameDecoder} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotTcpFrameDecoderTest {
+
+    private static final int MAX_FRAME_SIZE = 1024;
+
+    private final List<byte[]> frames = new ArrayList<>();
+
+    private IotTcpFrameDecoder decoder;
+
+    @BeforeEach
+    public void setUp() {
+        frames.clear();
+        decoder = new IotTcpFrameDecoder(MAX_FRAME_SIZE, frames::add);
+    }
+
+    @Test
+    public void testHandle_singleFrameReusesChunkArray() {
+        byte[] frame = binaryFrame("1", "thing.property.post", "{}");
+        Buffer chunk = Buffer.buffer(frame);
+
+        decoder.handle(chunk);
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(frame, frames.get(0));
+        assertSame(chunk.getByteBuf().array(), frames.get(0));
+    }
+
+    @Test
+    public void testHandle_coalescedFrames() {
+        byte[] binary = binaryFrame("1", "thing.property.post", "{\"a\":1}");
+        byte[] json = json("{\"id\":\"2\",\"method\":\"thing.event.post\"}");
+        byte[] jsonArray = json("[1,2]");
+
+        decoder.handle(Buffer.buffer().appendBytes(binary).appendBytes(json).appendString("\r\n")
+                .appendBytes(jsonArray));
+
+        assertEquals(3, frames.size());
+        assertArrayEquals(binary, frames.get(0));
+        assertArrayEquals(json, frames.get(1));
+        assertArrayEquals(jsonArray, frames.get(2));
+    }
+
+    @Test
+    public void testHandle_splitBinaryFrame() {
+        byte[] binary = binaryFrame("1", "thing.property.post", "{\"a\":1}");
+
+        // 头部都不完整时也要等待后续数据块
+        decoder.handle(Buffer.buffer(Arrays.copyOfRange(binary, 0, 3)));
+        decoder.handle(Buffer.buffer(Arrays.copyOfRange(binary, 3, 10)));
+        assertTrue(frames.isEmpty());
+        decoder.handle(Buffer.buffer(Arrays.copyOfRange(binary, 10, binary.length)));
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(binary, frames.get(0));
+    }
+
+    @Test
+    public void testHandle_splitJsonFrameWithBracketsInString() {
+        byte[] json = json("{\"method\":\"a}b\",\"params\":{\"s\":\"\\\"{\"}}");
+
+        for (byte b : json) {
+            decoder.handle(Buffer.buffer(new byte[]{b}));
+        }
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(json, frames.get(0));
+    }
+
+    @Test
+    public void testHandle_splitFrameFollowedByCoalescedFrame() {
+        byte[] first = json("{\"id\":\"1\"}");
+        byte[] second = binaryFrame("2", "thing.event.post", "{}");
+        Buffer stream = Buffer.buffer().appendBytes(first).appendBytes(second);
+        int cut = first.length + 5;
+
+        decoder.handle(stream.getBuffer(0, cut));
+        assertEquals(1, frames.size());
+        decoder.handle(stream.getBuffer(cut, stream.length()));
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(first, frames.get(0));
+        assertArrayEquals(second, frames.get(1));
+    }
+
+    @Test
+    public void testHandle_oversizedBinaryFrame() {
+        Buffer header = Buffer.buffer()
+                .appendByte(IotTcpBinaryDeviceMessageCodec.MAGIC_NUMBER)
+                .appendByte((byte) 0x01)
+                .appendByte((byte) 0x01)
+                .appendInt(MAX_FRAME_SIZE + 1);
+
+        assertThrows(IllegalStateException.class, () -> decoder.handle(header));
+        assertTrue(frames.isEmpty());
+    }
+
+    @Test
+    public void testHandle_oversizedJsonFrame() {
+        byte[] unterminated = new byte[MAX_FRAME_SIZE + 1];
+        Arrays.fill(unterminated, (byte) ' ');
+        unterminated[0] = '{';
+
+        assertThrows(IllegalStateException.class, () -> decoder.handle(Buffer.buffer(unterminated)));
+        assertTrue(frames.isEmpty());
+    }
+
+    @Test
+    public void testHandle_resetAfterInvalidFrame() {
+        assertThrows(IllegalStateException.class, () -> decoder.handle(Buffer.buffer("hello")));
+
+        // 出错后累积缓冲区已清空，后续帧可正常解出
+        byte[] json = json("{\"id\":\"1\"}");
+        decoder.handle(Buffer.buffer(json));
+        assertEquals(1, frames.size());
+        assertArrayEquals(json, frames.get(0));
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] binaryFrame(String messageId, String method, String body) {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] methodBytes = method.getBytes(StandardCharsets.UTF_8);
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        int length = IotTcpBinaryDeviceMessageCodec.HEADER_FIXED_LENGTH + 2 + id.length + 2 + methodBytes.length
+                + bodyBytes.length;
+        return Buffer.buffer()
+                .appendByte(IotTcpBinaryDeviceMessageCodec.MAGIC_NUMBER)
+                .appendByte((byte) 0x01)
+                .appendByte((byte) 0x01)
+                .appendInt(length)
+                .appendShort((short) id.length).appendBytes(id)
+                .appendShort((short) methodBytes.length).appendBytes(methodBytes)
+                .appendBytes(bodyBytes)
+                .getBytes();
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.basiclab.iot.sink.javascript;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link JsScriptManager} 的单元测试，使用模拟的脚本引擎代替真实的 JavaScript 引擎
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class JsScriptManagerTest {
+
+    private static final String PRODUCT = "product_1";
+
+    private static final byte[] RESULT = {1, 2, 3};
+
+    /**
+     * 模拟失控脚本：阻塞直到测试放行
+     */
+    private final CountDownLatch runaway = new CountDownLatch(1);
+
+    /**
+     * 新建的引擎是否模拟失控脚本
+     */
+    private volatile boolean createRunaway;
+
+    /**
+     * 新建的引擎是否模拟消耗 CPU 的脚本
+     */
+    private volatile boolean createCpuHog;
+
+    private IotGatewayProperties.ScriptProperties script;
+
+    private final List<ScriptEngine> engines = new CopyOnWriteArrayList<>();
+
+    private JsScriptManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        script = new IotGatewayProperties.ScriptProperties();
+        script.setLeaseTimeoutMs(50L);
+        script.setInvokeTimeoutMs(100L);
+        script.setCpuBudgetMs(0L);
+        script.setExecutorThreads(4);
+        IotGatewayProperties gatewayProperties = new IotGatewayProperties();
+        gatewayProperties.setScript(script);
+
+        manager = new JsScriptManager();
+        ReflectionTestUtils.setField(manager, "gatewayProperties", gatewayProperties);
+        manager.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        runaway.countDown();
+        manager.destroy();
+    }
+
+    @Test
+    public void testInvoke_reusesContext() {
+        JsScriptContextPool pool = addPool(1);
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(RESULT, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]));
+        }
+
+        assertEquals(1, engines.size());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testInvoke_timeoutKeepsSlotUntilScriptEnds() throws Exception {
+        JsScriptContextPool pool = addPool(1);
+        createRunaway = true;
+
+        assertEquals(0, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]).length);
+
+        // 失控脚本仍在执行：上下文继续占用名额，新的调用拿不到上下文，也不会再占用执行线程
+        createRunaway = false;
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(0, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]).length);
+        assertEquals(1, engines.size());
+        assertEquals(1, getExecutor().getActiveCount());
+
+        // 脚本结束后上下文被丢弃并关闭引擎，名额释放，后续调用新建上下文
+        runaway.countDown();
+        verify((AutoCloseable) engines.get(0), timeout(5000)).close();
+        waitUntil(() -> pool.getCreatedCount() == 0);
+        assertArrayEquals(RESULT, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]));
+        assertEquals(2, engines.size());
+    }
+
+    @Test
+    public void testInvoke_repeatedTimeoutsBoundedByPoolSize() {
+        addPool(2);
+        createRunaway = true;
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]).length);
+        }
+
+        assertEquals(2, engines.size());
+        assertTrue(getExecutor().getActiveCount() <= 2);
+    }
+
+    @Test
+    public void testInvoke_cpuBudgetExceededDiscardsContext() throws Exception {
+        script.setCpuBudgetMs(1L);
+        script.setInvokeTimeoutMs(0L);
+        assertCpuBudgetEnforced();
+    }
+
+    @Test
+    public void testInvoke_timedCpuBudgetExceededDiscardsContext() throws Exception {
+        script.setCpuBudgetMs(1L);
+        script.setInvokeTimeoutMs(5000L);
+        assertCpuBudgetEnforced();
+    }
+
+    private void assertCpuBudgetEnforced() throws Exception {
+        JsScriptContextPool pool = addPool(1);
+        createCpuHog = true;
+
+        assertEquals(0, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]).length);
+
+        // 超出预算的上下文被丢弃并关闭引擎，后续调用新建上下文
+        createCpuHog = false;
+        verify((AutoCloseable) engines.get(0)).close();
+        assertEquals(0, pool.getCreatedCount());
+        assertArrayEquals(RESULT, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]));
+        assertEquals(2, engines.size());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testRemoveScript_closesIdleEngines() throws Exception {
+        addPool(1);
+        assertArrayEquals(RESULT, manager.invokeRawDataToProtocol(PRODUCT, "topic", new byte[0]));
+
+        manager.removeScript(PRODUCT);
+
+        verify((AutoCloseable) engines.get(0)).close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private JsScriptContextPool addPool(int maxSize) {
+        JsScriptContextPool pool = new JsScriptContextPool(PRODUCT, maxSize, this::createContext);
+        ((Map<String, JsScriptContextPool>) ReflectionTestUtils.getField(manager, "contextPools")).put(PRODUCT, pool);
+        return pool;
+    }
+
+    private JsScriptContextPool.Context createContext() {
+        ScriptEngine engine = mock(ScriptEngine.class,
+                withSettings().extraInterfaces(Invocable.class, AutoCloseable.class));
+        boolean blocking = createRunaway;
+        boolean cpuHog = createCpuHog;
+        try {
+            when(((Invocable) engine).invokeFunction(anyString(), any(), any())).thenAnswer(invocation -> {
+                if (blocking) {
+                    runaway.await();
+                }
+                if (cpuHog) {
+                    burnCpu(TimeUnit.MILLISECONDS.toNanos(50));
+                }
+                return RESULT;
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        engines.add(engine);
+        return new JsScriptContextPool.Context(engine);
+    }
+
+    private static void burnCpu(long nanos) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long start = threadMXBean.getCurrentThreadCpuTime();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threadMXBean.getCurrentThreadCpuTime() - start < nanos && System.nanoTime() < deadline) {
+            Math.sqrt(System.nanoTime());
+        }
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        return (ThreadPoolExecutor) ReflectionTestUtils.getField(manager, "executor");
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+}
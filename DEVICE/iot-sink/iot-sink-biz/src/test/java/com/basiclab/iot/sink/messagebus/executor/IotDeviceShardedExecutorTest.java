@@ -0,0 +1,194 @@
+package com.basiclab.iot.sink.messagebus.executor;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IotDeviceShardedExecutor} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class IotDeviceShardedExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SimpleMeterRegistry registry;
+
+    private IotDeviceShardedExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void testExecute_sameDeviceRunsInSubmitOrder() throws InterruptedException {
+        executor = createExecutor(4, 2000, 100, 100L);
+        int devices = 10;
+        int tasksPerDevice = 200;
+        Map<Long, List<Integer>> executed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(devices * tasksPerDevice);
+
+        for (int i = 0; i < tasksPerDevice; i++) {
+            for (long deviceId = 0; deviceId < devices; deviceId++) {
+                int sequence = i;
+                long id = deviceId;
+                assertTrue(executor.execute(id, () -> {
+                    executed.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(sequence);
+                    done.countDown();
+                }));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (long deviceId = 0; deviceId < devices; deviceId++) {
+            List<Integer> sequences = executed.get(deviceId);
+            assertEquals(tasksPerDevice, sequences.size());
+            for (int i = 0; i < tasksPerDevice; i++) {
+                assertEquals(i, sequences.get(i), "设备 " + deviceId + " 的事件乱序");
+            }
+        }
+    }
+
+    @Test
+    public void testExecute_blockedDeviceDoesNotBlockOtherShards() throws InterruptedException {
+        executor = createExecutor(2, 100, 100, 100L);
+        CountDownLatch blocked = new CountDownLatch(1);
+        // 设备 0 和设备 1 分别落在分片 0 和分片 1
+        executor.execute(0L, () -> block(blocked));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch otherDevice = new CountDownLatch(1);
+        executor.execute(1L, otherDevice::countDown);
+
+        assertTrue(otherDevice.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testExecute_unorderedTasksStolenByIdleShards() throws InterruptedException {
+        executor = createExecutor(2, 100, 100, 100L);
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(0L, () -> block(blocked));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        String blockedThread = "iot-device-event-0";
+
+        // 分片 0 被占用，无设备编号的任务全部由空闲的分片 1 窃取执行
+        int tasks = 20;
+        CountDownLatch done = new CountDownLatch(tasks);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < tasks; i++) {
+            assertTrue(executor.execute(null, () -> {
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(threads.contains(blockedThread));
+        assertEquals(tasks, (int) registry.get("iot.sink.event.executor.steals").counter().count());
+    }
+
+    @Test
+    public void testExecute_shedsWhenShardQueueFull() throws InterruptedException {
+        executor = createExecutor(1, 1, 100, 20L);
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(0L, () -> block(blocked));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger executed = new AtomicInteger();
+        assertTrue(executor.execute(0L, executed::incrementAndGet));
+        long start = System.nanoTime();
+        assertFalse(executor.execute(0L, executed::incrementAndGet));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+
+        assertEquals(1, registry.get("iot.sink.event.executor.shed").tag("ordered", "true").counter().count());
+        release.countDown();
+        executor.destroy();
+        assertEquals(1, executed.get());
+    }
+
+    @Test
+    public void testExecute_shedsWhenUnorderedQueueFull() throws InterruptedException {
+        executor = createExecutor(1, 100, 1, 20L);
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(0L, () -> block(blocked));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue(executor.execute(null, () -> { }));
+        assertFalse(executor.execute(null, () -> { }));
+
+        assertEquals(1, registry.get("iot.sink.event.executor.shed").tag("ordered", "false").counter().count());
+    }
+
+    @Test
+    public void testDestroy_drainsQueuedTasksAndRejectsNewOnes() {
+        executor = createExecutor(2, 100, 100, 100L);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int sequence = i;
+            executor.execute(7L, () -> executed.add(sequence));
+            expected.add(i);
+        }
+
+        executor.destroy();
+
+        assertEquals(expected, executed);
+        assertFalse(executor.execute(7L, () -> { }));
+    }
+
+    private void block(CountDownLatch blocked) {
+        blocked.countDown();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private IotDeviceShardedExecutor createExecutor(int shards, int queueCapacity, int unorderedQueueCapacity,
+                                                    long offerTimeoutMs) {
+        IotGatewayProperties.EventExecutorProperties eventExecutor = new IotGatewayProperties.EventExecutorProperties();
+        eventExecutor.setShards(shards);
+        eventExecutor.setQueueCapacity(queueCapacity);
+        eventExecutor.setUnorderedQueueCapacity(unorderedQueueCapacity);
+        eventExecutor.setOfferTimeoutMs(offerTimeoutMs);
+        IotGatewayProperties gatewayProperties = new IotGatewayProperties();
+        gatewayProperties.setEventExecutor(eventExecutor);
+
+        IotDeviceShardedExecutor shardedExecutor = new IotDeviceShardedExecutor();
+        ReflectionTestUtils.setField(shardedExecutor, "gatewayProperties", gatewayProperties);
+        ReflectionTestUtils.setField(shardedExecutor, "meterRegistry", registry);
+        shardedExecutor.init();
+        return shardedExecutor;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.basiclab.iot.sink.service.data;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DeviceRedisStateWriter} 的单元测试：待写入设备过多或已停止时，调用线程写入的新状态不会先于正在写入的旧状态落库
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceRedisStateWriterTest {
+
+    private final ExecutorService callers = Executors.newSingleThreadExecutor();
+
+    /**
+     * 按执行顺序记录的写入：设备 Key + 字段 value 的值
+     */
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 第一次批量写入开始后计数
+     */
+    private final CountDownLatch firstFlushStarted = new CountDownLatch(1);
+
+    /**
+     * 第一次批量写入阻塞直到放行
+     */
+    private final CountDownLatch releaseFirstFlush = new CountDownLatch(1);
+
+    private DeviceRedisStateWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        // 脚本执行只记录参数：KEYS[1]、过期时间、字段数、字段对
+        RedisScriptingCommands scriptingCommands = mock(RedisScriptingCommands.class, invocation -> {
+            Object[] args = invocation.getArguments();
+            if ("evalSha".equals(invocation.getMethod().getName())) {
+                writes.add(string((byte[]) args[3]) + "=" + string((byte[]) args[7]));
+            }
+            return 1L;
+        });
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        doReturn(RedisSerializer.string()).when(redisTemplate).getHashValueSerializer();
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            if (firstFlushStarted.getCount() > 0) {
+                firstFlushStarted.countDown();
+                releaseFirstFlush.await(5, TimeUnit.SECONDS);
+            }
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+
+        IotGatewayProperties.DeviceStateProperties properties = new IotGatewayProperties.DeviceStateProperties();
+        properties.setFlushIntervalMs(10L);
+        properties.setMaxPendingDevices(1);
+        IotGatewayProperties gatewayProperties = new IotGatewayProperties();
+        gatewayProperties.setDeviceState(properties);
+
+        writer = new DeviceRedisStateWriter();
+        ReflectionTestUtils.setField(writer, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(writer, "gatewayProperties", gatewayProperties);
+        writer.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releaseFirstFlush.countDown();
+        writer.destroy();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testSubmit_overflowWaitsForInFlightState() throws Exception {
+        writer.submit(writer.update("a").putField("value", "1"));
+        assertTrue(firstFlushStarted.await(5, TimeUnit.SECONDS));
+
+        // a=1 正在写入；b 占满待写入队列后，a=2 由调用线程写入
+        writer.submit(writer.update("b").putField("value", "1"));
+        Future<?> overflow = callers.submit(() -> writer.submit(writer.update("a").putField("value", "2")));
+
+        Thread.sleep(200);
+        assertFalse(overflow.isDone(), "旧状态写完前不能写入新状态");
+        releaseFirstFlush.countDown();
+        overflow.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("a=1", "a=2"), filter("a"));
+        assertEquals(Collections.singletonList("b=1"), filter("b"));
+    }
+
+    @Test
+    public void testSubmit_afterDestroy() {
+        releaseFirstFlush.countDown();
+        writer.submit(writer.update("a").putField("value", "1"));
+        writer.destroy();
+
+        writer.submit(writer.update("a").putField("value", "2"));
+
+        assertEquals(Arrays.asList("a=1", "a=2"), filter("a"));
+    }
+
+    private List<String> filter(String redisKey) {
+        List<String> result = new ArrayList<>();
+        synchronized (writes) {
+            for (String write : writes) {
+                if (write.startsWith(redisKey + "=")) {
+                    result.add(write);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
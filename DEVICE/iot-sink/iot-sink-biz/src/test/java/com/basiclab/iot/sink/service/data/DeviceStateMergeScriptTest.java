@@ -0,0 +1,186 @@
+package com.basiclab.iot.sink.service.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * lua/device_state_merge.lua 的单元测试，在内嵌 Redis（jedis-mock）中执行脚本：
+ * Hash 字段覆盖、extension 子键合并与删除、嵌套值和转义字符原样保留、非法 extension 重建
+ * <p>
+ * jedis-mock 的 Lua 环境没有 cjson，测试在脚本前拼接一个只支持字符串的 cjson 实现，行为与 Redis 内置 cjson 对字符串的处理一致
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceStateMergeScriptTest {
+
+    private static final String KEY = "device:data:p:d1";
+
+    private static final String EXTENSION = "extension";
+
+    private static final String CJSON_SHIM = String.join("\n",
+            "cjson = {}",
+            "local escapes = { ['\"'] = '\\\\\"', ['\\\\'] = '\\\\\\\\', ['/'] = '\\\\/', ['\\b'] = '\\\\b',",
+            "  ['\\f'] = '\\\\f', ['\\n'] = '\\\\n', ['\\r'] = '\\\\r', ['\\t'] = '\\\\t' }",
+            "local unescapes = { b = '\\b', f = '\\f', n = '\\n', r = '\\r', t = '\\t' }",
+            "function cjson.encode(value)",
+            "  local body = string.gsub(value, '[%c\"\\\\/]', function(c)",
+            "    return escapes[c] or string.format('\\\\u%04x', string.byte(c))",
+            "  end)",
+            "  return '\"' .. body .. '\"'",
+            "end",
+            "local function utf8char(code)",
+            "  if code < 0x80 then return string.char(code) end",
+            "  if code < 0x800 then return string.char(0xC0 + math.floor(code / 0x40), 0x80 + code % 0x40) end",
+            "  return string.char(0xE0 + math.floor(code / 0x1000), 0x80 + math.floor(code / 0x40) % 0x40, 0x80 + code % 0x40)",
+            "end",
+            "function cjson.decode(text)",
+            "  if string.sub(text, 1, 1) ~= '\"' or string.sub(text, -1) ~= '\"' then error('unsupported json') end",
+            "  local body, out, i = string.sub(text, 2, -2), {}, 1",
+            "  while i <= #body do",
+            "    local c = string.sub(body, i, i)",
+            "    if c == '\\\\' then",
+            "      local n = string.sub(body, i + 1, i + 1)",
+            "      if n == 'u' then",
+            "        out[#out + 1] = utf8char(tonumber(string.sub(body, i + 2, i + 5), 16))",
+            "        i = i + 6",
+            "      else",
+            "        out[#out + 1] = unescapes[n] or n",
+            "        i = i + 2",
+            "      end",
+            "    else",
+            "      out[#out + 1] = c",
+            "      i = i + 1",
+            "    end",
+            "  end",
+            "  return table.concat(out)",
+            "end",
+            "");
+
+    /**
+     * 与 RedisTemplate 的 Hash 值序列化器一致：值按 JSON 序列化
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RedisServer server;
+
+    private Jedis jedis;
+
+    private byte[] script;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        jedis = new Jedis(server.getHost(), server.getBindPort());
+        String source = StreamUtils.copyToString(new ClassPathResource("lua/device_state_merge.lua").getInputStream(),
+                StandardCharsets.UTF_8);
+        script = (CJSON_SHIM + source).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        jedis.close();
+        server.stop();
+    }
+
+    @Test
+    public void testFieldMerge() throws Exception {
+        jedis.hset(KEY, "a", json("1"));
+        jedis.hset(KEY, "b", json("2"));
+
+        merge(new String[]{"b", json("3"), "c", json("中文")});
+
+        assertEquals(json("1"), jedis.hget(KEY, "a"));
+        assertEquals(json("3"), jedis.hget(KEY, "b"));
+        assertEquals(json("中文"), jedis.hget(KEY, "c"));
+        assertNull(jedis.hget(KEY, EXTENSION), "没有 extension 子键时不写 extension");
+        assertTrue(jedis.ttl(KEY) > 0);
+    }
+
+    @Test
+    public void testExtensionMerge() throws Exception {
+        jedis.hset(KEY, EXTENSION, json("{\"x\":1,\"y\":\"old\"}"));
+
+        // 覆盖 y、新增 z、删除 x
+        merge(new String[0], "y", "\"new\"", "z", "{\"k\":[1,2]}", "x", "");
+
+        assertEquals("{\"y\":\"new\",\"z\":{\"k\":[1,2]}}", extension());
+
+        // 没有 extension 时新建
+        jedis.hdel(KEY, EXTENSION);
+        merge(new String[0], "online", "true");
+        assertEquals("{\"online\":true}", extension());
+    }
+
+    @Test
+    public void testNestedAndEscapedValues() throws Exception {
+        String stored = "{\"a\":\"br}ace, \\\"quoted\\\" [x]\",\"b\":{\"c\":\"{[\",\"d\":[{\"e\":\"\\\\\"}]},"
+                + "\"n\":12.50,\"q\\\"uote\":\"路径/值\",\"empty\":[]}";
+        jedis.hset(KEY, EXTENSION, json(stored));
+
+        merge(new String[0], "m", "{\"deep\":{\"list\":[\"}\",\"]\"]}}", "n", "7");
+
+        // 未修改的成员按原文保留（包括数字精度、空数组、转义字符），修改的成员原位替换，新成员追加在末尾
+        assertEquals("{\"a\":\"br}ace, \\\"quoted\\\" [x]\",\"b\":{\"c\":\"{[\",\"d\":[{\"e\":\"\\\\\"}]},"
+                + "\"n\":7,\"q\\\"uote\":\"路径/值\",\"empty\":[],\"m\":{\"deep\":{\"list\":[\"}\",\"]\"]}}}", extension());
+    }
+
+    @Test
+    public void testInvalidExtensionRecreated() throws Exception {
+        jedis.hset(KEY, EXTENSION, json("{\"broken\":\"unterminated}"));
+
+        merge(new String[0], "k", "1");
+
+        assertEquals("{\"k\":1}", extension());
+    }
+
+    private String json(Object value) throws IOException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private String extension() throws IOException {
+        return objectMapper.readValue(jedis.hget(KEY, EXTENSION), String.class);
+    }
+
+    /**
+     * 按 DeviceRedisStateWriter 的参数格式执行脚本
+     *
+     * @param fields    字段名、字段值成对出现
+     * @param extension extension 子键名、JSON 片段成对出现
+     */
+    private void merge(String[] fields, String... extension) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(bytes("3600"));
+        args.add(bytes(String.valueOf(fields.length / 2)));
+        for (String arg : fields) {
+            args.add(bytes(arg));
+        }
+        for (String arg : extension) {
+            args.add(bytes(arg));
+        }
+        Object result = jedis.eval(script, Collections.singletonList(bytes(KEY)), args);
+        assertEquals(1L, result);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.basiclab.iot.sink.service.device;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link DeviceBatchLoader} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceBatchLoaderTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    /**
+     * 每次批量查询的 key
+     */
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testLoad_concurrentMissesCoalesced() throws Exception {
+        DeviceBatchLoader<Long, String> loader = new DeviceBatchLoader<>("test", 100, 500, scheduler,
+                recording(keys -> toValues(keys)));
+
+        List<Future<String>> results = loadConcurrently(loader, 10);
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("device-" + i, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, batches.size());
+        assertEquals(10, batches.get(0).size());
+    }
+
+    @Test
+    public void testLoad_splitByBatchSize() throws Exception {
+        DeviceBatchLoader<Long, String> loader = new DeviceBatchLoader<>("test", 100, 3, scheduler,
+                recording(keys -> toValues(keys)));
+
+        for (Future<String> result : loadConcurrently(loader, 7)) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(3, batches.size());
+        assertEquals(7, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void testLoad_missingKeyReturnsNull() {
+        DeviceBatchLoader<Long, String> loader = new DeviceBatchLoader<>("test", 1, 500, scheduler,
+                recording(keys -> new HashMap<>()));
+
+        assertNull(loader.load(1L));
+    }
+
+    @Test
+    public void testLoad_failurePropagatesToAllCallers() throws InterruptedException {
+        DeviceBatchLoader<Long, String> loader = new DeviceBatchLoader<>("test", 100, 500, scheduler,
+                recording(keys -> {
+                    throw new IllegalArgumentException("db down");
+                }));
+
+        List<Future<String>> results = loadConcurrently(loader, 3);
+
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+        }
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testLoad_noWindowLoadsDirectly() {
+        DeviceBatchLoader<Long, String> loader = new DeviceBatchLoader<>("test", 0, 500, scheduler,
+                recording(keys -> toValues(keys)));
+
+        assertEquals("device-5", loader.load(5L));
+        assertEquals("device-6", loader.load(6L));
+        assertEquals(2, batches.size());
+    }
+
+    /**
+     * 多个线程同时加载 0 ~ count-1
+     */
+    private List<Future<String>> loadConcurrently(DeviceBatchLoader<Long, String> loader, int count)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            long key = i;
+            results.add(callers.submit(() -> {
+                start.await();
+                return loader.load(key);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private Function<List<Long>, Map<Long, String>> recording(Function<List<Long>, Map<Long, String>> function) {
+        return keys -> {
+            batches.add(new ArrayList<>(keys));
+            return function.apply(keys);
+        };
+    }
+
+    private static Map<Long, String> toValues(List<Long> keys) {
+        Map<Long, String> result = new HashMap<>();
+        keys.forEach(key -> result.put(key, "device-" + key));
+        return result;
+    }
+
+}
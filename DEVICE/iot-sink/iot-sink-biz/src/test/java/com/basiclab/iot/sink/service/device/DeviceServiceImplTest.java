@@ -0,0 +1,220 @@
+package com.basiclab.iot.sink.service.device;
+
+import com.basiclab.iot.common.core.KeyValue;
+import com.basiclab.iot.sink.biz.dto.IotDeviceRespDTO;
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import com.basiclab.iot.sink.dal.dataobject.DeviceDO;
+import com.basiclab.iot.sink.dal.mapper.DeviceMapper;
+import com.google.common.cache.LoadingCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DeviceServiceImpl} 设备缓存的单元测试：未命中合并、推送失效、预加载与批量加载互不阻塞
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class DeviceServiceImplTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    /**
+     * 预加载查询阻塞直到放行
+     */
+    private final CountDownLatch releasePreload = new CountDownLatch(1);
+
+    private DeviceMapper deviceMapper;
+
+    private DeviceServiceImpl deviceService;
+
+    @BeforeEach
+    public void setUp() {
+        deviceMapper = mock(DeviceMapper.class);
+        // 设备编号与设备标识一一对应：设备 n 的标识为 dn
+        when(deviceMapper.selectListByIds(anyCollection())).thenAnswer(invocation -> {
+            List<DeviceDO> result = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                result.add(device("p", id));
+            }
+            return result;
+        });
+        when(deviceMapper.selectListByProductIdentificationAndDeviceIdentifications(anyString(), anyCollection()))
+                .thenAnswer(invocation -> {
+                    List<DeviceDO> result = new ArrayList<>();
+                    for (String deviceIdentification : invocation.<Collection<String>>getArgument(1)) {
+                        result.add(device(invocation.getArgument(0), Long.parseLong(deviceIdentification.substring(1))));
+                    }
+                    return result;
+                });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releasePreload.countDown();
+        callers.shutdownNow();
+        if (deviceService != null) {
+            deviceService.destroy();
+        }
+    }
+
+    @Test
+    public void testGetDevice_concurrentMissesCoalesced() throws Exception {
+        deviceService = createService(100L, false);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<IotDeviceRespDTO>> results = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            long deviceId = id;
+            results.add(callers.submit(() -> {
+                start.await();
+                return deviceService.getDevice(deviceId);
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1L, results.get(i).get(5, TimeUnit.SECONDS).getId());
+        }
+        verify(deviceMapper, times(1)).selectListByIds(anyCollection());
+    }
+
+    @Test
+    public void testInvalidateDevices_reloadsFromDatabase() {
+        deviceService = createService(1L, false);
+        assertEquals("d1", deviceService.getDevice(1L).getDeviceIdentification());
+        // 按编号加载后，按标识查询命中相互缓存
+        assertEquals(1L, deviceService.getDevice("p", "d1").getId());
+        verify(deviceMapper, times(1)).selectListByIds(anyCollection());
+
+        deviceService.invalidateDevices(Collections.singletonList(1L));
+
+        assertNull(getCache("deviceCaches2").getIfPresent(new KeyValue<>("p", "d1")));
+        deviceService.getDevice(1L);
+        verify(deviceMapper, times(2)).selectListByIds(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidateDevices_removesIdentificationKeysByIndex() {
+        deviceService = createService(1L, false);
+        deviceService.getDevice("p", "d1");
+        deviceService.getDevice("p", "d2");
+        Map<Long, ?> keysIndex = (Map<Long, ?>) ReflectionTestUtils.getField(deviceService, "deviceCaches2Keys");
+        assertEquals(2, keysIndex.size());
+
+        deviceService.invalidateDevices(Collections.singletonList(1L));
+
+        // 只移除被失效设备的 key，其他设备的缓存和索引保留
+        assertNull(getCache("deviceCaches2").getIfPresent(new KeyValue<>("p", "d1")));
+        assertNotNull(getCache("deviceCaches2").getIfPresent(new KeyValue<>("p", "d2")));
+        assertEquals(Collections.singleton(2L), keysIndex.keySet());
+    }
+
+    @Test
+    public void testGetDevice_notDelayedByBlockedPreloads() throws Exception {
+        blockPreloadQueries();
+        deviceService = createService(2L, true);
+
+        // 重启后大量产品同时未命中：预加载被阻塞或跳过，批量加载仍然及时完成
+        List<Future<IotDeviceRespDTO>> results = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            long deviceId = id;
+            results.add(callers.submit(() -> deviceService.getDevice("product_" + deviceId, "d" + deviceId)));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1L, results.get(i).get(2, TimeUnit.SECONDS).getId());
+        }
+    }
+
+    @Test
+    public void testPreload_dropsDevicesInvalidatedDuringLoad() throws Exception {
+        CountDownLatch preloadStarted = new CountDownLatch(1);
+        when(deviceMapper.selectListByProductIdentification(eq("p"), anyInt())).thenAnswer(invocation -> {
+            preloadStarted.countDown();
+            releasePreload.await(5, TimeUnit.SECONDS);
+            return Arrays.asList(device("p", 1L), device("p", 2L), device("p", 3L));
+        });
+        deviceService = createService(1L, true);
+
+        deviceService.getDevice("p", "d1");
+        assertTrue(preloadStarted.await(5, TimeUnit.SECONDS));
+        deviceService.invalidateDevices(Collections.singletonList(2L));
+        releasePreload.countDown();
+
+        // 设备 3 由预加载写入缓存，设备 2 在预加载查询期间被失效，不写入
+        LoadingCache<Long, IotDeviceRespDTO> deviceCaches = getCache("deviceCaches");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (deviceCaches.getIfPresent(3L) == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(deviceCaches.getIfPresent(3L));
+        assertNull(deviceCaches.getIfPresent(2L));
+    }
+
+    private void blockPreloadQueries() {
+        when(deviceMapper.selectListByProductIdentification(anyString(), anyInt())).thenAnswer(invocation -> {
+            releasePreload.await(10, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+    }
+
+    private DeviceServiceImpl createService(long batchWindowMs, boolean preloadEnabled) {
+        IotGatewayProperties.DeviceCacheProperties deviceCache = new IotGatewayProperties.DeviceCacheProperties();
+        deviceCache.setBatchWindowMs(batchWindowMs);
+        deviceCache.setPreloadEnabled(preloadEnabled);
+        deviceCache.setPreloadThreads(1);
+        deviceCache.setPreloadQueueCapacity(1);
+        IotGatewayProperties gatewayProperties = new IotGatewayProperties();
+        gatewayProperties.setDeviceCache(deviceCache);
+
+        DeviceServiceImpl service = new DeviceServiceImpl();
+        ReflectionTestUtils.setField(service, "deviceMapper", deviceMapper);
+        ReflectionTestUtils.setField(service, "gatewayProperties", gatewayProperties);
+        service.init();
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> LoadingCache<K, IotDeviceRespDTO> getCache(String name) {
+        return (LoadingCache<K, IotDeviceRespDTO>) ReflectionTestUtils.getField(deviceService, name);
+    }
+
+    private static DeviceDO device(String productIdentification, Long id) {
+        return DeviceDO.builder()
+                .id(id)
+                .productIdentification(productIdentification)
+                .deviceIdentification("d" + id)
+                .tenantId(1L)
+                .build();
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.basiclab.iot.sink.service.tdengine;
+
+import com.basiclab.iot.sink.config.IotGatewayProperties;
+import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * {@link TdEngineBatchWriter} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class TdEngineBatchWriterTest {
+
+    private TdEngineService tdEngineService;
+
+    /**
+     * 批量写入的每一批（flush 后写入器会复用并清空批次列表，这里保存副本）
+     */
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    /**
+     * 同步写入（调用线程写入或逐条写入）的表名
+     */
+    private final List<String> singles = new CopyOnWriteArrayList<>();
+
+    private TdEngineBatchWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        tdEngineService = mock(TdEngineService.class);
+        doAnswer(invocation -> {
+            List<TableDTO> tableList = invocation.getArgument(0);
+            List<String> names = new ArrayList<>();
+            tableList.forEach(tableDTO -> names.add(tableDTO.getTableName()));
+            batches.add(names);
+            return null;
+        }).when(tdEngineService).insertMultiTableData(anyList());
+        doAnswer(invocation -> {
+            singles.add(invocation.<TableDTO>getArgument(0).getTableName());
+            return null;
+        }).when(tdEngineService).insertTableData(any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.destroy();
+        }
+    }
+
+    @Test
+    public void testWrite_flushWhenBatchSizeReached() {
+        writer = createWriter(3, 60_000L, 100, 1);
+
+        writer.write(row("t1"));
+        writer.write(row("t2"));
+        writer.write(row("t3"));
+
+        verify(tdEngineService, timeout(5000)).insertMultiTableData(anyList());
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertTrue(singles.isEmpty());
+    }
+
+    @Test
+    public void testWrite_flushWhenIntervalElapsed() {
+        writer = createWriter(100, 50L, 100, 1);
+
+        writer.write(row("t1"));
+
+        verify(tdEngineService, timeout(5000)).insertMultiTableData(anyList());
+        assertEquals(1, batches.get(0).size());
+    }
+
+    @Test
+    public void testWrite_callerRunsWhenQueueFull() throws InterruptedException {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(tdEngineService).insertMultiTableData(anyList());
+        writer = createWriter(1, 60_000L, 1, 1);
+
+        // 第一行被写入线程取走并阻塞在 flush 中，第二行占满队列，第三行由调用线程写入
+        writer.write(row("t1"));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        writer.write(row("t2"));
+        writer.write(row("t3"));
+
+        assertEquals(1, singles.size());
+        assertEquals("t3", singles.get(0));
+        release.countDown();
+    }
+
+    @Test
+    public void testDestroy_drainsQueue() {
+        writer = createWriter(2, 60_000L, 100, 1);
+        for (int i = 0; i < 5; i++) {
+            writer.write(row("t" + i));
+        }
+
+        writer.destroy();
+
+        int rows = batches.stream().mapToInt(List::size).sum();
+        assertEquals(5, rows + singles.size());
+    }
+
+    @Test
+    public void testWrite_afterDestroyWritesSynchronously() {
+        writer = createWriter(10, 60_000L, 100, 1);
+        writer.destroy();
+
+        writer.write(row("late"));
+
+        assertEquals(1, singles.size());
+        assertEquals("late", singles.get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInterrupt_flushesPartialBatchAndKeepsRunning() throws InterruptedException {
+        writer = createWriter(10, 60_000L, 100, 1);
+        writer.write(row("t1"));
+        writer.write(row("t2"));
+        // 等待写入线程取出两行并进入攒批等待
+        Thread.sleep(200);
+
+        List<Thread> threads = (List<Thread>) ReflectionTestUtils.getField(writer, "writerThreads");
+        threads.get(0).interrupt();
+
+        verify(tdEngineService, timeout(5000)).insertMultiTableData(anyList());
+        assertEquals(2, batches.get(0).size());
+        // 中断只影响当前批次，写入线程继续工作
+        assertTrue(threads.get(0).isAlive());
+        assertTrue((Boolean) ReflectionTestUtils.getField(writer, "running"));
+        verify(tdEngineService, never()).insertTableData(any());
+    }
+
+    private TdEngineBatchWriter createWriter(int batchSize, long flushIntervalMs, int queueCapacity, int writerThreads) {
+        IotGatewayProperties.TdengineProperties tdengine = new IotGatewayProperties.TdengineProperties();
+        tdengine.setBatchEnabled(true);
+        tdengine.setBatchSize(batchSize);
+        tdengine.setFlushIntervalMs(flushIntervalMs);
+        tdengine.setQueueCapacity(queueCapacity);
+        tdengine.setOfferTimeoutMs(10L);
+        tdengine.setWriterThreads(writerThreads);
+        IotGatewayProperties gatewayProperties = new IotGatewayProperties();
+        gatewayProperties.setTdengine(tdengine);
+
+        TdEngineBatchWriter batchWriter = new TdEngineBatchWriter();
+        ReflectionTestUtils.setField(batchWriter, "tdEngineService", tdEngineService);
+        ReflectionTestUtils.setField(batchWriter, "gatewayProperties", gatewayProperties);
+        batchWriter.init();
+        return batchWriter;
+    }
+
+    private static TableDTO row(String tableName) {
+        TableDTO tableDTO = new TableDTO();
+        tableDTO.setTableName(tableName);
+        return tableDTO;
+    }
+
+}
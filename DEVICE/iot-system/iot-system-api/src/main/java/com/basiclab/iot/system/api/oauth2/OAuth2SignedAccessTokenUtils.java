@@ -0,0 +1,102 @@
+package com.basiclab.iot.system.api.oauth2;
+
+import cn.hutool.core.util.StrUtil;
+import com.basiclab.iot.common.utils.json.JsonUtils;
+import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenClaimsDTO;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 自包含访问令牌工具类
+ *
+ * 令牌格式为 base64url(声明 JSON) + "." + base64url(HMAC-SHA256 签名)，
+ * 网关持有相同的密钥即可在本地校验令牌，无需调用 {@link OAuth2TokenApi#URL_CHECK}。
+ * 普通访问令牌是不含 "." 的 UUID，可以通过 {@link #isSigned(String)} 区分。
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class OAuth2SignedAccessTokenUtils {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final char SEPARATOR = '.';
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private OAuth2SignedAccessTokenUtils() {
+    }
+
+    /**
+     * 是否为自包含访问令牌
+     *
+     * @param token 访问令牌
+     * @return 是否自包含
+     */
+    public static boolean isSigned(String token) {
+        return token != null && token.indexOf(SEPARATOR) > 0;
+    }
+
+    /**
+     * 签发自包含访问令牌
+     *
+     * @param claims 声明
+     * @param secret 签名密钥
+     * @return 访问令牌
+     */
+    public static String sign(OAuth2AccessTokenClaimsDTO claims, String secret) {
+        String payload = ENCODER.encodeToString(JsonUtils.toJsonByte(claims));
+        return payload + SEPARATOR + ENCODER.encodeToString(hmac(payload, secret));
+    }
+
+    /**
+     * 校验自包含访问令牌
+     *
+     * @param token 访问令牌
+     * @param secret 签名密钥
+     * @return 声明；格式不正确、签名不匹配或已过期时返回 null
+     */
+    public static OAuth2AccessTokenClaimsDTO verify(String token, String secret) {
+        int index = token.lastIndexOf(SEPARATOR);
+        if (index <= 0 || index == token.length() - 1) {
+            return null;
+        }
+        String payload = token.substring(0, index);
+        try {
+            byte[] signature = DECODER.decode(token.substring(index + 1));
+            // 使用常量时间比较，避免通过耗时猜测签名
+            if (!MessageDigest.isEqual(signature, hmac(payload, secret))) {
+                return null;
+            }
+            OAuth2AccessTokenClaimsDTO claims = JsonUtils.parseObject(DECODER.decode(payload), OAuth2AccessTokenClaimsDTO.class);
+            if (claims == null || claims.getExp() == null || claims.getExp() <= System.currentTimeMillis()) {
+                return null;
+            }
+            return claims;
+        } catch (IllegalArgumentException e) {
+            // base64 格式不正确
+            return null;
+        }
+    }
+
+    private static byte[] hmac(String payload, String secret) {
+        if (StrUtil.isEmpty(secret)) {
+            throw new IllegalStateException("自包含访问令牌的签名密钥未配置");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -30,6 +30,18 @@ public interface OAuth2TokenApi {
     @SuppressWarnings("HttpUrlsUsage")
     String URL_CHECK = "http://" + ApiConstants.NAME + PREFIX + "/check";
 
+    /**
+     * 访问令牌被移除时广播的 Redis Channel，网关订阅后失效本地缓存和自包含令牌
+     */
+    String CHANNEL_ACCESS_TOKEN_REVOKE = "OAuth2AccessTokenRevokeMessage";
+
+    /**
+     * 被移除访问令牌的 Redis ZSET，member 为访问令牌，score 为过期时间（毫秒时间戳）
+     *
+     * 广播前写入，网关启动或重新订阅时加载，补上未收到的广播
+     */
+    String REVOKED_ACCESS_TOKENS_KEY = "oauth2_revoked_access_tokens";
+
     @PostMapping(PREFIX + "/create")
     @Operation(summary = "创建访问令牌")
     CommonResult<OAuth2AccessTokenRespDTO> createAccessToken(@Valid @RequestBody OAuth2AccessTokenCreateReqDTO reqDTO);
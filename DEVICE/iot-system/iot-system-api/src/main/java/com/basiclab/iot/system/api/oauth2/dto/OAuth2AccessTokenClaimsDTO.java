@@ -0,0 +1,25 @@
+package com.basiclab.iot.system.api.oauth2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 自包含访问令牌中携带的声明，在 {@link OAuth2AccessTokenCheckRespDTO} 基础上增加令牌编号和过期时间
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Schema(description = "RPC 服务 - OAuth2 自包含访问令牌的声明 DTO")
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class OAuth2AccessTokenClaimsDTO extends OAuth2AccessTokenCheckRespDTO {
+
+    @Schema(description = "令牌编号，保证每次签发的令牌不同", example = "3b2e6a1f0c5d4e7f8a9b0c1d2e3f4a5b")
+    private String jti;
+
+    @Schema(description = "过期时间，毫秒时间戳", example = "1735660800000")
+    private Long exp;
+
+}
@@ -0,0 +1,127 @@
+package com.basiclab.iot.system.api.oauth2;
+
+import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenClaimsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link OAuth2SignedAccessTokenUtils} 的单元测试
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+public class OAuth2SignedAccessTokenUtilsTest {
+
+    private static final String SECRET = "test-secret";
+
+    @Test
+    public void testSignAndVerify_roundTrip() {
+        OAuth2AccessTokenClaimsDTO claims = claims(System.currentTimeMillis() + 60000);
+
+        String token = OAuth2SignedAccessTokenUtils.sign(claims, SECRET);
+        OAuth2AccessTokenClaimsDTO verified = OAuth2SignedAccessTokenUtils.verify(token, SECRET);
+
+        assertNotNull(verified);
+        assertEquals(claims.getUserId(), verified.getUserId());
+        assertEquals(claims.getUserType(), verified.getUserType());
+        assertEquals(claims.getTenantId(), verified.getTenantId());
+        assertEquals(claims.getScopes(), verified.getScopes());
+        assertEquals(claims.getJti(), verified.getJti());
+        assertEquals(claims.getExp(), verified.getExp());
+    }
+
+    @Test
+    public void testSign_differentJtiProducesDifferentToken() {
+        long exp = System.currentTimeMillis() + 60000;
+
+        assertNotEquals(OAuth2SignedAccessTokenUtils.sign(claims(exp), SECRET),
+                OAuth2SignedAccessTokenUtils.sign(claims(exp), SECRET));
+    }
+
+    @Test
+    public void testVerify_wrongSecret() {
+        String token = OAuth2SignedAccessTokenUtils.sign(claims(System.currentTimeMillis() + 60000), SECRET);
+
+        assertNull(OAuth2SignedAccessTokenUtils.verify(token, "other-secret"));
+    }
+
+    @Test
+    public void testVerify_tamperedPayload() {
+        OAuth2AccessTokenClaimsDTO claims = claims(System.currentTimeMillis() + 60000);
+        String token = OAuth2SignedAccessTokenUtils.sign(claims, SECRET);
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+
+        // 修改用户编号后沿用原签名
+        claims.setUserId(2L);
+        String tampered = OAuth2SignedAccessTokenUtils.sign(claims, SECRET);
+        String forged = tampered.substring(0, tampered.lastIndexOf('.') + 1) + signature;
+
+        assertNull(OAuth2SignedAccessTokenUtils.verify(forged, SECRET));
+    }
+
+    @Test
+    public void testVerify_expired() {
+        String token = OAuth2SignedAccessTokenUtils.sign(claims(System.currentTimeMillis() - 1), SECRET);
+
+        assertNull(OAuth2SignedAccessTokenUtils.verify(token, SECRET));
+    }
+
+    @Test
+    public void testVerify_missingExp() {
+        String token = OAuth2SignedAccessTokenUtils.sign(claims(null), SECRET);
+
+        assertNull(OAuth2SignedAccessTokenUtils.verify(token, SECRET));
+    }
+
+    @Test
+    public void testVerify_malformed() {
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString("{}".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(OAuth2SignedAccessTokenUtils.verify("no-separator", SECRET));
+        assertNull(OAuth2SignedAccessTokenUtils.verify(".signature", SECRET));
+        assertNull(OAuth2SignedAccessTokenUtils.verify(payload + ".", SECRET));
+        assertNull(OAuth2SignedAccessTokenUtils.verify(payload + ".!!!", SECRET));
+    }
+
+    @Test
+    public void testIsSigned() {
+        String token = OAuth2SignedAccessTokenUtils.sign(claims(System.currentTimeMillis() + 60000), SECRET);
+
+        assertTrue(OAuth2SignedAccessTokenUtils.isSigned(token));
+        assertFalse(OAuth2SignedAccessTokenUtils.isSigned(UUID.randomUUID().toString().replace("-", "")));
+        assertFalse(OAuth2SignedAccessTokenUtils.isSigned(null));
+    }
+
+    @Test
+    public void testSign_emptySecret() {
+        OAuth2AccessTokenClaimsDTO claims = claims(System.currentTimeMillis() + 60000);
+
+        assertThrows(IllegalStateException.class, () -> OAuth2SignedAccessTokenUtils.sign(claims, ""));
+        assertThrows(IllegalStateException.class, () -> OAuth2SignedAccessTokenUtils.sign(claims, null));
+    }
+
+    private static OAuth2AccessTokenClaimsDTO claims(Long exp) {
+        OAuth2AccessTokenClaimsDTO claims = new OAuth2AccessTokenClaimsDTO();
+        claims.setUserId(1L);
+        claims.setUserType(2);
+        claims.setTenantId(3L);
+        claims.setScopes(Collections.singletonList("user.read"));
+        claims.setJti(UUID.randomUUID().toString());
+        claims.setExp(exp);
+        return claims;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.basiclab.iot.system.mq.message.oauth2;
+
+import com.basiclab.iot.common.core.pubsub.AbstractRedisChannelMessage;
+import com.basiclab.iot.system.api.oauth2.OAuth2TokenApi;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * 访问令牌移除消息，广播给网关失效本地缓存
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Accessors(chain = true)
+public class OAuth2AccessTokenRevokeMessage extends AbstractRedisChannelMessage {
+
+    /**
+     * 访问令牌
+     */
+    private String accessToken;
+    /**
+     * 访问令牌的过期时间，毫秒时间戳；网关保留移除记录到该时间为止
+     */
+    private Long expiresTime;
+
+    @Override
+    public String getChannel() {
+        return OAuth2TokenApi.CHANNEL_ACCESS_TOKEN_REVOKE;
+    }
+
+}
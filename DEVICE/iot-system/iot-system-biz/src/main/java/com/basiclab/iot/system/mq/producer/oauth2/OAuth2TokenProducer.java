@@ -0,0 +1,68 @@
+package com.basiclab.iot.system.mq.producer.oauth2;
+
+import com.basiclab.iot.common.core.RedisMQTemplate;
+import com.basiclab.iot.system.api.oauth2.OAuth2TokenApi;
+import com.basiclab.iot.system.dal.dataobject.oauth2.OAuth2AccessTokenDO;
+import com.basiclab.iot.system.mq.message.oauth2.OAuth2AccessTokenRevokeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.ZoneId;
+import java.util.Collection;
+
+/**
+ * OAuth2 令牌相关消息的 Producer
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Slf4j
+@Component
+public class OAuth2TokenProducer {
+
+    @Resource
+    private RedisMQTemplate redisMQTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 发送 {@link OAuth2AccessTokenRevokeMessage} 消息
+     *
+     * 广播前先记录到 {@link OAuth2TokenApi#REVOKED_ACCESS_TOKENS_KEY}，断线或重启期间错过广播的网关据此补齐
+     *
+     * @param accessTokens 被移除的访问令牌
+     */
+    public void sendAccessTokenRevokeMessage(Collection<OAuth2AccessTokenDO> accessTokens) {
+        long now = System.currentTimeMillis();
+        for (OAuth2AccessTokenDO accessToken : accessTokens) {
+            OAuth2AccessTokenRevokeMessage message = new OAuth2AccessTokenRevokeMessage()
+                    .setAccessToken(accessToken.getAccessToken())
+                    .setExpiresTime(accessToken.getExpiresTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            if (message.getExpiresTime() > now) {
+                try {
+                    stringRedisTemplate.opsForZSet().add(OAuth2TokenApi.REVOKED_ACCESS_TOKENS_KEY,
+                            message.getAccessToken(), message.getExpiresTime());
+                } catch (Exception e) {
+                    log.error("[sendAccessTokenRevokeMessage][记录访问令牌移除失败，userId: {}]", accessToken.getUserId(), e);
+                }
+            }
+            try {
+                redisMQTemplate.send(message);
+            } catch (Exception e) {
+                // 广播失败不影响令牌移除：普通令牌在网关缓存到期后重新校验，自包含令牌在过期前仍然有效
+                log.error("[sendAccessTokenRevokeMessage][广播访问令牌移除失败，userId: {}]", accessToken.getUserId(), e);
+            }
+        }
+        try {
+            // 顺带清理已过期的记录，过期的令牌本身已无法通过校验
+            stringRedisTemplate.opsForZSet().removeRangeByScore(OAuth2TokenApi.REVOKED_ACCESS_TOKENS_KEY, 0, now);
+        } catch (Exception e) {
+            log.warn("[sendAccessTokenRevokeMessage][清理过期的访问令牌移除记录失败]", e);
+        }
+    }
+
+}
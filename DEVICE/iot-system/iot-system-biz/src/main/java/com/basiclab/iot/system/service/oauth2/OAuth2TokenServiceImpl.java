@@ -18,14 +18,19 @@ import com.basiclab.iot.system.dal.dataobject.oauth2.OAuth2RefreshTokenDO;
 import com.basiclab.iot.system.dal.dataobject.user.AdminUserDO;
 import com.basiclab.iot.system.dal.pgsql.oauth2.OAuth2AccessTokenMapper;
 import com.basiclab.iot.system.dal.pgsql.oauth2.OAuth2RefreshTokenMapper;
+import com.basiclab.iot.system.api.oauth2.OAuth2SignedAccessTokenUtils;
+import com.basiclab.iot.system.api.oauth2.dto.OAuth2AccessTokenClaimsDTO;
 import com.basiclab.iot.system.dal.redis.oauth2.OAuth2AccessTokenRedisDAO;
+import com.basiclab.iot.system.mq.producer.oauth2.OAuth2TokenProducer;
 import com.basiclab.iot.system.service.user.AdminUserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +62,21 @@ public class OAuth2TokenServiceImpl implements OAuth2TokenService {
     @Lazy // 懒加载，避免循环依赖
     private AdminUserService adminUserService;
 
+    @Resource
+    private OAuth2TokenProducer oauth2TokenProducer;
+
+    /**
+     * 是否签发自包含访问令牌，开启后网关可在本地校验令牌
+     */
+    @Value("${iot.security.signed-access-token.enabled:false}")
+    private boolean signedAccessTokenEnabled;
+
+    /**
+     * 自包含访问令牌的签名密钥，需与网关配置一致
+     */
+    @Value("${iot.security.signed-access-token.secret:}")
+    private String signedAccessTokenSecret;
+
     @Override
     @Transactional
     public OAuth2AccessTokenDO createAccessToken(Long userId, Integer userType, String clientId, List<String> scopes) {
@@ -86,6 +106,7 @@ public class OAuth2TokenServiceImpl implements OAuth2TokenService {
         if (CollUtil.isNotEmpty(accessTokenDOs)) {
             oauth2AccessTokenMapper.deleteBatchIds(convertSet(accessTokenDOs, OAuth2AccessTokenDO::getId));
             oauth2AccessTokenRedisMapper.deleteList(convertSet(accessTokenDOs, OAuth2AccessTokenDO::getAccessToken));
+            oauth2TokenProducer.sendAccessTokenRevokeMessage(accessTokenDOs);
         }
 
         // 已过期的情况下，删除刷新令牌
@@ -136,6 +157,7 @@ public class OAuth2TokenServiceImpl implements OAuth2TokenService {
         }
         oauth2AccessTokenMapper.deleteById(accessTokenDO.getId());
         oauth2AccessTokenRedisMapper.delete(accessToken);
+        oauth2TokenProducer.sendAccessTokenRevokeMessage(Collections.singletonList(accessTokenDO));
         // 删除刷新令牌
         oauth2RefreshTokenMapper.deleteByRefreshToken(accessTokenDO.getRefreshToken());
         return accessTokenDO;
@@ -147,13 +169,14 @@ public class OAuth2TokenServiceImpl implements OAuth2TokenService {
     }
 
     private OAuth2AccessTokenDO createOAuth2AccessToken(OAuth2RefreshTokenDO refreshTokenDO, OAuth2ClientDO clientDO) {
-        OAuth2AccessTokenDO accessTokenDO = new OAuth2AccessTokenDO().setAccessToken(generateAccessToken())
+        OAuth2AccessTokenDO accessTokenDO = new OAuth2AccessTokenDO()
                 .setUserId(refreshTokenDO.getUserId()).setUserType(refreshTokenDO.getUserType())
                 .setUserInfo(buildUserInfo(refreshTokenDO.getUserId(), refreshTokenDO.getUserType()))
                 .setClientId(clientDO.getClientId()).setScopes(refreshTokenDO.getScopes())
                 .setRefreshToken(refreshTokenDO.getRefreshToken())
                 .setExpiresTime(LocalDateTime.now().plusSeconds(clientDO.getAccessTokenValiditySeconds()));
         accessTokenDO.setTenantId(TenantContextHolder.getTenantId()); // 手动设置租户编号，避免缓存到 Redis 的时候，无对应的租户编号
+        accessTokenDO.setAccessToken(signedAccessTokenEnabled ? generateSignedAccessToken(accessTokenDO) : generateAccessToken());
         oauth2AccessTokenMapper.insert(accessTokenDO);
         // 记录到 Redis 中
         oauth2AccessTokenRedisMapper.set(accessTokenDO);
@@ -192,6 +215,21 @@ public class OAuth2TokenServiceImpl implements OAuth2TokenService {
         return IdUtil.fastSimpleUUID();
     }
 
+    /**
+     * 生成自包含访问令牌，携带网关构建登录用户所需的全部信息
+     */
+    private String generateSignedAccessToken(OAuth2AccessTokenDO accessTokenDO) {
+        OAuth2AccessTokenClaimsDTO claims = new OAuth2AccessTokenClaimsDTO();
+        claims.setJti(IdUtil.fastSimpleUUID());
+        claims.setExp(accessTokenDO.getExpiresTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        claims.setUserId(accessTokenDO.getUserId());
+        claims.setUserType(accessTokenDO.getUserType());
+        claims.setUserInfo(accessTokenDO.getUserInfo());
+        claims.setTenantId(accessTokenDO.getTenantId());
+        claims.setScopes(accessTokenDO.getScopes());
+        return OAuth2SignedAccessTokenUtils.sign(claims, signedAccessTokenSecret);
+    }
+
     private static String generateRefreshToken() {
         return IdUtil.fastSimpleUUID();
     }
@@ -8,6 +8,7 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
 import com.basiclab.iot.tdengine.factory.RemoteTdEngineFallbackFactory;
@@ -210,6 +211,15 @@ public interface RemoteTdEngineService {
     @PostMapping("/getLastDataByTags")
     public R<Map<String, Map<String, Object>>> getLastDataByTags(@Validated @RequestBody TagsSelectDTO tagsSelectDao);
 
+    /**
+     * 批量查询多个超级表下子表的数据，每个超级表只执行一次查询
+     *
+     * @param selectDTOList 按超级表分组的查询条件
+     * @return 子表名称 → 数据
+     */
+    @PostMapping("/getDataBySubTables")
+    public R<Map<String, List<Map<String, Object>>>> getDataBySubTables(@Validated @RequestBody List<SubTablesSelectDTO> selectDTOList);
+
     /**
      * 通过设备标识查询设备最新数据
      *
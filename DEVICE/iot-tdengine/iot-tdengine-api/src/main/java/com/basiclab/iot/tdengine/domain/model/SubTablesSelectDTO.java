@@ -0,0 +1,34 @@
+package com.basiclab.iot.tdengine.domain.model;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+/**
+ * 同一超级表下多个子表的批量查询模型
+ * <p>
+ * 开始时间和结束时间都存在时查询时间范围内的数据，否则查询每个子表最新的一条数据
+ *
+ * @author 翱翔的雄库鲁
+ * @email andywebjava@163.com
+ * @wechat EasyAIoT2025
+ */
+@Data
+public class SubTablesSelectDTO {
+
+    @NotBlank(message = "invalid operation: dataBaseName can not be empty")
+    private String dataBaseName;
+
+    @NotBlank(message = "invalid operation: superTableName can not be empty")
+    private String superTableName;
+
+    @NotEmpty(message = "invalid operation: subTableNames can not be empty")
+    private List<String> subTableNames;
+
+    private Long startTime;
+
+    private Long endTime;
+
+}
@@ -8,6 +8,7 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
 import org.slf4j.Logger;
@@ -128,6 +129,12 @@ public class RemoteTdEngineFallbackFactory implements FallbackFactory<RemoteTdEn
                 return R.fail();
             }
 
+            @Override
+            public R<Map<String, List<Map<String, Object>>>> getDataBySubTables(List<SubTablesSelectDTO> selectDTOList) {
+                log.error("批量查询子表数据失败:{}", throwable.getMessage());
+                return R.fail();
+            }
+
             @Override
             public R<List<DeviceData>> getLastRowsListByIdentifier(TDDeviceDataRequest tdDeviceDataRequest) {
                 log.error("查询最新数据失败:{}", throwable.getMessage());
@@ -13,6 +13,7 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataHistoryRequest;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
@@ -437,6 +438,21 @@ public class TdEngineController extends BaseController {
         }
     }
 
+    /**
+     * @param selectDTOList 按超级表分组的查询条件
+     * @return R<?>
+     * @MethodDescription 批量查询多个超级表下子表的数据，每个超级表只执行一次查询
+     */
+    @PostMapping("/getDataBySubTables")
+    public R<Map<String, List<Map<String, Object>>>> getDataBySubTables(@Validated @RequestBody List<SubTablesSelectDTO> selectDTOList) {
+        try {
+            return R.ok(this.tdEngineService.selectBySubTables(selectDTOList));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return R.fail(e.getMessage());
+        }
+    }
+
     @ApiOperation("通过设备标识查询设备最新数据")
     @PostMapping("/getLastRowsListByIdentifier")
     public R<List<DeviceData>> getLastRowsListByIdentifier(@RequestBody TDDeviceDataRequest tdDeviceDataRequest) {
@@ -7,6 +7,7 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataHistoryRequest;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
@@ -134,6 +135,16 @@ public interface TdEngineMapper {
      */
     List<Map<String, Object>> getLastDataByTags(TagsSelectDTO tagsSelectDTO);
 
+    /**
+     * 查询同一超级表下多个子表的数据，结果中的 shadow_table_name 列为子表名称
+     *
+     * @param subTablesSelectDTO 查询条件
+     * @param columnNames        按时间范围查询时返回的数据列，不含标签列
+     * @return 数据
+     */
+    List<Map<String, Object>> selectBySubTables(@Param("select") SubTablesSelectDTO subTablesSelectDTO,
+                                                @Param("columnNames") List<String> columnNames);
+
     /**
      * Retrieves the latest data from the specified table within the given database.
      * If both startTime and endTime are provided, it fetches records within that time range.
@@ -8,6 +8,7 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataHistoryRequest;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
@@ -160,6 +161,14 @@ public interface TdEngineService {
         return null;
     }
 
+    /**
+     * 批量查询多个超级表下子表的数据，每个超级表执行一次查询，多个超级表并行查询
+     *
+     * @param selectDTOList 按超级表分组的查询条件
+     * @return 子表名称 → 数据，超时或查询失败的超级表不包含在结果中
+     */
+    Map<String, List<Map<String, Object>>> selectBySubTables(List<SubTablesSelectDTO> selectDTOList);
+
     /**
      * Retrieves the latest data from the specified table within the given database.
      * If both startTime and endTime are provided, it fetches records within that time range.
@@ -9,12 +9,14 @@ import com.basiclab.iot.tdengine.domain.SelectDto;
 import com.basiclab.iot.tdengine.domain.SuperTableDescribeVO;
 import com.basiclab.iot.tdengine.domain.model.SuperTableDTO;
 import com.basiclab.iot.tdengine.domain.model.TableDTO;
+import com.basiclab.iot.tdengine.domain.model.SubTablesSelectDTO;
 import com.basiclab.iot.tdengine.domain.model.TagsSelectDTO;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataHistoryRequest;
 import com.basiclab.iot.tdengine.domain.query.TDDeviceDataRequest;
 import com.basiclab.iot.tdengine.mapper.TdEngineMapper;
 import com.basiclab.iot.tdengine.service.TdEngineService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
@@ -22,6 +24,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -34,9 +41,28 @@ import java.util.stream.Collectors;
 @Transactional(isolation = Isolation.DEFAULT, propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
 public class TdEngineServiceImpl implements TdEngineService {
 
+    /**
+     * {@link TdEngineMapper#selectBySubTables} 结果中的子表名称列
+     */
+    private static final String SHADOW_TABLE_NAME = "shadow_table_name";
+
+    /**
+     * DESCRIBE 结果中标签列的 note
+     */
+    private static final String TAG_NOTE = "TAG";
+
     @Resource
     private TdEngineMapper tdengineMapper;
 
+    @Resource(name = "tdengineAsync")
+    private Executor tdengineAsync;
+
+    /**
+     * 批量查询的超时时间，超时的超级表不返回数据
+     */
+    @Value("${basiclab.iot.tdengine.batch-query-timeout-ms:5000}")
+    private long batchQueryTimeoutMillis;
+
     @Override
     public void createDatabase(String dataBaseName) {
         tdengineMapper.createDatabase(dataBaseName);
@@ -116,6 +142,59 @@ public class TdEngineServiceImpl implements TdEngineService {
     }
 
 
+    @Override
+    public Map<String, List<Map<String, Object>>> selectBySubTables(List<SubTablesSelectDTO> selectDTOList) {
+        List<CompletableFuture<List<Map<String, Object>>>> futures = new ArrayList<>(selectDTOList.size());
+        for (SubTablesSelectDTO selectDTO : selectDTOList) {
+            futures.add(CompletableFuture.supplyAsync(() -> selectBySubTables(selectDTO), tdengineAsync));
+        }
+        long deadline = System.currentTimeMillis() + batchQueryTimeoutMillis;
+        Map<String, List<Map<String, Object>>> result = new HashMap<>();
+        for (int i = 0; i < selectDTOList.size(); i++) {
+            SubTablesSelectDTO selectDTO = selectDTOList.get(i);
+            List<Map<String, Object>> rows;
+            try {
+                rows = futures.get(i).get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                log.warn("[selectBySubTables][查询超时，超级表: {}，子表数: {}]", selectDTO.getSuperTableName(), selectDTO.getSubTableNames().size());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("[selectBySubTables][查询失败，超级表: {}]", selectDTO.getSuperTableName(), e.getCause());
+                continue;
+            }
+            // 请求的子表都返回，没有数据的子表为空列表
+            selectDTO.getSubTableNames().forEach(subTableName -> result.put(subTableName, new ArrayList<>()));
+            for (Map<String, Object> row : rows) {
+                Object subTableName = row.remove(SHADOW_TABLE_NAME);
+                if (subTableName != null) {
+                    result.computeIfAbsent(subTableName.toString(), key -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> selectBySubTables(SubTablesSelectDTO selectDTO) {
+        List<String> columnNames = null;
+        if (selectDTO.getStartTime() != null && selectDTO.getEndTime() != null) {
+            // 时间范围查询只返回数据列，标签列不在单个子表查询的结果中
+            columnNames = tdengineMapper.describeSuperOrSubTable(selectDTO.getDataBaseName(), selectDTO.getSuperTableName())
+                    .stream()
+                    .filter(column -> column.getNote() == null || !TAG_NOTE.equalsIgnoreCase(column.getNote().trim()))
+                    .map(SuperTableDescribeVO::getField)
+                    .collect(Collectors.toList());
+            if (columnNames.isEmpty()) {
+                log.warn("[selectBySubTables][超级表不存在或没有数据列，超级表: {}]", selectDTO.getSuperTableName());
+                return Collections.emptyList();
+            }
+        }
+        return tdengineMapper.selectBySubTables(selectDTO, columnNames);
+    }
+
     @Override
     public List<Map<String, Object>> getDataInRangeOrLastRecord(String dataBaseName, String tableName, Long startTime, Long endTime) {
         return tdengineMapper.getDataInRangeOrLastRecord(dataBaseName, tableName, startTime, endTime);